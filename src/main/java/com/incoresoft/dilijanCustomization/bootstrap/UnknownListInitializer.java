@@ -1,6 +1,7 @@
 package com.incoresoft.dilijanCustomization.bootstrap;
 
 import com.incoresoft.dilijanCustomization.config.UnknownListRegistry;
+import com.incoresoft.dilijanCustomization.domain.shared.service.FaceListCache;
 import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -21,6 +22,7 @@ public class UnknownListInitializer {
 
     private final FaceApiRepository faceApiRepository;
     private final UnknownListRegistry unknownListRegistry;
+    private final FaceListCache faceListCache;
 
     private static final String UNKNOWN_LIST_NAME = "unknownAutoGenerated";
     private static final String UNKNOWN_LIST_COMMENT = "Autocreated at app startup for unknown persons";
@@ -29,13 +31,14 @@ public class UnknownListInitializer {
     public ApplicationRunner ensureUnknownList() {
         return args -> {
             try {
-                var existing = faceApiRepository.findListByName(UNKNOWN_LIST_NAME);
+                var existing = faceListCache.findByName(UNKNOWN_LIST_NAME);
                 long id;
                 if (existing.isPresent()) {
                     id = existing.get().getId();
                     log.info("Unknown list '{}' found with id={}", UNKNOWN_LIST_NAME, id);
                 } else {
                     id = faceApiRepository.createFaceList(UNKNOWN_LIST_NAME, UNKNOWN_LIST_COMMENT);
+                    faceListCache.invalidate();
                     log.info("Unknown list '{}' created with id={}", UNKNOWN_LIST_NAME, id);
                 }
                 unknownListRegistry.set(id);
@@ -1,9 +1,13 @@
 package com.incoresoft.dilijanCustomization.config;
 
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealPeriod;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealWindow;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -21,6 +25,16 @@ public class CafeteriaProps {
     private String outputDir;
     /** Lists to exclude by name (case-insensitive), e.g. outsourced/contractors */
     private Set<String> excludedListNames;
+    /** Max number of days aggregated concurrently for a date-range report */
+    private int rangeParallelism = 4;
+    /** Upper bound for a single date-range report, in days (inclusive range) */
+    private int maxRangeDays = 62;
+    /** Persist closed days into the attendance_rollup table and reuse them for later reports */
+    private boolean rollupsEnabled = true;
+    /** Upper bound for a single rollup backfill request, in days (inclusive range) */
+    private int maxBackfillDays = 366;
+    /** Add a campus-wide "Unique people" row that counts a person on several lists once per window */
+    private boolean globalUnique = true;
     // Meal windows (local time)
     private LocalTime breakfastStart = LocalTime.of(6, 30);
     private LocalTime breakfastEnd   = LocalTime.of(10, 30);
@@ -28,4 +42,31 @@ public class CafeteriaProps {
     private LocalTime lunchEnd       = LocalTime.of(14, 30);
     private LocalTime dinnerStart    = LocalTime.of(18, 0);
     private LocalTime dinnerEnd      = LocalTime.of(20, 30);
+
+    /** Meal windows of a local day resolved to epoch-millis bounds in the given zone. */
+    public List<MealPeriod> mealPeriods(LocalDate date, ZoneId zone) {
+        List<MealPeriod> periods = new ArrayList<>();
+        for (MealWindow window : MealWindow.values()) {
+            periods.add(new MealPeriod(date, window,
+                    date.atTime(startOf(window)).atZone(zone).toInstant().toEpochMilli(),
+                    date.atTime(endOf(window)).atZone(zone).toInstant().toEpochMilli()));
+        }
+        return periods;
+    }
+
+    public LocalTime startOf(MealWindow window) {
+        return switch (window) {
+            case BREAKFAST -> breakfastStart;
+            case LUNCH -> lunchStart;
+            case DINNER -> dinnerStart;
+        };
+    }
+
+    public LocalTime endOf(MealWindow window) {
+        return switch (window) {
+            case BREAKFAST -> breakfastEnd;
+            case LUNCH -> lunchEnd;
+            case DINNER -> dinnerEnd;
+        };
+    }
 }
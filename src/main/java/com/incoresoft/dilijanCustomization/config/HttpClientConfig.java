@@ -1,17 +1,96 @@
 package com.incoresoft.dilijanCustomization.config;
 
+import com.incoresoft.dilijanCustomization.repository.VezhaTrafficGovernor;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.autoconfigure.web.client.RestTemplateBuilderConfigurer;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
 import java.util.List;
 
 @Configuration
-@EnableConfigurationProperties({VezhaApiProps.class, VezhaDbProps.class, CafeteriaProps.class, EvacuationProps.class, PostgresProps.class, UnknownProps.class})
+@EnableConfigurationProperties({VezhaApiProps.class, VezhaTrafficProps.class, VezhaDbProps.class, CafeteriaProps.class, EvacuationProps.class, PostgresProps.class, UnknownProps.class})
 public class HttpClientConfig {
+
+    /**
+     * Pooled keep-alive client shared by every VEZHA API and storage call: per-route limits,
+     * connect/read/pool-acquire timeouts, idle eviction and transparent gzip/deflate decoding.
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient vezhaHttpClient(VezhaApiProps props) {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(props.getConnectTimeout()))
+                .setSocketTimeout(Timeout.of(props.getReadTimeout()))
+                // re-check connections the server may have closed while idle in the pool
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build();
+        PoolingHttpClientConnectionManager pool = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(props.getMaxConnections())
+                .setMaxConnPerRoute(props.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(connectionConfig)
+                .build();
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(props.getPoolAcquireTimeout()))
+                .setResponseTimeout(Timeout.of(props.getReadTimeout()))
+                .build();
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(props.getIdleEvictAfter()));
+        if (!props.isCompression()) {
+            builder.disableContentCompression();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Non-blocking JDK client behind AsyncFaceApiRepository: a single selector thread multiplexes
+     * all in-flight requests, so concurrency is bounded by vezha.api.async-max-in-flight, not threads.
+     */
+    @Bean(destroyMethod = "close")
+    public HttpClient vezhaAsyncHttpClient(VezhaApiProps props) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(props.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @Bean
+    public ClientHttpRequestFactory vezhaRequestFactory(CloseableHttpClient vezhaHttpClient) {
+        return new HttpComponentsClientHttpRequestFactory(vezhaHttpClient);
+    }
+
+    /**
+     * Replaces Boot's default builder so every RestTemplate built from it (including the storage
+     * client in FaceApiRepository) shares the pooled request factory instead of opening its own,
+     * and applies the per-class traffic bulkheads and rate limits (VezhaTrafficGovernor).
+     */
+    @Bean
+    public RestTemplateBuilder restTemplateBuilder(RestTemplateBuilderConfigurer configurer,
+                                                   ClientHttpRequestFactory vezhaRequestFactory,
+                                                   VezhaTrafficGovernor trafficGovernor) {
+        return configurer.configure(new RestTemplateBuilder())
+                .requestFactory(() -> vezhaRequestFactory)
+                .additionalInterceptors(trafficGovernor.interceptor());
+    }
+
     @Bean
     public RestTemplate vezhaRestTemplate(VezhaApiProps props, RestTemplateBuilder builder) {
         ClientHttpRequestInterceptor auth = (req, body, exec) -> {
@@ -2,10 +2,59 @@ package com.incoresoft.dilijanCustomization.config;
 
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
 
 @Data
 @ConfigurationProperties(prefix = "vezha.api")
 public class VezhaApiProps {
   private String baseUrl;
   private String token;
+  /** Shared connection pool for API and storage calls */
+  private int maxConnections = 64;
+  private int maxConnectionsPerRoute = 32;
+  private Duration connectTimeout = Duration.ofSeconds(5);
+  /** Socket/response timeout for a single request */
+  private Duration readTimeout = Duration.ofSeconds(60);
+  /** How long a request may wait for a free pooled connection */
+  private Duration poolAcquireTimeout = Duration.ofSeconds(10);
+  /** Idle keep-alive connections are closed after this period */
+  private Duration idleEvictAfter = Duration.ofSeconds(30);
+  /** Send Accept-Encoding: gzip, deflate and decode compressed responses */
+  private boolean compression = true;
+  /** Upper bound of concurrent requests issued through the async (non-blocking) client */
+  private int asyncMaxInFlight = 256;
+  /** Face-list metadata cache: served as-is while younger than the TTL */
+  private Duration listCacheTtl = Duration.ofSeconds(60);
+  /** Older than the TTL but within this age: served stale while a background refresh runs */
+  private Duration listCacheMaxStale = Duration.ofMinutes(15);
+  /** Page size used when loading all face lists */
+  private int listPageSize = 200;
+  /** List-item directory: after this age a list is re-checked with a cheap fingerprint and reloaded only if it changed */
+  private Duration listItemCacheTtl = Duration.ofMinutes(5);
+  /** List-item directory over REST: the total-count fingerprint misses renames, so lists are reloaded after this age */
+  private Duration listItemMaxAge = Duration.ofMinutes(30);
+  /** Page size when the directory loads list items over REST (VEZHA DB disabled) */
+  private int listItemPageSize = 1000;
+  /** Async storage downloads: send a backup request once the first one is slower than the observed percentile */
+  private boolean storageHedging = true;
+  private double hedgePercentile = 0.95;
+  /** Never hedge earlier than this, however fast storage usually answers */
+  private Duration hedgeMinDelay = Duration.ofMillis(50);
+  /** Latency samples needed before hedging and adaptive timeouts kick in */
+  private int hedgeMinSamples = 50;
+  /** Backup requests are capped at this share (percent) of storage requests */
+  private int hedgeBudgetPercent = 10;
+  /** Adaptive storage timeout: observed p99 times this factor, between adaptiveTimeoutMin and readTimeout */
+  private int adaptiveTimeoutMultiplier = 4;
+  private Duration adaptiveTimeoutMin = Duration.ofSeconds(2);
+  /** Local mount of the VEZHA storage tree; when set, images are read from disk and HTTP is only the fallback */
+  private String storageRoot;
+  /** Local files at least this large are memory-mapped instead of read through the channel */
+  private DataSize storageMmapThreshold = DataSize.ofKilobytes(256);
+  /** Storage objects larger than this are rejected instead of being loaded or streamed */
+  private DataSize storageMaxObjectSize = DataSize.ofMegabytes(20);
+  /** Copy buffer of streaming storage downloads */
+  private DataSize storageBufferSize = DataSize.ofKilobytes(64);
 }
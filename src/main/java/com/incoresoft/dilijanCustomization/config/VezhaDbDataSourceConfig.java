@@ -9,24 +9,53 @@ import org.springframework.jdbc.core.JdbcTemplate;
 
 import javax.sql.DataSource;
 
+/**
+ * Two pools on the VEZHA DB so long scheduled scans cannot queue evacuation reports behind them:
+ * {@code vezha.db.interactive} for request-driven reads and {@code vezha.db.batch} for BACKGROUND callers.
+ * Each pool has its own size and server-side statement timeout (interactive reads additionally get the
+ * cancellable per-statement {@code vezha.db.query-timeout}), and registers its Hikari MBean
+ * ({@code com.zaxxer.hikari:type=Pool (vezha-db-interactive|vezha-db-batch)}) for active/idle/waiting counts.
+ */
 @Configuration
 public class VezhaDbDataSourceConfig {
 
     @Bean(name = "vezhaDataSource")
     public DataSource vezhaDataSource(VezhaDbProps props) {
+        return pool(props, props.getInteractive(), "vezha-db-interactive");
+    }
+
+    @Bean(name = "vezhaBatchDataSource")
+    public DataSource vezhaBatchDataSource(VezhaDbProps props) {
+        return pool(props, props.getBatch(), "vezha-db-batch");
+    }
+
+    @Bean(name = "vezhaJdbcTemplate")
+    public JdbcTemplate vezhaJdbcTemplate(@Qualifier("vezhaDataSource") DataSource dataSource, VezhaDbProps props) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setQueryTimeout((int) Math.max(0, props.getQueryTimeout().toSeconds()));
+        return template;
+    }
+
+    @Bean(name = "vezhaBatchJdbcTemplate")
+    public JdbcTemplate vezhaBatchJdbcTemplate(@Qualifier("vezhaBatchDataSource") DataSource dataSource) {
+        return new JdbcTemplate(dataSource);
+    }
+
+    private static HikariDataSource pool(VezhaDbProps props, VezhaDbProps.Pool pool, String name) {
         HikariConfig cfg = new HikariConfig();
         cfg.setJdbcUrl(props.jdbcUrl());
         cfg.setUsername(props.getUsername());
         cfg.setPassword(props.getPassword());
         cfg.setDriverClassName("org.postgresql.Driver");
-        cfg.setMaximumPoolSize(5);
-        cfg.setMinimumIdle(1);
-        cfg.setPoolName("vezha-db-hikari");
+        cfg.setMaximumPoolSize(Math.max(1, pool.getMaximumPoolSize()));
+        cfg.setMinimumIdle(Math.max(0, Math.min(pool.getMinimumIdle(), pool.getMaximumPoolSize())));
+        cfg.setConnectionTimeout(Math.max(250, pool.getConnectionTimeout().toMillis()));
+        if (pool.getStatementTimeout() != null && !pool.getStatementTimeout().isZero()) {
+            // applied by the server at session start, so it also bounds statements run through cursors
+            cfg.addDataSourceProperty("options", "-c statement_timeout=" + pool.getStatementTimeout().toMillis());
+        }
+        cfg.setRegisterMbeans(true);
+        cfg.setPoolName(name);
         return new HikariDataSource(cfg);
     }
-
-    @Bean(name = "vezhaJdbcTemplate")
-    public JdbcTemplate vezhaJdbcTemplate(@Qualifier("vezhaDataSource") DataSource dataSource) {
-        return new JdbcTemplate(dataSource);
-    }
 }
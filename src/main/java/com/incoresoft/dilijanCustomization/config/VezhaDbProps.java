@@ -1,8 +1,12 @@
 package com.incoresoft.dilijanCustomization.config;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+
 @Data
 @ConfigurationProperties(prefix = "vezha.db")
 public class VezhaDbProps {
@@ -13,11 +17,32 @@ public class VezhaDbProps {
     private String schema = "videoanalytics";
     private String username;
     private String password;
+    /** Rows per round trip when list items and detections are read through a server-side cursor */
+    private int streamFetchSize = 1000;
+    /**
+     * Per-statement timeout for bounded interactive reads (lists, items, fingerprints, latest detections); the
+     * driver cancels the statement when it expires. Full-range streaming scans rely on the pool statement timeout.
+     */
+    private Duration queryTimeout = Duration.ofSeconds(15);
+    /** Pool for evacuation reports, operator requests and webhooks */
+    private Pool interactive = new Pool(5, 1, Duration.ofMinutes(2), Duration.ofSeconds(5));
+    /** Pool for BACKGROUND callers (scheduled status refresh, nightly cafeteria job) */
+    private Pool batch = new Pool(3, 0, Duration.ofMinutes(30), Duration.ofSeconds(30));
+    /** On-demand EXPLAIN diagnostics of the hot queries */
+    private Explain explain = new Explain(50, 10_000);
+    /** Optional logical-replication ingest of face_detections inserts */
+    private Replication replication = new Replication();
+    /** Rolling in-memory window of recent matched detections shared by evacuation and cafeteria reads */
+    private Window window = new Window();
 
     public String jdbcUrl() {
         return "jdbc:postgresql://" + host + ":" + resolvePort() + "/" + database;
     }
 
+    public String resolveSchema() {
+        return (schema == null || schema.isBlank()) ? "videoanalytics" : schema;
+    }
+
     public int resolvePort() {
         if (port == null || port.isBlank()) {
             return 5432;
@@ -28,4 +53,51 @@ public class VezhaDbProps {
             return 5432;
         }
     }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Pool {
+        private int maximumPoolSize;
+        private int minimumIdle;
+        /** Server-side statement_timeout for every statement on the pool's connections; 0 = none */
+        private Duration statementTimeout;
+        /** How long a caller waits for a free connection */
+        private Duration connectionTimeout;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Explain {
+        /** Analysed plans kept in memory, newest first */
+        private int historySize;
+        /** Sequential scans reading at least this many rows are flagged */
+        private long seqScanRows;
+    }
+
+    @Data
+    public static class Replication {
+        /** Needs wal_level=logical on the VEZHA server and a user with the REPLICATION attribute */
+        private boolean enabled = false;
+        /** Dedicated logical slot (test_decoding), created on first start; drop it when disabling the ingest */
+        private String slot = "dilijan_face_detections";
+        /** How often the consumed position is confirmed to the server */
+        private Duration statusInterval = Duration.ofSeconds(10);
+        /** Pause before reconnecting after the stream failed */
+        private Duration retryDelay = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Window {
+        private boolean enabled = false;
+        /** How far back detections are kept; reads reaching further back go to the DB */
+        private Duration retention = Duration.ofHours(24);
+        /** Time slice per ring bucket; the oldest bucket is recycled as a whole */
+        private Duration bucket = Duration.ofMinutes(5);
+        /** Incremental DB poll period; with the replication ingest enabled inserts also arrive in between */
+        private Duration pollInterval = Duration.ofSeconds(30);
+        /** Each poll re-reads this much before the previous one, for rows committed late */
+        private Duration pollOverlap = Duration.ofMinutes(2);
+    }
 }
@@ -0,0 +1,35 @@
+package com.incoresoft.dilijanCustomization.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "vezha.traffic")
+public class VezhaTrafficProps {
+    /** Apply per-class bulkheads and rate limits to outbound VEZHA calls */
+    private boolean enabled = true;
+    /** Connections (of vezha.api.max-connections) that only emergency traffic may use */
+    private int emergencyReserve = 8;
+    /** How long a blocking call waits for its class's capacity before it is rejected */
+    private Duration maxWait = Duration.ofSeconds(30);
+    private Limits emergency = new Limits(32, 0, 0);
+    private Limits interactive = new Limits(24, 0, 0);
+    private Limits webhook = new Limits(8, 0, 0);
+    private Limits background = new Limits(4, 20, 20);
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limits {
+        /** Concurrent requests of the class (bulkhead) */
+        private int maxConcurrent;
+        /** Sustained requests per second; 0 = unlimited */
+        private double ratePerSecond;
+        /** Token-bucket size, i.e. requests that may start back to back */
+        private int burst;
+    }
+}
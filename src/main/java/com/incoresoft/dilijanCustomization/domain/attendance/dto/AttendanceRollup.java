@@ -0,0 +1,57 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.dto;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Persisted daily cafeteria aggregate. One row per (date, list, meal window) holding the unique
+ * person count and the encoded member set, so closed days never have to be recomputed from
+ * raw VEZHA detections.
+ */
+@Entity
+@Table(name = "attendance_rollup")
+@IdClass(AttendanceRollupPK.class)
+@Data
+public class AttendanceRollup {
+    /** Local calendar day the meal window belongs to. */
+    @Id
+    @Column(name = "rollup_date")
+    private LocalDate rollupDate;
+    /** Face list identifier. */
+    @Id
+    @Column(name = "list_id")
+    private Long listId;
+    /** Meal window (BREAKFAST / LUNCH / DINNER). */
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "meal_window", length = 16)
+    private MealWindow mealWindow;
+    /** Window bounds (epoch millis) used when the rollup was computed; a mismatch means the config changed. */
+    @Column(name = "window_start")
+    private Long windowStart;
+    @Column(name = "window_end")
+    private Long windowEnd;
+    /** Sorted, comma-separated cafeteria analytics ids the rollup was computed from. */
+    @Column(name = "analytics_ids")
+    private String analyticsIds;
+    /** Number of unique list items seen in the window. */
+    @Column(name = "unique_count")
+    private Integer uniqueCount;
+    /** Member ids encoded with {@code MemberSetCodec}. */
+    @Column(name = "members")
+    private byte[] members;
+    /** Person keys ({@code PersonKeys}) encoded with {@code MemberSetCodec}, for campus-wide deduplication. */
+    @Column(name = "person_keys")
+    private byte[] personKeys;
+    /** When the rollup was written (epoch millis). */
+    @Column(name = "computed_at")
+    private Long computedAt;
+}
@@ -0,0 +1,20 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Composite primary key for the AttendanceRollup entity: (date, list, meal window).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttendanceRollupPK implements Serializable {
+    private LocalDate rollupDate;
+    private Long listId;
+    private MealWindow mealWindow;
+}
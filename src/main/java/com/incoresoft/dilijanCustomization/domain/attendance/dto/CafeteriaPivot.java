@@ -0,0 +1,16 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.dto;
+
+import java.util.List;
+
+/**
+ * One day of the cafeteria pivot: per-list rows plus, in global-unique mode, the campus-wide
+ * headcount row (each person key, see {@code PersonKeys}, counted once per window).
+ *
+ * @param rows         per-list rows, in sheet order
+ * @param uniquePeople campus-wide unique people per window, or {@code null} when disabled
+ */
+public record CafeteriaPivot(List<CafeteriaPivotRow> rows, CafeteriaPivotRow uniquePeople) {
+
+    /** Label of the {@link #uniquePeople} row, in the daily sheets and the range summary. */
+    public static final String UNIQUE_PEOPLE_LABEL = "Unique people (all lists)";
+}
@@ -0,0 +1,23 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Point-in-time view of the live cafeteria counters for the current day.
+ *
+ * @param date          local day the counters belong to
+ * @param currentWindow meal window open right now, or {@code null} between meals
+ * @param totals        unique people per window, summed over lists
+ * @param uniquePeople  campus-wide unique people per window (a person on several lists counts once)
+ * @param lists         per-list unique counts, sorted by list name
+ * @param lastEventAt   epoch millis of the last counted event, or {@code null}
+ */
+public record LiveAttendanceSnapshot(LocalDate date,
+                                     MealWindow currentWindow,
+                                     Map<MealWindow, Integer> totals,
+                                     Map<MealWindow, Integer> uniquePeople,
+                                     List<CafeteriaPivotRow> lists,
+                                     Long lastEventAt) {
+}
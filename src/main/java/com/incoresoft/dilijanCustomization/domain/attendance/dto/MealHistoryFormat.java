@@ -0,0 +1,19 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.dto;
+
+/**
+ * Output formats of the per-person meal history export.
+ */
+public enum MealHistoryFormat {
+    XLSX("xlsx"),
+    CSV("csv");
+
+    private final String extension;
+
+    MealHistoryFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String extension() {
+        return extension;
+    }
+}
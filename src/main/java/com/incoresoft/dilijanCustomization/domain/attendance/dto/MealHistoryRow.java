@@ -0,0 +1,23 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.dto;
+
+import java.time.LocalDate;
+
+/**
+ * First sighting of one person during one meal window.
+ *
+ * @param date        local day of the meal
+ * @param window      meal window
+ * @param listName    face list the person was matched in
+ * @param listItemId  list item identifier
+ * @param personName  list item name
+ * @param firstSeenAt epoch millis of the first detection inside the window
+ * @param analyticsId cafeteria analytics (camera) that produced the first detection
+ */
+public record MealHistoryRow(LocalDate date,
+                             MealWindow window,
+                             String listName,
+                             Long listItemId,
+                             String personName,
+                             long firstSeenAt,
+                             Long analyticsId) {
+}
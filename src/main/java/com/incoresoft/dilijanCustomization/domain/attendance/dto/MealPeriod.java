@@ -0,0 +1,12 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.dto;
+
+import java.time.LocalDate;
+
+/**
+ * A meal window resolved to absolute epoch-millis bounds for a given day and timezone.
+ */
+public record MealPeriod(LocalDate date, MealWindow window, long startMillis, long endMillis) {
+    public boolean contains(long millis) {
+        return millis >= startMillis && millis <= endMillis;
+    }
+}
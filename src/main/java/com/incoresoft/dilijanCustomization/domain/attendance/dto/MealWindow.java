@@ -0,0 +1,20 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.dto;
+
+/**
+ * Cafeteria meal windows in report column order.
+ */
+public enum MealWindow {
+    BREAKFAST("Breakfast"),
+    LUNCH("Lunch"),
+    DINNER("Dinner");
+
+    private final String label;
+
+    MealWindow(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+}
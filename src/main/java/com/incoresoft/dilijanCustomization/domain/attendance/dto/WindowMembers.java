@@ -0,0 +1,17 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.dto;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Who was seen in one list during one meal window.
+ *
+ * @param listItemIds unique list item ids (per-list counts)
+ * @param personKeys  list-independent person keys (campus-wide deduplication)
+ */
+public record WindowMembers(Set<Long> listItemIds, Set<Long> personKeys) {
+
+    public static WindowMembers empty() {
+        return new WindowMembers(new HashSet<>(), new HashSet<>());
+    }
+}
@@ -2,13 +2,22 @@ package com.incoresoft.dilijanCustomization.domain.attendance.service;
 
 import com.incoresoft.dilijanCustomization.config.CafeteriaProps;
 import com.incoresoft.dilijanCustomization.config.VezhaDbProps;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.CafeteriaPivot;
 import com.incoresoft.dilijanCustomization.domain.attendance.dto.CafeteriaPivotRow;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealHistoryFormat;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealPeriod;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealWindow;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.WindowMembers;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListDto;
-import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListsResponse;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+import com.incoresoft.dilijanCustomization.domain.shared.service.DetectionWindowCache;
+import com.incoresoft.dilijanCustomization.domain.shared.service.FaceListCache;
+import com.incoresoft.dilijanCustomization.domain.shared.service.ListItemDirectory;
 import com.incoresoft.dilijanCustomization.domain.shared.service.ReportService;
 import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
 import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
+import com.incoresoft.dilijanCustomization.repository.VezhaTrafficClass;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -18,17 +27,24 @@ import org.springframework.util.StringUtils;
 import java.io.File;
 import java.nio.file.Files;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Locale;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -36,7 +52,6 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AttendanceReportService {
 
-    private static final int DEFAULT_FACE_LIST_LIMIT = 200;
     private static final int DETECTION_PAGE_LIMIT = 500;
     private static final String DEFAULT_SHEET_NAME = "Cafeteria";
 
@@ -45,11 +60,19 @@ public class AttendanceReportService {
     private final VezhaDbRepository vezhaDbRepository;
     private final VezhaDbProps vezhaDbProps;
     private final ReportService reportService;
+    private final AttendanceRollupService rollupService;
+    private final FaceListCache faceListCache;
+    private final DetectionWindowCache detectionWindowCache;
+    private final ListItemDirectory listItemDirectory;
 
+    /**
+     * Nightly report. When it runs after the last meal window, the day is closed and its
+     * aggregates are persisted as rollups along the way.
+     */
     @Scheduled(cron = "${vezha.cafe.schedule-cron:0 0 22 * * *}", zone = "${vezha.cafe.timezone:Asia/Yerevan}")
     public void generateDaily() {
         try {
-            buildSingleDayReport(LocalDate.now(ZoneId.of(cafe.getTimezone())));
+            VezhaTrafficClass.BACKGROUND.call(() -> buildSingleDayReport(LocalDate.now(ZoneId.of(cafe.getTimezone()))));
         } catch (Exception ex) {
             log.error("Cafeteria report generation failed: {}", ex.getMessage(), ex);
         }
@@ -62,61 +85,235 @@ public class AttendanceReportService {
     public File buildSingleDayReport(LocalDate date, String tzOverride, List<Long> onlyListIds) throws Exception {
         ZoneId zone = resolveZone(tzOverride);
 
-        MealWindows mealWindows = buildMealWindows(date, zone);
-
         Map<Long, String> listIdToName = fetchListNames();
         List<Long> targetListIds = resolveTargetListIds(onlyListIds, listIdToName);
 
-        Map<Long, Set<Long>> breakfastCounts =
-                queryUniqueListItemIds(mealWindows.breakfastStart(), mealWindows.breakfastEnd(), targetListIds);
-        Map<Long, Set<Long>> lunchCounts =
-                queryUniqueListItemIds(mealWindows.lunchStart(), mealWindows.lunchEnd(), targetListIds);
-        Map<Long, Set<Long>> dinnerCounts =
-                queryUniqueListItemIds(mealWindows.dinnerStart(), mealWindows.dinnerEnd(), targetListIds);
-
-        List<CafeteriaPivotRow> rows = buildPivotRows(listIdToName, targetListIds, breakfastCounts, lunchCounts, dinnerCounts);
-        File outputFile = prepareOutputFile(date);
-        File result = reportService.exportCafeteriaPivot(date, DEFAULT_SHEET_NAME, rows, outputFile);
+        CafeteriaPivot pivot = buildDayPivot(date, zone, listIdToName, targetListIds);
+        File outputFile = prepareOutputFile(date + ".xlsx");
+        File result = reportService.exportCafeteriaPivot(date, DEFAULT_SHEET_NAME, pivot, outputFile);
         log.info("Cafeteria report generated (tz={}): {}", zone, result.getAbsolutePath());
         return result;
     }
 
-    /** DEDUP: per list, unique list_item.id within the given time window */
-    private Map<Long, Set<Long>> queryUniqueListItemIds(long startMillis, long endMillis, List<Long> listIds) {
-        Map<Long, Set<Long>> uniquesByList = new HashMap<>();
+    /**
+     * Range report: one sheet per day plus a summary sheet.
+     * Days are aggregated concurrently on a bounded pool ({@code vezha.cafe.range-parallelism})
+     * and consumed in date order by the streaming workbook writer.
+     */
+    public File buildRangeReport(LocalDate from, LocalDate to, String tzOverride, List<Long> onlyListIds) throws Exception {
+        List<LocalDate> days = resolveRangeDays(from, to);
+        ZoneId zone = resolveZone(tzOverride);
+
+        Map<Long, String> listIdToName = fetchListNames();
+        List<Long> targetListIds = resolveTargetListIds(onlyListIds, listIdToName);
+
+        int parallelism = Math.max(1, Math.min(cafe.getRangeParallelism(), days.size()));
+        File outputFile = prepareOutputFile(from + "_" + to + ".xlsx");
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, rangeThreadFactory());
+        try {
+            Map<LocalDate, Future<CafeteriaPivot>> pending = new LinkedHashMap<>();
+            for (LocalDate day : days) {
+                pending.put(day, executor.submit(() -> buildDayPivot(day, zone, listIdToName, targetListIds)));
+            }
+            File result = reportService.exportCafeteriaRange(from, to, days, day -> awaitDay(day, pending.get(day)), outputFile);
+            log.info("Cafeteria range report generated ({}..{}, tz={}, days={}): {}",
+                    from, to, zone, days.size(), result.getAbsolutePath());
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Per-person meal history for a date range: one row per person per meal window with the first
+     * sighting time and camera. With the VEZHA DB enabled the whole range is scanned once through a
+     * server-side cursor and reduced on the fly; otherwise detections are paged per window via REST.
+     * Rows are written as they are produced, so memory stays bounded for campus-wide months.
+     */
+    public File buildMealHistory(LocalDate from, LocalDate to, String tzOverride, List<Long> onlyListIds,
+                                 MealHistoryFormat format) throws Exception {
+        List<LocalDate> days = resolveRangeDays(from, to);
+        ZoneId zone = resolveZone(tzOverride);
+        MealHistoryFormat effectiveFormat = format == null ? MealHistoryFormat.XLSX : format;
+
+        Map<Long, String> listIdToName = fetchListNames();
+        List<Long> targetListIds = resolveTargetListIds(onlyListIds, listIdToName);
+        List<MealPeriod> periods = days.stream()
+                .flatMap(day -> cafe.mealPeriods(day, zone).stream())
+                .sorted(Comparator.comparingLong(MealPeriod::startMillis))
+                .toList();
+
+        File outputFile = prepareOutputFile("history_" + from + "_" + to + "." + effectiveFormat.extension());
+        long rows = reportService.exportMealHistory(effectiveFormat, zone, sink -> {
+            FirstSightingReducer reducer = new FirstSightingReducer(periods, listIdToName, sink);
+            if (periods.isEmpty() || targetListIds.isEmpty()) {
+                return;
+            }
+            if (vezhaDbProps.isEnabled()) {
+                vezhaDbRepository.streamDetections(targetListIds, cafe.getAnalyticsIds(),
+                        periods.get(0).startMillis(), periods.get(periods.size() - 1).endMillis(), reducer);
+            } else {
+                for (MealPeriod period : periods) {
+                    fetchPeriodDetectionsInTimeOrder(period, targetListIds).forEach(reducer);
+                }
+            }
+        }, outputFile);
+        log.info("Meal history generated ({}..{}, tz={}, rows={}): {}", from, to, zone, rows, outputFile.getAbsolutePath());
+        return outputFile;
+    }
+
+    private List<DetectionDto> fetchPeriodDetectionsInTimeOrder(MealPeriod period, List<Long> listIds) {
+        List<DetectionDto> detections = new ArrayList<>();
         for (Long listId : listIds) {
-            List<DetectionDto> dets = fetchDetections(listId, startMillis, endMillis);
-            Set<Long> uniqueIds = uniquesByList.computeIfAbsent(listId, k -> new HashSet<>());
-            collectUniqueListItemIds(dets, uniqueIds);
+            repo.forEachDetectionInWindow(listId, cafe.getAnalyticsIds(),
+                    period.startMillis(), period.endMillis(), DETECTION_PAGE_LIMIT, d -> {
+                        if (d.getListItem() != null && d.getListItem().getListId() == null) {
+                            d.getListItem().setListId(listId);
+                        }
+                        detections.add(d);
+                    });
         }
-        // Ensure empty sets for lists without detections (visible zeros)
-        for (Long id : listIds) uniquesByList.computeIfAbsent(id, k -> new HashSet<>());
-        return uniquesByList;
+        detections.sort(Comparator.comparing(DetectionDto::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return detections;
     }
 
-    private List<DetectionDto> fetchDetections(Long listId, long startMillis, long endMillis) {
-        if (vezhaDbProps.isEnabled()) {
-            return vezhaDbRepository.findLatestDetectionsByListItem(
-                    listId,
-                    cafe.getAnalyticsIds(),
-                    startMillis,
-                    endMillis
-            );
+    /**
+     * Recompute and persist rollups for every closed day of a range, e.g. after enabling rollups
+     * or changing analytics. Days that are not fully closed yet are skipped.
+     *
+     * @param overwrite recompute days that already have rollups
+     * @return number of days written
+     */
+    public int backfillRollups(LocalDate from, LocalDate to, boolean overwrite) {
+        List<LocalDate> days = resolveDays(from, to, cafe.getMaxBackfillDays());
+        ZoneId zone = resolveZone(null);
+        List<Long> targetListIds = resolveTargetListIds(null, fetchListNames());
+        long now = System.currentTimeMillis();
+        int written = 0;
+        for (LocalDate day : days) {
+            List<MealPeriod> periods = cafe.mealPeriods(day, zone);
+            if (!isClosed(periods, now)) {
+                log.info("[CAFE] Backfill stops at {}: day is not closed yet", day);
+                break;
+            }
+            if (!overwrite && rollupService.hasRollups(day)) {
+                continue;
+            }
+            rollupService.store(day, periods, queryDayMembers(periods, targetListIds));
+            written++;
+        }
+        log.info("[CAFE] Rollup backfill {}..{} wrote {} day(s)", from, to, written);
+        return written;
+    }
+
+    /**
+     * Per-list unique members of every meal window of a day. Lists with a stored rollup are read
+     * from it; the rest are recomputed from detections and persisted once the day is closed.
+     * The campus-wide row is the union of the per-list person keys, so it needs no extra queries.
+     */
+    private CafeteriaPivot buildDayPivot(LocalDate date, ZoneId zone,
+                                         Map<Long, String> listIdToName, List<Long> targetListIds) {
+        List<MealPeriod> periods = cafe.mealPeriods(date, zone);
+
+        Map<Long, Map<MealWindow, WindowMembers>> members = new HashMap<>(rollupService.load(date, periods, targetListIds));
+        List<Long> missing = targetListIds.stream().filter(id -> !members.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            Map<Long, Map<MealWindow, WindowMembers>> computed = queryDayMembers(periods, missing);
+            if (isClosed(periods, System.currentTimeMillis())) {
+                rollupService.store(date, periods, computed);
+            }
+            members.putAll(computed);
+        }
+        log.debug("[CAFE] {}: {} list(s) from rollups, {} recomputed", date, targetListIds.size() - missing.size(), missing.size());
+
+        List<CafeteriaPivotRow> rows = buildPivotRows(listIdToName, targetListIds, members);
+        return new CafeteriaPivot(rows, cafe.isGlobalUnique() ? buildUniquePeopleRow(targetListIds, members) : null);
+    }
+
+    private Map<Long, Map<MealWindow, WindowMembers>> queryDayMembers(List<MealPeriod> periods, List<Long> listIds) {
+        Map<Long, Map<MealWindow, WindowMembers>> members = new HashMap<>();
+        for (MealPeriod period : periods) {
+            queryUniqueListItemIds(period.startMillis(), period.endMillis(), listIds).forEach((listId, ids) ->
+                    members.computeIfAbsent(listId, k -> new EnumMap<>(MealWindow.class)).put(period.window(), ids));
+        }
+        return members;
+    }
+
+    private static boolean isClosed(List<MealPeriod> periods, long nowMillis) {
+        return periods.stream().allMatch(p -> p.endMillis() < nowMillis);
+    }
+
+    private List<LocalDate> resolveRangeDays(LocalDate from, LocalDate to) {
+        return resolveDays(from, to, cafe.getMaxRangeDays());
+    }
+
+    private static List<LocalDate> resolveDays(LocalDate from, LocalDate to, int maxDays) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Both 'from' and 'to' dates are required");
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' date " + to + " is before 'from' date " + from);
+        }
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        if (days > maxDays) {
+            throw new IllegalArgumentException("Date range of " + days + " days exceeds the limit of " + maxDays);
         }
-        return repo.getAllDetectionsInWindow(
-                listId,
-                cafe.getAnalyticsIds(),
-                startMillis,
-                endMillis,
-                DETECTION_PAGE_LIMIT
-        );
+        return from.datesUntil(to.plusDays(1)).toList();
     }
 
-    private void collectUniqueListItemIds(List<DetectionDto> detections, Set<Long> uniqueIds) {
-        detections.stream()
-                .map(d -> d.getListItem() != null ? d.getListItem().getId() : null)
-                .filter(Objects::nonNull)
-                .forEach(uniqueIds::add);
+    private static CafeteriaPivot awaitDay(LocalDate day, Future<CafeteriaPivot> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while aggregating cafeteria day " + day, ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            throw new IllegalStateException("Cafeteria aggregation failed for " + day + ": " + cause.getMessage(), cause);
+        }
+    }
+
+    private static ThreadFactory rangeThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "cafe-range-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** DEDUP: per list, unique list_item.id (and person key) within the given time window, from memory when covered */
+    private Map<Long, WindowMembers> queryUniqueListItemIds(long startMillis, long endMillis, List<Long> listIds) {
+        Map<Long, WindowMembers> uniquesByList = new HashMap<>();
+        for (Long listId : listIds) {
+            WindowMembers uniques = uniquesByList.computeIfAbsent(listId, k -> WindowMembers.empty());
+            if (detectionWindowCache.covers(startMillis)) {
+                // names for the person keys come from the directory, as for live webhook events
+                for (Long itemId : detectionWindowCache.findListItemIdsSeen(listId, cafe.getAnalyticsIds(), startMillis, endMillis)) {
+                    uniques.listItemIds().add(itemId);
+                    uniques.personKeys().add(PersonKeys.of(itemId,
+                            listItemDirectory.findById(listId, itemId).map(ListItemDto::getName).orElse(null)));
+                }
+            } else if (vezhaDbProps.isEnabled()) {
+                vezhaDbRepository.findLatestDetectionsByListItem(listId, cafe.getAnalyticsIds(), startMillis, endMillis)
+                        .forEach(d -> collectUniqueListItemId(d, uniques));
+            } else {
+                // REST fallback decodes pages token by token; detections are folded into the sets as they arrive
+                repo.forEachDetectionInWindow(listId, cafe.getAnalyticsIds(), startMillis, endMillis,
+                        DETECTION_PAGE_LIMIT, d -> collectUniqueListItemId(d, uniques));
+            }
+        }
+        // Ensure empty sets for lists without detections (visible zeros)
+        for (Long id : listIds) uniquesByList.computeIfAbsent(id, k -> WindowMembers.empty());
+        return uniquesByList;
+    }
+
+    private static void collectUniqueListItemId(DetectionDto detection, WindowMembers uniques) {
+        ListItemDto item = detection.getListItem();
+        if (item != null && item.getId() != null) {
+            uniques.listItemIds().add(item.getId());
+            uniques.personKeys().add(PersonKeys.of(item.getId(), item.getName()));
+        }
     }
 
     private Map<Long, String> fetchListNames() {
@@ -129,11 +326,7 @@ public class AttendanceReportService {
                             (existing, replacement) -> replacement,
                             HashMap::new));
         }
-        FaceListsResponse lists = repo.getFaceLists(DEFAULT_FACE_LIST_LIMIT);
-        if (lists == null || lists.getData() == null) {
-            return Map.of();
-        }
-        return lists.getData().stream()
+        return faceListCache.lists().stream()
                 .filter(l -> l.getId() != null && StringUtils.hasText(l.getName()))
                 .collect(Collectors.toMap(
                         FaceListDto::getId,
@@ -152,34 +345,46 @@ public class AttendanceReportService {
         }
     }
 
-    private static long toMillis(LocalDateTime ldt, ZoneId zone) {
-        return ldt.atZone(zone).toInstant().toEpochMilli();
-    }
-
-    private File prepareOutputFile(LocalDate date) throws Exception {
+    private File prepareOutputFile(String fileName) throws Exception {
         File outDir = new File(cafe.getOutputDir());
         Files.createDirectories(outDir.toPath());
-        return new File(outDir, date + ".xlsx");
+        return new File(outDir, fileName);
     }
 
     private List<CafeteriaPivotRow> buildPivotRows(Map<Long, String> listIdToName,
                                                   List<Long> targetListIds,
-                                                  Map<Long, Set<Long>> breakfastCounts,
-                                                  Map<Long, Set<Long>> lunchCounts,
-                                                  Map<Long, Set<Long>> dinnerCounts) {
+                                                  Map<Long, Map<MealWindow, WindowMembers>> members) {
         List<CafeteriaPivotRow> rows = new ArrayList<>();
         targetListIds.stream()
                 .sorted(Comparator.comparing(id -> listIdToName.getOrDefault(id, "").toLowerCase(Locale.ROOT)))
                 .forEach(id -> {
                     String name = listIdToName.getOrDefault(id, "list_" + id);
-                    int breakfast = sizeOf(breakfastCounts.get(id));
-                    int lunch = sizeOf(lunchCounts.get(id));
-                    int dinner = sizeOf(dinnerCounts.get(id));
+                    Map<MealWindow, WindowMembers> windows = members.getOrDefault(id, Map.of());
+                    int breakfast = sizeOf(windows.get(MealWindow.BREAKFAST));
+                    int lunch = sizeOf(windows.get(MealWindow.LUNCH));
+                    int dinner = sizeOf(windows.get(MealWindow.DINNER));
                     rows.add(new CafeteriaPivotRow(name, breakfast, lunch, dinner));
                 });
         return rows;
     }
 
+    private static CafeteriaPivotRow buildUniquePeopleRow(List<Long> targetListIds,
+                                                          Map<Long, Map<MealWindow, WindowMembers>> members) {
+        Map<MealWindow, Set<Long>> campus = new EnumMap<>(MealWindow.class);
+        for (MealWindow window : MealWindow.values()) {
+            Set<Long> people = new HashSet<>();
+            for (Long listId : targetListIds) {
+                WindowMembers m = members.getOrDefault(listId, Map.of()).get(window);
+                if (m != null) people.addAll(m.personKeys());
+            }
+            campus.put(window, people);
+        }
+        return new CafeteriaPivotRow(CafeteriaPivot.UNIQUE_PEOPLE_LABEL,
+                campus.get(MealWindow.BREAKFAST).size(),
+                campus.get(MealWindow.LUNCH).size(),
+                campus.get(MealWindow.DINNER).size());
+    }
+
     private List<Long> resolveTargetListIds(List<Long> onlyListIds, Map<Long, String> listIdToName) {
         Set<String> excludedNames = (cafe.getExcludedListNames() == null ? Set.<String>of() : cafe.getExcludedListNames())
                 .stream()
@@ -194,22 +399,7 @@ public class AttendanceReportService {
                 .toList();
     }
 
-    private MealWindows buildMealWindows(LocalDate date, ZoneId zone) {
-        long breakfastStart = toMillis(date.atTime(cafe.getBreakfastStart()), zone);
-        long breakfastEnd = toMillis(date.atTime(cafe.getBreakfastEnd()), zone);
-        long lunchStart = toMillis(date.atTime(cafe.getLunchStart()), zone);
-        long lunchEnd = toMillis(date.atTime(cafe.getLunchEnd()), zone);
-        long dinnerStart = toMillis(date.atTime(cafe.getDinnerStart()), zone);
-        long dinnerEnd = toMillis(date.atTime(cafe.getDinnerEnd()), zone);
-        return new MealWindows(breakfastStart, breakfastEnd, lunchStart, lunchEnd, dinnerStart, dinnerEnd);
-    }
-
-    private static int sizeOf(Set<Long> s) { return (s == null) ? 0 : s.size(); }
+    private static int sizeOf(WindowMembers m) { return (m == null) ? 0 : m.listItemIds().size(); }
 
     private static String safeLower(String s) { return s == null ? "" : s.toLowerCase(Locale.ROOT).trim(); }
-
-    private record MealWindows(long breakfastStart, long breakfastEnd,
-                               long lunchStart, long lunchEnd,
-                               long dinnerStart, long dinnerEnd) {
-    }
 }
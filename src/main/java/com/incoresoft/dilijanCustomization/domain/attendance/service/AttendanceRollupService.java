@@ -0,0 +1,167 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.service;
+
+import com.incoresoft.dilijanCustomization.config.CafeteriaProps;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.AttendanceRollup;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealPeriod;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealWindow;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.WindowMembers;
+import com.incoresoft.dilijanCustomization.repository.AttendanceRollupRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Reads and writes persisted per-day cafeteria aggregates (table {@code attendance_rollup}
+ * in the service's own Postgres). A rollup is only reused when it was computed with the same
+ * window bounds and analytics ids as the current request, so config or timezone changes fall
+ * back to a live recomputation instead of returning stale numbers.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttendanceRollupService {
+
+    private final CafeteriaProps cafe;
+    private final AttendanceRollupRepository repository;
+    private final DataSource dataSource;
+
+    @PostConstruct
+    public void init() {
+        if (!cafe.isRollupsEnabled()) {
+            log.info("[CAFE] Rollups disabled; every report is computed from raw detections");
+            return;
+        }
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            jdbc.execute(String.join("",
+                    "CREATE TABLE IF NOT EXISTS attendance_rollup (",
+                    "rollup_date DATE NOT NULL, ",
+                    "list_id BIGINT NOT NULL, ",
+                    "meal_window VARCHAR(16) NOT NULL, ",
+                    "window_start BIGINT, ",
+                    "window_end BIGINT, ",
+                    "analytics_ids VARCHAR(255), ",
+                    "unique_count INT, ",
+                    "members BYTEA, ",
+                    "person_keys BYTEA, ",
+                    "computed_at BIGINT, ",
+                    "PRIMARY KEY (rollup_date, list_id, meal_window)",
+                    ")"));
+            jdbc.execute("ALTER TABLE IF EXISTS attendance_rollup ADD COLUMN IF NOT EXISTS person_keys BYTEA");
+        } catch (Exception e) {
+            log.warn("Exception was thrown while creating attendance_rollup table: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Load rollups for a day. Only lists that have a valid rollup for every period are returned.
+     *
+     * @param periods resolved meal periods of the day
+     * @param listIds lists of interest
+     * @return list id → (window → members); lists without a complete rollup are absent
+     */
+    public Map<Long, Map<MealWindow, WindowMembers>> load(LocalDate date, List<MealPeriod> periods, List<Long> listIds) {
+        if (!cafe.isRollupsEnabled() || listIds.isEmpty()) {
+            return Map.of();
+        }
+        List<AttendanceRollup> rows;
+        try {
+            rows = repository.findByRollupDateAndListIdIn(date, listIds);
+        } catch (Exception e) {
+            log.warn("Rollup lookup failed for {}: {}; recomputing", date, e.getMessage());
+            return Map.of();
+        }
+        if (rows == null || rows.isEmpty()) {
+            return Map.of();
+        }
+        Map<MealWindow, MealPeriod> byWindow = periods.stream()
+                .collect(Collectors.toMap(MealPeriod::window, p -> p, (a, b) -> a, () -> new EnumMap<>(MealWindow.class)));
+        String analyticsKey = analyticsKey();
+
+        Map<Long, Map<MealWindow, WindowMembers>> result = new HashMap<>();
+        for (AttendanceRollup row : rows) {
+            MealPeriod period = byWindow.get(row.getMealWindow());
+            if (period == null || !matches(row, period, analyticsKey)) {
+                continue;
+            }
+            result.computeIfAbsent(row.getListId(), k -> new EnumMap<>(MealWindow.class))
+                    .put(row.getMealWindow(), new WindowMembers(
+                            MemberSetCodec.decode(row.getMembers()), MemberSetCodec.decode(row.getPersonKeys())));
+        }
+        result.values().removeIf(windows -> windows.size() < byWindow.size());
+        return result;
+    }
+
+    /**
+     * Persist (upsert) the aggregates of a closed day.
+     *
+     * @param members list id → (window → members)
+     */
+    public void store(LocalDate date, List<MealPeriod> periods, Map<Long, Map<MealWindow, WindowMembers>> members) {
+        if (!cafe.isRollupsEnabled() || members.isEmpty()) {
+            return;
+        }
+        String analyticsKey = analyticsKey();
+        long now = System.currentTimeMillis();
+        List<AttendanceRollup> rows = new ArrayList<>();
+        members.forEach((listId, windows) -> {
+            for (MealPeriod period : periods) {
+                WindowMembers m = windows.getOrDefault(period.window(), WindowMembers.empty());
+                AttendanceRollup row = new AttendanceRollup();
+                row.setRollupDate(date);
+                row.setListId(listId);
+                row.setMealWindow(period.window());
+                row.setWindowStart(period.startMillis());
+                row.setWindowEnd(period.endMillis());
+                row.setAnalyticsIds(analyticsKey);
+                row.setUniqueCount(m.listItemIds().size());
+                row.setMembers(MemberSetCodec.encode(m.listItemIds()));
+                row.setPersonKeys(MemberSetCodec.encode(m.personKeys()));
+                row.setComputedAt(now);
+                rows.add(row);
+            }
+        });
+        try {
+            repository.saveAll(rows);
+            log.debug("[CAFE] Stored {} rollup rows for {}", rows.size(), date);
+        } catch (Exception e) {
+            log.warn("Failed to store rollups for {}: {}", date, e.getMessage());
+        }
+    }
+
+    public boolean hasRollups(LocalDate date) {
+        if (!cafe.isRollupsEnabled()) {
+            return false;
+        }
+        try {
+            return repository.existsByRollupDate(date);
+        } catch (Exception e) {
+            log.warn("Rollup lookup failed for {}: {}", date, e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean matches(AttendanceRollup row, MealPeriod period, String analyticsKey) {
+        return row.getWindowStart() != null && row.getWindowStart() == period.startMillis()
+                && row.getWindowEnd() != null && row.getWindowEnd() == period.endMillis()
+                && analyticsKey.equals(row.getAnalyticsIds())
+                // rollups written before campus-wide deduplication carry no person keys
+                && row.getPersonKeys() != null;
+    }
+
+    private String analyticsKey() {
+        List<Long> ids = cafe.getAnalyticsIds() == null ? List.of() : cafe.getAnalyticsIds();
+        return ids.stream().sorted().distinct().map(String::valueOf).collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,80 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.service;
+
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealHistoryRow;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealPeriod;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Reduces a time-ordered detection stream to the first sighting per (list item, meal window).
+ * Rows are emitted as soon as they are known; only the ids seen in the current window are kept,
+ * so memory is bounded by one window's headcount regardless of the range length.
+ */
+class FirstSightingReducer implements Consumer<DetectionDto> {
+
+    private final List<MealPeriod> periods;
+    private final Map<Long, String> listNames;
+    private final Consumer<MealHistoryRow> sink;
+
+    private final Set<Long> seenInPeriod = new HashSet<>();
+    private MealPeriod currentPeriod;
+    private int periodIndex;
+
+    /**
+     * @param periods   meal periods of the whole range, ordered by start time
+     * @param listNames list id → display name
+     * @param sink      receives one row per first sighting, in time order
+     */
+    FirstSightingReducer(List<MealPeriod> periods, Map<Long, String> listNames, Consumer<MealHistoryRow> sink) {
+        this.periods = periods;
+        this.listNames = listNames;
+        this.sink = sink;
+    }
+
+    @Override
+    public void accept(DetectionDto detection) {
+        if (detection == null || detection.getTimestamp() == null
+                || detection.getListItem() == null || detection.getListItem().getId() == null) {
+            return;
+        }
+        long ts = detection.getTimestamp();
+        MealPeriod period = periodAt(ts);
+        if (period == null) {
+            return;
+        }
+        if (period != currentPeriod) {
+            currentPeriod = period;
+            seenInPeriod.clear();
+        }
+        Long itemId = detection.getListItem().getId();
+        if (!seenInPeriod.add(itemId)) {
+            return;
+        }
+        Long listId = detection.getListItem().getListId();
+        sink.accept(new MealHistoryRow(
+                period.date(),
+                period.window(),
+                listNames.getOrDefault(listId, "list_" + listId),
+                itemId,
+                detection.getListItem().getName(),
+                ts,
+                detection.getAnalytics() != null ? detection.getAnalytics().getId() : null));
+    }
+
+    /** Periods are visited in order because the input is time-ordered; the cursor only moves forward. */
+    private MealPeriod periodAt(long ts) {
+        while (periodIndex < periods.size() && periods.get(periodIndex).endMillis() < ts) {
+            periodIndex++;
+        }
+        if (periodIndex >= periods.size()) {
+            return null;
+        }
+        MealPeriod candidate = periods.get(periodIndex);
+        return candidate.contains(ts) ? candidate : null;
+    }
+}
@@ -0,0 +1,192 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.service;
+
+import com.incoresoft.dilijanCustomization.config.CafeteriaProps;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.CafeteriaPivotRow;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.LiveAttendanceSnapshot;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealPeriod;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealWindow;
+import com.incoresoft.dilijanCustomization.domain.unknown.dto.FaceEventDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cafeteria counters for the current day, fed incrementally by VEZHA face events
+ * on the cafeteria analytics. Reads never touch the detection table; counters start empty
+ * after a restart and roll over at local midnight (vezha.cafe.timezone).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LiveAttendanceService {
+
+    private static final long SECONDS_EPOCH_LIMIT = 100_000_000_000L;
+
+    private final CafeteriaProps cafe;
+
+    /** Last seen list names, so snapshots can label lists without an API call. */
+    private final Map<Long, String> listNames = new ConcurrentHashMap<>();
+    private volatile DayState day;
+
+    /**
+     * Count a face event if it is a known person seen by a cafeteria analytics during a meal window.
+     *
+     * @return true when the person was newly counted for the window
+     */
+    public boolean record(FaceEventDto event) {
+        if (event == null || !event.isInList() || event.getFace() == null) {
+            return false;
+        }
+        FaceEventDto.ListItemRef item = event.getFace().getListItem();
+        if (item == null || item.getId() == null || item.getList() == null || item.getList().getId() == null) {
+            return false;
+        }
+        if (!isCafeteriaAnalytics(event.getFace().getAnalytics()) || isExcluded(item.getList().getName())) {
+            return false;
+        }
+        long timestamp = normalizeMillis(event.getTimestamp());
+        DayState state = stateFor(Instant.ofEpochMilli(timestamp).atZone(zone()).toLocalDate());
+        if (state == null) {
+            return false;
+        }
+        MealPeriod period = state.periodAt(timestamp);
+        if (period == null) {
+            return false;
+        }
+        Long listId = item.getList().getId();
+        if (StringUtils.hasText(item.getList().getName())) {
+            listNames.put(listId, item.getList().getName().trim());
+        }
+        return state.add(period.window(), listId, item.getId(), PersonKeys.of(item.getId(), item.getName()), timestamp);
+    }
+
+    public LiveAttendanceSnapshot snapshot() {
+        long now = System.currentTimeMillis();
+        DayState state = stateFor(Instant.ofEpochMilli(now).atZone(zone()).toLocalDate());
+        MealPeriod current = state.periodAt(now);
+
+        Map<MealWindow, Integer> totals = new EnumMap<>(MealWindow.class);
+        Map<MealWindow, Integer> uniquePeople = new EnumMap<>(MealWindow.class);
+        for (MealWindow window : MealWindow.values()) {
+            totals.put(window, state.members.get(window).values().stream().mapToInt(Set::size).sum());
+            uniquePeople.put(window, state.people.get(window).size());
+        }
+        List<CafeteriaPivotRow> lists = new ArrayList<>();
+        for (Long listId : state.listIds()) {
+            lists.add(new CafeteriaPivotRow(listNames.getOrDefault(listId, "list_" + listId),
+                    state.count(MealWindow.BREAKFAST, listId),
+                    state.count(MealWindow.LUNCH, listId),
+                    state.count(MealWindow.DINNER, listId)));
+        }
+        lists.sort(Comparator.comparing(r -> r.category().toLowerCase(Locale.ROOT)));
+        long lastEvent = state.lastEventAt.get();
+        return new LiveAttendanceSnapshot(state.date, current != null ? current.window() : null,
+                totals, uniquePeople, lists, lastEvent > 0 ? lastEvent : null);
+    }
+
+    /** Current day state; rolls over on a newer day and returns null for events of past days. */
+    private DayState stateFor(LocalDate date) {
+        DayState state = day;
+        if (state != null && state.date.equals(date)) {
+            return state;
+        }
+        synchronized (this) {
+            state = day;
+            if (state != null && !date.isAfter(state.date)) {
+                return state.date.equals(date) ? state : null;
+            }
+            if (state != null) {
+                log.info("[CAFE] Live counters rolled over from {} to {}", state.date, date);
+            }
+            day = new DayState(date, cafe.mealPeriods(date, zone()));
+            return day;
+        }
+    }
+
+    private boolean isCafeteriaAnalytics(FaceEventDto.AnalyticsRef analytics) {
+        List<Long> ids = cafe.getAnalyticsIds();
+        if (ids == null || ids.isEmpty() || analytics == null || analytics.getId() == null) {
+            // webhook is registered for cafeteria analytics only; accept events without an id
+            return true;
+        }
+        return ids.contains(analytics.getId());
+    }
+
+    private boolean isExcluded(String listName) {
+        if (cafe.getExcludedListNames() == null || listName == null) {
+            return false;
+        }
+        String normalized = listName.trim().toLowerCase(Locale.ROOT);
+        return cafe.getExcludedListNames().stream()
+                .anyMatch(n -> n != null && n.trim().toLowerCase(Locale.ROOT).equals(normalized));
+    }
+
+    private ZoneId zone() {
+        return ZoneId.of(cafe.getTimezone());
+    }
+
+    private static long normalizeMillis(Long timestamp) {
+        if (timestamp == null || timestamp <= 0) {
+            return System.currentTimeMillis();
+        }
+        return timestamp < SECONDS_EPOCH_LIMIT ? timestamp * 1000 : timestamp;
+    }
+
+    private static final class DayState {
+        private final LocalDate date;
+        private final List<MealPeriod> periods;
+        private final Map<MealWindow, Map<Long, Set<Long>>> members = new EnumMap<>(MealWindow.class);
+        private final Map<MealWindow, Set<Long>> people = new EnumMap<>(MealWindow.class);
+        private final AtomicLong lastEventAt = new AtomicLong();
+
+        private DayState(LocalDate date, List<MealPeriod> periods) {
+            this.date = date;
+            this.periods = periods;
+            for (MealWindow window : MealWindow.values()) {
+                members.put(window, new ConcurrentHashMap<>());
+                people.put(window, ConcurrentHashMap.newKeySet());
+            }
+        }
+
+        private MealPeriod periodAt(long millis) {
+            for (MealPeriod period : periods) {
+                if (period.contains(millis)) {
+                    return period;
+                }
+            }
+            return null;
+        }
+
+        private boolean add(MealWindow window, Long listId, Long itemId, Long personKey, long timestamp) {
+            lastEventAt.accumulateAndGet(timestamp, Math::max);
+            people.get(window).add(personKey);
+            return members.get(window).computeIfAbsent(listId, k -> ConcurrentHashMap.newKeySet()).add(itemId);
+        }
+
+        private int count(MealWindow window, Long listId) {
+            Set<Long> ids = members.get(window).get(listId);
+            return ids == null ? 0 : ids.size();
+        }
+
+        private Set<Long> listIds() {
+            Set<Long> ids = new TreeSet<>();
+            members.values().forEach(m -> ids.addAll(m.keySet()));
+            return ids;
+        }
+    }
+}
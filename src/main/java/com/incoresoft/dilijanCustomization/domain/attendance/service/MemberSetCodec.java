@@ -0,0 +1,70 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Compact encoding for sets of non-negative ids: ids are sorted and stored as
+ * unsigned LEB128 varint deltas, so dense list-item ranges take ~1-2 bytes per member.
+ */
+public final class MemberSetCodec {
+
+    private MemberSetCodec() {
+    }
+
+    public static byte[] encode(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new byte[0];
+        }
+        long[] sorted = ids.stream()
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .filter(v -> v >= 0)
+                .sorted()
+                .distinct()
+                .toArray();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sorted.length * 2 + 1);
+        long previous = 0;
+        for (long id : sorted) {
+            writeVarLong(out, id - previous);
+            previous = id;
+        }
+        return out.toByteArray();
+    }
+
+    public static Set<Long> decode(byte[] data) {
+        Set<Long> ids = new HashSet<>();
+        if (data == null || data.length == 0) {
+            return ids;
+        }
+        long current = 0;
+        int pos = 0;
+        while (pos < data.length) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (pos >= data.length || shift > 63) {
+                    throw new IllegalArgumentException("Truncated or malformed member set");
+                }
+                b = data[pos++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            current += delta;
+            ids.add(current);
+        }
+        return ids;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,35 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.service;
+
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * List-independent person identity used for campus-wide deduplication. The same person is a
+ * separate list item in every list they belong to, so the key is derived from the normalized
+ * name (63-bit FNV-1a hash, non-negative so it fits {@link MemberSetCodec}); unnamed items fall
+ * back to their list item id. VEZHA exposes no person id across lists, so two different people
+ * with the same normalized name count once in the campus-wide row.
+ */
+public final class PersonKeys {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private PersonKeys() {
+    }
+
+    public static Long of(Long listItemId, String name) {
+        if (!StringUtils.hasText(name)) {
+            return listItemId;
+        }
+        String normalized = name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        long hash = FNV_OFFSET;
+        for (byte b : normalized.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= FNV_PRIME;
+        }
+        return hash & Long.MAX_VALUE;
+    }
+}
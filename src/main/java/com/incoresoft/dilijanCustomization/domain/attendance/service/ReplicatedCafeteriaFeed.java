@@ -0,0 +1,69 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.service;
+
+import com.incoresoft.dilijanCustomization.config.CafeteriaProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionInsertedEvent;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+import com.incoresoft.dilijanCustomization.domain.shared.service.FaceListCache;
+import com.incoresoft.dilijanCustomization.domain.shared.service.ListItemDirectory;
+import com.incoresoft.dilijanCustomization.domain.unknown.dto.FaceEventDto;
+import com.incoresoft.dilijanCustomization.repository.VezhaTrafficClass;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Feeds detections from the logical-replication ingest ({@code vezha.db.replication}) into
+ * {@link LiveAttendanceService}, as an alternative to the cafeteria webhook. Only matched detections of the
+ * configured {@code vezha.cafe.analytics-ids} count. Item and list names come from the in-memory directories,
+ * so person keys match webhook events and the two sources can run side by side without double counting.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReplicatedCafeteriaFeed {
+
+    private final LiveAttendanceService liveAttendanceService;
+    private final CafeteriaProps cafe;
+    private final ListItemDirectory listItemDirectory;
+    private final FaceListCache faceListCache;
+
+    @EventListener
+    public void onDetectionInserted(DetectionInsertedEvent event) {
+        DetectionDto detection = event.detection();
+        ListItemDto item = detection.getListItem();
+        List<Long> analyticsIds = cafe.getAnalyticsIds();
+        if (item == null || item.getId() == null || item.getListId() == null || detection.getTimestamp() == null
+                || detection.getAnalytics() == null || analyticsIds == null
+                || !analyticsIds.contains(detection.getAnalytics().getId())) {
+            return;
+        }
+        VezhaTrafficClass.BACKGROUND.run(() -> liveAttendanceService.record(toFaceEvent(detection, item)));
+    }
+
+    private FaceEventDto toFaceEvent(DetectionDto detection, ListItemDto item) {
+        FaceEventDto.PersonListRef list = new FaceEventDto.PersonListRef();
+        list.setId(item.getListId());
+        list.setName(faceListCache.findById(item.getListId()).map(FaceListDto::getName).orElse(null));
+
+        FaceEventDto.ListItemRef listItem = new FaceEventDto.ListItemRef();
+        listItem.setId(item.getId());
+        listItem.setName(listItemDirectory.findById(item.getListId(), item.getId()).map(ListItemDto::getName).orElse(null));
+        listItem.setList(list);
+
+        FaceEventDto.AnalyticsRef analytics = new FaceEventDto.AnalyticsRef();
+        analytics.setId(detection.getAnalytics().getId());
+
+        FaceEventDto.FacePayload face = new FaceEventDto.FacePayload();
+        face.setListItem(listItem);
+        face.setAnalytics(analytics);
+
+        FaceEventDto event = new FaceEventDto();
+        event.setTimestamp(detection.getTimestamp());
+        event.setInList(true);
+        event.setFace(face);
+        return event;
+    }
+}
@@ -2,10 +2,13 @@ package com.incoresoft.dilijanCustomization.domain.evacuation.service;
 
 import com.incoresoft.dilijanCustomization.domain.evacuation.dto.EvacuationReportRow;
 import com.incoresoft.dilijanCustomization.domain.evacuation.dto.EvacuationStatus;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.CachedResult;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListDto;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+import com.incoresoft.dilijanCustomization.domain.shared.service.ListItemDirectory;
 import com.incoresoft.dilijanCustomization.domain.shared.service.ReportService;
 import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
+import com.incoresoft.dilijanCustomization.repository.VezhaTrafficClass;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -48,35 +51,47 @@ public class EvacuationReportService {
     private final VezhaDbRepository vezhaDbRepository;
     private final ReportService reportService;
     private final EvacuationStatusService evacuationStatusService;
+    private final ListItemDirectory listItemDirectory;
 
+    /** Runs as {@link VezhaTrafficClass#EMERGENCY} traffic: it gets first claim on VEZHA capacity. */
     public File buildEvacuationReport(List<Long> listIds) throws Exception {
-        Map<FaceListDto, List<EvacuationReportRow>> reportData = collectReportData(listIds);
-        File out = File.createTempFile("evacuation-", ".xlsx");
-        return reportService.exportEvacuationWorkbook(reportData, out);
+        return buildEvacuationReportResult(listIds).value();
     }
 
-    private Map<FaceListDto, List<EvacuationReportRow>> collectReportData(List<Long> listIds) {
-        evacuationStatusService.refreshStatuses();
-        List<Long> sortedIds = new ArrayList<>(listIds);
+    /**
+     * Like {@link #buildEvacuationReport}, but reports whether VEZHA DB timeouts made it fall back to the
+     * previous status snapshot or cached list items ({@link CachedResult#stale()}).
+     */
+    public CachedResult<File> buildEvacuationReportResult(List<Long> listIds) throws Exception {
+        return VezhaTrafficClass.EMERGENCY.call(() -> {
+            CachedResult<Map<FaceListDto, List<EvacuationReportRow>>> reportData = collectReportData(listIds);
+            File out = File.createTempFile("evacuation-", ".xlsx");
+            File report = reportService.exportEvacuationWorkbook(reportData.value(), out);
+            return new CachedResult<>(report, reportData.stale());
+        });
+    }
+
+    /** Three batch queries (list metadata, active statuses, items) regardless of how many lists are selected. */
+    private CachedResult<Map<FaceListDto, List<EvacuationReportRow>>> collectReportData(List<Long> listIds) {
+        boolean statusesCurrent = evacuationStatusService.tryRefreshStatuses();
+        List<Long> sortedIds = new ArrayList<>(new LinkedHashSet<>(listIds));
         Collections.sort(sortedIds);
+        Map<Long, FaceListDto> listMetas = vezhaDbRepository.findFaceLists(sortedIds);
+        List<Long> knownIds = sortedIds.stream().filter(listMetas::containsKey).toList();
+        // Получаем ID list_item_id со статусом true из БД через JPA-сервис
+        Map<Long, Map<Long, EvacuationStatus>> activeStatuses = evacuationStatusService.getActiveStatuses(knownIds);
+        CachedResult<Map<Long, List<ListItemDto>>> items = listItemDirectory.currentItems(knownIds);
         Map<FaceListDto, List<EvacuationReportRow>> data = new LinkedHashMap<>();
-        for (Long listId : sortedIds) {
-            FaceListDto listMeta = fetchFaceListMeta(listId).orElse(null);
-            if (listMeta == null) continue;
-            // Получаем ID list_item_id со статусом true из БД через JPA-сервис
-            Map<Long, EvacuationStatus> activeStatuses = evacuationStatusService.getActiveStatuses(listId);
-            List<EvacuationReportRow> present = filterPresentItems(activeStatuses, fetchAllListItems(listId));
-            data.put(listMeta, present);
+        for (Long listId : knownIds) {
+            List<EvacuationReportRow> present = filterPresentItems(
+                    activeStatuses.getOrDefault(listId, Map.of()), items.value().getOrDefault(listId, List.of()));
+            data.put(listMetas.get(listId), present);
         }
-        return data;
-    }
-
-    private Optional<FaceListDto> fetchFaceListMeta(Long listId) {
-        return Optional.ofNullable(vezhaDbRepository.findFaceList(listId));
-    }
-
-    private List<ListItemDto> fetchAllListItems(Long listId) {
-        return vezhaDbRepository.findListItems(listId);
+        boolean stale = !statusesCurrent || items.stale();
+        if (stale) {
+            log.warn("[EVAC] Report for lists {} uses stale data after a VEZHA DB timeout", knownIds);
+        }
+        return new CachedResult<>(data, stale);
     }
 
     private List<EvacuationReportRow> filterPresentItems(Map<Long, EvacuationStatus> activeStatuses, List<ListItemDto> items) {
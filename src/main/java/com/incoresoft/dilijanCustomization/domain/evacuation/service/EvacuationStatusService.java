@@ -5,20 +5,27 @@ import com.incoresoft.dilijanCustomization.config.PostgresProps;
 import com.incoresoft.dilijanCustomization.domain.evacuation.dto.EvacuationStatus;
 import com.incoresoft.dilijanCustomization.domain.evacuation.dto.EvacuationStatusPK;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionInsertedEvent;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListDto;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+import com.incoresoft.dilijanCustomization.domain.shared.service.DetectionWindowCache;
+import com.incoresoft.dilijanCustomization.domain.shared.service.ListMembershipSync;
 import com.incoresoft.dilijanCustomization.repository.EvacuationStatusRepository;
 import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
+import com.incoresoft.dilijanCustomization.repository.VezhaTrafficClass;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -28,6 +35,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
@@ -43,6 +51,16 @@ public class EvacuationStatusService {
     private final PostgresProps postgresProps;
     /** JPA репозиторий для сохранения и обновления статусов. */
     private final EvacuationStatusRepository evacuationStatusRepository;
+    /** Incremental per-list rosters, so a refresh only reads the items that changed. */
+    private final ListMembershipSync listMembershipSync;
+    /** Recent detections in memory; used when the lookback fits in its retention. */
+    private final DetectionWindowCache detectionWindowCache;
+
+    /** Attendance settings of the lists seen by the last refresh, used for replicated detections. */
+    private volatile Map<Long, TimeAttendanceConfig> attendanceByList = Map.of();
+
+    /** Serialises refreshes; the report path only tries it, so it never waits behind a batch-pool refresh. */
+    private final ReentrantLock refreshLock = new ReentrantLock();
 
     @PostConstruct
     public void init() {
@@ -60,25 +78,124 @@ public class EvacuationStatusService {
         refreshStatuses();
     }
 
-    /** Периодически обновляет статусы. Период задаётся в конфигурации. */
+    /**
+     * Периодически обновляет статусы. Период задаётся в конфигурации.
+     * Runs as {@link VezhaTrafficClass#BACKGROUND}, i.e. on the batch VEZHA DB pool.
+     */
     @Scheduled(fixedDelayString = "${evacuation.refreshMinutes:5}", timeUnit = TimeUnit.MINUTES)
-    public synchronized void refreshStatuses() {
-        List<FaceListDto> evacuationLists = fetchListsWithAttendanceEnabled();
+    public void scheduledRefresh() {
+        VezhaTrafficClass.BACKGROUND.run(this::refreshStatuses);
+    }
+
+    /**
+     * Recomputes statuses on the caller's traffic class, waiting for a refresh already in progress to finish.
+     * After the first VEZHA DB timeout the remaining lists are skipped, so the refresh stays within about one
+     * query timeout; their rows in the status table are the previous snapshot.
+     *
+     * @return false when a failure left some lists with the previous snapshot
+     */
+    public boolean refreshStatuses() {
+        refreshLock.lock();
+        try {
+            return doRefreshStatuses();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link #refreshStatuses()}, but returns false straight away when another refresh (typically the
+     * scheduled one on the batch pool) is running, leaving the previous snapshot in place. The evacuation
+     * report uses this so it never waits behind a background refresh.
+     *
+     * @return false when the statuses are the previous snapshot, in whole or in part
+     */
+    public boolean tryRefreshStatuses() {
+        if (!refreshLock.tryLock()) {
+            log.info("[EVAC] Refresh already running; using the previous statuses");
+            return false;
+        }
+        try {
+            return doRefreshStatuses();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private boolean doRefreshStatuses() {
+        List<FaceListDto> evacuationLists;
+        try {
+            evacuationLists = vezhaDbRepository.findListsWithAttendanceEnabled();
+        } catch (Exception e) {
+            log.warn("[EVAC] VEZHA API unavailable, skipping refresh: {}", e.getMessage());
+            return false;
+        }
+        Map<Long, TimeAttendanceConfig> attendance = new HashMap<>();
+        for (FaceListDto list : evacuationLists) {
+            TimeAttendanceConfig config = TimeAttendanceConfig.from(list);
+            if (list.getId() != null && config.enabled()) {
+                attendance.put(list.getId(), config);
+            }
+        }
+        attendanceByList = Map.copyOf(attendance);
         if (evacuationLists.isEmpty()) {
             log.info("[EVAC] No lists with attendance enabled; skipping refresh");
-            return;
+            return true;
         }
         long now = System.currentTimeMillis();
         Long start = resolveStartMillis(now);
         log.info("[EVAC] Refresh started");
+        boolean complete = true;
+        boolean timedOut = false;
         for (FaceListDto list : evacuationLists) {
+            if (timedOut) {
+                log.warn("[EVAC] Skipping list {} after a VEZHA DB timeout; keeping its previous statuses", list.getId());
+                continue;
+            }
             try {
                 updateListStatuses(list, start, now);
             } catch (Exception ex) {
+                complete = false;
+                timedOut = VezhaDbRepository.isTimeout(ex);
                 log.error("Failed to refresh list {}: {}", list.getId(), ex.getMessage(), ex);
             }
         }
-        log.info("[EVAC] Refresh finished");
+        log.info("[EVAC] Refresh finished{}", complete ? "" : " with stale lists");
+        return complete;
+    }
+
+    /**
+     * Applies a detection from the logical-replication ingest ({@code vezha.db.replication}) without waiting for
+     * the next refresh: an entrance analytics marks the person present, an exit analytics absent. Detections that
+     * are not newer than the stored event time (including manual changes) are ignored, so redelivery is harmless;
+     * lists the last refresh did not see are left to the next refresh.
+     */
+    @EventListener
+    @Transactional
+    public void onDetectionInserted(DetectionInsertedEvent event) {
+        DetectionDto detection = event.detection();
+        ListItemDto item = detection.getListItem();
+        if (item == null || item.getId() == null || item.getListId() == null || detection.getTimestamp() == null
+                || detection.getAnalytics() == null || detection.getAnalytics().getId() == null) {
+            return;
+        }
+        TimeAttendanceConfig config = attendanceByList.get(item.getListId());
+        if (config == null) {
+            return;
+        }
+        boolean entrance = isEntranceDetection(detection, config.entrance());
+        if (!entrance && !config.exit().contains(detection.getAnalytics().getId())) {
+            return;
+        }
+        EvacuationStatus existing = evacuationStatusRepository
+                .findById(new EvacuationStatusPK(item.getListId(), item.getId()))
+                .orElse(null);
+        Long lastEventTime = resolveLastEventTime(existing);
+        if (lastEventTime != null && detection.getTimestamp() <= lastEventTime) {
+            return;
+        }
+        Long timestamp = detection.getTimestamp();
+        updateStatus(item.getListId(), item.getId(), entrance, entrance ? timestamp : null, entrance ? null : timestamp, false);
     }
 
     /**
@@ -113,6 +230,29 @@ public class EvacuationStatusService {
         }
     }
 
+    /**
+     * Batch form of {@link #getActiveStatuses(Long)}: one query for all lists, grouped by list.
+     * @param listIds identifiers of the face lists
+     * @return map keyed by list id (every requested id present) of maps keyed by list_item_id
+     */
+    public Map<Long, Map<Long, EvacuationStatus>> getActiveStatuses(Collection<Long> listIds) {
+        Map<Long, Map<Long, EvacuationStatus>> byList = new LinkedHashMap<>();
+        if (listIds == null || listIds.isEmpty()) {
+            return byList;
+        }
+        listIds.forEach(id -> byList.put(id, new LinkedHashMap<>()));
+        try {
+            for (EvacuationStatus status : evacuationStatusRepository.findByListIdInAndStatusTrue(listIds)) {
+                byList.computeIfAbsent(status.getListId(), k -> new LinkedHashMap<>())
+                        .putIfAbsent(status.getListItemId(), status);
+            }
+            return byList;
+        } catch (Exception e) {
+            log.error("Query failed: {}", e.getMessage(), e);
+            throw new IllegalStateException("Evacuation status query failed: " + e.getMessage(), e);
+        }
+    }
+
     // --- внутренние методы ---
 
     private void updateListStatuses(FaceListDto faceList, Long startMillis, Long endMillis) throws Exception {
@@ -122,12 +262,11 @@ public class EvacuationStatusService {
             return;
         }
 
-        List<DetectionDto> detections = vezhaDbRepository.findLatestDetectionsByListItem(
-                faceList.getId(),
-                attendanceConfig.allStreams(),
-                startMillis,
-                endMillis
-        );
+        List<DetectionDto> detections = detectionWindowCache.covers(startMillis)
+                ? detectionWindowCache.findLatestDetectionsByListItem(
+                        faceList.getId(), attendanceConfig.allStreams(), startMillis, endMillis)
+                : vezhaDbRepository.findLatestDetectionsByListItem(
+                        faceList.getId(), attendanceConfig.allStreams(), startMillis, endMillis);
 
         Map<Long, DetectionDto> latestByPerson = findLatestDetections(detections);
         List<ListItemDto> listItems = fetchListItems(faceList.getId());
@@ -135,9 +274,27 @@ public class EvacuationStatusService {
             return;
         }
 
-        Map<Long, EvacuationStatus> existing = fetchExistingStatuses(faceList.getId());
+        Map<Long, EvacuationStatus> existing = new HashMap<>(fetchExistingStatuses(faceList.getId()));
+        pruneRemovedItems(faceList.getId(), listItems, existing);
         List<EvacuationStatus> statuses = buildStatuses(faceList, attendanceConfig, latestByPerson, listItems, existing);
-        evacuationStatusRepository.saveAll(statuses);
+        if (!statuses.isEmpty()) {
+            evacuationStatusRepository.saveAll(statuses);
+        }
+    }
+
+    /** Deletes the status rows of people who are no longer in the list (removed from VEZHA). */
+    private void pruneRemovedItems(Long listId, List<ListItemDto> listItems, Map<Long, EvacuationStatus> existing) {
+        Set<Long> current = listItems.stream().map(ListItemDto::getId).collect(Collectors.toSet());
+        List<EvacuationStatusPK> removed = existing.keySet().stream()
+                .filter(id -> !current.contains(id))
+                .map(id -> new EvacuationStatusPK(listId, id))
+                .toList();
+        if (removed.isEmpty()) {
+            return;
+        }
+        evacuationStatusRepository.deleteAllByIdInBatch(removed);
+        removed.forEach(pk -> existing.remove(pk.getListItemId()));
+        log.info("[EVAC] Pruned {} status row(s) of people removed from list {}", removed.size(), listId);
     }
 
     /** Обновление статуса одного пользователя в списке. */
@@ -234,15 +391,6 @@ public class EvacuationStatusService {
         p.waitFor();
     }
 
-    private List<FaceListDto> fetchListsWithAttendanceEnabled() {
-        try {
-            return vezhaDbRepository.findListsWithAttendanceEnabled();
-        } catch (Exception e) {
-            log.warn("[EVAC] VEZHA API unavailable, skipping refresh: {}", e.getMessage());
-            return List.of();
-        }
-    }
-
     private Long resolveStartMillis(long now) {
         return evacuationProps.getLookbackDays() > 0
                 ? now - Duration.ofDays(evacuationProps.getLookbackDays()).toMillis()
@@ -250,7 +398,7 @@ public class EvacuationStatusService {
     }
 
     private List<ListItemDto> fetchListItems(Long listId) {
-        return vezhaDbRepository.findListItems(listId);
+        return listMembershipSync.sync(listId).items();
     }
 
     private Map<Long, DetectionDto> findLatestDetections(List<DetectionDto> detections) {
@@ -316,9 +464,13 @@ public class EvacuationStatusService {
             Long existingEventTime = resolveLastEventTime(existing);
             if (existing != null && Boolean.TRUE.equals(existing.getManuallyUpdated())) {
                 if (latestEventTime == null || (existingEventTime != null && latestEventTime <= existingEventTime)) {
-                    existing.setEnterStreamIds(attendanceConfig.entranceArray());
-                    existing.setExitStreamIds(attendanceConfig.exitArray());
-                    statuses.add(existing);
+                    boolean streamsChanged = !Arrays.equals(existing.getEnterStreamIds(), attendanceConfig.entranceArray())
+                            || !Arrays.equals(existing.getExitStreamIds(), attendanceConfig.exitArray());
+                    if (streamsChanged) {
+                        existing.setEnterStreamIds(attendanceConfig.entranceArray());
+                        existing.setExitStreamIds(attendanceConfig.exitArray());
+                        statuses.add(existing);
+                    }
                     continue;
                 }
             }
@@ -334,7 +486,10 @@ public class EvacuationStatusService {
             evacuationStatus.setEntranceTime(status && detection != null ? detection.getTimestamp() : null);
             evacuationStatus.setExitTime(!status && detection != null ? detection.getTimestamp() : null);
             evacuationStatus.setManuallyUpdated(false);
-            statuses.add(evacuationStatus);
+            // unchanged rows are not rewritten, so steady-state refreshes write only what moved
+            if (!evacuationStatus.equals(existing)) {
+                statuses.add(evacuationStatus);
+            }
         }
         return statuses;
     }
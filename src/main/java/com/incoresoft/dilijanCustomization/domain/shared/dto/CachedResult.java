@@ -0,0 +1,16 @@
+package com.incoresoft.dilijanCustomization.domain.shared.dto;
+
+/**
+ * A value together with whether it is current. {@code stale} results were served from an earlier
+ * snapshot because refreshing it timed out; callers should say so to the user.
+ */
+public record CachedResult<T>(T value, boolean stale) {
+
+    public static <T> CachedResult<T> fresh(T value) {
+        return new CachedResult<>(value, false);
+    }
+
+    public static <T> CachedResult<T> stale(T value) {
+        return new CachedResult<>(value, true);
+    }
+}
@@ -0,0 +1,11 @@
+package com.incoresoft.dilijanCustomization.domain.shared.dto;
+
+/**
+ * A {@code face_detections} row inserted in the VEZHA DB, published on the application event bus by the
+ * logical-replication ingest ({@code vezha.db.replication}). Delivery is at least once: after a reconnect the
+ * server may resend rows of a partly confirmed transaction, so listeners must be idempotent.
+ *
+ * @param detection id, timestamp, analytics id and (for matched faces) list item id and list id; no item name
+ */
+public record DetectionInsertedEvent(DetectionDto detection) {
+}
@@ -0,0 +1,19 @@
+package com.incoresoft.dilijanCustomization.domain.shared.dto;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A list's current items together with what changed since the previous sync of that list.
+ *
+ * @param items   all current items (no images), in id order
+ * @param added   ids that appeared; on the first sync of a list every id
+ * @param changed ids whose name or comment changed
+ * @param removed ids that no longer exist in the list
+ */
+public record ListMembership(List<ListItemDto> items, Set<Long> added, Set<Long> changed, Set<Long> removed) {
+
+    public boolean unchanged() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+}
@@ -0,0 +1,41 @@
+package com.incoresoft.dilijanCustomization.domain.shared.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.incoresoft.dilijanCustomization.repository.VezhaHotQuery;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One {@code EXPLAIN (ANALYZE, BUFFERS)} run of a hot VEZHA DB query with its real parameters.
+ *
+ * @param query            which hot query was explained
+ * @param sql              statement text as the repository runs it
+ * @param explainedAt      when the plan was captured
+ * @param planningMillis   planner time reported by PostgreSQL
+ * @param executionMillis  executor time reported by PostgreSQL
+ * @param sharedHitBlocks  buffer-cache hits over the whole plan
+ * @param sharedReadBlocks blocks read from disk over the whole plan
+ * @param seqScans         sequential scans at or over {@code vezha.db.explain.seq-scan-rows} rows
+ * @param suggestedIndexes {@code CREATE INDEX} statements for the flagged relations
+ * @param plan             the raw JSON plan
+ */
+public record QueryPlanReport(VezhaHotQuery query,
+                              String sql,
+                              Instant explainedAt,
+                              double planningMillis,
+                              double executionMillis,
+                              long sharedHitBlocks,
+                              long sharedReadBlocks,
+                              List<SeqScan> seqScans,
+                              List<String> suggestedIndexes,
+                              JsonNode plan) {
+
+    /**
+     * @param relation    scanned table
+     * @param rowsScanned rows returned plus rows removed by the filter, over all loops
+     * @param filter      the scan's filter condition, or {@code null}
+     */
+    public record SeqScan(String relation, long rowsScanned, String filter) {
+    }
+}
@@ -0,0 +1,178 @@
+package com.incoresoft.dilijanCustomization.domain.shared.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Time-bucketed columnar ring behind {@link DetectionWindowCache}. Each bucket covers a fixed slice of time and
+ * keeps its rows as parallel primitive arrays (detection id, created_at, list, list item, analytics) in arrival
+ * order, plus an open-addressing id set so redelivered rows are dropped. Writing a bucket that is one ring turn
+ * newer recycles the oldest one, so memory is bounded by the retention. Not thread-safe; the cache locks it.
+ */
+final class DetectionRing {
+
+    /** Latest detection of one list item; ties on created_at go to the higher id, as in the SQL query. */
+    record Hit(long detectionId, long timestamp, long analyticsId) {
+    }
+
+    private final long bucketMillis;
+    private final Bucket[] buckets;
+    private long newestSlot = Long.MIN_VALUE;
+
+    DetectionRing(Duration retention, Duration bucket) {
+        this.bucketMillis = Math.max(1, bucket.toMillis());
+        long slots = Math.max(1, Math.floorDiv(retention.toMillis() + bucketMillis - 1, bucketMillis)) + 1;
+        this.buckets = new Bucket[Math.toIntExact(slots)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * @return false for duplicates, non-positive ids and rows older than the retained buckets
+     */
+    boolean add(long id, long timestamp, long listId, long itemId, long analyticsId) {
+        long slot = Math.floorDiv(timestamp, bucketMillis);
+        if (id <= 0 || (newestSlot != Long.MIN_VALUE && slot <= newestSlot - buckets.length)) {
+            return false;
+        }
+        newestSlot = Math.max(newestSlot, slot);
+        Bucket bucket = bucket(slot);
+        if (bucket.slot != slot) {
+            bucket.reset(slot);
+        }
+        return bucket.add(id, timestamp, listId, itemId, analyticsId);
+    }
+
+    /** Earliest time whose bucket is still held; {@link Long#MIN_VALUE} while the ring is empty. */
+    long retainedSince() {
+        return newestSlot == Long.MIN_VALUE ? Long.MIN_VALUE : (newestSlot - buckets.length + 1) * bucketMillis;
+    }
+
+    int size() {
+        int size = 0;
+        for (Bucket bucket : buckets) {
+            if (bucket.slot != Long.MIN_VALUE && bucket.slot > newestSlot - buckets.length) {
+                size += bucket.size;
+            }
+        }
+        return size;
+    }
+
+    /** Latest detection per list item of {@code listId} within [startMillis, endMillis]. */
+    Map<Long, Hit> latestByItem(long listId, long[] analyticsIds, long startMillis, long endMillis) {
+        Map<Long, Hit> latest = new HashMap<>();
+        scan(listId, analyticsIds, startMillis, endMillis, (bucket, row) -> {
+            Hit hit = latest.get(bucket.items[row]);
+            if (hit == null || bucket.timestamps[row] > hit.timestamp()
+                    || (bucket.timestamps[row] == hit.timestamp() && bucket.ids[row] > hit.detectionId())) {
+                latest.put(bucket.items[row], new Hit(bucket.ids[row], bucket.timestamps[row], bucket.analytics[row]));
+            }
+        });
+        return latest;
+    }
+
+    /** Distinct list items of {@code listId} seen within [startMillis, endMillis]. */
+    Set<Long> itemsSeen(long listId, long[] analyticsIds, long startMillis, long endMillis) {
+        Set<Long> items = new HashSet<>();
+        scan(listId, analyticsIds, startMillis, endMillis, (bucket, row) -> items.add(bucket.items[row]));
+        return items;
+    }
+
+    private interface RowVisitor {
+        void visit(Bucket bucket, int row);
+    }
+
+    /** {@code analyticsIds} must be sorted. */
+    private void scan(long listId, long[] analyticsIds, long startMillis, long endMillis, RowVisitor visitor) {
+        if (newestSlot == Long.MIN_VALUE || analyticsIds.length == 0 || startMillis > endMillis) {
+            return;
+        }
+        long from = Math.max(Math.floorDiv(startMillis, bucketMillis), newestSlot - buckets.length + 1);
+        long to = Math.min(Math.floorDiv(endMillis, bucketMillis), newestSlot);
+        for (long slot = from; slot <= to; slot++) {
+            Bucket bucket = bucket(slot);
+            if (bucket.slot != slot) {
+                continue;
+            }
+            for (int row = 0; row < bucket.size; row++) {
+                long ts = bucket.timestamps[row];
+                if (bucket.lists[row] == listId && ts >= startMillis && ts <= endMillis
+                        && Arrays.binarySearch(analyticsIds, bucket.analytics[row]) >= 0) {
+                    visitor.visit(bucket, row);
+                }
+            }
+        }
+    }
+
+    private Bucket bucket(long slot) {
+        return buckets[(int) Math.floorMod(slot, (long) buckets.length)];
+    }
+
+    private static final class Bucket {
+        private static final int INITIAL_CAPACITY = 64;
+
+        long slot = Long.MIN_VALUE;
+        int size;
+        long[] ids = new long[INITIAL_CAPACITY];
+        long[] timestamps = new long[INITIAL_CAPACITY];
+        long[] lists = new long[INITIAL_CAPACITY];
+        long[] items = new long[INITIAL_CAPACITY];
+        long[] analytics = new long[INITIAL_CAPACITY];
+        /** Open addressing over detection ids, 0 = free; kept at most half full */
+        long[] idTable = new long[INITIAL_CAPACITY * 2];
+
+        /** Keeps the arrays, so a recycled bucket does not reallocate at a steady detection rate. */
+        void reset(long slot) {
+            this.slot = slot;
+            this.size = 0;
+            Arrays.fill(idTable, 0L);
+        }
+
+        boolean add(long id, long timestamp, long listId, long itemId, long analyticsId) {
+            if (size == ids.length) {
+                grow();
+            }
+            if (!insertId(idTable, id)) {
+                return false;
+            }
+            ids[size] = id;
+            timestamps[size] = timestamp;
+            lists[size] = listId;
+            items[size] = itemId;
+            analytics[size] = analyticsId;
+            size++;
+            return true;
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            lists = Arrays.copyOf(lists, capacity);
+            items = Arrays.copyOf(items, capacity);
+            analytics = Arrays.copyOf(analytics, capacity);
+            idTable = new long[capacity * 2];
+            for (int row = 0; row < size; row++) {
+                insertId(idTable, ids[row]);
+            }
+        }
+
+        private static boolean insertId(long[] table, long id) {
+            int mask = table.length - 1;
+            int i = Long.hashCode(id * 0x9E3779B97F4A7C15L) & mask;
+            while (table[i] != 0) {
+                if (table[i] == id) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = id;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.incoresoft.dilijanCustomization.domain.shared.service;
+
+import com.incoresoft.dilijanCustomization.config.VezhaDbProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionInsertedEvent;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
+import com.incoresoft.dilijanCustomization.repository.VezhaTrafficClass;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Rolling in-memory window of the last {@code vezha.db.window.retention} of matched detections, so the
+ * evacuation refresh and the cafeteria pivot answer "latest per person" and "unique people in a window" without
+ * a {@code face_detections} scan. The window is filled once from the VEZHA DB, then kept current by an
+ * incremental poll (re-reading {@code poll-overlap}) and by {@link DetectionInsertedEvent}s from the replication
+ * ingest; duplicates are dropped by detection id.
+ * <p>
+ * The poll selects by {@code created_at}, so a row committed more than {@code poll-overlap} after its
+ * {@code created_at} is never polled. The replication feed delivers rows at commit, whatever their timestamp,
+ * which reconciles those late rows. Without the replication ingest a late-commit gap is always possible, so
+ * the window stays off: nothing is polled, {@link #covers} is false and callers stay on the DB.
+ * <p>
+ * Callers check {@link #covers} first and use the DB when the range reaches past the window or the feed is
+ * behind (disabled, not filled yet, polls failing). Data is at most one poll interval old. The ring is only
+ * allocated once the first detection arrives.
+ */
+@Slf4j
+@Service
+public class DetectionWindowCache {
+
+    private final VezhaDbRepository vezhaDbRepository;
+    private final VezhaDbProps vezhaDbProps;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Allocated on the first accepted detection; guarded by {@link #lock} */
+    private DetectionRing ring;
+
+    /** Lower bound of the first fill; null until it completed */
+    private volatile Long filledSince;
+    private volatile long lastPollMillis;
+    private long pollFrom;
+
+    public DetectionWindowCache(VezhaDbRepository vezhaDbRepository, VezhaDbProps vezhaDbProps) {
+        this.vezhaDbRepository = vezhaDbRepository;
+        this.vezhaDbProps = vezhaDbProps;
+        if (vezhaDbProps.isEnabled() && vezhaDbProps.getWindow().isEnabled()
+                && !vezhaDbProps.getReplication().isEnabled()) {
+            log.warn("[WINDOW] vezha.db.replication is disabled; late-committed detections could be missed, "
+                    + "so the window stays off and reads use the DB");
+        }
+    }
+
+    /** Runs as {@link VezhaTrafficClass#BACKGROUND}, i.e. on the batch VEZHA DB pool. */
+    @Scheduled(fixedDelayString = "${vezha.db.window.poll-interval:30s}")
+    public void scheduledPoll() {
+        if (enabled()) {
+            VezhaTrafficClass.BACKGROUND.run(() -> poll(System.currentTimeMillis()));
+        }
+    }
+
+    synchronized void poll(long now) {
+        VezhaDbProps.Window window = vezhaDbProps.getWindow();
+        boolean first = filledSince == null;
+        long since = first ? now - window.getRetention().toMillis() : pollFrom;
+        int[] added = {0};
+        try {
+            vezhaDbRepository.streamMatchedDetectionsSince(since, detection -> {
+                if (add(detection, now)) {
+                    added[0]++;
+                }
+            });
+        } catch (RuntimeException ex) {
+            log.warn("[WINDOW] Poll from {} failed: {}", Instant.ofEpochMilli(since), ex.getMessage());
+            return;
+        }
+        pollFrom = now - window.getPollOverlap().toMillis();
+        lastPollMillis = now;
+        if (first) {
+            filledSince = since;
+            log.info("[WINDOW] Filled {} detection(s) since {}", added[0], Instant.ofEpochMilli(since));
+        } else {
+            log.debug("[WINDOW] Poll added {} detection(s), {} held", added[0], size());
+        }
+    }
+
+    @EventListener
+    public void onDetectionInserted(DetectionInsertedEvent event) {
+        if (enabled()) {
+            add(event.detection(), System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Whether reads from {@code startMillis} up to now can be answered from memory: the window is filled, the last poll is at most two intervals old and
+     * nothing from {@code startMillis} on has been evicted.
+     */
+    public boolean covers(Long startMillis) {
+        return covers(startMillis, System.currentTimeMillis());
+    }
+
+    boolean covers(Long startMillis, long now) {
+        Long since = filledSince;
+        if (!enabled() || startMillis == null || since == null
+                || now - lastPollMillis > 2 * vezhaDbProps.getWindow().getPollInterval().toMillis()) {
+            return false;
+        }
+        return startMillis >= Math.max(since, read(() -> ring == null ? since : ring.retainedSince()));
+    }
+
+    /**
+     * In-memory form of {@link VezhaDbRepository#findLatestDetectionsByListItem}: each person's latest detection
+     * of the list on the given analytics, with item id, list id, analytics and timestamp (no item names).
+     */
+    public List<DetectionDto> findLatestDetectionsByListItem(Long listId, Collection<Long> analyticsIds,
+                                                             long startMillis, long endMillis) {
+        if (listId == null || analyticsIds == null || analyticsIds.isEmpty()) {
+            return List.of();
+        }
+        long[] analytics = sortedIds(analyticsIds);
+        List<DetectionDto> detections = new ArrayList<>();
+        read(() -> ring == null ? Map.<Long, DetectionRing.Hit>of()
+                : ring.latestByItem(listId, analytics, startMillis, endMillis)).forEach((itemId, hit) -> {
+            ListItemDto item = new ListItemDto();
+            item.setId(itemId);
+            item.setListId(listId);
+            DetectionDto.AnalyticsRef analyticsRef = new DetectionDto.AnalyticsRef();
+            analyticsRef.setId(hit.analyticsId());
+            DetectionDto detection = new DetectionDto();
+            detection.setId(hit.detectionId());
+            detection.setTimestamp(hit.timestamp());
+            detection.setListItem(item);
+            detection.setAnalytics(analyticsRef);
+            detections.add(detection);
+        });
+        return detections;
+    }
+
+    /** Distinct list items of the list seen on the given analytics within [startMillis, endMillis]. */
+    public Set<Long> findListItemIdsSeen(Long listId, Collection<Long> analyticsIds, long startMillis, long endMillis) {
+        if (listId == null || analyticsIds == null || analyticsIds.isEmpty()) {
+            return Set.of();
+        }
+        long[] analytics = sortedIds(analyticsIds);
+        return read(() -> ring == null ? Set.<Long>of() : ring.itemsSeen(listId, analytics, startMillis, endMillis));
+    }
+
+    int size() {
+        return read(() -> ring == null ? 0 : ring.size());
+    }
+
+    private boolean add(DetectionDto detection, long now) {
+        ListItemDto item = detection.getListItem();
+        if (detection.getId() == null || detection.getTimestamp() == null || item == null || item.getId() == null
+                || item.getListId() == null || detection.getAnalytics() == null
+                || detection.getAnalytics().getId() == null
+                // a skewed clock must not advance the ring and evict the real window
+                || detection.getTimestamp() > now + vezhaDbProps.getWindow().getBucket().toMillis()) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            if (ring == null) {
+                VezhaDbProps.Window window = vezhaDbProps.getWindow();
+                ring = new DetectionRing(window.getRetention(), window.getBucket());
+            }
+            return ring.add(detection.getId(), detection.getTimestamp(), item.getListId(), item.getId(),
+                    detection.getAnalytics().getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private <T> T read(Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** The window only runs alongside the replication ingest, which reconciles late commits */
+    private boolean enabled() {
+        return vezhaDbProps.isEnabled() && vezhaDbProps.getWindow().isEnabled()
+                && vezhaDbProps.getReplication().isEnabled();
+    }
+
+    private static long[] sortedIds(Collection<Long> ids) {
+        return ids.stream().filter(Objects::nonNull).mapToLong(Long::longValue).sorted().toArray();
+    }
+}
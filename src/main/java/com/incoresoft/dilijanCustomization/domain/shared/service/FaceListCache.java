@@ -0,0 +1,174 @@
+package com.incoresoft.dilijanCustomization.domain.shared.service;
+
+import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListsResponse;
+import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shared cache of VEZHA face-list metadata (names, status, parsed time-attendance settings).
+ * <ul>
+ *     <li>younger than {@code vezha.api.list-cache-ttl}: served from memory;</li>
+ *     <li>older, but within {@code list-cache-max-stale}: served stale while one background refresh runs;</li>
+ *     <li>missing or older than that: reloaded synchronously.</li>
+ * </ul>
+ * Every load pages through {@code /face/lists} past the single-page limit and compares a content hash
+ * with the previous snapshot; {@link #version()} only advances when the lists actually changed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FaceListCache {
+
+    private final FaceApiRepository repo;
+    private final VezhaApiProps props;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Snapshot snapshot;
+
+    private record Snapshot(List<FaceListDto> all,
+                            List<FaceListDto> reportable,
+                            Map<Long, FaceListDto> byId,
+                            int contentHash,
+                            long version,
+                            long loadedAtMillis) {
+    }
+
+    /** All lists in VEZHA order. */
+    public List<FaceListDto> lists() {
+        return current().all();
+    }
+
+    /** Active lists with time attendance enabled, sorted by name (the lists offered for reports). */
+    public List<FaceListDto> reportableLists() {
+        return current().reportable();
+    }
+
+    public Optional<FaceListDto> findById(Long listId) {
+        return Optional.ofNullable(listId).map(id -> current().byId().get(id));
+    }
+
+    public Optional<FaceListDto> findByName(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        return current().all().stream()
+                .filter(l -> l.getName() != null && l.getName().equalsIgnoreCase(name))
+                .findFirst();
+    }
+
+    /**
+     * Changes only when a reload returned different list metadata; 0 before the first load. Holders of list ids
+     * picked earlier (the Telegram selections) compare it to revalidate them only after a change.
+     */
+    public long version() {
+        Snapshot s = snapshot;
+        return s == null ? 0 : s.version();
+    }
+
+    /** Drop the cached lists, e.g. after creating or editing a list; the next read reloads. */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    /** Reload now, bypassing the TTL. */
+    public synchronized void refresh() {
+        Snapshot previous = snapshot;
+        List<FaceListDto> all = fetchAll();
+        int hash = all.hashCode();
+        long version = previous == null ? 1 : previous.version() + (previous.contentHash() == hash ? 0 : 1);
+        if (previous != null && previous.contentHash() != hash) {
+            log.info("[LISTS] Face-list metadata changed ({} lists, version {})", all.size(), version);
+        }
+        snapshot = new Snapshot(all, reportable(all), index(all), hash, version, System.currentTimeMillis());
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        long age = s == null ? Long.MAX_VALUE : System.currentTimeMillis() - s.loadedAtMillis();
+        if (s != null && age <= props.getListCacheTtl().toMillis()) {
+            return s;
+        }
+        if (s != null && age <= props.getListCacheMaxStale().toMillis()) {
+            refreshInBackground();
+            return s;
+        }
+        synchronized (this) {
+            // another caller may have reloaded while we waited
+            Snapshot reloaded = snapshot;
+            if (reloaded != null && reloaded != s) {
+                return reloaded;
+            }
+            refresh();
+            return snapshot;
+        }
+    }
+
+    private void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        CompletableFuture.runAsync(this::refresh)
+                .whenComplete((ignored, ex) -> {
+                    refreshing.set(false);
+                    if (ex != null) {
+                        log.warn("[LISTS] Background refresh failed, keeping cached lists: {}", ex.getMessage());
+                    }
+                });
+    }
+
+    private List<FaceListDto> fetchAll() {
+        int pageSize = Math.max(1, props.getListPageSize());
+        List<FaceListDto> all = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        int offset = 0;
+        while (true) {
+            FaceListsResponse page = repo.getFaceLists(pageSize, offset);
+            List<FaceListDto> data = (page == null || page.getData() == null) ? List.of() : page.getData();
+            int added = 0;
+            for (FaceListDto list : data) {
+                if (list != null && (list.getId() == null || seen.add(list.getId()))) {
+                    all.add(list);
+                    added++;
+                }
+            }
+            // stop on the last page, and when VEZHA ignores offset and keeps returning the same page
+            if (data.size() < pageSize || added == 0) {
+                break;
+            }
+            offset += pageSize;
+        }
+        return Collections.unmodifiableList(all);
+    }
+
+    private static List<FaceListDto> reportable(List<FaceListDto> all) {
+        return all.stream()
+                .filter(l -> l.getStatus() != null && l.getStatus().equals(1))
+                .filter(l -> l.getTimeAttendance() != null && Boolean.TRUE.equals(l.getTimeAttendance().getEnabled()))
+                .sorted(Comparator.comparing(FaceListDto::getName,
+                        Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)))
+                .toList();
+    }
+
+    private static Map<Long, FaceListDto> index(List<FaceListDto> all) {
+        Map<Long, FaceListDto> byId = new LinkedHashMap<>();
+        all.stream().filter(l -> Objects.nonNull(l.getId())).forEach(l -> byId.putIfAbsent(l.getId(), l));
+        return Collections.unmodifiableMap(byId);
+    }
+}
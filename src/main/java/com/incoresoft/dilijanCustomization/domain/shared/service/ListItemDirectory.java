@@ -0,0 +1,294 @@
+package com.incoresoft.dilijanCustomization.domain.shared.service;
+
+import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
+import com.incoresoft.dilijanCustomization.config.VezhaDbProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.CachedResult;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemsResponse;
+import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
+import com.incoresoft.dilijanCustomization.repository.ListItemImages;
+import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared per-list directory of face list items with id, normalized-name and exact-name indexes. Items carry
+ * their first image only. The directory serves the upload parser, the evacuation report, cafeteria name lookups
+ * and the unknown-list flow (name search and retention cleanup).
+ * Items come from the VEZHA DB when {@code vezha.db.enabled}, otherwise from paged (stream-decoded) REST calls.
+ * After {@code vezha.api.list-item-cache-ttl} a list is re-checked with a cheap fingerprint (DB: count/max id/
+ * text hash/image count; REST: total) and only reloaded when it changed. The REST total misses renames and
+ * same-size swaps, so REST-loaded lists are also reloaded once they are {@code list-item-max-age} old.
+ * Writers call {@link #invalidate}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ListItemDirectory {
+    private static final int MAX_LIST_ITEMS_PAGES = 10_000;
+
+    private final VezhaDbRepository vezhaDbRepository;
+    private final FaceApiRepository faceApiRepository;
+    private final VezhaDbProps vezhaDbProps;
+    private final VezhaApiProps vezhaApiProps;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Long, Object> locks = new ConcurrentHashMap<>();
+
+    private record Entry(List<ListItemDto> items,
+                         Map<Long, ListItemDto> byId,
+                         Map<String, List<ListItemDto>> byName,
+                         Map<String, Long> idByExactName,
+                         Long fingerprint,
+                         long checkedAtMillis,
+                         long loadedAtMillis) {
+
+        Entry checkedAt(long now) {
+            return new Entry(items, byId, byName, idByExactName, fingerprint, now, loadedAtMillis);
+        }
+    }
+
+    /** All items of the list ordered by name. */
+    public List<ListItemDto> items(Long listId) {
+        return entry(listId).items();
+    }
+
+    /**
+     * Like {@link #items} but always re-checks the fingerprint, for callers that must not miss recent
+     * changes (evacuation report). Still avoids the full reload when the list is unchanged.
+     */
+    public List<ListItemDto> currentItems(Long listId) {
+        return entry(listId, true).items();
+    }
+
+    /**
+     * {@link #currentItems(Long)} for several lists. With the VEZHA DB this is one batch fingerprint query plus
+     * one batch load for the lists that changed, instead of one or two queries per list. If that load times out
+     * the previously cached items are returned (empty for lists never loaded) and the result is marked stale.
+     *
+     * @return items by list id, in the order of {@code listIds}
+     */
+    public CachedResult<Map<Long, List<ListItemDto>>> currentItems(Collection<Long> listIds) {
+        Map<Long, List<ListItemDto>> out = new LinkedHashMap<>();
+        if (listIds == null || listIds.isEmpty()) {
+            return CachedResult.fresh(out);
+        }
+        if (!vezhaDbProps.isEnabled()) {
+            listIds.forEach(id -> out.put(id, currentItems(id)));
+            return CachedResult.fresh(out);
+        }
+        long now = System.currentTimeMillis();
+        Map<Long, Long> fingerprints = fingerprints(listIds);
+        List<Long> stale = new ArrayList<>();
+        for (Long listId : listIds) {
+            Entry e = entries.get(listId);
+            Long fingerprint = fingerprints.get(listId);
+            if (e != null && fingerprint != null && fingerprint.equals(e.fingerprint())) {
+                entries.put(listId, e.checkedAt(now));
+            } else {
+                stale.add(listId);
+            }
+        }
+        boolean timedOut = false;
+        if (!stale.isEmpty()) {
+            try {
+                Map<Long, List<ListItemDto>> loaded = vezhaDbRepository.findListItemsByListIds(stale, ListItemImages.FIRST);
+                for (Long listId : stale) {
+                    // no per-list lock here: a concurrent single-list load just stores an equivalent entry
+                    entries.put(listId, index(loaded.get(listId), fingerprints.get(listId), now));
+                }
+                log.debug("[DIRECTORY] Batch-loaded items for lists {}", stale);
+            } catch (RuntimeException ex) {
+                if (!VezhaDbRepository.isTimeout(ex)) {
+                    throw ex;
+                }
+                log.warn("[DIRECTORY] Batch reload of lists {} timed out, serving cached items: {}", stale, ex.getMessage());
+                timedOut = true;
+            }
+        }
+        listIds.forEach(id -> out.put(id, entries.getOrDefault(id, emptyEntry()).items()));
+        return timedOut ? CachedResult.stale(out) : CachedResult.fresh(out);
+    }
+
+    public Optional<ListItemDto> findById(Long listId, Long itemId) {
+        return Optional.ofNullable(itemId).map(id -> entry(listId).byId().get(id));
+    }
+
+    /**
+     * Items of one list whose name contains the query, ignoring case and repeated/outer whitespace (namesakes
+     * included). Answered from the normalized-name index instead of a REST search.
+     */
+    public List<ListItemDto> searchByName(Long listId, String query) {
+        String needle = normalizeName(query);
+        if (needle == null) {
+            return List.of();
+        }
+        List<ListItemDto> found = new ArrayList<>();
+        entry(listId).byName().forEach((name, named) -> {
+            if (name.contains(needle)) {
+                found.addAll(named);
+            }
+        });
+        return found;
+    }
+
+    /** Trimmed, case-sensitive name → list item id, for exact full-name matching (workbook uploads). */
+    public Map<String, Long> exactNameIndex(Long listId) {
+        return entry(listId).idByExactName();
+    }
+
+    public void invalidate(Long listId) {
+        if (listId != null) {
+            entries.remove(listId);
+        }
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    private static String normalizeName(String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private Entry entry(Long listId) {
+        return entry(listId, false);
+    }
+
+    private Entry entry(Long listId, boolean revalidate) {
+        if (listId == null) {
+            return emptyEntry();
+        }
+        long ttl = revalidate ? 0 : vezhaApiProps.getListItemCacheTtl().toMillis();
+        Entry e = entries.get(listId);
+        if (e != null && System.currentTimeMillis() - e.checkedAtMillis() < ttl) {
+            return e;
+        }
+        synchronized (locks.computeIfAbsent(listId, k -> new Object())) {
+            long now = System.currentTimeMillis();
+            e = entries.get(listId);
+            if (e != null && now - e.checkedAtMillis() < ttl) {
+                return e;
+            }
+            Long fingerprint = fingerprint(listId);
+            if (e != null && fingerprint != null && fingerprint.equals(e.fingerprint()) && !tooOld(e, now)) {
+                e = e.checkedAt(now);
+            } else {
+                List<ListItemDto> loaded;
+                try {
+                    loaded = load(listId);
+                } catch (RuntimeException ex) {
+                    if (e == null || !VezhaDbRepository.isTimeout(ex)) {
+                        throw ex;
+                    }
+                    // keep serving the previous snapshot; it is not re-stamped, so the next read retries
+                    log.warn("[DIRECTORY] Reload of list {} timed out, serving cached items: {}", listId, ex.getMessage());
+                    return e;
+                }
+                e = index(loaded, fingerprint, now);
+                log.debug("[DIRECTORY] Loaded {} items for list {}", e.items().size(), listId);
+            }
+            entries.put(listId, e);
+            return e;
+        }
+    }
+
+    /** REST fingerprints only count items, so a REST-loaded list is reloaded once it reaches the max age. */
+    private boolean tooOld(Entry e, long now) {
+        return !vezhaDbProps.isEnabled() && now - e.loadedAtMillis() >= vezhaApiProps.getListItemMaxAge().toMillis();
+    }
+
+    private Long fingerprint(Long listId) {
+        try {
+            if (vezhaDbProps.isEnabled()) {
+                return vezhaDbRepository.findListItemsFingerprint(listId);
+            }
+            ListItemsResponse head = faceApiRepository.getListItems(listId, "", "", 0, 1, "asc", "name");
+            return head == null || head.getTotal() == null ? null : head.getTotal().longValue();
+        } catch (Exception ex) {
+            log.warn("[DIRECTORY] Fingerprint for list {} failed, reloading: {}", listId, ex.getMessage());
+            return null;
+        }
+    }
+
+    private Map<Long, Long> fingerprints(Collection<Long> listIds) {
+        try {
+            return vezhaDbRepository.findListItemsFingerprints(listIds);
+        } catch (Exception ex) {
+            log.warn("[DIRECTORY] Fingerprints for lists {} failed, reloading: {}", listIds, ex.getMessage());
+            return Map.of();
+        }
+    }
+
+    private List<ListItemDto> load(Long listId) {
+        if (vezhaDbProps.isEnabled()) {
+            return vezhaDbRepository.findListItems(listId, ListItemImages.FIRST);
+        }
+        int pageSize = Math.max(1, vezhaApiProps.getListItemPageSize());
+        Map<Long, ListItemDto> byId = new LinkedHashMap<>();
+        int offset = 0;
+        int pagesRead = 0;
+        while (pagesRead++ < MAX_LIST_ITEMS_PAGES) {
+            int before = byId.size();
+            int read = faceApiRepository.streamListItems(listId, "", "", offset, pageSize, "asc", "name", item -> {
+                if (item.getId() != null) {
+                    byId.putIfAbsent(item.getId(), item);
+                }
+            });
+            if (read < pageSize) {
+                break;
+            }
+            if (byId.size() == before) {
+                log.warn("[DIRECTORY] Stopping list-item pagination for list {} because no new items were discovered at offset {}.",
+                        listId, offset);
+                break;
+            }
+            offset += pageSize;
+        }
+        if (pagesRead > MAX_LIST_ITEMS_PAGES) {
+            log.warn("[DIRECTORY] Stopped list-item pagination for list {} after hitting the safety page limit of {}.",
+                    listId, MAX_LIST_ITEMS_PAGES);
+        }
+        return new ArrayList<>(byId.values());
+    }
+
+    private static Entry index(List<ListItemDto> loaded, Long fingerprint, long now) {
+        List<ListItemDto> items = loaded == null ? List.of() : loaded.stream().filter(Objects::nonNull).toList();
+        Map<Long, ListItemDto> byId = new HashMap<>();
+        Map<String, List<ListItemDto>> byName = new HashMap<>();
+        Map<String, Long> idByExactName = new HashMap<>();
+        for (ListItemDto item : items) {
+            Long id = item.getId();
+            if (id == null || byId.putIfAbsent(id, item) != null) {
+                continue;
+            }
+            String key = normalizeName(item.getName());
+            if (key != null) {
+                byName.computeIfAbsent(key, k -> new ArrayList<>(1)).add(item);
+                idByExactName.putIfAbsent(item.getName().trim(), id);
+            }
+        }
+        return new Entry(items, Collections.unmodifiableMap(byId), Collections.unmodifiableMap(byName),
+                Collections.unmodifiableMap(idByExactName), fingerprint, now, now);
+    }
+
+    private static Entry emptyEntry() {
+        return new Entry(List.of(), Map.of(), Map.of(), Map.of(), null, 0, 0);
+    }
+}
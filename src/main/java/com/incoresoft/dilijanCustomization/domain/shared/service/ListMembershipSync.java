@@ -0,0 +1,106 @@
+package com.incoresoft.dilijanCustomization.domain.shared.service;
+
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListMembership;
+import com.incoresoft.dilijanCustomization.repository.ListItemImages;
+import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps an in-memory roster (items without images) per list and brings it up to date incrementally, for callers
+ * that need every item on each run (evacuation status refresh):
+ * <ul>
+ *     <li>the list fingerprint (count/max id/text hash/image count, one row) is unchanged: nothing is read;</li>
+ *     <li>otherwise the per-item digests (id + name/comment hash) are diffed against the previous ones and only
+ *     added and changed items are fetched by id; removed ids are reported so callers can prune their own rows.</li>
+ * </ul>
+ * The first sync of a list reports every item as added.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ListMembershipSync {
+
+    private final VezhaDbRepository vezhaDbRepository;
+
+    private final Map<Long, Roster> rosters = new ConcurrentHashMap<>();
+    private final Map<Long, Object> locks = new ConcurrentHashMap<>();
+
+    private record Roster(Long fingerprint, Map<Long, Long> digests, TreeMap<Long, ListItemDto> items) {
+    }
+
+    public ListMembership sync(Long listId) {
+        synchronized (lock(listId)) {
+            Long fingerprint = vezhaDbRepository.findListItemsFingerprint(listId);
+            Roster previous = rosters.get(listId);
+            if (previous != null && fingerprint != null && fingerprint.equals(previous.fingerprint())) {
+                return new ListMembership(List.copyOf(previous.items().values()), Set.of(), Set.of(), Set.of());
+            }
+            Map<Long, Long> digests = vezhaDbRepository.findListItemDigests(listId);
+            Map<Long, Long> previousDigests = previous != null ? previous.digests() : Map.of();
+            TreeMap<Long, ListItemDto> items = previous != null ? new TreeMap<>(previous.items()) : new TreeMap<>();
+
+            Set<Long> added = new HashSet<>();
+            Set<Long> changed = new HashSet<>();
+            digests.forEach((id, digest) -> {
+                Long before = previousDigests.get(id);
+                if (before == null) {
+                    added.add(id);
+                } else if (!before.equals(digest)) {
+                    changed.add(id);
+                }
+            });
+            Set<Long> removed = new HashSet<>(previousDigests.keySet());
+            removed.removeAll(digests.keySet());
+            removed.forEach(items::remove);
+
+            List<Long> fetch = new ArrayList<>(added);
+            fetch.addAll(changed);
+            Set<Long> fetched = new HashSet<>();
+            for (ListItemDto item : vezhaDbRepository.findListItemsByIds(fetch, ListItemImages.NONE)) {
+                if (Objects.equals(item.getListId(), listId)) {
+                    items.put(item.getId(), item);
+                    fetched.add(item.getId());
+                }
+            }
+            // deleted (or moved) between the digest and the fetch: the next fingerprint change picks them up
+            Map<Long, Long> kept = new HashMap<>(digests);
+            for (Long id : fetch) {
+                if (!fetched.contains(id)) {
+                    kept.remove(id);
+                    items.remove(id);
+                }
+            }
+            added.retainAll(fetched);
+            changed.retainAll(fetched);
+
+            rosters.put(listId, new Roster(fingerprint, Map.copyOf(kept), items));
+            if (previous != null) {
+                log.info("[MEMBERSHIP] list {}: +{} ~{} -{} of {} item(s)",
+                        listId, added.size(), changed.size(), removed.size(), items.size());
+            }
+            return new ListMembership(List.copyOf(items.values()), Set.copyOf(added), Set.copyOf(changed), Set.copyOf(removed));
+        }
+    }
+
+    /** Drops the roster so the next sync reloads the list from scratch. */
+    public void invalidate(Long listId) {
+        rosters.remove(listId);
+    }
+
+    private Object lock(Long listId) {
+        return locks.computeIfAbsent(listId, id -> new Object());
+    }
+}
@@ -0,0 +1,129 @@
+package com.incoresoft.dilijanCustomization.domain.shared.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.incoresoft.dilijanCustomization.config.VezhaDbProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.QueryPlanReport;
+import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
+import com.incoresoft.dilijanCustomization.repository.VezhaHotQuery;
+import com.incoresoft.dilijanCustomization.repository.VezhaTrafficClass;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * On-demand query plans for the hot VEZHA DB reads ({@link VezhaHotQuery}). Each hot query is replayed
+ * with the parameters it last ran with under {@code EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON)} on the batch
+ * pool. Sequential scans that read at least {@code vezha.db.explain.seq-scan-rows} rows are flagged, and
+ * each flagged relation gets the composite index that serves the query. The last
+ * {@code vezha.db.explain.history-size} reports are kept in memory so plans can be compared as
+ * {@code face_detections} grows.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueryPlanDiagnostics {
+
+    private final VezhaDbRepository vezhaDbRepository;
+    private final VezhaDbProps vezhaDbProps;
+    private final ObjectMapper objectMapper;
+
+    private final Deque<QueryPlanReport> history = new ArrayDeque<>();
+
+    /**
+     * Explains each of {@code queries} that has run since startup; queries that have not run, or whose
+     * EXPLAIN fails, are skipped.
+     */
+    public List<QueryPlanReport> explain(Collection<VezhaHotQuery> queries) {
+        List<QueryPlanReport> reports = new ArrayList<>();
+        for (VezhaHotQuery query : queries) {
+            try {
+                Optional<VezhaDbRepository.ExplainedStatement> explained =
+                        VezhaTrafficClass.BACKGROUND.supply(() -> vezhaDbRepository.explain(query));
+                if (explained.isEmpty()) {
+                    log.info("[EXPLAIN] {} has not run since startup; nothing to explain", query);
+                    continue;
+                }
+                QueryPlanReport report = analyze(explained.get(), Instant.now());
+                log.info("[EXPLAIN] {}: planning {} ms, execution {} ms, {} flagged seq scan(s)", query,
+                        report.planningMillis(), report.executionMillis(), report.seqScans().size());
+                remember(report);
+                reports.add(report);
+            } catch (Exception e) {
+                log.warn("[EXPLAIN] Failed to explain {}: {}", query, e.getMessage());
+            }
+        }
+        return reports;
+    }
+
+    /** Stored reports, newest first. */
+    public synchronized List<QueryPlanReport> history() {
+        return List.copyOf(history);
+    }
+
+    QueryPlanReport analyze(VezhaDbRepository.ExplainedStatement explained, Instant at) throws JsonProcessingException {
+        JsonNode plan = objectMapper.readTree(explained.planJson());
+        JsonNode top = plan.isArray() ? plan.path(0) : plan;
+        JsonNode root = top.path("Plan");
+
+        List<QueryPlanReport.SeqScan> seqScans = new ArrayList<>();
+        collectSeqScans(root, seqScans);
+        Set<String> indexes = new LinkedHashSet<>();
+        for (QueryPlanReport.SeqScan scan : seqScans) {
+            String columns = explained.query().indexes().get(scan.relation());
+            if (columns != null) {
+                indexes.add(createIndex(scan.relation(), columns));
+            }
+        }
+        return new QueryPlanReport(
+                explained.query(),
+                explained.sql(),
+                at,
+                top.path("Planning Time").asDouble(),
+                top.path("Execution Time").asDouble(),
+                root.path("Shared Hit Blocks").asLong(),
+                root.path("Shared Read Blocks").asLong(),
+                List.copyOf(seqScans),
+                List.copyOf(indexes),
+                plan
+        );
+    }
+
+    private void collectSeqScans(JsonNode node, List<QueryPlanReport.SeqScan> out) {
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            long perLoop = node.path("Actual Rows").asLong() + node.path("Rows Removed by Filter").asLong();
+            long rows = perLoop * Math.max(1, node.path("Actual Loops").asLong());
+            if (rows >= vezhaDbProps.getExplain().getSeqScanRows()) {
+                String filter = node.hasNonNull("Filter") ? node.get("Filter").asText() : null;
+                out.add(new QueryPlanReport.SeqScan(node.path("Relation Name").asText(), rows, filter));
+            }
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSeqScans(child, out);
+        }
+    }
+
+    private String createIndex(String relation, String columns) {
+        String name = relation + "_" + columns.replace(" DESC", "").replace(", ", "_") + "_idx";
+        return "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name
+                + " ON " + vezhaDbProps.resolveSchema() + "." + relation + " (" + columns + ")";
+    }
+
+    private synchronized void remember(QueryPlanReport report) {
+        history.addFirst(report);
+        while (history.size() > Math.max(1, vezhaDbProps.getExplain().getHistorySize())) {
+            history.removeLast();
+        }
+    }
+}
@@ -1,27 +1,44 @@
 package com.incoresoft.dilijanCustomization.domain.shared.service;
 
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.CafeteriaPivot;
 import com.incoresoft.dilijanCustomization.domain.attendance.dto.CafeteriaPivotRow;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealHistoryFormat;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealHistoryRow;
 import com.incoresoft.dilijanCustomization.domain.evacuation.dto.EvacuationReportRow;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListDto;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
-import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
+import com.incoresoft.dilijanCustomization.repository.AsyncFaceApiRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddressList;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
 import org.springframework.util.StringUtils;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Slf4j
 @Service
@@ -40,60 +57,39 @@ public class ReportService {
     private static final String CHECKBOX_UNCHECKED = "☐";
     private static final String[] EVAC_CHECKBOX_OPTIONS = {CHECKBOX_CHECKED, CHECKBOX_UNCHECKED};
     private static final List<String> COLUMNS = List.of("Category", "Breakfast", "Lunch", "Dinner", "Total");
-
-    private final FaceApiRepository repo;
+    private static final int COL_WIDTH_CATEGORY = 40 * 256;
+    private static final int COL_WIDTH_COUNT    = 12 * 256;
+    private static final int STREAMING_ROW_WINDOW = 100;
+    private static final String SUMMARY_SHEET_NAME = "Summary";
+    private static final List<String> HISTORY_COLUMNS =
+            List.of("Date", "Meal", "List", "Person", "List item ID", "First seen", "Camera (analytics ID)");
+    private static final int[] HISTORY_COL_WIDTHS = {12 * 256, 12 * 256, 30 * 256, 40 * 256, 14 * 256, 22 * 256, 22 * 256};
+    /** Excel row limit minus the header row; further rows continue on a new sheet */
+    private static final int HISTORY_ROWS_PER_SHEET = 1_048_575;
+    private static final String HISTORY_SHEET_NAME = "History";
+    private static final DateTimeFormatter HISTORY_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final AsyncFaceApiRepository repo;
 
     /**
      * Create a single-sheet XLSX with columns:
      * Category | Breakfast | Lunch | Dinner | Total
      */
     public File exportCafeteriaPivot(LocalDate date, String sheetName, List<CafeteriaPivotRow> rows, File outFile) {
+        return exportCafeteriaPivot(date, sheetName, new CafeteriaPivot(rows, null), outFile);
+    }
+
+    /**
+     * Same as {@link #exportCafeteriaPivot(LocalDate, String, List, File)}, plus a campus-wide
+     * "Unique people" row below the Grand Total when {@link CafeteriaPivot#uniquePeople()} is set.
+     */
+    public File exportCafeteriaPivot(LocalDate date, String sheetName, CafeteriaPivot pivot, File outFile) {
         try (Workbook wb = new XSSFWorkbook()) {
             Sheet sh = wb.createSheet(sheetName);
-
-            // Header style
-            CellStyle headerStyle = wb.createCellStyle();
-            Font headerFont = wb.createFont();
-            headerFont.setBold(true);
-            headerStyle.setFont(headerFont);
-
-            // Header
-            Row header = sh.createRow(0);
-            header.setHeightInPoints(18f);
-            for (int i = 0; i < COLUMNS.size(); i++) {
-                createCell(header, i, COLUMNS.get(i), headerStyle);
-            }
-
-            // Body
-            int rowIdx = 1;
-            for (CafeteriaPivotRow rd : rows) {
-                Row row = sh.createRow(rowIdx++);
-                createCell(row, 0, rd.category(), null);
-                createNumericCell(row, 1, rd.breakfast(), null);
-                createNumericCell(row, 2, rd.lunch(), null);
-                createNumericCell(row, 3, rd.dinner(), null);
-                createNumericCell(row, 4, rd.total(), null);
-            }
-
-            // Grand total
-            Row totalRow = sh.createRow(rowIdx);
-            createCell(totalRow, 0, "Grand Total", headerStyle);
-            if (!rows.isEmpty()) {
-                int firstDataRow = 2; // header is row 1
-                int lastDataRow = 1 + rows.size();
-                createFormula(totalRow, 1, String.format("SUM(B%d:B%d)", firstDataRow, lastDataRow), headerStyle);
-                createFormula(totalRow, 2, String.format("SUM(C%d:C%d)", firstDataRow, lastDataRow), headerStyle);
-                createFormula(totalRow, 3, String.format("SUM(D%d:D%d)", firstDataRow, lastDataRow), headerStyle);
-                createFormula(totalRow, 4, String.format("SUM(E%d:E%d)", firstDataRow, lastDataRow), headerStyle);
-            } else {
-                createNumericCell(totalRow, 1, 0, headerStyle);
-                createNumericCell(totalRow, 2, 0, headerStyle);
-                createNumericCell(totalRow, 3, 0, headerStyle);
-                createNumericCell(totalRow, 4, 0, headerStyle);
-            }
+            writePivotSheet(sh, pivot, pivotHeaderStyle(wb));
 
             // Autosize
-            for (int c = 0; c <= 4; c++) sh.autoSizeColumn(c);
+            for (int c = 0; c < COLUMNS.size(); c++) sh.autoSizeColumn(c);
 
             try (FileOutputStream fos = new FileOutputStream(outFile)) {
                 wb.write(fos);
@@ -106,12 +102,64 @@ public class ReportService {
         return outFile;
     }
 
+    /**
+     * Multi-day cafeteria workbook: a "Summary" sheet (per-list sums over the range) followed by
+     * one pivot sheet per day. Uses a streaming SXSSF workbook, so only a small window of rows is
+     * kept in memory; {@code dayRows} is called in date order and may block until that day is ready.
+     */
+    public File exportCafeteriaRange(LocalDate from, LocalDate to, List<LocalDate> days,
+                                     Function<LocalDate, CafeteriaPivot> dayRows, File outFile) {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(STREAMING_ROW_WINDOW)) {
+            try {
+                writeCafeteriaRange(wb, days, dayRows);
+                try (FileOutputStream fos = new FileOutputStream(outFile)) {
+                    wb.write(fos);
+                }
+            } finally {
+                // Removes the temp files backing flushed rows
+                wb.dispose();
+            }
+            log.info("Attendance range report {}..{} written to excel: {}", from, to, outFile.getAbsolutePath());
+        } catch (IOException e) {
+            log.error("[CREATE ATTENDANCE RANGE REPORT]", e);
+            throw new RuntimeException(e);
+        }
+        return outFile;
+    }
+
+    /**
+     * Per-person meal history: one row per person per meal window, written while {@code producer}
+     * pushes rows into the supplied sink. XLSX goes through a streaming SXSSF workbook (new sheet
+     * every {@value #HISTORY_ROWS_PER_SHEET} rows), CSV is written line by line, so memory does not
+     * grow with the number of rows.
+     *
+     * @param zone timezone used to format first-seen times
+     * @return number of rows written
+     */
+    public long exportMealHistory(MealHistoryFormat format, ZoneId zone,
+                                  Consumer<Consumer<MealHistoryRow>> producer, File outFile) {
+        try {
+            long rows = format == MealHistoryFormat.CSV
+                    ? writeMealHistoryCsv(zone, producer, outFile)
+                    : writeMealHistoryXlsx(zone, producer, outFile);
+            log.info("Meal history ({} rows) written to {}: {}", rows, format, outFile.getAbsolutePath());
+            return rows;
+        } catch (IOException e) {
+            log.error("[CREATE MEAL HISTORY REPORT]", e);
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Build an XLSX with a sheet per list: Status | Photo | ID | Name | Comment.
-     * Downloads and embeds the first image for each ListItemDto (if present).
+     * Downloads and embeds the first image for each ListItemDto (if present); a sheet's photos are
+     * requested concurrently before its rows are written. Downloads are streamed to a temporary directory
+     * and read back one at a time while embedding, so only the workbook itself holds image bytes.
      */
     public File exportEvacuationWorkbook(Map<FaceListDto, List<EvacuationReportRow>> data, File outFile) {
+        Path photoDir = null;
         try (Workbook wb = new XSSFWorkbook()) {
+            photoDir = Files.createTempDirectory("evacuation-photos");
             for (Map.Entry<FaceListDto, List<EvacuationReportRow>> e : data.entrySet()) {
                 FaceListDto list = e.getKey();
                 List<EvacuationReportRow> items = e.getValue();
@@ -142,6 +190,7 @@ public class ReportService {
                 header.setHeightInPoints(24f);
 
                 Drawing<?> drawing = sh.createDrawingPatriarch();
+                Map<String, CompletableFuture<Path>> photos = prefetchPhotos(items, photoDir);
 
                 int r = 1;
                 for (EvacuationReportRow rowData : items) {
@@ -161,8 +210,8 @@ public class ReportService {
                     try {
                         String firstImagePath = firstImagePath(item);
                         if (StringUtils.hasText(firstImagePath)) {
-                            byte[] img = repo.downloadStorageObject(firstImagePath);
-                            if (img != null && img.length > 0) {
+                            byte[] img = readAndDelete(photos.get(firstImagePath).join());
+                            if (img.length > 0) {
                                 int picIdx = wb.addPicture(img, Workbook.PICTURE_TYPE_JPEG);
                                 CreationHelper helper = wb.getCreationHelper();
                                 ClientAnchor anchor = helper.createClientAnchor();
@@ -214,10 +263,205 @@ public class ReportService {
         } catch (IOException e) {
             log.error("[CREATE EVACUATION REPORT]", e);
             throw new RuntimeException(e);
+        } finally {
+            deletePhotoDir(photoDir);
         }
         return outFile;
     }
 
+    private static void writeCafeteriaRange(Workbook wb, List<LocalDate> days,
+                                            Function<LocalDate, CafeteriaPivot> dayRows) {
+        CellStyle headerStyle = pivotHeaderStyle(wb);
+        // Created first so it is the first tab; filled once all days have been written
+        Sheet summary = wb.createSheet(SUMMARY_SHEET_NAME);
+        Map<String, int[]> totalsByCategory = new LinkedHashMap<>();
+        int[] uniqueTotals = null;
+
+        for (LocalDate day : days) {
+            CafeteriaPivot pivot = dayRows.apply(day);
+            Sheet sh = wb.createSheet(day.toString());
+            writePivotSheet(sh, pivot, headerStyle);
+            applyPivotColumnWidths(sh);
+            for (CafeteriaPivotRow row : pivot.rows()) {
+                accumulate(totalsByCategory.computeIfAbsent(row.category(), k -> new int[3]), row);
+            }
+            if (pivot.uniquePeople() != null) {
+                if (uniqueTotals == null) uniqueTotals = new int[3];
+                accumulate(uniqueTotals, pivot.uniquePeople());
+            }
+        }
+
+        List<CafeteriaPivotRow> summaryRows = totalsByCategory.entrySet().stream()
+                .map(e -> new CafeteriaPivotRow(e.getKey(), e.getValue()[0], e.getValue()[1], e.getValue()[2]))
+                .toList();
+        // Summed daily headcounts: person-days per window over the range
+        CafeteriaPivotRow summaryUnique = uniqueTotals == null ? null
+                : new CafeteriaPivotRow(CafeteriaPivot.UNIQUE_PEOPLE_LABEL, uniqueTotals[0], uniqueTotals[1], uniqueTotals[2]);
+        writePivotSheet(summary, new CafeteriaPivot(summaryRows, summaryUnique), headerStyle);
+        applyPivotColumnWidths(summary);
+    }
+
+    private static void accumulate(int[] acc, CafeteriaPivotRow row) {
+        acc[0] += row.breakfast();
+        acc[1] += row.lunch();
+        acc[2] += row.dinner();
+    }
+
+    private static long writeMealHistoryXlsx(ZoneId zone, Consumer<Consumer<MealHistoryRow>> producer,
+                                             File outFile) throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(STREAMING_ROW_WINDOW)) {
+            try {
+                CellStyle headerStyle = pivotHeaderStyle(wb);
+                long[] written = {0};
+                Sheet[] sheet = {null};
+                int[] rowIdx = {0};
+                producer.accept(r -> {
+                    if (sheet[0] == null || rowIdx[0] > HISTORY_ROWS_PER_SHEET) {
+                        int n = wb.getNumberOfSheets();
+                        sheet[0] = wb.createSheet(n == 0 ? HISTORY_SHEET_NAME : HISTORY_SHEET_NAME + " " + (n + 1));
+                        writeHistoryHeader(sheet[0], headerStyle);
+                        rowIdx[0] = 1;
+                    }
+                    Row row = sheet[0].createRow(rowIdx[0]++);
+                    String[] values = historyValues(r, zone);
+                    for (int c = 0; c < values.length; c++) createCell(row, c, values[c], null);
+                    written[0]++;
+                });
+                if (sheet[0] == null) {
+                    writeHistoryHeader(wb.createSheet(HISTORY_SHEET_NAME), headerStyle);
+                }
+                try (FileOutputStream fos = new FileOutputStream(outFile)) {
+                    wb.write(fos);
+                }
+                return written[0];
+            } finally {
+                wb.dispose();
+            }
+        }
+    }
+
+    private static long writeMealHistoryCsv(ZoneId zone, Consumer<Consumer<MealHistoryRow>> producer,
+                                            File outFile) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(outFile.toPath(), StandardCharsets.UTF_8)) {
+            // BOM so Excel opens UTF-8 names correctly
+            out.write('\uFEFF');
+            writeCsvLine(out, HISTORY_COLUMNS.toArray(String[]::new));
+            long[] written = {0};
+            producer.accept(r -> {
+                try {
+                    writeCsvLine(out, historyValues(r, zone));
+                    written[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return written[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeHistoryHeader(Sheet sh, CellStyle headerStyle) {
+        Row header = sh.createRow(0);
+        for (int i = 0; i < HISTORY_COLUMNS.size(); i++) {
+            createCell(header, i, HISTORY_COLUMNS.get(i), headerStyle);
+            sh.setColumnWidth(i, HISTORY_COL_WIDTHS[i]);
+        }
+    }
+
+    private static String[] historyValues(MealHistoryRow r, ZoneId zone) {
+        return new String[]{
+                r.date().toString(),
+                r.window().label(),
+                nullSafe(r.listName()),
+                nullSafe(r.personName()),
+                r.listItemId() == null ? "" : r.listItemId().toString(),
+                Instant.ofEpochMilli(r.firstSeenAt()).atZone(zone).format(HISTORY_TIME_FORMAT),
+                r.analyticsId() == null ? "" : r.analyticsId().toString()
+        };
+    }
+
+    private static void writeCsvLine(Writer out, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) out.write(',');
+            String v = values[i];
+            if (v.indexOf(',') >= 0 || v.indexOf('"') >= 0 || v.indexOf('\n') >= 0 || v.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(v.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(v);
+            }
+        }
+        out.write("\r\n");
+    }
+
+    /**
+     * Header, one row per category and a "Grand Total" formula row; the Grand Total sums lists,
+     * so the optional "Unique people" row below it is the deduplicated campus headcount.
+     */
+    private static void writePivotSheet(Sheet sh, CafeteriaPivot pivot, CellStyle headerStyle) {
+        List<CafeteriaPivotRow> rows = pivot.rows();
+        // Header
+        Row header = sh.createRow(0);
+        header.setHeightInPoints(18f);
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            createCell(header, i, COLUMNS.get(i), headerStyle);
+        }
+
+        // Body
+        int rowIdx = 1;
+        for (CafeteriaPivotRow rd : rows) {
+            Row row = sh.createRow(rowIdx++);
+            createCell(row, 0, rd.category(), null);
+            createNumericCell(row, 1, rd.breakfast(), null);
+            createNumericCell(row, 2, rd.lunch(), null);
+            createNumericCell(row, 3, rd.dinner(), null);
+            createNumericCell(row, 4, rd.total(), null);
+        }
+
+        // Grand total
+        Row totalRow = sh.createRow(rowIdx);
+        createCell(totalRow, 0, "Grand Total", headerStyle);
+        if (!rows.isEmpty()) {
+            int firstDataRow = 2; // header is row 1
+            int lastDataRow = 1 + rows.size();
+            createFormula(totalRow, 1, String.format("SUM(B%d:B%d)", firstDataRow, lastDataRow), headerStyle);
+            createFormula(totalRow, 2, String.format("SUM(C%d:C%d)", firstDataRow, lastDataRow), headerStyle);
+            createFormula(totalRow, 3, String.format("SUM(D%d:D%d)", firstDataRow, lastDataRow), headerStyle);
+            createFormula(totalRow, 4, String.format("SUM(E%d:E%d)", firstDataRow, lastDataRow), headerStyle);
+        } else {
+            createNumericCell(totalRow, 1, 0, headerStyle);
+            createNumericCell(totalRow, 2, 0, headerStyle);
+            createNumericCell(totalRow, 3, 0, headerStyle);
+            createNumericCell(totalRow, 4, 0, headerStyle);
+        }
+
+        CafeteriaPivotRow unique = pivot.uniquePeople();
+        if (unique != null) {
+            Row uniqueRow = sh.createRow(rowIdx + 1);
+            createCell(uniqueRow, 0, CafeteriaPivot.UNIQUE_PEOPLE_LABEL, headerStyle);
+            createNumericCell(uniqueRow, 1, unique.breakfast(), headerStyle);
+            createNumericCell(uniqueRow, 2, unique.lunch(), headerStyle);
+            createNumericCell(uniqueRow, 3, unique.dinner(), headerStyle);
+            createNumericCell(uniqueRow, 4, unique.total(), headerStyle);
+        }
+    }
+
+    private static CellStyle pivotHeaderStyle(Workbook wb) {
+        CellStyle headerStyle = wb.createCellStyle();
+        Font headerFont = wb.createFont();
+        headerFont.setBold(true);
+        headerStyle.setFont(headerFont);
+        return headerStyle;
+    }
+
+    // Streaming sheets cannot autosize reliably (rows are flushed), so use fixed widths
+    private static void applyPivotColumnWidths(Sheet sh) {
+        sh.setColumnWidth(0, COL_WIDTH_CATEGORY);
+        for (int c = 1; c < COLUMNS.size(); c++) sh.setColumnWidth(c, COL_WIDTH_COUNT);
+    }
+
     // Helpers for cell creation, sheet naming and styling
     private static void createCell(Row row, int col, String value, CellStyle style) {
         Cell cell = row.createCell(col, CellType.STRING);
@@ -264,6 +508,44 @@ public class ReportService {
                 .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
     }
 
+    /** Starts one streamed download per distinct image path; each completes with its file, or null when empty. */
+    private Map<String, CompletableFuture<Path>> prefetchPhotos(List<EvacuationReportRow> rows, Path dir) {
+        Map<String, CompletableFuture<Path>> photos = new HashMap<>();
+        for (EvacuationReportRow row : rows) {
+            String path = firstImagePath(row.item());
+            if (StringUtils.hasText(path)) {
+                photos.computeIfAbsent(path, p -> {
+                    Path file = dir.resolve(UUID.randomUUID() + ".img");
+                    return repo.downloadStorageObjectToFileAsync(p, file).thenApply(written -> written > 0 ? file : null);
+                });
+            }
+        }
+        return photos;
+    }
+
+    /** Reads a downloaded photo and removes it, so the temporary directory only holds photos not embedded yet. */
+    private static byte[] readAndDelete(Path file) throws IOException {
+        if (file == null) {
+            return new byte[0];
+        }
+        try {
+            return Files.readAllBytes(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void deletePhotoDir(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try {
+            FileSystemUtils.deleteRecursively(dir);
+        } catch (IOException e) {
+            log.warn("[CREATE EVACUATION REPORT] Could not delete {}: {}", dir, e.getMessage());
+        }
+    }
+
     private static String firstImagePath(ListItemDto item) {
         try {
             if (item.getImages() != null && !item.getImages().isEmpty()) {
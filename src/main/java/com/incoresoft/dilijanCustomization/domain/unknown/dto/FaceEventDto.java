@@ -43,6 +43,9 @@ public class FaceEventDto {
 
     @Data
     public static class AnalyticsRef {
+        @JsonProperty("id")
+        private Long id;                               // analytics id (cafeteria filter)
+
         @JsonProperty("stream_id")
         private Long streamId;                         // if VEZHA sends it
     }
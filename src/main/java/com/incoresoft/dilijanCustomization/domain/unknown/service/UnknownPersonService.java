@@ -4,19 +4,23 @@ import com.incoresoft.dilijanCustomization.config.UnknownListRegistry;
 import com.incoresoft.dilijanCustomization.config.UnknownProps;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
-import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemsResponse;
+import com.incoresoft.dilijanCustomization.domain.shared.service.ListItemDirectory;
 import com.incoresoft.dilijanCustomization.domain.unknown.dto.FaceEventDto;
 import com.incoresoft.dilijanCustomization.domain.unknown.dto.FromDetectionRequest;
+import com.incoresoft.dilijanCustomization.repository.AsyncFaceApiRepository;
 import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
+import com.incoresoft.dilijanCustomization.repository.VezhaTrafficClass;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
 @Slf4j
@@ -26,7 +30,6 @@ public class UnknownPersonService {
 
     private static final int RECENT_DETECTION_LIMIT = 100;
     private static final int DETECTION_WINDOW_MILLIS = 2000;
-    private static final int CLEAN_PAGE_LIMIT = 500;
     private static final Duration UNKNOWN_RETENTION = Duration.ofHours(24);
     private static final String UNKNOWN_PREFIX = "unknown";
     private static final String UNKNOWN_COMMENT = "auto-unknown";
@@ -34,9 +37,15 @@ public class UnknownPersonService {
     private final FaceApiRepository repo;
     private final UnknownListRegistry unknownListRegistry;
     private final UnknownProps unknownProps;
+    private final AsyncFaceApiRepository asyncRepo;
+    private final ListItemDirectory listItemDirectory;
 
     // ADD flow
     public Optional<ListItemDto> handleEventAddIfUnknown(FaceEventDto event) {
+        return VezhaTrafficClass.WEBHOOK.supply(() -> addIfUnknown(event));
+    }
+
+    private Optional<ListItemDto> addIfUnknown(FaceEventDto event) {
         if (event.isInList()) {
             log.info("[ADD] Skip: already in a list (list_id={})", resolveListId(event));
             return Optional.empty();
@@ -60,30 +69,40 @@ public class UnknownPersonService {
         ListItemDto item = repo.createListItemFromDetection(
                 new FromDetectionRequest(unknownListRegistry.get(), matchingDetection.getId(), name, UNKNOWN_COMMENT));
         log.info("[ADD] created list_item id={}", item.getId());
+        listItemDirectory.invalidate(unknownListRegistry.get());
 
         return Optional.ofNullable(item);
     }
 
     // REMOVE flow
     public boolean handleEventRemoveIfUnknown(FaceEventDto event) {
+        return VezhaTrafficClass.WEBHOOK.supply(() -> removeIfUnknown(event));
+    }
+
+    private boolean removeIfUnknown(FaceEventDto event) {
         if (!isUnknownListEvent(event)) {
             log.info("[REMOVE] Skip: not in unknown list or list_item_id missing");
             return false;
         }
         Long listItemId = event.getFace().getListItem().getId();
         repo.deleteListItem(listItemId);
+        listItemDirectory.invalidate(unknownListRegistry.get());
         log.info("[REMOVE] deleted list_item id={}", listItemId);
         return true;
     }
 
-    // nightly clean
+    // nightly clean (background traffic: never competes with reports for VEZHA capacity)
     @Scheduled(cron = "0 0 * * * *")
     public void cleanUnknownList() {
+        VezhaTrafficClass.BACKGROUND.run(this::applyRetention);
+    }
+
+    private void applyRetention() {
         long cutoffMillis = System.currentTimeMillis() - UNKNOWN_RETENTION.toMillis();
-        int deleted = 0;
         int kept = 0;
+        List<CompletableFuture<Boolean>> deletions = new ArrayList<>();
 
-        for (ListItemDto listItem : fetchListItems(CLEAN_PAGE_LIMIT)) {
+        for (ListItemDto listItem : listItemDirectory.currentItems(unknownListRegistry.get())) {
             if (!isAutogenerated(listItem)) {
                 kept++;
                 continue;
@@ -95,17 +114,20 @@ public class UnknownPersonService {
                 continue;
             }
 
-            if (attemptDelete(listItem)) {
-                deleted++;
-            }
+            deletions.add(attemptDelete(listItem));
+        }
+
+        // deletes run concurrently; wait for all of them before reporting
+        int deleted = (int) deletions.stream().map(CompletableFuture::join).filter(Boolean::booleanValue).count();
+        if (deleted > 0) {
+            listItemDirectory.invalidate(unknownListRegistry.get());
         }
 
         log.info("[CLEAN] Unknown list retention applied (deleted={}, kept={})", deleted, kept);
     }
 
     private String nextUnknownName() {
-        ListItemsResponse resp = repo.getListItems(unknownListRegistry.get(), UNKNOWN_PREFIX, "", 0, 1, "asc", "name");
-        int total = resp.getTotal() == null ? 0 : resp.getTotal();
+        int total = listItemDirectory.searchByName(unknownListRegistry.get(), UNKNOWN_PREFIX).size();
         return UNKNOWN_PREFIX + (total + 1);
     }
 
@@ -207,42 +229,19 @@ public class UnknownPersonService {
                 .orElse(null);
     }
 
-    private List<ListItemDto> fetchListItems(int limit) {
-        List<ListItemDto> allItems = new java.util.ArrayList<>();
-        int offset = 0;
-
-        while (true) {
-            ListItemsResponse response = repo.getListItems(unknownListRegistry.get(), "", "", offset, limit, "asc", "name");
-            List<ListItemDto> pageItems = Optional.ofNullable(response)
-                    .map(ListItemsResponse::getData)
-                    .orElse(List.of());
-            if (pageItems.isEmpty()) {
-                break;
-            }
-
-            allItems.addAll(pageItems);
-            if (pageItems.size() < limit) {
-                break;
-            }
-            offset += limit;
-        }
-        return allItems;
-    }
-
     private boolean isAutogenerated(ListItemDto listItemDto) {
         return listItemDto != null && UNKNOWN_COMMENT.equalsIgnoreCase(listItemDto.getComment());
     }
 
-    private boolean attemptDelete(ListItemDto listItemDto) {
+    private CompletableFuture<Boolean> attemptDelete(ListItemDto listItemDto) {
         if (listItemDto == null || listItemDto.getId() == null) {
-            return false;
-        }
-        try {
-            repo.deleteListItem(listItemDto.getId());
-            return true;
-        } catch (Exception ex) {
-            log.warn("Delete failed id={}: {}", listItemDto.getId(), ex.getMessage());
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
+        return asyncRepo.deleteListItemAsync(listItemDto.getId())
+                .thenApply(ignored -> true)
+                .exceptionally(ex -> {
+                    log.warn("Delete failed id={}: {}", listItemDto.getId(), ex.getMessage());
+                    return false;
+                });
     }
 }
@@ -0,0 +1,378 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionsResponse;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemsResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking counterpart of {@link FaceApiRepository} for fan-out work (report photo prefetch,
+ * unknown-list cleanup). Every call returns immediately; at most {@code vezha.api.async-max-in-flight}
+ * requests are on the wire at once, the rest wait in a queue (ordered by {@link VezhaTrafficClass}) without holding a thread.
+ * Failed requests complete the future exceptionally with a RuntimeException, like the blocking client throws.
+ * Identical list-item and storage reads that overlap share one request. Storage downloads are hedged
+ * and get adaptive timeouts from their observed latency (see {@link HedgingPolicy}); they are collected into
+ * a {@code byte[]} or streamed to a file ({@link #downloadStorageObjectToFileAsync}).
+ */
+@Slf4j
+@Repository
+public class AsyncFaceApiRepository {
+    private static final int DEFAULT_SEARCH_BY_PHOTO_CONFIDENCE = 70;
+    private static final String SEARCH_BY_PHOTO_FILENAME = "face.jpg";
+    private static final int LATENCY_WINDOW = 2048;
+
+    private final HttpClient client;
+    private final VezhaApiProps vezhaApiProps;
+    private final ObjectMapper objectMapper;
+    private final LocalStorageReader localStorage;
+    private final AsyncRequestLimiter limiter;
+    private final SingleFlight<String, ListItemsResponse> listItemsFlights = new SingleFlight<>();
+    private final SingleFlight<String, byte[]> storageFlights = new SingleFlight<>();
+    private final HedgingPolicy storageHedging;
+
+    public AsyncFaceApiRepository(@Qualifier("vezhaAsyncHttpClient") HttpClient client,
+                                  VezhaApiProps vezhaApiProps,
+                                  ObjectMapper objectMapper,
+                                  VezhaTrafficGovernor trafficGovernor,
+                                  LocalStorageReader localStorage) {
+        this.client = client;
+        this.vezhaApiProps = vezhaApiProps;
+        this.objectMapper = objectMapper;
+        this.localStorage = localStorage;
+        this.limiter = new AsyncRequestLimiter(vezhaApiProps.getAsyncMaxInFlight(), trafficGovernor);
+        this.storageHedging = new HedgingPolicy(vezhaApiProps, new LatencyHistogram(LATENCY_WINDOW));
+    }
+
+    // POST /face/detections (empty multipart) + filter query params
+    public CompletableFuture<DetectionsResponse> getDetectionsFilteredAsync(
+            Long listId,
+            List<Long> analyticsIds,
+            Long startMillis,
+            Long endMillis,
+            Integer limit,
+            Integer offset,
+            String sortOrder
+    ) {
+        String url = VezhaApiUrls.detectionsFiltered(vezhaApiProps.getBaseUrl(),
+                listId, analyticsIds, startMillis, endMillis, limit, offset, sortOrder);
+        String boundary = newBoundary();
+        HttpRequest request = apiRequest(url)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofString("--" + boundary + "--\r\n"))
+                .build();
+        return send(request, "GET DETECTIONS").thenApply(body -> decode(body, DetectionsResponse.class));
+    }
+
+    // GET /face/list_items
+    public CompletableFuture<ListItemsResponse> getListItemsAsync(Long listId, String name, String comment,
+                                                                  Integer offset, Integer limit,
+                                                                  String order, String sortBy) {
+        String url = VezhaApiUrls.listItems(vezhaApiProps.getBaseUrl(), listId, name, comment, offset, limit, order, sortBy);
+        return listItemsFlights.runAsync(url, () -> {
+            HttpRequest request = apiRequest(url).GET().build();
+            return send(request, "GET LIST ITEMS").thenApply(body -> decode(body, ListItemsResponse.class));
+        });
+    }
+
+    // DELETE /face/list_items/{id}
+    public CompletableFuture<Void> deleteListItemAsync(Long id) {
+        String url = VezhaApiUrls.api(vezhaApiProps.getBaseUrl(), "/face/list_items/" + id).build().toUriString();
+        HttpRequest request = apiRequest(url).DELETE().build();
+        return send(request, "DELETE LIST ITEM").thenApply(body -> null);
+    }
+
+    /**
+     * Storage objects (face images); blank paths complete with an empty array without a request, and files
+     * found under the local storage mount complete immediately from disk.
+     */
+    public CompletableFuture<byte[]> downloadStorageObjectAsync(String imagePath) {
+        if (imagePath == null || imagePath.isBlank()) {
+            return CompletableFuture.completedFuture(new byte[0]);
+        }
+        Optional<byte[]> local = localStorage.read(imagePath);
+        if (local.isPresent()) {
+            return CompletableFuture.completedFuture(local.get());
+        }
+        return storageFlights.runAsync(imagePath, () -> hedged(storageHedging, () -> {
+            HttpRequest request = storageRequest(imagePath);
+            return send(request, "DOWNLOAD", storageHedging.latency(), cappedBody(vezhaApiProps.getStorageMaxObjectSize().toBytes(), request));
+        }));
+    }
+
+    /**
+     * Streams a storage object into {@code file} instead of collecting it on the heap: the response body goes
+     * through the HTTP client's own bounded buffers into a sibling {@code .part} file that is moved into place
+     * only when complete, so a failed, oversized or losing hedged attempt never leaves a partial file. Files on
+     * the local storage mount are copied channel to channel. Same size cap and hedging as
+     * {@link #downloadStorageObjectAsync}; there is no request sharing, callers pick distinct files.
+     *
+     * @return number of bytes written; 0 for a blank path, in which case {@code file} is not touched
+     */
+    public CompletableFuture<Long> downloadStorageObjectToFileAsync(String imagePath, Path file) {
+        if (imagePath == null || imagePath.isBlank()) {
+            return CompletableFuture.completedFuture(0L);
+        }
+        long maxBytes = vezhaApiProps.getStorageMaxObjectSize().toBytes();
+        try {
+            Path part = partFile(file);
+            OptionalLong local;
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                local = localStorage.transferTo(imagePath, channel, maxBytes);
+            }
+            if (local.isPresent()) {
+                Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return CompletableFuture.completedFuture(local.getAsLong());
+            }
+            Files.deleteIfExists(part);
+        } catch (IOException e) {
+            log.warn("[DOWNLOAD] {} -> {}: {}", imagePath, file, e.getMessage());
+            return CompletableFuture.failedFuture(new UncheckedIOException(e));
+        }
+        return hedged(storageHedging, () -> {
+            HttpRequest request = storageRequest(imagePath);
+            Path part;
+            try {
+                part = partFile(file);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(new UncheckedIOException(e));
+            }
+            return exchange(request, storageHedging.latency(), cappedFileBody(maxBytes, request, part))
+                    .thenApply(resp -> {
+                        try {
+                            long written = Files.size(part);
+                            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                            return written;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .whenComplete((written, error) -> {
+                        if (error != null) {
+                            deleteQuietly(part);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Same contract as {@link FaceApiRepository#isFaceUniqueInLists}: an empty result ("[]") means unique,
+     * and any failure resolves to {@code false} rather than failing the future.
+     */
+    public CompletableFuture<Boolean> isFaceUniqueInListsAsync(byte[] faceImage, Integer confidence) {
+        if (faceImage == null || faceImage.length == 0) {
+            return CompletableFuture.completedFuture(false);
+        }
+        String url = VezhaApiUrls.api(vezhaApiProps.getBaseUrl(), "/face/list_items/search_by_photo")
+                .queryParam("confidence", confidence == null ? DEFAULT_SEARCH_BY_PHOTO_CONFIDENCE : confidence)
+                .build()
+                .toUriString();
+        String boundary = newBoundary();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(vezhaApiProps.getReadTimeout())
+                .header("Authorization", "Bearer " + vezhaApiProps.getToken())
+                .header("Accept", "application/json, text/plain, */*")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(imagePart(boundary, faceImage)))
+                .build();
+        return send(request, "SEARCH BY PHOTO")
+                .thenApply(body -> new String(body, StandardCharsets.UTF_8).trim().length() <= 2)
+                .exceptionally(e -> false);
+    }
+
+    /**
+     * Starts {@code attempt}; if it has not finished after the policy's hedge delay and the budget allows,
+     * starts a second one and completes with whichever succeeds first. Fails only when every started attempt failed.
+     */
+    private <T> CompletableFuture<T> hedged(HedgingPolicy policy, Supplier<CompletableFuture<T>> attempt) {
+        policy.onRequest();
+        CompletableFuture<T> primary = attempt.get();
+        Optional<Duration> delay = policy.hedgeDelay();
+        if (delay.isEmpty()) {
+            return primary;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // the backup starts on a timer thread; keep the caller's traffic class
+        VezhaTrafficClass trafficClass = VezhaTrafficClass.current();
+        AtomicInteger pending = new AtomicInteger(1);
+        BiConsumer<T, Throwable> settle = (value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        };
+        primary.whenComplete(settle);
+        CompletableFuture.delayedExecutor(delay.get().toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            // a fast failure is not a latency tail; only hedge while the primary is still running
+            if (result.isDone() || !policy.tryAcquireHedge() || pending.getAndUpdate(n -> n == 0 ? 0 : n + 1) == 0) {
+                return;
+            }
+            log.debug("[HEDGE] Backup request after {} ms", delay.get().toMillis());
+            trafficClass.supply(attempt).whenComplete(settle);
+        });
+        return result;
+    }
+
+    private CompletableFuture<byte[]> send(HttpRequest request, String tag) {
+        return send(request, tag, null, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private CompletableFuture<byte[]> send(HttpRequest request, String tag, LatencyHistogram latency,
+                                           HttpResponse.BodyHandler<byte[]> bodyHandler) {
+        return exchange(request, latency, bodyHandler)
+                .thenApply(resp -> {
+                    if (resp.statusCode() / 100 != 2) {
+                        throw failure(request, resp.statusCode(), resp.body(), tag);
+                    }
+                    return resp.body() == null ? new byte[0] : resp.body();
+                });
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> exchange(HttpRequest request, LatencyHistogram latency,
+                                                           HttpResponse.BodyHandler<T> bodyHandler) {
+        return limiter.submit(() -> {
+            long started = System.nanoTime();
+            CompletableFuture<HttpResponse<T>> call = client.sendAsync(request, bodyHandler);
+            return latency == null ? call
+                    : call.whenComplete((resp, error) -> {
+                        if (error == null) {
+                            latency.record(System.nanoTime() - started);
+                        }
+                    });
+        });
+    }
+
+    private static RuntimeException failure(HttpRequest request, int status, byte[] responseBody, String tag) {
+        String body = responseBody == null ? "" : new String(responseBody, StandardCharsets.UTF_8).trim();
+        String message = String.format("%d on %s request for \"%s\"%s",
+                status, request.method(), request.uri(), body.isEmpty() ? "" : ": \"" + body + "\"");
+        log.warn("[{}] {}", tag, message);
+        return new RuntimeException(message);
+    }
+
+    /**
+     * Fails the request when a successful response body is over {@code maxBytes}: by its declared Content-Length
+     * before anything is read, otherwise as soon as the received bytes pass the cap.
+     */
+    private static HttpResponse.BodyHandler<byte[]> cappedBody(long maxBytes, HttpRequest request) {
+        return info -> {
+            if (info.statusCode() / 100 != 2) {
+                return HttpResponse.BodySubscribers.ofByteArray();
+            }
+            long declared = info.headers().firstValueAsLong("Content-Length").orElse(-1L);
+            if (declared <= maxBytes) {
+                return new CappedBodySubscriber<>(HttpResponse.BodySubscribers.ofByteArray(), maxBytes, request.uri().toString());
+            }
+            return tooLarge(request, declared, maxBytes);
+        };
+    }
+
+    /** {@link #cappedBody} writing a successful body to {@code part}; an error response fails with its text. */
+    private static HttpResponse.BodyHandler<Path> cappedFileBody(long maxBytes, HttpRequest request, Path part) {
+        return info -> {
+            if (info.statusCode() / 100 != 2) {
+                return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), body -> {
+                    throw failure(request, info.statusCode(), body, "DOWNLOAD");
+                });
+            }
+            long declared = info.headers().firstValueAsLong("Content-Length").orElse(-1L);
+            if (declared <= maxBytes) {
+                return new CappedBodySubscriber<>(HttpResponse.BodySubscribers.ofFile(part), maxBytes, request.uri().toString());
+            }
+            return tooLarge(request, declared, maxBytes);
+        };
+    }
+
+    private static <T> HttpResponse.BodySubscriber<T> tooLarge(HttpRequest request, long declared, long maxBytes) {
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.discarding(), ignored -> {
+            throw new UncheckedIOException(new IOException(
+                    request.uri() + " is " + declared + " bytes, over the " + maxBytes + " byte limit"));
+        });
+    }
+
+    private HttpRequest storageRequest(String imagePath) {
+        return HttpRequest.newBuilder(URI.create(VezhaApiUrls.storage(vezhaApiProps.getBaseUrl(), imagePath)))
+                .timeout(storageHedging.timeout())
+                .header("Authorization", "Bearer " + vezhaApiProps.getToken())
+                .header("Accept", "image/avif,image/webp,image/apng,image/svg+xml,image/jpeg,image/png,*/*")
+                .GET()
+                .build();
+    }
+
+    /** A fresh {@code .part} file next to {@code file}; every attempt writes its own. */
+    private static Path partFile(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        return Files.createTempFile(dir, file.getFileName().toString(), ".part");
+    }
+
+    private static void deleteQuietly(Path part) {
+        try {
+            Files.deleteIfExists(part);
+        } catch (IOException e) {
+            log.warn("[DOWNLOAD] Could not delete {}: {}", part, e.getMessage());
+        }
+    }
+
+    /** Observed storage latency and hedge counters, for tests and diagnostics. */
+    HedgingPolicy storageHedging() {
+        return storageHedging;
+    }
+
+    private HttpRequest.Builder apiRequest(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(vezhaApiProps.getReadTimeout())
+                .header("Authorization", "Bearer " + vezhaApiProps.getToken())
+                .header("Accept", "application/json");
+    }
+
+    private <T> T decode(byte[] body, Class<T> type) {
+        try {
+            return body.length == 0 ? null : objectMapper.readValue(body, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode " + type.getSimpleName(), e);
+        }
+    }
+
+    private static String newBoundary() {
+        return "vezha-" + UUID.randomUUID();
+    }
+
+    private static byte[] imagePart(String boundary, byte[] image) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(image.length + 256);
+        String head = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"image\"; filename=\"" + SEARCH_BY_PHOTO_FILENAME + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n";
+        out.writeBytes(head.getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(image);
+        out.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+}
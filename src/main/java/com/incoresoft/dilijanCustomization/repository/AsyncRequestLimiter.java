@@ -0,0 +1,107 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of in-flight async requests without blocking the submitting thread: calls over
+ * the limit are queued and started as earlier ones complete. The queue is ordered by the submitter's
+ * {@link VezhaTrafficClass}, and a call only starts once the {@link VezhaTrafficGovernor} admits its class,
+ * so emergency requests overtake queued background work and a saturated class does not hold up the others.
+ */
+final class AsyncRequestLimiter {
+    /** Re-check interval while queued calls wait for a rate-limit token rather than a completion. */
+    private static final Executor RETRY = CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS);
+
+    private record Pending(VezhaTrafficClass trafficClass, long seq, Consumer<VezhaTrafficGovernor.Permit> start) {
+    }
+
+    private final Semaphore permits;
+    private final VezhaTrafficGovernor governor;
+    private final NavigableSet<Pending> waiting = new TreeSet<>(
+            Comparator.comparing(Pending::trafficClass).thenComparingLong(Pending::seq));
+    private final AtomicBoolean retryScheduled = new AtomicBoolean();
+    private long sequence;
+
+    AsyncRequestLimiter(int maxInFlight, VezhaTrafficGovernor governor) {
+        this.permits = new Semaphore(Math.max(1, maxInFlight));
+        this.governor = governor;
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        VezhaTrafficClass trafficClass = VezhaTrafficClass.current();
+        synchronized (waiting) {
+            waiting.add(new Pending(trafficClass, sequence++, permit -> start(call, result, permit)));
+        }
+        drain();
+        return result;
+    }
+
+    int available() {
+        return permits.availablePermits();
+    }
+
+    private <T> void start(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result,
+                           VezhaTrafficGovernor.Permit permit) {
+        CompletableFuture<T> inFlight;
+        try {
+            inFlight = call.get();
+        } catch (RuntimeException e) {
+            inFlight = CompletableFuture.failedFuture(e);
+        }
+        inFlight.whenComplete((value, error) -> {
+            // free the slot before completing so dependent stages can submit follow-up calls
+            permit.close();
+            permits.release();
+            drain();
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private void drain() {
+        List<Runnable> ready = new ArrayList<>();
+        boolean blockedByGovernor = false;
+        synchronized (waiting) {
+            Iterator<Pending> it = waiting.iterator();
+            while (it.hasNext() && permits.availablePermits() > 0) {
+                Pending next = it.next();
+                VezhaTrafficGovernor.Permit permit = governor.tryAcquire(next.trafficClass());
+                if (permit == null) {
+                    // this class is saturated or rate limited; lower classes may still have room
+                    blockedByGovernor = true;
+                    continue;
+                }
+                if (!permits.tryAcquire()) {
+                    permit.close();
+                    break;
+                }
+                it.remove();
+                ready.add(() -> next.start().accept(permit));
+            }
+        }
+        // start outside the lock: a call that completes synchronously re-enters drain()
+        ready.forEach(Runnable::run);
+        if (blockedByGovernor && retryScheduled.compareAndSet(false, true)) {
+            RETRY.execute(() -> {
+                retryScheduled.set(false);
+                drain();
+            });
+        }
+    }
+}
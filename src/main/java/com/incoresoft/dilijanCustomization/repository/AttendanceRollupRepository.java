@@ -0,0 +1,31 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.AttendanceRollup;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.AttendanceRollupPK;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Spring Data repository for persisted daily cafeteria rollups.
+ */
+@Repository
+public interface AttendanceRollupRepository extends JpaRepository<AttendanceRollup, AttendanceRollupPK> {
+
+    /**
+     * Retrieve all rollups of a day for the given lists.
+     *
+     * @param rollupDate local calendar day
+     * @param listIds    face list identifiers
+     * @return rollup rows (any window)
+     */
+    List<AttendanceRollup> findByRollupDateAndListIdIn(LocalDate rollupDate, Collection<Long> listIds);
+
+    /**
+     * Check whether any rollup was written for a day.
+     */
+    boolean existsByRollupDate(LocalDate rollupDate);
+}
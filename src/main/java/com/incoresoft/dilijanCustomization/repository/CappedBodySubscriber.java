@@ -0,0 +1,77 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Passes a response body to {@code delegate} (a {@code byte[]} or a file subscriber), but counts the bytes as
+ * they arrive and cancels the exchange as soon as the body passes {@code maxBytes}. This also covers responses
+ * without a Content-Length (chunked), which the declared-length check cannot see.
+ */
+final class CappedBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+    private final HttpResponse.BodySubscriber<T> delegate;
+    private final CompletableFuture<T> body = new CompletableFuture<>();
+    private final long maxBytes;
+    private final String what;
+    private Flow.Subscription subscription;
+    private long received;
+
+    CappedBodySubscriber(HttpResponse.BodySubscriber<T> delegate, long maxBytes, String what) {
+        this.delegate = delegate;
+        this.maxBytes = maxBytes;
+        this.what = what;
+        delegate.getBody().whenComplete((value, error) -> {
+            if (error != null) {
+                body.completeExceptionally(error);
+            } else {
+                body.complete(value);
+            }
+        });
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return body;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        delegate.onSubscribe(subscription);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (body.isDone()) {
+            return;
+        }
+        for (ByteBuffer item : items) {
+            received += item.remaining();
+        }
+        if (received > maxBytes) {
+            subscription.cancel();
+            IOException tooLarge = new IOException(what + " exceeds the " + maxBytes + " byte limit");
+            body.completeExceptionally(tooLarge);
+            // lets a file delegate close its channel
+            delegate.onError(tooLarge);
+            return;
+        }
+        delegate.onNext(items);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        delegate.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        delegate.onComplete();
+    }
+}
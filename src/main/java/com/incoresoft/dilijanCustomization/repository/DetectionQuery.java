@@ -0,0 +1,85 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Builds the {@code FROM ... WHERE} part of {@code face_detections} reads. Only the filters that were set
+ * are emitted (no {@code ? IS NULL OR ...} guards), id sets are bound as one {@code bigint[]} parameter
+ * ({@code = ANY(?::bigint[])}) and time bounds as ready {@code timestamptz} values, so the statement text
+ * does not change with the number of ids and the planner can use range scans on {@code created_at}.
+ * Array parameters are {@code Long[]}; {@link VezhaDbRepository} binds them with {@code createArrayOf}.
+ */
+final class DetectionQuery {
+    private final String schema;
+    private final List<String> predicates = new ArrayList<>();
+    private final List<Object> params = new ArrayList<>();
+
+    private DetectionQuery(String schema) {
+        this.schema = schema;
+        predicates.add("fd.list_item_id IS NOT NULL");
+    }
+
+    /** Detections matched to a list item; add filters with the builder methods. */
+    static DetectionQuery matched(String schema) {
+        return new DetectionQuery(schema);
+    }
+
+    DetectionQuery list(long listId) {
+        predicates.add("fd.list_id = ?");
+        params.add(listId);
+        return this;
+    }
+
+    DetectionQuery lists(Collection<Long> listIds) {
+        return anyOf("fd.list_id", listIds);
+    }
+
+    DetectionQuery analytics(Collection<Long> analyticsIds) {
+        return anyOf("fd.analytics_id", analyticsIds);
+    }
+
+    /** Inclusive lower bound; null leaves the range open. */
+    DetectionQuery since(Long startMillis) {
+        if (startMillis != null) {
+            predicates.add("fd.created_at >= ?");
+            params.add(timestamp(startMillis));
+        }
+        return this;
+    }
+
+    /** Inclusive upper bound; null leaves the range open. */
+    DetectionQuery until(Long endMillis) {
+        if (endMillis != null) {
+            predicates.add("fd.created_at <= ?");
+            params.add(timestamp(endMillis));
+        }
+        return this;
+    }
+
+    String from() {
+        return schema + ".face_detections fd";
+    }
+
+    String where() {
+        return String.join(" AND ", predicates);
+    }
+
+    List<Object> params() {
+        return List.copyOf(params);
+    }
+
+    private DetectionQuery anyOf(String column, Collection<Long> ids) {
+        predicates.add(column + " = ANY(?::bigint[])");
+        params.add(ids.toArray(new Long[0]));
+        return this;
+    }
+
+    private static OffsetDateTime timestamp(long millis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,169 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.incoresoft.dilijanCustomization.config.VezhaDbProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionInsertedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingests {@code face_detections} inserts from the VEZHA PostgreSQL through logical replication instead of
+ * polling the table. A dedicated slot ({@code vezha.db.replication.slot}, {@code test_decoding} plugin) is
+ * created on first start; every decoded insert is published as a {@link DetectionInsertedEvent} on the
+ * application event bus, and the slot position is confirmed only after the listeners returned, so nothing is
+ * lost across restarts (rows may be delivered twice). Failures reconnect after {@code retry-delay}.
+ * <p>
+ * The slot retains WAL while the app is down; drop it ({@code SELECT pg_drop_replication_slot('...')}) when
+ * the ingest is switched off for good.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "vezha.db.replication", name = "enabled", havingValue = "true")
+public class DetectionReplicationStream implements SmartLifecycle {
+    private static final String PLUGIN = "test_decoding";
+    private static final long IDLE_WAIT_MILLIS = 10;
+
+    private final VezhaDbProps props;
+    private final ApplicationEventPublisher events;
+    private final FaceDetectionChangeDecoder decoder;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public DetectionReplicationStream(VezhaDbProps props, ApplicationEventPublisher events) {
+        this.props = props;
+        this.events = events;
+        this.decoder = new FaceDetectionChangeDecoder(props.resolveSchema());
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = Thread.ofPlatform().daemon().name("vezha-replication").start(this::consumeUntilStopped);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void consumeUntilStopped() {
+        VezhaDbProps.Replication replication = props.getReplication();
+        while (running) {
+            try (Connection connection = connect()) {
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                ensureSlot(pg, replication.getSlot());
+                consume(pg, replication);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("[REPLICATION] Stream on slot {} failed: {}; reconnecting in {}",
+                        replication.getSlot(), e.getMessage(), replication.getRetryDelay());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(replication.getRetryDelay().toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Properties properties = new Properties();
+        PGProperty.USER.set(properties, props.getUsername());
+        PGProperty.PASSWORD.set(properties, props.getPassword());
+        PGProperty.ASSUME_MIN_SERVER_VERSION.set(properties, "10");
+        PGProperty.REPLICATION.set(properties, "database");
+        PGProperty.PREFER_QUERY_MODE.set(properties, "simple");
+        // test_decoding prints values in the session's formats
+        PGProperty.OPTIONS.set(properties, "-c TimeZone=UTC -c DateStyle=ISO");
+        return DriverManager.getConnection(props.jdbcUrl(), properties);
+    }
+
+    private void ensureSlot(PGConnection pg, String slot) throws SQLException {
+        try {
+            pg.getReplicationAPI().createReplicationSlot()
+                    .logical()
+                    .withSlotName(slot)
+                    .withOutputPlugin(PLUGIN)
+                    .make();
+            log.info("[REPLICATION] Created logical slot {} ({})", slot, PLUGIN);
+        } catch (SQLException e) {
+            // 42710 duplicate_object: the slot survives restarts and resumes where it was confirmed
+            if (!"42710".equals(e.getSQLState())) {
+                throw e;
+            }
+        }
+    }
+
+    private void consume(PGConnection pg, VezhaDbProps.Replication replication) throws SQLException, InterruptedException {
+        try (PGReplicationStream stream = pg.getReplicationAPI().replicationStream()
+                .logical()
+                .withSlotName(replication.getSlot())
+                .withSlotOption("include-xids", false)
+                .withSlotOption("skip-empty-xacts", true)
+                .withStatusInterval((int) replication.getStatusInterval().toMillis(), TimeUnit.MILLISECONDS)
+                .start()) {
+            log.info("[REPLICATION] Streaming face_detections inserts from slot {}", replication.getSlot());
+            while (running) {
+                ByteBuffer message = stream.readPending();
+                if (message == null) {
+                    TimeUnit.MILLISECONDS.sleep(IDLE_WAIT_MILLIS);
+                    continue;
+                }
+                String text = new String(message.array(), message.arrayOffset() + message.position(),
+                        message.remaining(), StandardCharsets.UTF_8);
+                decoder.decode(text).ifPresent(this::publish);
+                LogSequenceNumber lsn = stream.getLastReceiveLSN();
+                stream.setAppliedLSN(lsn);
+                stream.setFlushedLSN(lsn);
+            }
+        }
+    }
+
+    private void publish(DetectionDto detection) {
+        try {
+            events.publishEvent(new DetectionInsertedEvent(detection));
+        } catch (Exception e) {
+            // one failing listener must not stall the slot; the scheduled refreshes still reconcile
+            log.warn("[REPLICATION] Listener failed for detection {}: {}", detection.getId(), e.getMessage());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.incoresoft.dilijanCustomization.repository;
 
 import com.incoresoft.dilijanCustomization.domain.evacuation.dto.EvacuationStatus;
 import com.incoresoft.dilijanCustomization.domain.evacuation.dto.EvacuationStatusPK;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -23,6 +24,14 @@ public interface EvacuationStatusRepository extends JpaRepository<EvacuationStat
      */
     List<EvacuationStatus> findByListIdAndStatusTrue(Long listId);
 
+    /**
+     * Retrieve all active records for several lists in one query.
+     *
+     * @param listIds identifiers of the face lists
+     * @return list of active evacuation records across the given lists
+     */
+    List<EvacuationStatus> findByListIdInAndStatusTrue(Collection<Long> listIds);
+
     /**
      * Retrieve all records for a given list.
      *
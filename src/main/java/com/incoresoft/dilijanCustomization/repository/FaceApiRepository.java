@@ -26,15 +26,27 @@ import org.springframework.stereotype.Repository;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RequestCallback;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.function.UnaryOperator;
 
 @Slf4j
@@ -47,6 +59,13 @@ public class FaceApiRepository {
     private final RestTemplate vezhaApi;
     private final VezhaApiProps vezhaApiProps;
     private final RestTemplateBuilder restTemplateBuilder;
+    private final LocalStorageReader localStorage;
+    /** Storage client without rootUri/auth interceptor, built once on first use (shares the connection pool). */
+    private volatile RestTemplate storageRestTemplate;
+    /** Identical concurrent reads (keyed by request URL / storage path) share one VEZHA call. */
+    private final SingleFlight<String, ListItemsResponse> listItemsFlights = new SingleFlight<>();
+    private final SingleFlight<String, FaceListsResponse> faceListsFlights = new SingleFlight<>();
+    private final SingleFlight<String, byte[]> storageFlights = new SingleFlight<>();
 
     // POST /face/detections (multipart: -F image=) + query params (limit, sort_order, start_date, end_date)
     public DetectionsResponse getRecentDetections(Integer limit, String sortOrder, Long startTs, Long endTs) {
@@ -97,27 +116,22 @@ public class FaceApiRepository {
     public ListItemsResponse getListItems(Long listId, String name, String comment,
                                           Integer offset, Integer limit,
                                           String order, String sortBy) {
-        String url = buildApiUrl("/face/list_items", b -> b
-                .queryParam("list_id", listId)
-                .queryParam("name",    name == null ? "" : name)
-                .queryParam("comment", comment == null ? "" : comment)
-                .queryParam("offset",  offset == null ? 0 : offset)
-                .queryParam("limit",   limit  == null ? 20 : limit)
-                .queryParam("order",   order  == null ? "asc" : order)
-                .queryParam("sort_by", sortBy == null ? "name" : sortBy));
-        ResponseEntity<ListItemsResponse> resp;
-        try {
-            resp =
-                    vezhaApi.exchange(
-                            url,
-                            HttpMethod.GET,
-                            null,
-                            ListItemsResponse.class);
-        } catch (Exception e) {
-            log.error("[GET LIST ITEMS]", e);
-            throw new RuntimeException(e);
-        }
-        return resp.getBody();
+        String url = VezhaApiUrls.listItems(vezhaApiProps.getBaseUrl(), listId, name, comment, offset, limit, order, sortBy);
+        return listItemsFlights.run(url, () -> {
+            ResponseEntity<ListItemsResponse> resp;
+            try {
+                resp =
+                        vezhaApi.exchange(
+                                url,
+                                HttpMethod.GET,
+                                null,
+                                ListItemsResponse.class);
+            } catch (Exception e) {
+                log.error("[GET LIST ITEMS]", e);
+                throw new RuntimeException(e);
+            }
+            return resp.getBody();
+        });
     }
 
     // DELETE /face/list_items/{id}
@@ -132,20 +146,29 @@ public class FaceApiRepository {
 
     /** GET /face/lists?limit=100 */
     public FaceListsResponse getFaceLists(int limit) {
-        String url = buildApiUrl("/face/lists", b -> b.queryParam("limit", limit));
+        return getFaceLists(limit, 0);
+    }
 
-        ResponseEntity<FaceListsResponse> resp;
-        try {
-            resp = vezhaApi.exchange(
-                    url,
-                    HttpMethod.GET,
-                    null,
-                    FaceListsResponse.class);
-        } catch (RestClientException e) {
-            log.error("[GET LISTS]", e);
-            throw new RuntimeException(e);
-        }
-        return resp.getBody();
+    /** GET /face/lists?limit=..&offset=.. (one page) */
+    public FaceListsResponse getFaceLists(int limit, int offset) {
+        String url = buildApiUrl("/face/lists", b -> b
+                .queryParam("limit", limit)
+                .queryParam("offset", offset));
+
+        return faceListsFlights.run(url, () -> {
+            ResponseEntity<FaceListsResponse> resp;
+            try {
+                resp = vezhaApi.exchange(
+                        url,
+                        HttpMethod.GET,
+                        null,
+                        FaceListsResponse.class);
+            } catch (RestClientException e) {
+                log.error("[GET LISTS]", e);
+                throw new RuntimeException(e);
+            }
+            return resp.getBody();
+        });
     }
 
     public DetectionsResponse getDetectionsFiltered(
@@ -157,22 +180,8 @@ public class FaceApiRepository {
             Integer offset,
             String sortOrder
     ) {
-        UriComponentsBuilder b = baseApi("/face/detections");
-        if (startMillis != null) b.queryParam("start_date", startMillis);
-        if (endMillis != null)   b.queryParam("end_date",   endMillis);
-        if (analyticsIds != null && !analyticsIds.isEmpty()) {
-            String encoded = "[" + analyticsIds.stream().map(String::valueOf).collect(java.util.stream.Collectors.joining(",")) + "]";
-            b.queryParam("analytics_ids", encoded);
-        }
-        if (listId != null)      b.queryParam("list_id",    listId);
-        b.queryParam("min_age", 0);
-        b.queryParam("max_age", 100);
-        b.queryParam("min_list_item_similarity", 0);
-        b.queryParam("max_list_item_similarity", 100);
-        if (offset != null)      b.queryParam("offset", offset);
-        b.queryParam("limit", limit == null ? 500 : limit);
-        b.queryParam("sort_order", sortOrder == null ? "asc" : sortOrder);
-        String url = b.build().toUriString();
+        String url = VezhaApiUrls.detectionsFiltered(vezhaApiProps.getBaseUrl(),
+                listId, analyticsIds, startMillis, endMillis, limit, offset, sortOrder);
         HttpEntity<MultiValueMap<String, Object>> req = getRequestWithEmptyMultipart();
         try {
             ResponseEntity<DetectionsResponse> resp =
@@ -232,6 +241,79 @@ public class FaceApiRepository {
         return all;
     }
 
+    /**
+     * Streaming variant of {@link #getDetectionsFiltered}: the page is decoded token by token and each
+     * detection is pushed to {@code sink} as a slim DTO (id, timestamp, face_image, analytics ids,
+     * list_item id/name/list_id) without building the page's object graph.
+     *
+     * @return number of detections on the page
+     */
+    public int streamDetectionsFiltered(
+            Long listId,
+            List<Long> analyticsIds,
+            Long startMillis,
+            Long endMillis,
+            Integer limit,
+            Integer offset,
+            String sortOrder,
+            Consumer<DetectionDto> sink
+    ) {
+        String url = VezhaApiUrls.detectionsFiltered(vezhaApiProps.getBaseUrl(),
+                listId, analyticsIds, startMillis, endMillis, limit, offset, sortOrder);
+        try {
+            Integer count = vezhaApi.execute(url, HttpMethod.POST, emptyMultipartCallback(),
+                    resp -> VezhaJsonStreams.readDetections(resp.getBody(), sink));
+            return count == null ? 0 : count;
+        } catch (Exception e) {
+            String message = "Failed to stream detections: " + e.getMessage();
+            log.warn("[STREAM DETECTIONS] {}", message);
+            throw new RuntimeException(message, e);
+        }
+    }
+
+    /** Pages through a window like {@link #getAllDetectionsInWindow} but hands detections to {@code sink} as they are decoded. */
+    public long forEachDetectionInWindow(
+            Long listId,
+            List<Long> analyticsIds,
+            Long startMillis,
+            Long endMillis,
+            int pageLimit,
+            Consumer<DetectionDto> sink
+    ) {
+        int effectiveLimit = pageLimit > 0 ? pageLimit : 500;
+        int offset = 0;
+        long total = 0;
+        while (true) {
+            int read = streamDetectionsFiltered(listId, analyticsIds, startMillis, endMillis,
+                    effectiveLimit, offset, "asc", sink);
+            total += read;
+            if (read < effectiveLimit) break; // last page
+            offset += effectiveLimit;
+        }
+        return total;
+    }
+
+    /**
+     * Streaming variant of {@link #getListItems}: items are pushed to {@code sink} with id, name,
+     * list_id, comment, created_at and their first image only.
+     *
+     * @return number of items on the page
+     */
+    public int streamListItems(Long listId, String name, String comment,
+                               Integer offset, Integer limit,
+                               String order, String sortBy,
+                               Consumer<ListItemDto> sink) {
+        String url = VezhaApiUrls.listItems(vezhaApiProps.getBaseUrl(), listId, name, comment, offset, limit, order, sortBy);
+        try {
+            Integer count = vezhaApi.execute(url, HttpMethod.GET, null,
+                    resp -> VezhaJsonStreams.readListItems(resp.getBody(), sink));
+            return count == null ? 0 : count;
+        } catch (Exception e) {
+            log.error("[STREAM LIST ITEMS]", e);
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Presence CSV for the exact moment:
      * GET /api/face/reports/presence?list_id=...&start_date=ts&end_date=ts
@@ -262,57 +344,118 @@ public class FaceApiRepository {
         return (resp.getBody() != null) ? new String(resp.getBody(), StandardCharsets.UTF_8) : "";
     }
 
+    /**
+     * Reads from the local storage mount when configured and the file exists, otherwise over HTTP.
+     * Concurrent downloads of the same path share one request; the returned array must not be modified.
+     */
     public byte[] downloadStorageObject(String imagePath) {
         if (imagePath == null || imagePath.isBlank()) return new byte[0];
+        Optional<byte[]> local = localStorage.read(imagePath);
+        if (local.isPresent()) return local.get();
+        return storageFlights.run(imagePath, () -> fetchStorageObject(imagePath));
+    }
 
-        String url;
-        String base;
-        if (imagePath.startsWith("http://") || imagePath.startsWith("https://")) {
-            base = "";
-            url = imagePath;
-        } else {
-            base = vezhaApiProps.getBaseUrl().replaceFirst("/api/?$", "");
-            url = UriComponentsBuilder
-                    .fromPath("/storage/")
-                    .path(imagePath.startsWith("/") ? imagePath.substring(1) : imagePath)
-                    .build()
-                    .toUriString();
+    private byte[] fetchStorageObject(String imagePath) {
+        String url = VezhaApiUrls.storage(vezhaApiProps.getBaseUrl(), imagePath);
+        long maxBytes = vezhaApiProps.getStorageMaxObjectSize().toBytes();
+        try {
+            byte[] body = storageRestTemplate().execute(url, HttpMethod.GET, storageRequestCallback(),
+                    resp -> StorageStreams.readCapped(resp.getBody(), resp.getHeaders().getContentLength(), maxBytes, url));
+            return body == null ? new byte[0] : body;
+        } catch (Exception e) {
+            log.error("[DOWNLOAD]", e);
+            throw new RuntimeException(e);
         }
+    }
 
-        RestTemplate rest = restTemplateBuilder.build();
+    /**
+     * Streams a storage object into {@code target} through one bounded buffer ({@code vezha.api.storage-buffer-size})
+     * instead of materializing it on the heap. Objects over {@code storage-max-object-size} are rejected: by
+     * Content-Length before the body is read, otherwise as soon as the copy passes the cap. Files on the local
+     * storage mount are transferred channel to channel.
+     *
+     * @return number of bytes written
+     */
+    public long streamStorageObject(String imagePath, WritableByteChannel target) {
+        if (imagePath == null || imagePath.isBlank()) return 0;
+        long maxBytes = vezhaApiProps.getStorageMaxObjectSize().toBytes();
+        String url = VezhaApiUrls.storage(vezhaApiProps.getBaseUrl(), imagePath);
+        try {
+            OptionalLong local = localStorage.transferTo(imagePath, target, maxBytes);
+            if (local.isPresent()) return local.getAsLong();
+            int bufferSize = (int) vezhaApiProps.getStorageBufferSize().toBytes();
+            Long written = storageRestTemplate().execute(url, HttpMethod.GET, storageRequestCallback(),
+                    resp -> StorageStreams.copyCapped(resp.getBody(), resp.getHeaders().getContentLength(),
+                            target, maxBytes, bufferSize, url));
+            return written == null ? 0 : written;
+        } catch (Exception e) {
+            log.error("[DOWNLOAD] {}", e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setAccept(List.of(
-                MediaType.parseMediaType("image/avif"),
-                MediaType.parseMediaType("image/webp"),
-                MediaType.parseMediaType("image/apng"),
-                MediaType.parseMediaType("image/svg+xml"),
-                MediaType.IMAGE_JPEG,
-                MediaType.IMAGE_PNG,
-                MediaType.ALL
-        ));
-        headers.set(HttpHeaders.AUTHORIZATION, "Bearer " + vezhaApiProps.getToken());
+    /**
+     * {@link #streamStorageObject} into {@code file}: written to a sibling temp file and moved into place
+     * only when complete, so a failed or oversized download never leaves a partial file behind.
+     *
+     * @return number of bytes written
+     */
+    public long downloadStorageObjectToFile(String imagePath, Path file) {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = null;
+        try {
+            Files.createDirectories(dir);
+            tmp = Files.createTempFile(dir, file.getFileName().toString(), ".part");
+            long written;
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                written = streamStorageObject(imagePath, channel);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return written;
+        } catch (IOException e) {
+            log.error("[DOWNLOAD] {} -> {}: {}", imagePath, file, e.getMessage());
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
 
-        HttpEntity<Void> req = new HttpEntity<>(headers);
+    private RequestCallback storageRequestCallback() {
+        return req -> {
+            req.getHeaders().setAccept(List.of(
+                    MediaType.parseMediaType("image/avif"),
+                    MediaType.parseMediaType("image/webp"),
+                    MediaType.parseMediaType("image/apng"),
+                    MediaType.parseMediaType("image/svg+xml"),
+                    MediaType.IMAGE_JPEG,
+                    MediaType.IMAGE_PNG,
+                    MediaType.ALL
+            ));
+            req.getHeaders().set(HttpHeaders.AUTHORIZATION, "Bearer " + vezhaApiProps.getToken());
+        };
+    }
 
+    private static void deleteQuietly(Path tmp) {
+        if (tmp == null) return;
         try {
-            ResponseEntity<byte[]> resp = rest.exchange(
-                    base + url,
-                    HttpMethod.GET,
-                    req,
-                    byte[].class);
-            return Optional.ofNullable(resp.getBody()).orElse(new byte[0]);
-        } catch (Exception e) {
-            log.error("[DOWNLOAD]", e);
-            throw new RuntimeException(e);
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            log.warn("[DOWNLOAD] Could not delete {}: {}", tmp, e.getMessage());
         }
     }
 
-    public Optional<FaceListDto> findListByName(String name) {
-        return getFaceLists(100).getData()
-                .stream()
-                .filter(l -> l.getName() != null && l.getName().equalsIgnoreCase(name))
-                .findFirst();
+    private RestTemplate storageRestTemplate() {
+        RestTemplate rest = storageRestTemplate;
+        if (rest == null) {
+            synchronized (this) {
+                rest = storageRestTemplate;
+                if (rest == null) {
+                    rest = restTemplateBuilder.build();
+                    storageRestTemplate = rest;
+                }
+            }
+        }
+        return rest;
     }
 
     public long createFaceList(String name, String comment) {
@@ -431,6 +574,15 @@ public class FaceApiRepository {
         return new HttpEntity<>(emptyBody, headers);
     }
 
+    private static RequestCallback emptyMultipartCallback() {
+        return req -> {
+            String boundary = "vezha-" + UUID.randomUUID();
+            req.getHeaders().setContentType(MediaType.parseMediaType("multipart/form-data; boundary=" + boundary));
+            req.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON));
+            req.getBody().write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        };
+    }
+
     private String buildApiUrl(String path) {
         return buildApiUrl(path, UnaryOperator.identity());
     }
@@ -442,11 +594,6 @@ public class FaceApiRepository {
     }
 
     private UriComponentsBuilder baseApi(String path) {
-        String base = vezhaApiProps.getBaseUrl();
-        while (base.endsWith("/")) {
-            base = base.substring(0, base.length() - 1);
-        }
-        String normalizedPath = path.startsWith("/") ? path : "/" + path;
-        return UriComponentsBuilder.fromHttpUrl(base + normalizedPath);
+        return VezhaApiUrls.api(vezhaApiProps.getBaseUrl(), path);
     }
 }
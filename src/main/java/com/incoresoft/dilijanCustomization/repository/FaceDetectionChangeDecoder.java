@@ -0,0 +1,136 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Decodes {@code test_decoding} output into detections. Only
+ * {@code table <schema>.face_detections: INSERT: name[type]:value ...} messages produce a result; BEGIN/COMMIT,
+ * other tables and other operations are ignored. String-like values are single-quoted with {@code ''} escapes;
+ * timestamps without an offset are taken as UTC (the replication session runs with {@code TimeZone=UTC}).
+ */
+final class FaceDetectionChangeDecoder {
+    private static final DateTimeFormatter TIMESTAMP = new DateTimeFormatterBuilder()
+            .appendPattern("uuuu-MM-dd HH:mm:ss")
+            .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+            .optionalStart().appendOffset("+HH:mm", "+00").optionalEnd()
+            .parseDefaulting(ChronoField.OFFSET_SECONDS, 0)
+            .toFormatter();
+
+    private final String insertPrefix;
+
+    FaceDetectionChangeDecoder(String schema) {
+        this.insertPrefix = "table " + quoteIdentifier(schema) + ".face_detections: INSERT: ";
+    }
+
+    Optional<DetectionDto> decode(String message) {
+        if (message == null || !message.startsWith(insertPrefix)) {
+            return Optional.empty();
+        }
+        Map<String, String> columns = columns(message.substring(insertPrefix.length()));
+        DetectionDto detection = new DetectionDto();
+        detection.setId(toLong(columns.get("id")));
+        detection.setTimestamp(toMillis(columns.get("created_at")));
+        DetectionDto.AnalyticsRef analytics = new DetectionDto.AnalyticsRef();
+        analytics.setId(toLong(columns.get("analytics_id")));
+        detection.setAnalytics(analytics);
+        Long listItemId = toLong(columns.get("list_item_id"));
+        if (listItemId != null) {
+            ListItemDto item = new ListItemDto();
+            item.setId(listItemId);
+            item.setListId(toLong(columns.get("list_id")));
+            detection.setListItem(item);
+        }
+        return Optional.of(detection);
+    }
+
+    /** {@code name[type]:value} pairs; SQL NULL becomes a null value. */
+    static Map<String, String> columns(String tuple) {
+        Map<String, String> columns = new HashMap<>();
+        int i = 0;
+        int n = tuple.length();
+        while (i < n) {
+            while (i < n && tuple.charAt(i) == ' ') {
+                i++;
+            }
+            if (i >= n) {
+                break;
+            }
+            int typeStart = tuple.indexOf('[', i);
+            int valueStart = typeStart < 0 ? -1 : tuple.indexOf("]:", typeStart);
+            if (valueStart < 0) {
+                break;
+            }
+            String name = unquoteIdentifier(tuple.substring(i, typeStart));
+            i = valueStart + 2;
+            if (i < n && tuple.charAt(i) == '\'') {
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (i < n) {
+                    char c = tuple.charAt(i++);
+                    if (c == '\'') {
+                        if (i < n && tuple.charAt(i) == '\'') {
+                            value.append('\'');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        value.append(c);
+                    }
+                }
+                columns.put(name, value.toString());
+            } else {
+                int end = tuple.indexOf(' ', i);
+                end = end < 0 ? n : end;
+                String value = tuple.substring(i, end);
+                columns.put(name, "null".equals(value) ? null : value);
+                i = end;
+            }
+        }
+        return columns;
+    }
+
+    private static Long toLong(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Long toMillis(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(value.trim(), TIMESTAMP).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /** Same rule as PostgreSQL's quote_identifier for the names this app uses. */
+    private static String quoteIdentifier(String identifier) {
+        return identifier.matches("[a-z_][a-z0-9_$]*") ? identifier : '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    private static String unquoteIdentifier(String identifier) {
+        if (identifier.length() >= 2 && identifier.startsWith("\"") && identifier.endsWith("\"")) {
+            return identifier.substring(1, identifier.length() - 1).replace("\"\"", "\"");
+        }
+        return identifier;
+    }
+}
@@ -0,0 +1,78 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency-driven hedging and timeout decisions for one endpoint.
+ * <ul>
+ *     <li>hedge delay: the observed {@code vezha.api.hedge-percentile} latency, never below {@code hedge-min-delay};</li>
+ *     <li>budget: every request earns {@code hedge-budget-percent}/100 of a backup request, capped at
+ *     {@value #MAX_BURST} unused ones, so hedging cannot multiply load when the endpoint is slow overall;</li>
+ *     <li>timeout: p99 times {@code adaptive-timeout-multiplier}, kept within [{@code adaptive-timeout-min}, {@code read-timeout}].</li>
+ * </ul>
+ * Until {@code hedge-min-samples} latencies are known there is no hedging and the plain read timeout applies.
+ */
+final class HedgingPolicy {
+    private static final int MAX_BURST = 10;
+    private static final long HEDGE_COST = 100;
+
+    private final VezhaApiProps props;
+    private final LatencyHistogram latency;
+    private final AtomicLong budget = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+
+    HedgingPolicy(VezhaApiProps props, LatencyHistogram latency) {
+        this.props = props;
+        this.latency = latency;
+    }
+
+    LatencyHistogram latency() {
+        return latency;
+    }
+
+    /** Called once per logical request; earns a share of a backup request. */
+    void onRequest() {
+        long earned = Math.max(0, Math.min(100, props.getHedgeBudgetPercent()));
+        budget.accumulateAndGet(earned, (current, add) -> Math.min(MAX_BURST * HEDGE_COST, current + add));
+    }
+
+    Optional<Duration> hedgeDelay() {
+        if (!props.isStorageHedging() || latency.count() < props.getHedgeMinSamples()) {
+            return Optional.empty();
+        }
+        Duration observed = latency.percentile(props.getHedgePercentile());
+        Duration floor = props.getHedgeMinDelay();
+        return Optional.of(observed.compareTo(floor) < 0 ? floor : observed);
+    }
+
+    /** Spends one backup request from the budget; false when it is exhausted. */
+    boolean tryAcquireHedge() {
+        long before = budget.getAndUpdate(current -> current >= HEDGE_COST ? current - HEDGE_COST : current);
+        if (before < HEDGE_COST) {
+            return false;
+        }
+        hedges.incrementAndGet();
+        return true;
+    }
+
+    long hedgesIssued() {
+        return hedges.get();
+    }
+
+    Duration timeout() {
+        Duration max = props.getReadTimeout();
+        if (latency.count() < props.getHedgeMinSamples()) {
+            return max;
+        }
+        Duration adaptive = latency.percentile(0.99).multipliedBy(Math.max(1, props.getAdaptiveTimeoutMultiplier()));
+        Duration min = props.getAdaptiveTimeoutMin();
+        if (adaptive.compareTo(min) < 0) {
+            adaptive = min;
+        }
+        return adaptive.compareTo(max) > 0 ? max : adaptive;
+    }
+}
@@ -0,0 +1,69 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import java.time.Duration;
+
+/**
+ * Small log-bucketed latency histogram (1 ms .. ~2 min, 25% bucket width). Once {@code window} samples
+ * are recorded all counts are halved, so percentiles follow recent latency instead of the whole uptime.
+ */
+final class LatencyHistogram {
+    private static final double GROWTH = 1.25;
+    private static final int BUCKETS = 54;
+    private static final long[] UPPER_BOUND_MICROS = new long[BUCKETS];
+
+    static {
+        double bound = 1_000;
+        for (int i = 0; i < BUCKETS; i++) {
+            UPPER_BOUND_MICROS[i] = (long) bound;
+            bound *= GROWTH;
+        }
+    }
+
+    private final long[] counts = new long[BUCKETS];
+    private final int window;
+    private long total;
+
+    LatencyHistogram(int window) {
+        this.window = Math.max(2, window);
+    }
+
+    synchronized void record(long nanos) {
+        counts[bucket(nanos / 1_000)]++;
+        if (++total >= window) {
+            total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] >>= 1;
+                total += counts[i];
+            }
+        }
+    }
+
+    synchronized long count() {
+        return total;
+    }
+
+    /** Upper bound of the bucket holding the {@code quantile} (0..1) sample; zero while empty. */
+    synchronized Duration percentile(double quantile) {
+        if (total == 0) {
+            return Duration.ZERO;
+        }
+        long rank = (long) Math.ceil(Math.min(1.0, Math.max(0.0, quantile)) * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                return Duration.ofNanos(UPPER_BOUND_MICROS[i] * 1_000);
+            }
+        }
+        return Duration.ofNanos(UPPER_BOUND_MICROS[BUCKETS - 1] * 1_000);
+    }
+
+    private static int bucket(long micros) {
+        for (int i = 0; i < BUCKETS; i++) {
+            if (micros <= UPPER_BOUND_MICROS[i]) {
+                return i;
+            }
+        }
+        return BUCKETS - 1;
+    }
+}
@@ -0,0 +1,11 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+/** Which enrollment images {@link VezhaDbRepository} loads with each list item. */
+public enum ListItemImages {
+    /** Every image, in insertion order (one result row per image) */
+    ALL,
+    /** Only the earliest non-blank image, via a {@code LATERAL ... LIMIT 1} join (one row per item) */
+    FIRST,
+    /** No images; items come back with an empty image list */
+    NONE
+}
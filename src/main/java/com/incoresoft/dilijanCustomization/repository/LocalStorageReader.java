@@ -0,0 +1,145 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * Reads storage objects straight from a locally mounted VEZHA storage tree ({@code vezha.api.storage-root})
+ * instead of {@code GET /storage/...}. Files are read through a {@link FileChannel} straight into an exactly
+ * sized array (no stream buffers); files of at least {@code storage-mmap-threshold} are memory-mapped instead.
+ * Anything that is not a readable regular file under the root (absolute URLs, missing files, {@code ..}
+ * escapes, symlinks leading outside the root, files that shrink while read) yields empty so the caller falls back to HTTP.
+ */
+@Slf4j
+@Component
+public class LocalStorageReader {
+
+    private final Path root;
+    private final long mmapThreshold;
+    private final long maxObjectSize;
+
+    public LocalStorageReader(VezhaApiProps props) {
+        String configured = props.getStorageRoot();
+        this.root = (configured == null || configured.isBlank())
+                ? null
+                : Path.of(configured).toAbsolutePath().normalize();
+        this.mmapThreshold = props.getStorageMmapThreshold().toBytes();
+        this.maxObjectSize = props.getStorageMaxObjectSize().toBytes();
+    }
+
+    public boolean isEnabled() {
+        return root != null;
+    }
+
+    public Optional<byte[]> read(String imagePath) {
+        Optional<Path> file = resolve(imagePath);
+        if (file.isEmpty()) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file.get(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Math.min(maxObjectSize, Integer.MAX_VALUE - 8)) {
+                log.warn("[LOCAL STORAGE] {} is too large ({} bytes), using HTTP", imagePath, size);
+                return Optional.empty();
+            }
+            byte[] out = new byte[(int) size];
+            if (size >= mmapThreshold) {
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, size).get(out);
+            } else {
+                ByteBuffer target = ByteBuffer.wrap(out);
+                while (target.hasRemaining()) {
+                    if (channel.read(target, target.position()) < 0) {
+                        log.warn("[LOCAL STORAGE] {} shrank while reading ({} of {} bytes), using HTTP",
+                                imagePath, target.position(), size);
+                        return Optional.empty();
+                    }
+                }
+            }
+            return Optional.of(out);
+        } catch (NoSuchFileException e) {
+            log.debug("[LOCAL STORAGE] {} not found under {}, using HTTP", imagePath, root);
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("[LOCAL STORAGE] Failed to read {}: {}, using HTTP", imagePath, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Copies a local file to {@code target} with {@link FileChannel#transferTo} (no user-space buffer).
+     *
+     * @return bytes written, or empty when the file is not available locally (use HTTP)
+     * @throws IOException when the file is larger than {@code maxBytes}, shrinks while copied or the copy fails
+     */
+    public OptionalLong transferTo(String imagePath, WritableByteChannel target, long maxBytes) throws IOException {
+        Optional<Path> file = resolve(imagePath);
+        if (file.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file.get(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            log.debug("[LOCAL STORAGE] {} not found under {}, using HTTP", imagePath, root);
+            return OptionalLong.empty();
+        }
+        try (channel) {
+            long size = channel.size();
+            StorageStreams.checkDeclared(size, maxBytes, imagePath);
+            long position = 0;
+            while (position < size) {
+                long sent = channel.transferTo(position, size - position, target);
+                if (sent <= 0 && channel.size() <= position) {
+                    break;
+                }
+                position += sent;
+            }
+            StorageStreams.checkComplete(position, size, imagePath);
+            return OptionalLong.of(position);
+        }
+    }
+
+    /**
+     * The file under the storage root for a relative image path; empty when disabled, not local or missing.
+     * Symlinks are resolved, so a link pointing outside the root is rejected like a {@code ..} escape.
+     */
+    Optional<Path> resolve(String imagePath) {
+        if (root == null || imagePath == null || imagePath.isBlank() || imagePath.contains("://")) {
+            return Optional.empty();
+        }
+        String relative = imagePath.startsWith("/") ? imagePath.substring(1) : imagePath;
+        try {
+            Path file = root.resolve(relative).normalize();
+            if (!file.startsWith(root)) {
+                log.warn("[LOCAL STORAGE] Rejected path outside the storage root: {}", imagePath);
+                return Optional.empty();
+            }
+            Path real = file.toRealPath();
+            if (!real.startsWith(root.toRealPath())) {
+                log.warn("[LOCAL STORAGE] Rejected link outside the storage root: {} -> {}", imagePath, real);
+                return Optional.empty();
+            }
+            return Optional.of(real);
+        } catch (InvalidPathException e) {
+            return Optional.empty();
+        } catch (NoSuchFileException e) {
+            log.debug("[LOCAL STORAGE] {} not found under {}, using HTTP", imagePath, root);
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("[LOCAL STORAGE] Failed to resolve {}: {}, using HTTP", imagePath, e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical calls: while a call for a key is in flight, further callers with the
+ * same key wait for (or get a copy of) its result instead of issuing their own request. Nothing is
+ * cached; the key is released as soon as the call completes, so the next caller starts a fresh one.
+ * Results are shared between the coalesced callers and must be treated as read-only.
+ * <p>
+ * Flights are also keyed by the caller's {@link VezhaTrafficClass}: the class picks the connection pool and its
+ * timeouts, so an EMERGENCY caller never ends up waiting on a query started on the batch pool.
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<FlightKey<K>, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /** Runs {@code call} on the calling thread unless an identical call is running; then waits for that one. */
+    V run(K callKey, Supplier<V> call) {
+        FlightKey<K> key = new FlightKey<>(callKey, VezhaTrafficClass.current());
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            V value = call.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /** Async counterpart of {@link #run}; each caller gets its own copy so cancelling one does not affect the others. */
+    CompletableFuture<V> runAsync(K callKey, Supplier<CompletableFuture<V>> call) {
+        FlightKey<K> key = new FlightKey<>(callKey, VezhaTrafficClass.current());
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return existing.copy();
+        }
+        CompletableFuture<V> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((value, error) -> {
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(value);
+            }
+        });
+        return mine.copy();
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    private record FlightKey<K>(K key, VezhaTrafficClass trafficClass) {
+    }
+
+    private static <V> V await(CompletableFuture<V> shared) {
+        try {
+            return shared.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a coalesced call", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            if (cause instanceof Error err) {
+                throw err;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+}
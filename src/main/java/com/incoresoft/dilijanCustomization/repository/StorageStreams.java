@@ -0,0 +1,81 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Size-capped copies of storage response bodies. A declared Content-Length over the cap is rejected
+ * before anything is read; undeclared lengths are enforced while copying, and a body shorter than its
+ * declared length is reported as truncated.
+ */
+final class StorageStreams {
+
+    private StorageStreams() {
+    }
+
+    /** Reads the whole body; a known length is read straight into an exactly sized array (no growth copies). */
+    static byte[] readCapped(InputStream in, long contentLength, long maxBytes, String what) throws IOException {
+        checkDeclared(contentLength, maxBytes, what);
+        if (in == null) {
+            return new byte[0];
+        }
+        if (contentLength >= 0) {
+            byte[] out = in.readNBytes((int) contentLength);
+            checkComplete(out.length, contentLength, what);
+            return out;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = in.read(chunk)) >= 0) {
+            if (out.size() + (long) n > maxBytes) {
+                throw tooLarge(what, maxBytes);
+            }
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /** Copies the body to {@code target} through one {@code bufferSize} buffer; returns the bytes written. */
+    static long copyCapped(InputStream in, long contentLength, WritableByteChannel target,
+                           long maxBytes, int bufferSize, String what) throws IOException {
+        checkDeclared(contentLength, maxBytes, what);
+        if (in == null) {
+            return 0;
+        }
+        byte[] chunk = new byte[Math.max(1024, bufferSize)];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        long written = 0;
+        int n;
+        while ((n = in.read(chunk)) >= 0) {
+            if (written + n > maxBytes) {
+                throw tooLarge(what, maxBytes);
+            }
+            buffer.clear().limit(n);
+            while (buffer.hasRemaining()) {
+                written += target.write(buffer);
+            }
+        }
+        checkComplete(written, contentLength, what);
+        return written;
+    }
+
+    static void checkDeclared(long contentLength, long maxBytes, String what) throws IOException {
+        if (contentLength > maxBytes) {
+            throw new IOException(what + " is " + contentLength + " bytes, over the " + maxBytes + " byte limit");
+        }
+    }
+
+    static void checkComplete(long read, long contentLength, String what) throws IOException {
+        if (contentLength >= 0 && read != contentLength) {
+            throw new IOException(what + " truncated: got " + read + " of " + contentLength + " bytes");
+        }
+    }
+
+    private static IOException tooLarge(String what, long maxBytes) {
+        return new IOException(what + " exceeds the " + maxBytes + " byte limit");
+    }
+}
@@ -0,0 +1,77 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * URL building shared by the blocking and async VEZHA repositories so both issue identical requests.
+ */
+final class VezhaApiUrls {
+
+    private VezhaApiUrls() {
+    }
+
+    static UriComponentsBuilder api(String baseUrl, String path) {
+        String base = baseUrl;
+        while (base.endsWith("/")) {
+            base = base.substring(0, base.length() - 1);
+        }
+        String normalizedPath = path.startsWith("/") ? path : "/" + path;
+        return UriComponentsBuilder.fromHttpUrl(base + normalizedPath);
+    }
+
+    /** Absolute URLs are used as-is, relative image paths resolve to {@code <base without /api>/storage/<path>}. */
+    static String storage(String baseUrl, String imagePath) {
+        if (imagePath.startsWith("http://") || imagePath.startsWith("https://")) {
+            return imagePath;
+        }
+        String base = baseUrl.replaceFirst("/api/?$", "");
+        return base + UriComponentsBuilder
+                .fromPath("/storage/")
+                .path(imagePath.startsWith("/") ? imagePath.substring(1) : imagePath)
+                .build()
+                .toUriString();
+    }
+
+    static String detectionsFiltered(String baseUrl,
+                                     Long listId,
+                                     List<Long> analyticsIds,
+                                     Long startMillis,
+                                     Long endMillis,
+                                     Integer limit,
+                                     Integer offset,
+                                     String sortOrder) {
+        UriComponentsBuilder b = api(baseUrl, "/face/detections");
+        if (startMillis != null) b.queryParam("start_date", startMillis);
+        if (endMillis != null)   b.queryParam("end_date",   endMillis);
+        if (analyticsIds != null && !analyticsIds.isEmpty()) {
+            String encoded = "[" + analyticsIds.stream().map(String::valueOf).collect(Collectors.joining(",")) + "]";
+            b.queryParam("analytics_ids", encoded);
+        }
+        if (listId != null)      b.queryParam("list_id",    listId);
+        b.queryParam("min_age", 0);
+        b.queryParam("max_age", 100);
+        b.queryParam("min_list_item_similarity", 0);
+        b.queryParam("max_list_item_similarity", 100);
+        if (offset != null)      b.queryParam("offset", offset);
+        b.queryParam("limit", limit == null ? 500 : limit);
+        b.queryParam("sort_order", sortOrder == null ? "asc" : sortOrder);
+        return b.build().toUriString();
+    }
+
+    static String listItems(String baseUrl, Long listId, String name, String comment,
+                            Integer offset, Integer limit, String order, String sortBy) {
+        return api(baseUrl, "/face/list_items")
+                .queryParam("list_id", listId)
+                .queryParam("name",    name == null ? "" : name)
+                .queryParam("comment", comment == null ? "" : comment)
+                .queryParam("offset",  offset == null ? 0 : offset)
+                .queryParam("limit",   limit  == null ? 20 : limit)
+                .queryParam("order",   order  == null ? "asc" : order)
+                .queryParam("sort_by", sortBy == null ? "name" : sortBy)
+                .build()
+                .toUriString();
+    }
+}
@@ -9,28 +9,73 @@ import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.TimeAttendance;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.stereotype.Repository;
 
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
 import java.sql.Timestamp;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Slf4j
 @Repository
 public class VezhaDbRepository {
-    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate interactiveJdbc;
+    private final JdbcTemplate batchJdbc;
     private final VezhaDbProps vezhaDbProps;
     private final ObjectMapper objectMapper;
+    /** Identical concurrent reads share one query; the shared results are read-only for callers. */
+    private final SingleFlight<String, List<FaceListDto>> attendanceListsFlights = new SingleFlight<>();
+    private final SingleFlight<ListItemsKey, List<ListItemDto>> listItemsFlights = new SingleFlight<>();
+    private final SingleFlight<Long, Long> fingerprintFlights = new SingleFlight<>();
 
-    public VezhaDbRepository(@Qualifier("vezhaJdbcTemplate") JdbcTemplate jdbcTemplate,
+    /** Last statement of each hot query, replayed by {@link #explain}. */
+    private final Map<VezhaHotQuery, CapturedStatement> lastStatements = new ConcurrentHashMap<>();
+
+    private record ListItemsKey(Long listId, ListItemImages images) {
+    }
+
+    private record CapturedStatement(String sql, List<Object> params) {
+    }
+
+    /** A hot query's SQL and its {@code EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON)} output. */
+    public record ExplainedStatement(VezhaHotQuery query, String sql, String planJson) {
+    }
+
+    public VezhaDbRepository(@Qualifier("vezhaJdbcTemplate") JdbcTemplate interactiveJdbc,
+                             @Qualifier("vezhaBatchJdbcTemplate") JdbcTemplate batchJdbc,
                              VezhaDbProps vezhaDbProps,
                              ObjectMapper objectMapper) {
-        this.jdbcTemplate = jdbcTemplate;
+        this.interactiveJdbc = interactiveJdbc;
+        this.batchJdbc = batchJdbc;
         this.vezhaDbProps = vezhaDbProps;
         this.objectMapper = objectMapper;
     }
@@ -39,8 +84,12 @@ public class VezhaDbRepository {
         if (!vezhaDbProps.isEnabled()) {
             return List.of();
         }
+        return attendanceListsFlights.run(schema(), this::queryListsWithAttendanceEnabled);
+    }
+
+    private List<FaceListDto> queryListsWithAttendanceEnabled() {
         String sql = "SELECT id, name, comment, status, time_attendance FROM " + schema() + ".face_lists ORDER BY id";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+        return jdbc().query(sql, (rs, rowNum) -> {
             FaceListDto dto = new FaceListDto();
             dto.setId(rs.getLong("id"));
             dto.setName(rs.getString("name"));
@@ -56,7 +105,7 @@ public class VezhaDbRepository {
             return null;
         }
         String sql = "SELECT id, name, comment, status, time_attendance FROM " + schema() + ".face_lists WHERE id = ?";
-        List<FaceListDto> rows = jdbcTemplate.query(sql, (rs, rowNum) -> {
+        List<FaceListDto> rows = jdbc().query(sql, (rs, rowNum) -> {
             FaceListDto dto = new FaceListDto();
             dto.setId(rs.getLong("id"));
             dto.setName(rs.getString("name"));
@@ -68,72 +117,536 @@ public class VezhaDbRepository {
         return rows.isEmpty() ? null : rows.get(0);
     }
 
+    /**
+     * Batch form of {@link #findFaceList}: one {@code = ANY(?)} query for all ids.
+     *
+     * @return lists by id; ids without a row are absent
+     */
+    public Map<Long, FaceListDto> findFaceLists(Collection<Long> listIds) {
+        if (!vezhaDbProps.isEnabled() || listIds == null || listIds.isEmpty()) {
+            return Map.of();
+        }
+        String sql = "SELECT id, name, comment, status, time_attendance FROM " + schema() + ".face_lists " +
+                "WHERE id = ANY(?::bigint[])";
+        Map<Long, FaceListDto> lists = new HashMap<>();
+        jdbc().query(sql, args(idArray(listIds)), rs -> {
+            FaceListDto dto = new FaceListDto();
+            dto.setId(rs.getLong("id"));
+            dto.setName(rs.getString("name"));
+            dto.setComment(rs.getString("comment"));
+            dto.setStatus((Integer) rs.getObject("status"));
+            dto.setTimeAttendance(parseTimeAttendance(rs.getString("time_attendance")));
+            lists.put(dto.getId(), dto);
+        });
+        return lists;
+    }
+
     public List<ListItemDto> findListItems(Long listId) {
+        return findListItems(listId, ListItemImages.ALL);
+    }
+
+    public List<ListItemDto> findListItems(Long listId, ListItemImages images) {
+        if (!vezhaDbProps.isEnabled()) {
+            return List.of();
+        }
+        return listItemsFlights.run(new ListItemsKey(listId, images), () -> queryListItems(listId, images));
+    }
+
+    private List<ListItemDto> queryListItems(Long listId, ListItemImages images) {
+        List<ListItemDto> items = new ArrayList<>();
+        streamListItems(listId, images, items::add);
+        return items;
+    }
+
+    /**
+     * Stream one list's items in name order, handing each completed item to {@code consumer} as soon as its
+     * last image row has been read. With {@link ListItemImages#ALL} the image rows of an item are adjacent in
+     * the result, so only the item being assembled is held in memory; the other projections return one row
+     * per item.
+     */
+    public void streamListItems(Long listId, ListItemImages images, Consumer<ListItemDto> consumer) {
+        if (!vezhaDbProps.isEnabled()) {
+            return;
+        }
+        String sql = listItemsSql(images, "i.list_id = ?", "");
+        ListItemRowGrouper grouper = new ListItemRowGrouper(consumer);
+        cursorQuery(capture(VezhaHotQuery.LIST_ITEMS, sql, List.of(listId)), true, grouper);
+        grouper.finish();
+    }
+
+    /** List-item query for one projection; rows of the same item are adjacent so {@link ListItemRowGrouper} can fold them. */
+    private String listItemsSql(ListItemImages images, String filter, String orderPrefix) {
+        String items = schema() + ".face_list_items i ";
+        return switch (images) {
+            case ALL -> "SELECT i.id AS item_id, i.list_id, i.name, i.comment, i.created_at, img.path FROM " + items +
+                    "LEFT JOIN " + schema() + ".face_list_items_images img ON img.list_item_id = i.id " +
+                    "WHERE " + filter + " ORDER BY " + orderPrefix + "i.name ASC, i.id ASC, img.id ASC";
+            case FIRST -> "SELECT i.id AS item_id, i.list_id, i.name, i.comment, i.created_at, img.path FROM " + items +
+                    "LEFT JOIN LATERAL (SELECT f.path FROM " + schema() + ".face_list_items_images f " +
+                    "WHERE f.list_item_id = i.id AND btrim(f.path) <> '' ORDER BY f.id ASC LIMIT 1) img ON true " +
+                    "WHERE " + filter + " ORDER BY " + orderPrefix + "i.name ASC, i.id ASC";
+            case NONE -> "SELECT i.id AS item_id, i.list_id, i.name, i.comment, i.created_at, NULL AS path FROM " + items +
+                    "WHERE " + filter + " ORDER BY " + orderPrefix + "i.name ASC, i.id ASC";
+        };
+    }
+
+    /**
+     * Batch form of {@link #findListItems(Long, ListItemImages)}: the items of all lists in one cursor-streamed
+     * query, grouped by list in the same pass. Every requested id has an entry (empty for lists without items).
+     */
+    public Map<Long, List<ListItemDto>> findListItemsByListIds(Collection<Long> listIds, ListItemImages images) {
+        if (!vezhaDbProps.isEnabled() || listIds == null || listIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, List<ListItemDto>> byList = new LinkedHashMap<>();
+        listIds.forEach(id -> byList.put(id, new ArrayList<>()));
+        String sql = listItemsSql(images, "i.list_id = ANY(?::bigint[])", "i.list_id ASC, ");
+        ListItemRowGrouper grouper = new ListItemRowGrouper(
+                item -> byList.computeIfAbsent(item.getListId(), id -> new ArrayList<>()).add(item));
+        cursorQuery(capture(VezhaHotQuery.LIST_ITEMS, sql, idArray(listIds)), true, grouper);
+        grouper.finish();
+        return byList;
+    }
+
+    /**
+     * Per-item digest of one list: item id to a hash of its name and comment (same hash as the fingerprint's
+     * text part). Diffing two digests tells which items were added, changed or removed without reading rows.
+     */
+    public Map<Long, Long> findListItemDigests(Long listId) {
         if (!vezhaDbProps.isEnabled()) {
+            return Map.of();
+        }
+        String sql = "SELECT i.id, hashtext(coalesce(i.name, '') || '|' || coalesce(i.comment, '')) AS row_hash " +
+                "FROM " + schema() + ".face_list_items i WHERE i.list_id = ?";
+        Map<Long, Long> digests = new HashMap<>();
+        cursorQuery(sql, List.of(listId), true, rs -> digests.put(rs.getLong("id"), rs.getLong("row_hash")));
+        return digests;
+    }
+
+    /** Items by id in one projection and name order, e.g. the rows a membership sync found added or changed. */
+    public List<ListItemDto> findListItemsByIds(Collection<Long> itemIds, ListItemImages images) {
+        if (!vezhaDbProps.isEnabled() || itemIds == null || itemIds.isEmpty()) {
             return List.of();
         }
-        String sql = "SELECT i.id AS item_id, i.list_id, i.name, i.comment, img.path " +
-                "FROM " + schema() + ".face_list_items i " +
-                "LEFT JOIN " + schema() + ".face_list_items_images img ON img.list_item_id = i.id " +
-                "WHERE i.list_id = ? ORDER BY i.name ASC, i.id ASC, img.id ASC";
-        Map<Long, ListItemDto> items = new LinkedHashMap<>();
-        jdbcTemplate.query(sql, rs -> {
+        List<ListItemDto> items = new ArrayList<>();
+        ListItemRowGrouper grouper = new ListItemRowGrouper(items::add);
+        cursorQuery(listItemsSql(images, "i.id = ANY(?::bigint[])", ""), idArray(itemIds), true, grouper);
+        grouper.finish();
+        return items;
+    }
+
+    /**
+     * Cheap change marker for one list's items: row count, max id, a hash over names/comments and the
+     * image count. Computed server-side so callers can skip {@link #findListItems} when nothing changed.
+     *
+     * @return null when the VEZHA DB is disabled
+     */
+    public Long findListItemsFingerprint(Long listId) {
+        if (!vezhaDbProps.isEnabled()) {
+            return null;
+        }
+        return fingerprintFlights.run(listId, () -> queryListItemsFingerprint(listId));
+    }
+
+    private Long queryListItemsFingerprint(Long listId) {
+        String sql = "SELECT count(*) AS n, coalesce(max(i.id), 0) AS max_id, " +
+                "coalesce(sum(hashtext(coalesce(i.name, '') || '|' || coalesce(i.comment, ''))), 0) AS text_hash, " +
+                "(SELECT count(*) FROM " + schema() + ".face_list_items_images img " +
+                "JOIN " + schema() + ".face_list_items j ON img.list_item_id = j.id WHERE j.list_id = ?) AS images " +
+                "FROM " + schema() + ".face_list_items i WHERE i.list_id = ?";
+        return jdbc().queryForObject(sql, (rs, rowNum) -> fingerprint(rs), listId, listId);
+    }
+
+    /**
+     * Batch form of {@link #findListItemsFingerprint}: one grouped query. Lists without items get the same
+     * value the single-list query returns for them (0).
+     */
+    public Map<Long, Long> findListItemsFingerprints(Collection<Long> listIds) {
+        if (!vezhaDbProps.isEnabled() || listIds == null || listIds.isEmpty()) {
+            return Map.of();
+        }
+        String sql = "SELECT i.list_id, count(*) AS n, coalesce(max(i.id), 0) AS max_id, " +
+                "coalesce(sum(hashtext(coalesce(i.name, '') || '|' || coalesce(i.comment, ''))), 0) AS text_hash, " +
+                "(SELECT count(*) FROM " + schema() + ".face_list_items_images img " +
+                "JOIN " + schema() + ".face_list_items j ON img.list_item_id = j.id WHERE j.list_id = i.list_id) AS images " +
+                "FROM " + schema() + ".face_list_items i WHERE i.list_id = ANY(?::bigint[]) GROUP BY i.list_id";
+        Map<Long, Long> fingerprints = new HashMap<>();
+        listIds.forEach(id -> fingerprints.put(id, 0L));
+        jdbc().query(sql, args(idArray(listIds)), rs -> {
+            fingerprints.put(rs.getLong("list_id"), fingerprint(rs));
+        });
+        return fingerprints;
+    }
+
+    private static long fingerprint(ResultSet rs) throws SQLException {
+        long h = rs.getLong("n");
+        h = 31 * h + rs.getLong("max_id");
+        h = 31 * h + rs.getLong("text_hash");
+        h = 31 * h + rs.getLong("images");
+        return h;
+    }
+
+    public List<DetectionDto> findLatestDetectionsByListItem(Long listId, List<Long> analyticsIds, Long startMillis, Long endMillis) {
+        List<DetectionDto> detections = new ArrayList<>();
+        streamLatestDetectionsByListItem(listId, analyticsIds, startMillis, endMillis, detections::add);
+        return detections;
+    }
+
+    /**
+     * Cursor-streamed variant of {@link #findLatestDetectionsByListItem}: each person's latest detection
+     * is handed to {@code consumer} as it is fetched instead of being collected into a list.
+     */
+    public void streamLatestDetectionsByListItem(Long listId, List<Long> analyticsIds, Long startMillis, Long endMillis,
+                                                 Consumer<DetectionDto> consumer) {
+        if (!vezhaDbProps.isEnabled() || listId == null || analyticsIds == null || analyticsIds.isEmpty()) {
+            return;
+        }
+        DetectionQuery query = DetectionQuery.matched(schema())
+                .list(listId)
+                .analytics(analyticsIds)
+                .since(startMillis)
+                .until(endMillis);
+        // Item names are joined after DISTINCT ON, i.e. once per person rather than per detection
+        String sql = "SELECT d.list_item_id, d.analytics_id, d.created_at, li.name AS item_name FROM (" +
+                "SELECT DISTINCT ON (fd.list_item_id) fd.list_item_id, fd.analytics_id, fd.created_at " +
+                "FROM " + query.from() + " WHERE " + query.where() + " " +
+                "ORDER BY fd.list_item_id, fd.created_at DESC, fd.id DESC" +
+                ") d LEFT JOIN " + schema() + ".face_list_items li ON li.id = d.list_item_id";
+
+        cursorQuery(capture(VezhaHotQuery.LATEST_DETECTIONS, sql, query.params()), true,
+                rs -> consumer.accept(mapLatestDetection(rs)));
+    }
+
+    private static DetectionDto mapLatestDetection(ResultSet rs) throws SQLException {
+        DetectionDto d = new DetectionDto();
+        ListItemDto item = new ListItemDto();
+        item.setId(rsLong(rs, "list_item_id"));
+        item.setName(rsString(rs, "item_name"));
+        d.setListItem(item);
+
+        DetectionDto.AnalyticsRef analytics = new DetectionDto.AnalyticsRef();
+        analytics.setId(rsLong(rs, "analytics_id"));
+        d.setAnalytics(analytics);
+
+        Timestamp created = rs.getTimestamp("created_at");
+        if (created != null) {
+            d.setTimestamp(created.toInstant().atZone(ZoneOffset.UTC).toInstant().toEpochMilli());
+        }
+        return d;
+    }
+
+    /**
+     * Stream detections of the given lists and analytics within [startMillis, endMillis] in time order,
+     * handing each row to {@code consumer} without materializing the result.
+     */
+    public void streamDetections(List<Long> listIds, List<Long> analyticsIds, long startMillis, long endMillis,
+                                 Consumer<DetectionDto> consumer) {
+        if (!vezhaDbProps.isEnabled() || listIds == null || listIds.isEmpty()
+                || analyticsIds == null || analyticsIds.isEmpty()) {
+            return;
+        }
+        DetectionQuery query = detectionsQuery(listIds, analyticsIds, startMillis, endMillis);
+        cursorQuery(capture(VezhaHotQuery.DETECTION_RANGE, detectionsSql(query), query.params()), false,
+                rs -> consumer.accept(mapStreamedDetection(rs)));
+    }
+
+    /**
+     * {@link Stream} form of {@link #streamDetections} for pull-style consumers. The stream holds a pooled
+     * connection and an open cursor until it is closed, so it must be used in try-with-resources.
+     */
+    public Stream<DetectionDto> openDetectionStream(List<Long> listIds, List<Long> analyticsIds, long startMillis, long endMillis) {
+        if (!vezhaDbProps.isEnabled() || listIds == null || listIds.isEmpty()
+                || analyticsIds == null || analyticsIds.isEmpty()) {
+            return Stream.empty();
+        }
+        DetectionQuery query = detectionsQuery(listIds, analyticsIds, startMillis, endMillis);
+        CapturedStatement statement = capture(VezhaHotQuery.DETECTION_RANGE, detectionsSql(query), query.params());
+        return cursorStream(statement.sql(), statement.params(), (rs, rowNum) -> mapStreamedDetection(rs));
+    }
+
+    /**
+     * All matched detections (every list and analytics) created at or after {@code sinceMillis}, in time order
+     * and without item names. Feeds the in-memory detection window; not captured for EXPLAIN, since the poll
+     * would keep replacing the report's {@link VezhaHotQuery#DETECTION_RANGE} statement.
+     */
+    public void streamMatchedDetectionsSince(long sinceMillis, Consumer<DetectionDto> consumer) {
+        if (!vezhaDbProps.isEnabled()) {
+            return;
+        }
+        DetectionQuery query = DetectionQuery.matched(schema()).since(sinceMillis);
+        String sql = "SELECT fd.id, fd.list_id, fd.list_item_id, fd.analytics_id, fd.created_at, NULL AS item_name " +
+                "FROM " + query.from() + " WHERE " + query.where() + " " +
+                "ORDER BY fd.created_at ASC, fd.id ASC";
+        cursorQuery(sql, query.params(), false, rs -> consumer.accept(mapStreamedDetection(rs)));
+    }
+
+    private DetectionQuery detectionsQuery(List<Long> listIds, List<Long> analyticsIds, long startMillis, long endMillis) {
+        return DetectionQuery.matched(schema())
+                .lists(listIds)
+                .analytics(analyticsIds)
+                .since(startMillis)
+                .until(endMillis);
+    }
+
+    private String detectionsSql(DetectionQuery query) {
+        return "SELECT fd.id, fd.list_id, fd.list_item_id, fd.analytics_id, fd.created_at, li.name AS item_name " +
+                "FROM " + query.from() + " " +
+                "LEFT JOIN " + schema() + ".face_list_items li ON li.id = fd.list_item_id " +
+                "WHERE " + query.where() + " " +
+                "ORDER BY fd.created_at ASC, fd.id ASC";
+    }
+
+    /**
+     * Runs {@code sql} through a forward-only server-side cursor, fetching {@code vezha.db.stream-fetch-size}
+     * rows per round trip. PgJDBC only honours the fetch size inside a transaction, so autocommit is switched
+     * off for the scan (unless the caller's transaction already owns the connection). {@code bounded} reads get
+     * the template's query timeout, which JdbcTemplate applies to statements prepared on its callback connection;
+     * unbounded scans prepare on the target connection, so only the pool's server-side statement timeout applies.
+     */
+    private void cursorQuery(CapturedStatement statement, boolean bounded, RowCallbackHandler handler) {
+        cursorQuery(statement.sql(), statement.params(), bounded, handler);
+    }
+
+    private void cursorQuery(String sql, List<Object> params, boolean bounded, RowCallbackHandler handler) {
+        jdbc().execute((ConnectionCallback<Void>) con -> {
+            boolean autoCommit = con.getAutoCommit();
+            if (autoCommit) {
+                con.setAutoCommit(false);
+            }
+            try {
+                Connection statementConnection = bounded ? con : DataSourceUtils.getTargetConnection(con);
+                try (PreparedStatement ps = prepareCursor(statementConnection, sql, params);
+                     ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        handler.processRow(rs);
+                    }
+                }
+                if (autoCommit) {
+                    con.commit();
+                }
+            } catch (SQLException | RuntimeException ex) {
+                if (autoCommit) {
+                    con.rollback();
+                }
+                throw ex;
+            } finally {
+                if (autoCommit) {
+                    con.setAutoCommit(true);
+                }
+            }
+            return null;
+        });
+    }
+
+    /** Like {@link #cursorQuery}, but rows are pulled lazily; closing the stream ends the cursor and releases the connection. */
+    private <T> Stream<T> cursorStream(String sql, List<Object> params, RowMapper<T> mapper) {
+        DataSource dataSource = jdbc().getDataSource();
+        Connection con = DataSourceUtils.getConnection(dataSource);
+        CursorResources cursor = new CursorResources(con, dataSource);
+        try {
+            cursor.open(sql, params);
+        } catch (SQLException | RuntimeException ex) {
+            cursor.close();
+            throw translate(sql, ex);
+        }
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            private int rowNum;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!cursor.resultSet.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.mapRow(cursor.resultSet, rowNum++));
+                    return true;
+                } catch (SQLException ex) {
+                    throw translate(sql, ex);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(cursor::close);
+    }
+
+    private CapturedStatement capture(VezhaHotQuery query, String sql, List<Object> params) {
+        CapturedStatement statement = new CapturedStatement(sql, params);
+        lastStatements.put(query, statement);
+        return statement;
+    }
+
+    /**
+     * Replays the statement {@code query} last ran with (same SQL and bound values) under
+     * {@code EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON)}. ANALYZE executes the statement, so run this as
+     * {@link VezhaTrafficClass#BACKGROUND} to keep it on the batch pool.
+     *
+     * @return empty when the query has not run since startup or the DB is disabled
+     */
+    public Optional<ExplainedStatement> explain(VezhaHotQuery query) {
+        CapturedStatement statement = lastStatements.get(query);
+        if (!vezhaDbProps.isEnabled() || statement == null) {
+            return Optional.empty();
+        }
+        String plan = jdbc().query("EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + statement.sql(),
+                args(statement.params()), rs -> rs.next() ? rs.getString(1) : null);
+        return Optional.ofNullable(plan).map(json -> new ExplainedStatement(query, statement.sql(), json));
+    }
+
+    private PreparedStatement prepareCursor(Connection con, String sql, List<Object> params) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            ps.setFetchSize(vezhaDbProps.getStreamFetchSize());
+            bind(con, ps, params);
+            return ps;
+        } catch (SQLException ex) {
+            ps.close();
+            throw ex;
+        }
+    }
+
+    /** Binds parameters; {@code Long[]} values become {@code bigint[]} arrays (see {@link DetectionQuery}). */
+    private static void bind(Connection con, PreparedStatement ps, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            if (params.get(i) instanceof Long[] ids) {
+                ps.setArray(i + 1, con.createArrayOf("bigint", ids));
+            } else {
+                ps.setObject(i + 1, params.get(i));
+            }
+        }
+    }
+
+    private static PreparedStatementSetter args(List<Object> params) {
+        return ps -> bind(ps.getConnection(), ps, params);
+    }
+
+    /** The ids as a single {@code bigint[]} parameter. */
+    private static List<Object> idArray(Collection<Long> ids) {
+        Long[] array = ids.stream().filter(Objects::nonNull).distinct().toArray(Long[]::new);
+        return List.of((Object) array);
+    }
+
+    private RuntimeException translate(String sql, Exception ex) {
+        if (ex instanceof SQLException sqlEx) {
+            DataAccessException translated = jdbc().getExceptionTranslator().translate("cursor stream", sql, sqlEx);
+            return translated != null ? translated : new UncategorizedSQLException("cursor stream", sql, sqlEx);
+        }
+        return (RuntimeException) ex;
+    }
+
+    /** Connection, statement and cursor of one {@link #cursorStream}; {@link #close} is idempotent. */
+    private final class CursorResources {
+        private final Connection connection;
+        private final DataSource dataSource;
+        private boolean managedTransaction;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
+        private boolean closed;
+
+        private CursorResources(Connection connection, DataSource dataSource) {
+            this.connection = connection;
+            this.dataSource = dataSource;
+        }
+
+        private void open(String sql, List<Object> params) throws SQLException {
+            if (connection.getAutoCommit()) {
+                connection.setAutoCommit(false);
+                managedTransaction = true;
+            }
+            statement = prepareCursor(connection, sql, params);
+            resultSet = statement.executeQuery();
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            JdbcUtils.closeResultSet(resultSet);
+            JdbcUtils.closeStatement(statement);
+            try {
+                if (managedTransaction) {
+                    // read-only scan: nothing to commit, just end the cursor's transaction
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException ex) {
+                log.warn("[VEZHA-DB] Failed to end cursor transaction: {}", ex.getMessage());
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        }
+    }
+
+    /** Folds the adjacent image rows of each item into one {@link ListItemDto}. */
+    private static final class ListItemRowGrouper implements RowCallbackHandler {
+        private final Consumer<ListItemDto> consumer;
+        private ListItemDto current;
+
+        private ListItemRowGrouper(Consumer<ListItemDto> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
             Long itemId = rs.getLong("item_id");
-            ListItemDto item = items.computeIfAbsent(itemId, id -> {
-                ListItemDto created = new ListItemDto();
-                created.setId(id);
-                created.setListId(rsLong(rs, "list_id"));
-                created.setName(rsString(rs, "name"));
-                created.setComment(rsString(rs, "comment"));
-                created.setImages(new ArrayList<>());
-                return created;
-            });
+            if (current == null || !current.getId().equals(itemId)) {
+                finish();
+                current = new ListItemDto();
+                current.setId(itemId);
+                current.setListId(rsLong(rs, "list_id"));
+                current.setName(rsString(rs, "name"));
+                current.setComment(rsString(rs, "comment"));
+                Timestamp created = rs.getTimestamp("created_at");
+                current.setCreatedAt(created == null ? null : created.getTime());
+                current.setImages(new ArrayList<>());
+            }
             String path = rsString(rs, "path");
             if (path != null && !path.isBlank()) {
                 ListImage image = new ListImage();
                 image.setPath(path);
-                item.getImages().add(image);
+                current.getImages().add(image);
             }
-        }, listId);
-        return new ArrayList<>(items.values());
+        }
+
+        private void finish() {
+            if (current != null) {
+                consumer.accept(current);
+                current = null;
+            }
+        }
     }
 
-    public List<DetectionDto> findLatestDetectionsByListItem(Long listId, List<Long> analyticsIds, Long startMillis, Long endMillis) {
-        if (!vezhaDbProps.isEnabled() || analyticsIds == null || analyticsIds.isEmpty()) {
-            return List.of();
+    private static DetectionDto mapStreamedDetection(ResultSet rs) throws SQLException {
+        DetectionDto d = new DetectionDto();
+        d.setId(rsLong(rs, "id"));
+        ListItemDto item = new ListItemDto();
+        item.setId(rsLong(rs, "list_item_id"));
+        item.setListId(rsLong(rs, "list_id"));
+        item.setName(rsString(rs, "item_name"));
+        d.setListItem(item);
+        DetectionDto.AnalyticsRef analytics = new DetectionDto.AnalyticsRef();
+        analytics.setId(rsLong(rs, "analytics_id"));
+        d.setAnalytics(analytics);
+        Timestamp created = rs.getTimestamp("created_at");
+        if (created != null) {
+            d.setTimestamp(created.toInstant().toEpochMilli());
         }
-        String placeholders = analyticsIds.stream().map(x -> "?").collect(Collectors.joining(","));
-        String sql = "SELECT DISTINCT ON (fd.list_item_id) fd.list_item_id, fd.analytics_id, fd.created_at " +
-                "FROM " + schema() + ".face_detections fd " +
-                "WHERE fd.list_id = ? AND fd.list_item_id IS NOT NULL " +
-                "AND fd.analytics_id IN (" + placeholders + ") " +
-                "AND (? IS NULL OR fd.created_at >= to_timestamp(? / 1000.0)) " +
-                "AND (? IS NULL OR fd.created_at <= to_timestamp(? / 1000.0)) " +
-                "ORDER BY fd.list_item_id, fd.created_at DESC, fd.id DESC";
-        List<Object> params = new ArrayList<>();
-        params.add(listId);
-        params.addAll(analyticsIds);
-        params.add(startMillis);
-        params.add(startMillis);
-        params.add(endMillis);
-        params.add(endMillis);
-
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            DetectionDto d = new DetectionDto();
-            ListItemDto item = new ListItemDto();
-            item.setId(rsLong(rs, "list_item_id"));
-            d.setListItem(item);
-
-            DetectionDto.AnalyticsRef analytics = new DetectionDto.AnalyticsRef();
-            analytics.setId(rsLong(rs, "analytics_id"));
-            d.setAnalytics(analytics);
-
-            Timestamp created = rs.getTimestamp("created_at");
-            if (created != null) {
-                d.setTimestamp(created.toInstant().atZone(ZoneOffset.UTC).toInstant().toEpochMilli());
+        return d;
+    }
+
+    /**
+     * Whether {@code error} means the VEZHA DB did not answer in time: a cancelled statement (query or
+     * {@code statement_timeout}, SQLSTATE 57014) or no free pooled connection within the connection timeout.
+     * Callers use it to fall back to their last cached result instead of failing.
+     */
+    public static boolean isTimeout(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof QueryTimeoutException || t instanceof SQLTimeoutException
+                    || t instanceof SQLTransientConnectionException
+                    || (t instanceof SQLException sql && "57014".equals(sql.getSQLState()))) {
+                return true;
             }
-            return d;
-        }, params.toArray());
+        }
+        return false;
     }
 
     private TimeAttendance parseTimeAttendance(String json) {
@@ -148,8 +661,13 @@ public class VezhaDbRepository {
         }
     }
 
+    /** {@link VezhaTrafficClass#BACKGROUND} callers use the batch pool; everything else the interactive one. */
+    private JdbcTemplate jdbc() {
+        return VezhaTrafficClass.current() == VezhaTrafficClass.BACKGROUND ? batchJdbc : interactiveJdbc;
+    }
+
     private String schema() {
-        return (vezhaDbProps.getSchema() == null || vezhaDbProps.getSchema().isBlank()) ? "videoanalytics" : vezhaDbProps.getSchema();
+        return vezhaDbProps.resolveSchema();
     }
 
     private static Long rsLong(java.sql.ResultSet rs, String c) {
@@ -0,0 +1,28 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import java.util.Map;
+
+/**
+ * The VEZHA DB reads that dominate refresh and report time. {@link VezhaDbRepository} remembers the last
+ * statement each one ran with so it can be replayed under {@code EXPLAIN}; {@link #indexes()} are the
+ * composite indexes (relation to column list) that serve it when the plan falls back to a sequential scan.
+ */
+public enum VezhaHotQuery {
+    /** {@code findLatestDetectionsByListItem}: evacuation refresh and cafeteria window counts */
+    LATEST_DETECTIONS(Map.of("face_detections", "list_id, list_item_id, created_at DESC")),
+    /** {@code findListItems} / {@code findListItemsByListIds} */
+    LIST_ITEMS(Map.of("face_list_items", "list_id, name, id",
+            "face_list_items_images", "list_item_id, id")),
+    /** {@code streamDetections} / {@code openDetectionStream}: cafeteria meal history range scans */
+    DETECTION_RANGE(Map.of("face_detections", "list_id, analytics_id, created_at"));
+
+    private final Map<String, String> indexes;
+
+    VezhaHotQuery(Map<String, String> indexes) {
+        this.indexes = indexes;
+    }
+
+    public Map<String, String> indexes() {
+        return indexes;
+    }
+}
@@ -0,0 +1,188 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListImage;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Token-level decoding of VEZHA detection and list-item pages. Elements of {@code data} are pushed
+ * to the callback one by one as slim DTOs carrying only the fields the report/lookup code reads;
+ * everything else (boxes, embeddings, nested configs) is skipped without being materialized.
+ */
+final class VezhaJsonStreams {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private VezhaJsonStreams() {
+    }
+
+    /**
+     * Detections keep id, timestamp, face_image, analytics.id/stream_id and list_item.id/name/list_id.
+     *
+     * @return number of elements in the page's {@code data} array
+     */
+    static int readDetections(InputStream body, Consumer<DetectionDto> sink) throws IOException {
+        return readData(body, p -> sink.accept(readDetection(p)));
+    }
+
+    /**
+     * List items keep id, name, list_id, comment, created_at and the first image path.
+     *
+     * @return number of elements in the page's {@code data} array
+     */
+    static int readListItems(InputStream body, Consumer<ListItemDto> sink) throws IOException {
+        return readData(body, p -> sink.accept(readListItem(p)));
+    }
+
+    private interface ElementReader {
+        void read(JsonParser p) throws IOException;
+    }
+
+    private static int readData(InputStream body, ElementReader reader) throws IOException {
+        if (body == null) {
+            return 0;
+        }
+        int count = 0;
+        try (JsonParser p = JSON.createParser(body)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                return 0;
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        reader.read(p);
+                        count++;
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        return count;
+    }
+
+    private static DetectionDto readDetection(JsonParser p) throws IOException {
+        DetectionDto d = new DetectionDto();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "id" -> d.setId(longValue(p, value));
+                case "timestamp" -> d.setTimestamp(longValue(p, value));
+                case "face_image" -> d.setFaceImage(textValue(p, value));
+                case "analytics" -> d.setAnalytics(value == JsonToken.START_OBJECT ? readAnalytics(p) : skip(p));
+                case "list_item" -> d.setListItem(value == JsonToken.START_OBJECT ? readListItem(p) : skip(p));
+                default -> p.skipChildren();
+            }
+        }
+        return d;
+    }
+
+    private static DetectionDto.AnalyticsRef readAnalytics(JsonParser p) throws IOException {
+        DetectionDto.AnalyticsRef ref = new DetectionDto.AnalyticsRef();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "id" -> ref.setId(longValue(p, value));
+                case "stream_id" -> ref.setStreamId(longValue(p, value));
+                default -> p.skipChildren();
+            }
+        }
+        return ref;
+    }
+
+    private static ListItemDto readListItem(JsonParser p) throws IOException {
+        ListItemDto item = new ListItemDto();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "id" -> item.setId(longValue(p, value));
+                case "name" -> item.setName(textValue(p, value));
+                case "list_id" -> item.setListId(longValue(p, value));
+                case "comment" -> item.setComment(textValue(p, value));
+                case "created_at" -> item.setCreatedAt(scalarValue(p, value));
+                case "images" -> item.setImages(value == JsonToken.START_ARRAY ? readFirstImage(p) : skip(p));
+                default -> p.skipChildren();
+            }
+        }
+        return item;
+    }
+
+    private static List<ListImage> readFirstImage(JsonParser p) throws IOException {
+        ListImage first = null;
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (first == null && p.currentToken() == JsonToken.START_OBJECT) {
+                first = new ListImage();
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    JsonToken value = p.nextToken();
+                    if ("path".equals(field)) {
+                        first.setPath(textValue(p, value));
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        return first == null ? List.of() : List.of(first);
+    }
+
+    private static Long longValue(JsonParser p, JsonToken value) throws IOException {
+        return switch (value) {
+            case VALUE_NUMBER_INT -> p.getLongValue();
+            case VALUE_NUMBER_FLOAT -> (long) p.getDoubleValue();
+            case VALUE_STRING -> parseLong(p.getText());
+            default -> {
+                p.skipChildren();
+                yield null;
+            }
+        };
+    }
+
+    private static String textValue(JsonParser p, JsonToken value) throws IOException {
+        if (value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+            return p.getValueAsString();
+        }
+        p.skipChildren();
+        return null;
+    }
+
+    /** Mirrors Jackson's untyped binding for {@code Object} fields: numbers stay numbers, text stays text. */
+    private static Object scalarValue(JsonParser p, JsonToken value) throws IOException {
+        return switch (value) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> p.getNumberValue();
+            case VALUE_STRING -> p.getText();
+            default -> {
+                p.skipChildren();
+                yield null;
+            }
+        };
+    }
+
+    private static <T> T skip(JsonParser p) throws IOException {
+        p.skipChildren();
+        return null;
+    }
+
+    private static Long parseLong(String raw) {
+        try {
+            return raw == null || raw.isBlank() ? null : Long.parseLong(raw.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
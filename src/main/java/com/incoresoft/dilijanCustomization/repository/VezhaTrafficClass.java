@@ -0,0 +1,62 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * Priority class of outbound VEZHA traffic, in descending priority. The class is bound to the calling
+ * thread for the duration of {@link #run}/{@link #supply}/{@link #call}; untagged calls are {@link #INTERACTIVE}.
+ * Async requests take the class of the thread that submitted them.
+ */
+public enum VezhaTrafficClass {
+    /** Evacuation reports: reserved share of the connection pool */
+    EMERGENCY,
+    /** Operator-triggered reports and lookups */
+    INTERACTIVE,
+    /** VEZHA webhooks (unknown-person add/remove) */
+    WEBHOOK,
+    /** Scheduled jobs (unknown-list cleanup, nightly cafeteria report, evacuation status refresh); also selects the batch VEZHA DB pool */
+    BACKGROUND;
+
+    private static final ThreadLocal<VezhaTrafficClass> CURRENT = new ThreadLocal<>();
+
+    public static VezhaTrafficClass current() {
+        VezhaTrafficClass current = CURRENT.get();
+        return current == null ? INTERACTIVE : current;
+    }
+
+    public void run(Runnable work) {
+        supply(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public <T> T supply(Supplier<T> work) {
+        VezhaTrafficClass previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    public <T> T call(Callable<T> work) throws Exception {
+        VezhaTrafficClass previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.call();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    private static void restore(VezhaTrafficClass previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
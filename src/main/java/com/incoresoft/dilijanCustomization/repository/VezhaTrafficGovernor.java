@@ -0,0 +1,196 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
+import com.incoresoft.dilijanCustomization.config.VezhaTrafficProps;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control for outbound VEZHA calls by {@link VezhaTrafficClass}:
+ * <ul>
+ *     <li>each class has its own concurrency bulkhead and token-bucket rate limit ({@code vezha.traffic.*});</li>
+ *     <li>non-emergency classes additionally share {@code max-connections - emergency-reserve} slots, so the
+ *     reserved connections are always free for evacuation reports however busy the scheduled jobs are.</li>
+ * </ul>
+ * Blocking calls go through {@link #interceptor()}; the async client asks {@link #tryAcquire} and orders
+ * its queue by class.
+ */
+@Slf4j
+@Component
+public class VezhaTrafficGovernor {
+
+    private final VezhaTrafficProps props;
+    private final Semaphore shared;
+    private final Map<VezhaTrafficClass, Lane> lanes = new EnumMap<>(VezhaTrafficClass.class);
+
+    private record Lane(Semaphore bulkhead, TokenBucket rate) {
+    }
+
+    public VezhaTrafficGovernor(VezhaTrafficProps props, VezhaApiProps apiProps) {
+        this.props = props;
+        this.shared = new Semaphore(Math.max(1, apiProps.getMaxConnections() - Math.max(0, props.getEmergencyReserve())));
+        lanes.put(VezhaTrafficClass.EMERGENCY, lane(props.getEmergency()));
+        lanes.put(VezhaTrafficClass.INTERACTIVE, lane(props.getInteractive()));
+        lanes.put(VezhaTrafficClass.WEBHOOK, lane(props.getWebhook()));
+        lanes.put(VezhaTrafficClass.BACKGROUND, lane(props.getBackground()));
+    }
+
+    /** Waits up to {@code vezha.traffic.max-wait} for a token and a slot, then rejects the call. */
+    public Permit acquire(VezhaTrafficClass trafficClass) {
+        if (!props.isEnabled()) {
+            return Permit.NONE;
+        }
+        long deadline = System.nanoTime() + props.getMaxWait().toNanos();
+        Lane lane = lanes.get(trafficClass);
+        try {
+            while (!lane.rate().tryTake()) {
+                long wait = lane.rate().nanosUntilToken();
+                if (System.nanoTime() + wait > deadline) {
+                    throw rejected(trafficClass, "rate limit");
+                }
+                TimeUnit.NANOSECONDS.sleep(Math.max(wait, 1));
+            }
+            if (!lane.bulkhead().tryAcquire(remaining(deadline), TimeUnit.NANOSECONDS)) {
+                throw rejected(trafficClass, "concurrency limit");
+            }
+            if (trafficClass != VezhaTrafficClass.EMERGENCY
+                    && !shared.tryAcquire(remaining(deadline), TimeUnit.NANOSECONDS)) {
+                lane.bulkhead().release();
+                throw rejected(trafficClass, "shared connection limit");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for VEZHA " + trafficClass + " capacity", e);
+        }
+        return permit(trafficClass, lane);
+    }
+
+    /** Non-blocking variant for the async client: null when the class has no free slot or token right now. */
+    Permit tryAcquire(VezhaTrafficClass trafficClass) {
+        if (!props.isEnabled()) {
+            return Permit.NONE;
+        }
+        Lane lane = lanes.get(trafficClass);
+        if (!lane.bulkhead().tryAcquire()) {
+            return null;
+        }
+        boolean needsShared = trafficClass != VezhaTrafficClass.EMERGENCY;
+        if (needsShared && !shared.tryAcquire()) {
+            lane.bulkhead().release();
+            return null;
+        }
+        if (!lane.rate().tryTake()) {
+            if (needsShared) {
+                shared.release();
+            }
+            lane.bulkhead().release();
+            return null;
+        }
+        return permit(trafficClass, lane);
+    }
+
+    /** Wraps every RestTemplate call; the slot is held until the response is closed, not just until headers arrive. */
+    public ClientHttpRequestInterceptor interceptor() {
+        return (request, body, execution) -> {
+            Permit permit = acquire(VezhaTrafficClass.current());
+            try {
+                return new PermitReleasingResponse(execution.execute(request, body), permit);
+            } catch (IOException | RuntimeException e) {
+                permit.close();
+                throw e;
+            }
+        };
+    }
+
+    int availableSlots(VezhaTrafficClass trafficClass) {
+        return lanes.get(trafficClass).bulkhead().availablePermits();
+    }
+
+    private Permit permit(VezhaTrafficClass trafficClass, Lane lane) {
+        boolean holdsShared = trafficClass != VezhaTrafficClass.EMERGENCY;
+        return new Permit(() -> {
+            if (holdsShared) {
+                shared.release();
+            }
+            lane.bulkhead().release();
+        });
+    }
+
+    private static Lane lane(VezhaTrafficProps.Limits limits) {
+        return new Lane(new Semaphore(Math.max(1, limits.getMaxConcurrent())),
+                new TokenBucket(limits.getRatePerSecond(), limits.getBurst()));
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    private static RejectedExecutionException rejected(VezhaTrafficClass trafficClass, String reason) {
+        log.warn("[TRAFFIC] Rejected {} VEZHA call: {} reached", trafficClass, reason);
+        return new RejectedExecutionException("VEZHA " + trafficClass + " traffic rejected: " + reason + " reached");
+    }
+
+    /** Admission slot; closing it more than once is a no-op. */
+    public static final class Permit implements AutoCloseable {
+        static final Permit NONE = new Permit(() -> { });
+
+        private final Runnable release;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Runnable release) {
+            this.release = release;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release.run();
+            }
+        }
+    }
+
+    private record PermitReleasingResponse(ClientHttpResponse delegate, Permit permit) implements ClientHttpResponse {
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                permit.close();
+            }
+        }
+    }
+}
@@ -1,13 +1,16 @@
 package com.incoresoft.dilijanCustomization.telegram;
 
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.CafeteriaPivotRow;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.LiveAttendanceSnapshot;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealWindow;
 import com.incoresoft.dilijanCustomization.domain.attendance.service.AttendanceReportService;
+import com.incoresoft.dilijanCustomization.domain.attendance.service.LiveAttendanceService;
 import com.incoresoft.dilijanCustomization.domain.evacuation.service.EvacuationReportService;
 import com.incoresoft.dilijanCustomization.domain.evacuation.service.EvacuationStatusService;
+import com.incoresoft.dilijanCustomization.domain.shared.service.FaceListCache;
+import com.incoresoft.dilijanCustomization.domain.shared.service.ListItemDirectory;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.CachedResult;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListDto;
-import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListsResponse;
-import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
-import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemsResponse;
-import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.Cell;
@@ -41,13 +44,12 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.ResolverStyle;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
@@ -62,13 +64,17 @@ public class TelegramBot extends TelegramLongPollingBot {
     @Value("${telegram.bot.token}")
     private String botToken;
 
-    private final FaceApiRepository faceApiRepository;
     private final EvacuationReportService reportService;
     private final AttendanceReportService attendanceReportService;
     private final EvacuationStatusService evacuationStatusService;
+    private final LiveAttendanceService liveAttendanceService;
+    private final FaceListCache faceListCache;
+    private final ListItemDirectory listItemDirectory;
 
     /** Выбранные списки на пользователя. */
     private final Map<Long, Set<Long>> chatSelections = new ConcurrentHashMap<>();
+    /** {@link FaceListCache#version()} at which each chat's selection was last checked. */
+    private final Map<Long, Long> selectionVersions = new ConcurrentHashMap<>();
     /** Текущий режим для каждого чата. */
     private enum Mode { NONE, EVACUATION, ATTENDANCE }
     private final Map<Long, Mode> chatModes = new ConcurrentHashMap<>();
@@ -80,8 +86,6 @@ public class TelegramBot extends TelegramLongPollingBot {
     private static final int REPORT_COL_STATUS = 0;
     private static final int REPORT_COL_ID = 3;
     private static final int REPORT_COL_NAME = 4;
-    private static final int LIST_ITEMS_PAGE_LIMIT = 1000;
-    private static final int MAX_LIST_ITEMS_PAGES = 10_000;
 
     @Override
     public void onUpdateReceived(Update update) {
@@ -109,10 +113,15 @@ public class TelegramBot extends TelegramLongPollingBot {
 
         if ("/start".equalsIgnoreCase(text)) {
             chatSelections.remove(chatId);
+            selectionVersions.remove(chatId);
             chatModes.put(chatId, Mode.NONE);
             sendStartMenu(chatId);
             return;
         }
+        if ("/live".equalsIgnoreCase(text)) {
+            sendLiveAttendance(chatId);
+            return;
+        }
         if ("Evacuation".equalsIgnoreCase(text)) {
             chatModes.put(chatId, Mode.EVACUATION);
             sendListSelection(chatId);
@@ -125,6 +134,17 @@ public class TelegramBot extends TelegramLongPollingBot {
         }
         // Если режим ATTENDANCE, пробуем разобрать дату
         if (chatModes.getOrDefault(chatId, Mode.NONE) == Mode.ATTENDANCE) {
+            DateRange range = parseDateRange(text);
+            if (range != null) {
+                try {
+                    sendStarted(chatId);
+                    generateAttendanceForRange(chatId, range);
+                } catch (Exception ex) {
+                    log.error("Attendance range report error: {}", ex.getMessage(), ex);
+                    execute(new SendMessage(chatId.toString(), "Failed to create attendance report: " + ex.getMessage()));
+                }
+                return;
+            }
             LocalDate parsed = parseMmDdYyyy(text);
             if (parsed != null) {
                 try {
@@ -138,6 +158,7 @@ public class TelegramBot extends TelegramLongPollingBot {
                 String hint = """
                         Please enter a date in this format:
                         MM/DD/YYYY (e.g., 11/10/2025)
+                        Or a date range: MM/DD/YYYY - MM/DD/YYYY
                         Or use the buttons below: Today / Yesterday.
                         """;
                 execute(new SendMessage(chatId.toString(), hint));
@@ -160,7 +181,7 @@ public class TelegramBot extends TelegramLongPollingBot {
             try {
                 Long listId = Long.valueOf(data.substring("toggle_".length()));
                 chatSelections.computeIfAbsent(chatId, k -> ConcurrentHashMap.newKeySet());
-                Set<Long> selected = chatSelections.get(chatId);
+                Set<Long> selected = currentSelection(chatId);
                 if (selected.contains(listId)) selected.remove(listId);
                 else selected.add(listId);
                 editListSelection(chatId, messageId, selected);
@@ -171,7 +192,7 @@ public class TelegramBot extends TelegramLongPollingBot {
         }
         // Генерация отчёта по выбранным спискам
         if ("generate".equals(data)) {
-            Set<Long> selected = chatSelections.getOrDefault(chatId, Collections.emptySet());
+            Set<Long> selected = currentSelection(chatId);
             if (selected.isEmpty()) {
                 execute(new SendMessage(chatId.toString(), "No lists selected. Use the checkboxes to pick at least one list."));
                 return;
@@ -180,9 +201,9 @@ public class TelegramBot extends TelegramLongPollingBot {
             long startNanos = System.nanoTime();
             try {
                 waitMessageId = sendGeneratingMessage(chatId);
-                File report = reportService.buildEvacuationReport(selected.stream().toList());
-                SendDocument doc = new SendDocument(chatId.toString(), new InputFile(report));
-                doc.setCaption("Evacuation report for lists: " + selected.size());
+                CachedResult<File> report = reportService.buildEvacuationReportResult(selected.stream().toList());
+                SendDocument doc = new SendDocument(chatId.toString(), new InputFile(report.value()));
+                doc.setCaption("Evacuation report for lists: " + selected.size() + staleNote(report));
                 execute(doc);
                 deleteMessageIfPresent(chatId, waitMessageId);
                 sendGenerationTime(chatId, startNanos);
@@ -213,6 +234,10 @@ public class TelegramBot extends TelegramLongPollingBot {
             }
             return;
         }
+        if ("ATT_LIVE".equals(data)) {
+            sendLiveAttendance(chatId);
+            return;
+        }
         if ("ATT_YESTERDAY".equals(data)) {
             try {
                 sendStarted(chatId);
@@ -241,10 +266,27 @@ public class TelegramBot extends TelegramLongPollingBot {
         execute(msg);
     }
 
+    /**
+     * The chat's selected lists. When the face lists changed since the last check ({@link FaceListCache#version()}),
+     * lists that are no longer reportable (deleted, disabled, attendance off) are dropped from the selection.
+     */
+    private Set<Long> currentSelection(Long chatId) {
+        Set<Long> selected = chatSelections.getOrDefault(chatId, Collections.emptySet());
+        List<FaceListDto> reportable = faceListCache.reportableLists();
+        long version = faceListCache.version();
+        Long checked = selectionVersions.put(chatId, version);
+        if (checked == null || checked != version) {
+            Set<Long> ids = reportable.stream().map(FaceListDto::getId).collect(Collectors.toSet());
+            if (!selected.isEmpty() && selected.retainAll(ids)) {
+                log.info("[TELEGRAM] Dropped lists that are no longer reportable from the selection of chat {}", chatId);
+            }
+        }
+        return selected;
+    }
+
     // ------ Меню для Evacuation ------
     private void sendListSelection(Long chatId) throws TelegramApiException {
-        FaceListsResponse response = faceApiRepository.getFaceLists(200);
-        List<FaceListDto> lists = filterReportableLists(response);
+        List<FaceListDto> lists = faceListCache.reportableLists();
         if (lists.isEmpty()) {
             execute(new SendMessage(chatId.toString(), "No lists available to report on."));
             return;
@@ -256,8 +298,7 @@ public class TelegramBot extends TelegramLongPollingBot {
     }
 
     private void editListSelection(Long chatId, Integer messageId, Set<Long> selected) throws TelegramApiException {
-        FaceListsResponse response = faceApiRepository.getFaceLists(200);
-        List<FaceListDto> lists = filterReportableLists(response);
+        List<FaceListDto> lists = faceListCache.reportableLists();
         if (lists.isEmpty()) return;
 
         InlineKeyboardMarkup keyboard = buildEvacuationKeyboard(lists, selected);
@@ -296,19 +337,8 @@ public class TelegramBot extends TelegramLongPollingBot {
         return markup;
     }
 
-    private List<FaceListDto> filterReportableLists(FaceListsResponse response) {
-        if (response == null || response.getData() == null) return Collections.emptyList();
-        return response.getData().stream()
-                .filter(Objects::nonNull)
-                .filter(l -> l.getStatus() != null && l.getStatus().equals(1))
-                .filter(l -> l.getTimeAttendance() != null && Boolean.TRUE.equals(l.getTimeAttendance().getEnabled()))
-                .sorted(Comparator.comparing(FaceListDto::getName, String.CASE_INSENSITIVE_ORDER))
-                .toList();
-    }
-
     private void handleGenerateForAll(Long chatId) throws Exception {
-        FaceListsResponse response = faceApiRepository.getFaceLists(200);
-        List<FaceListDto> eligible = filterReportableLists(response);
+        List<FaceListDto> eligible = faceListCache.reportableLists();
         if (eligible.isEmpty()) {
             execute(new SendMessage(chatId.toString(), "No lists with reports enabled."));
             return;
@@ -318,9 +348,9 @@ public class TelegramBot extends TelegramLongPollingBot {
         List<Long> allIds = eligible.stream().map(FaceListDto::getId).toList();
         try {
             waitMessageId = sendGeneratingMessage(chatId);
-            File report = reportService.buildEvacuationReport(allIds);
-            SendDocument doc = new SendDocument(chatId.toString(), new InputFile(report));
-            doc.setCaption("Evacuation report (ALL enabled lists): " + allIds.size() + " lists");
+            CachedResult<File> report = reportService.buildEvacuationReportResult(allIds);
+            SendDocument doc = new SendDocument(chatId.toString(), new InputFile(report.value()));
+            doc.setCaption("Evacuation report (ALL enabled lists): " + allIds.size() + " lists" + staleNote(report));
             execute(doc);
             deleteMessageIfPresent(chatId, waitMessageId);
             sendGenerationTime(chatId, startNanos);
@@ -337,6 +367,9 @@ public class TelegramBot extends TelegramLongPollingBot {
                 • Tap a button for Today or Yesterday
                 • Or type a date in this format:
                   MM/DD/YYYY (e.g., 11/10/2025)
+                • Or a date range (one sheet per day + summary):
+                  MM/DD/YYYY - MM/DD/YYYY
+                • Live: meals served so far today (/live)
                 """;
         InlineKeyboardButton today = new InlineKeyboardButton();
         today.setText("Today");
@@ -346,8 +379,12 @@ public class TelegramBot extends TelegramLongPollingBot {
         yesterday.setText("Yesterday");
         yesterday.setCallbackData("ATT_YESTERDAY");
 
+        InlineKeyboardButton live = new InlineKeyboardButton();
+        live.setText("Live");
+        live.setCallbackData("ATT_LIVE");
+
         InlineKeyboardMarkup kb = new InlineKeyboardMarkup();
-        kb.setKeyboard(List.of(List.of(today, yesterday)));
+        kb.setKeyboard(List.of(List.of(today, yesterday), List.of(live)));
 
         SendMessage msg = new SendMessage(chatId.toString(), text);
         msg.setReplyMarkup(kb);
@@ -374,6 +411,10 @@ public class TelegramBot extends TelegramLongPollingBot {
         }
     }
 
+    private static String staleNote(CachedResult<?> report) {
+        return report.stale() ? "\nNote: VEZHA DB timed out, some data is from the last successful refresh" : "";
+    }
+
     private void sendGenerationTime(Long chatId, long startNanos) throws TelegramApiException {
         Duration duration = Duration.ofNanos(System.nanoTime() - startNanos);
         execute(new SendMessage(chatId.toString(), "Generation took: " + formatDuration(duration)));
@@ -397,6 +438,38 @@ public class TelegramBot extends TelegramLongPollingBot {
         execute(doc);
     }
 
+    private void generateAttendanceForRange(Long chatId, DateRange range) throws Exception {
+        File report = attendanceReportService.buildRangeReport(range.from(), range.to(), null, null);
+        SendDocument doc = new SendDocument(chatId.toString(), new InputFile(report));
+        doc.setCaption("Attendance report for " + range.from().format(MM_DD_YYYY) + " - " + range.to().format(MM_DD_YYYY));
+        execute(doc);
+    }
+
+    private void sendLiveAttendance(Long chatId) throws TelegramApiException {
+        execute(new SendMessage(chatId.toString(), formatLiveAttendance(liveAttendanceService.snapshot())));
+    }
+
+    static String formatLiveAttendance(LiveAttendanceSnapshot snapshot) {
+        StringBuilder sb = new StringBuilder("Live attendance for ").append(snapshot.date().format(MM_DD_YYYY)).append('\n');
+        sb.append(snapshot.currentWindow() != null
+                ? "Now serving: " + snapshot.currentWindow().label()
+                : "No meal window open").append('\n');
+        for (MealWindow window : MealWindow.values()) {
+            sb.append(window.label()).append(": ").append(snapshot.uniquePeople().getOrDefault(window, 0))
+                    .append(" people (").append(snapshot.totals().getOrDefault(window, 0)).append(" across lists)\n");
+        }
+        if (!snapshot.lists().isEmpty()) {
+            sb.append('\n');
+            for (CafeteriaPivotRow row : snapshot.lists()) {
+                sb.append(row.category()).append(": ")
+                        .append(row.breakfast()).append(" / ")
+                        .append(row.lunch()).append(" / ")
+                        .append(row.dinner()).append('\n');
+            }
+        }
+        return sb.toString().trim();
+    }
+
     /**
      * Обрабатывает загруженный отчёт об эвакуации. Парсит XLSX и обновляет статусы.
      */
@@ -415,8 +488,7 @@ public class TelegramBot extends TelegramLongPollingBot {
                 Workbook wb = WorkbookFactory.create(fis);
                 // Соотнесение названий листов и ID списков (по sanitize)
                 Map<String, Long> nameToId = new HashMap<>();
-                var listsResponse = faceApiRepository.getFaceLists(200);
-                var lists = filterReportableLists(listsResponse);
+                var lists = faceListCache.reportableLists();
                 for (var list : lists) {
                     String sheetName = sanitizeSheetName(list.getName() != null ? list.getName() : ("List_" + list.getId()));
                     nameToId.put(sheetName, list.getId());
@@ -458,6 +530,20 @@ public class TelegramBot extends TelegramLongPollingBot {
         }
     }
 
+    /** Parses "MM/DD/YYYY - MM/DD/YYYY"; returns null when the text is not a range. */
+    static DateRange parseDateRange(String raw) {
+        if (raw == null) return null;
+        String[] parts = raw.trim().split("\\s*[-–]\\s*");
+        if (parts.length != 2) return null;
+        try {
+            LocalDate from = LocalDate.parse(parts[0].trim(), MM_DD_YYYY);
+            LocalDate to = LocalDate.parse(parts[1].trim(), MM_DD_YYYY);
+            return to.isBefore(from) ? new DateRange(to, from) : new DateRange(from, to);
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
     /**
      * Extract updates from the uploaded evacuation workbook. The workbook layout must match
      * {@link com.incoresoft.dilijanCustomization.domain.shared.service.ReportService#exportEvacuationWorkbook},
@@ -504,55 +590,9 @@ public class TelegramBot extends TelegramLongPollingBot {
     private Map<Long, Map<String, Long>> buildListItemNameMappings(Iterable<Long> listIds) {
         Map<Long, Map<String, Long>> mappings = new HashMap<>();
         for (Long listId : listIds) {
-            if (listId == null) {
-                continue;
-            }
-
-            Map<String, Long> itemNameToId = new HashMap<>();
-            int offset = 0;
-            int pagesRead = 0;
-            int previousSize = 0;
-            while (pagesRead++ < MAX_LIST_ITEMS_PAGES) {
-                ListItemsResponse response = faceApiRepository.getListItems(
-                        listId,
-                        "",
-                        "",
-                        offset,
-                        LIST_ITEMS_PAGE_LIMIT,
-                        "asc",
-                        "name");
-                List<ListItemDto> items = (response == null || response.getData() == null)
-                        ? Collections.emptyList()
-                        : response.getData();
-
-                for (ListItemDto item : items) {
-                    if (item == null || item.getId() == null || item.getName() == null || item.getName().isBlank()) {
-                        continue;
-                    }
-                    itemNameToId.putIfAbsent(item.getName().trim(), item.getId());
-                }
-
-                if (items.size() < LIST_ITEMS_PAGE_LIMIT) {
-                    break;
-                }
-
-                if (itemNameToId.size() == previousSize) {
-                    log.warn("Stopping list-item name mapping pagination for list {} because no new items were discovered at offset {}.",
-                            listId,
-                            offset);
-                    break;
-                }
-                previousSize = itemNameToId.size();
-                offset += LIST_ITEMS_PAGE_LIMIT;
-            }
-
-            if (pagesRead >= MAX_LIST_ITEMS_PAGES) {
-                log.warn("Stopped list-item name mapping pagination for list {} after hitting the safety page limit of {}.",
-                        listId,
-                        MAX_LIST_ITEMS_PAGES);
+            if (listId != null) {
+                mappings.put(listId, listItemDirectory.exactNameIndex(listId));
             }
-
-            mappings.put(listId, itemNameToId);
         }
         return mappings;
     }
@@ -622,6 +662,8 @@ public class TelegramBot extends TelegramLongPollingBot {
 
     record EvacuationUpdate(Long listId, Long listItemId, boolean status) {}
 
+    record DateRange(LocalDate from, LocalDate to) {}
+
     @Override
     public String getBotUsername() { return botUsername; }
 
@@ -1,6 +1,9 @@
 package com.incoresoft.dilijanCustomization.web;
 
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.LiveAttendanceSnapshot;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealHistoryFormat;
 import com.incoresoft.dilijanCustomization.domain.attendance.service.AttendanceReportService;
+import com.incoresoft.dilijanCustomization.domain.attendance.service.LiveAttendanceService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
@@ -9,6 +12,7 @@ import java.io.File;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.stream.Collectors;
 
 @RestController
@@ -16,6 +20,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class CafeteriaReportController {
     private final AttendanceReportService service;
+    private final LiveAttendanceService liveAttendanceService;
 
     /**
      * Example:
@@ -29,15 +34,81 @@ public class CafeteriaReportController {
             @RequestParam(name = "timezone", required = false) String tz,
             @RequestParam(name = "listIds", required = false) String listIds
     ) throws Exception {
-        List<Long> only = null;
-        if (listIds != null && !listIds.isBlank()) {
-            only = Arrays.stream(listIds.split(","))
-                    .map(String::trim)
-                    .filter(s -> !s.isEmpty())
-                    .map(Long::valueOf)
-                    .collect(Collectors.toList());
-        }
-        File f = service.buildSingleDayReport(date, tz, only);
+        File f = service.buildSingleDayReport(date, tz, parseListIds(listIds));
+        return "OK: " + f.getAbsolutePath();
+    }
+
+    /**
+     * Example:
+     * POST http://localhost:8080/cafeteria/build-range?from=2025-11-01&to=2025-11-30&listIds=2,5,7
+     * - one sheet per day plus a "Summary" sheet, both dates inclusive
+     * - range length is capped by vezha.cafe.max-range-days
+     */
+    @PostMapping("/build-range")
+    public String buildRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "timezone", required = false) String tz,
+            @RequestParam(name = "listIds", required = false) String listIds
+    ) throws Exception {
+        File f = service.buildRangeReport(from, to, tz, parseListIds(listIds));
         return "OK: " + f.getAbsolutePath();
     }
+
+    /**
+     * Example:
+     * POST http://localhost:8080/cafeteria/rollups/backfill?from=2025-01-01&to=2025-10-31&overwrite=false
+     * - persists daily rollups for closed days (config timezone, all non-excluded lists)
+     * - days that already have rollups are skipped unless overwrite=true
+     */
+    @PostMapping("/rollups/backfill")
+    public String backfillRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "overwrite", defaultValue = "false") boolean overwrite
+    ) {
+        int days = service.backfillRollups(from, to, overwrite);
+        return "OK: " + days + " day(s) rolled up";
+    }
+
+    /**
+     * Example:
+     * POST http://localhost:8080/cafeteria/history?from=2025-11-01&to=2025-11-30&format=csv
+     * - one row per person per meal window: first-seen time and camera (analytics id)
+     * - format: xlsx (default) or csv; range length is capped by vezha.cafe.max-range-days
+     */
+    @PostMapping("/history")
+    public String buildHistory(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "timezone", required = false) String tz,
+            @RequestParam(name = "listIds", required = false) String listIds,
+            @RequestParam(name = "format", defaultValue = "xlsx") String format
+    ) throws Exception {
+        MealHistoryFormat historyFormat = MealHistoryFormat.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        File f = service.buildMealHistory(from, to, tz, parseListIds(listIds), historyFormat);
+        return "OK: " + f.getAbsolutePath();
+    }
+
+    /**
+     * Example:
+     * GET http://localhost:8080/cafeteria/live
+     * - today's unique people per meal window and list, from in-memory counters fed by
+     *   /webhooks/vezha/face-event/cafeteria (no database access)
+     */
+    @GetMapping("/live")
+    public LiveAttendanceSnapshot live() {
+        return liveAttendanceService.snapshot();
+    }
+
+    private static List<Long> parseListIds(String listIds) {
+        if (listIds == null || listIds.isBlank()) {
+            return null;
+        }
+        return Arrays.stream(listIds.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(Long::valueOf)
+                .collect(Collectors.toList());
+    }
 }
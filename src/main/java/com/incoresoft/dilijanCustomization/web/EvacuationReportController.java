@@ -1,6 +1,7 @@
 package com.incoresoft.dilijanCustomization.web;
 
 import com.incoresoft.dilijanCustomization.domain.evacuation.service.EvacuationReportService;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.CachedResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -24,6 +25,8 @@ import java.util.List;
 @RequiredArgsConstructor
 @ConditionalOnProperty(prefix = "evacuation", name = "enabled", havingValue = "true", matchIfMissing = true)
 public class EvacuationReportController {
+    /** "true" when the report fell back to cached data after a VEZHA DB timeout */
+    static final String STALE_HEADER = "X-Report-Stale";
 
     private final EvacuationReportService service;
 
@@ -43,12 +46,14 @@ public class EvacuationReportController {
                     .map(Long::valueOf)
                     .toList();
 
-            File file = service.buildEvacuationReport(ids);
+            CachedResult<File> report = service.buildEvacuationReportResult(ids);
+            File file = report.value();
             String name = "evacuation_" + LocalDate.now() + ".xlsx";
             String cd = "attachment; filename=\"" + URLEncoder.encode(name, StandardCharsets.UTF_8) + "\"";
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, cd)
+                    .header(STALE_HEADER, String.valueOf(report.stale()))
                     .header(HttpHeaders.CONTENT_TYPE, "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
                     .body(new FileSystemResource(file));
         } catch (Exception ex) {
@@ -0,0 +1,54 @@
+package com.incoresoft.dilijanCustomization.web;
+
+import com.incoresoft.dilijanCustomization.domain.shared.dto.QueryPlanReport;
+import com.incoresoft.dilijanCustomization.domain.shared.service.QueryPlanDiagnostics;
+import com.incoresoft.dilijanCustomization.repository.VezhaHotQuery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+@RestController
+@RequestMapping("/diagnostics/vezha-db")
+@RequiredArgsConstructor
+public class VezhaDiagnosticsController {
+    private final QueryPlanDiagnostics diagnostics;
+
+    /**
+     * Example:
+     * POST http://localhost:8080/diagnostics/vezha-db/explain?queries=latest-detections,list-items
+     * - runs EXPLAIN (ANALYZE, BUFFERS) with the parameters each query last ran with (it executes the query)
+     * - queries optional: latest-detections, list-items, detection-range (if absent => all)
+     */
+    @PostMapping("/explain")
+    public List<QueryPlanReport> explain(@RequestParam(name = "queries", required = false) String queries) {
+        return diagnostics.explain(parseQueries(queries));
+    }
+
+    /**
+     * Example:
+     * GET http://localhost:8080/diagnostics/vezha-db/plans
+     * - stored plans, newest first (vezha.db.explain.history-size)
+     */
+    @GetMapping("/plans")
+    public List<QueryPlanReport> plans() {
+        return diagnostics.history();
+    }
+
+    private static List<VezhaHotQuery> parseQueries(String queries) {
+        if (queries == null || queries.isBlank()) {
+            return List.of(VezhaHotQuery.values());
+        }
+        return Arrays.stream(queries.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(s -> VezhaHotQuery.valueOf(s.replace('-', '_').toUpperCase(Locale.ROOT)))
+                .toList();
+    }
+}
@@ -1,6 +1,7 @@
 package com.incoresoft.dilijanCustomization.web;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.incoresoft.dilijanCustomization.domain.attendance.service.LiveAttendanceService;
 import com.incoresoft.dilijanCustomization.domain.unknown.dto.FaceEventDto;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
 import com.incoresoft.dilijanCustomization.domain.unknown.service.UnknownPersonService;
@@ -18,6 +19,7 @@ import java.util.Optional;
 public class VezhaWebhookController {
 
     private final UnknownPersonService service;
+    private final LiveAttendanceService liveAttendanceService;
     private final ObjectMapper objectMapper;
 
     @PostMapping(path = "/face-event/add", consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -51,4 +53,21 @@ public class VezhaWebhookController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    /** Face events of the cafeteria analytics; updates the live meal counters only. */
+    @PostMapping(path = "/face-event/cafeteria", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> countCafeteriaVisit(
+            @RequestBody String raw,
+            @RequestParam(required = false) Map<String, String> params,
+            @RequestHeader(required = false) MultiValueMap<String, String> headers
+    ) {
+        try {
+            FaceEventDto event = objectMapper.readValue(raw, FaceEventDto.class);
+            boolean counted = liveAttendanceService.record(event);
+            return counted ? ResponseEntity.noContent().build()
+                    : ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
@@ -2,6 +2,7 @@ package com.incoresoft.dilijanCustomization.bootstrap;
 
 import com.incoresoft.dilijanCustomization.config.UnknownListRegistry;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListDto;
+import com.incoresoft.dilijanCustomization.domain.shared.service.FaceListCache;
 import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -16,12 +17,13 @@ class UnknownListInitializerTest {
     @Test
     void usesExistingListWhenFound() throws Exception {
         FaceApiRepository repo = mock(FaceApiRepository.class);
+        FaceListCache lists = mock(FaceListCache.class);
         UnknownListRegistry registry = new UnknownListRegistry();
         FaceListDto dto = new FaceListDto();
         dto.setId(5L);
-        when(repo.findListByName("unknownAutoGenerated")).thenReturn(Optional.of(dto));
+        when(lists.findByName("unknownAutoGenerated")).thenReturn(Optional.of(dto));
 
-        UnknownListInitializer initializer = new UnknownListInitializer(repo, registry);
+        UnknownListInitializer initializer = new UnknownListInitializer(repo, registry, lists);
         initializer.ensureUnknownList().run(null);
 
         verify(repo, never()).createFaceList(anyString(), anyString());
@@ -31,14 +33,16 @@ class UnknownListInitializerTest {
     @Test
     void createsListWhenMissing() throws Exception {
         FaceApiRepository repo = mock(FaceApiRepository.class);
+        FaceListCache lists = mock(FaceListCache.class);
         UnknownListRegistry registry = new UnknownListRegistry();
-        when(repo.findListByName("unknownAutoGenerated")).thenReturn(Optional.empty());
+        when(lists.findByName("unknownAutoGenerated")).thenReturn(Optional.empty());
         when(repo.createFaceList(anyString(), anyString())).thenReturn(42L);
 
-        UnknownListInitializer initializer = new UnknownListInitializer(repo, registry);
+        UnknownListInitializer initializer = new UnknownListInitializer(repo, registry, lists);
         initializer.ensureUnknownList().run(null);
 
         verify(repo).createFaceList("unknownAutoGenerated", "Autocreated at app startup for unknown persons");
+        verify(lists).invalidate();
         assertEquals(42L, registry.get());
     }
 }
@@ -1,9 +1,18 @@
 package com.incoresoft.dilijanCustomization.domain.attendance.service;
 
 import com.incoresoft.dilijanCustomization.config.CafeteriaProps;
+import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
 import com.incoresoft.dilijanCustomization.config.VezhaDbProps;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.CafeteriaPivot;
 import com.incoresoft.dilijanCustomization.domain.attendance.dto.CafeteriaPivotRow;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealHistoryFormat;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealHistoryRow;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealWindow;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.WindowMembers;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.*;
+import com.incoresoft.dilijanCustomization.domain.shared.service.DetectionWindowCache;
+import com.incoresoft.dilijanCustomization.domain.shared.service.FaceListCache;
+import com.incoresoft.dilijanCustomization.domain.shared.service.ListItemDirectory;
 import com.incoresoft.dilijanCustomization.domain.shared.service.ReportService;
 import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
 import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
@@ -13,11 +22,19 @@ import org.mockito.ArgumentCaptor;
 import java.io.File;
 import java.nio.file.Files;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -45,7 +62,7 @@ class AttendanceReportServiceTest {
         list2.setId(2L);
         list2.setName("Contractor");
         listsResponse.setData(List.of(list1, list2));
-        when(repo.getFaceLists(200)).thenReturn(listsResponse);
+        when(repo.getFaceLists(200, 0)).thenReturn(listsResponse);
 
         DetectionDto det1 = new DetectionDto();
         det1.setListItem(new ListItemDto());
@@ -53,22 +70,28 @@ class AttendanceReportServiceTest {
         DetectionDto det2 = new DetectionDto();
         det2.setListItem(new ListItemDto());
         det2.getListItem().setId(101L);
-        when(repo.getAllDetectionsInWindow(eq(1L), anyList(), anyLong(), anyLong(), anyInt()))
-                .thenReturn(List.of(det1, det2));
+        doAnswer(inv -> {
+            Consumer<DetectionDto> sink = inv.getArgument(5);
+            sink.accept(det1);
+            sink.accept(det2);
+            return 2L;
+        }).when(repo).forEachDetectionInWindow(eq(1L), anyList(), anyLong(), anyLong(), anyInt(), any());
 
         File generated = new File(outDir, "alpha.xlsx");
-        when(reportService.exportCafeteriaPivot(any(), anyString(), anyList(), any())).thenReturn(generated);
+        when(reportService.exportCafeteriaPivot(any(), anyString(), any(CafeteriaPivot.class), any())).thenReturn(generated);
 
-        AttendanceReportService service = new AttendanceReportService(props, repo, vezhaDbRepository, vezhaDbProps, reportService);
+        AttendanceReportService service = new AttendanceReportService(props, repo, vezhaDbRepository, vezhaDbProps, reportService,
+                mock(AttendanceRollupService.class), new FaceListCache(repo, new VezhaApiProps()),
+                mock(DetectionWindowCache.class), mock(ListItemDirectory.class));
         File result = service.buildSingleDayReport(LocalDate.of(2024, 12, 1));
 
         assertThat(result).isEqualTo(generated);
 
-        ArgumentCaptor<List<CafeteriaPivotRow>> rowsCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<CafeteriaPivot> pivotCaptor = ArgumentCaptor.forClass(CafeteriaPivot.class);
         verify(reportService).exportCafeteriaPivot(eq(LocalDate.of(2024, 12, 1)), eq("Cafeteria"),
-                rowsCaptor.capture(), any(File.class));
+                pivotCaptor.capture(), any(File.class));
 
-        List<CafeteriaPivotRow> rows = rowsCaptor.getValue();
+        List<CafeteriaPivotRow> rows = pivotCaptor.getValue().rows();
         assertThat(rows).hasSize(1);
         CafeteriaPivotRow row = rows.get(0);
         assertThat(row.category()).isEqualTo("Alpha");
@@ -105,12 +128,281 @@ class AttendanceReportServiceTest {
                 .thenReturn(List.of(det));
 
         File generated = new File(outDir, "alpha-db.xlsx");
-        when(reportService.exportCafeteriaPivot(any(), anyString(), anyList(), any())).thenReturn(generated);
+        when(reportService.exportCafeteriaPivot(any(), anyString(), any(CafeteriaPivot.class), any())).thenReturn(generated);
 
-        AttendanceReportService service = new AttendanceReportService(props, repo, vezhaDbRepository, vezhaDbProps, reportService);
+        AttendanceReportService service = new AttendanceReportService(props, repo, vezhaDbRepository, vezhaDbProps, reportService,
+                mock(AttendanceRollupService.class), mock(FaceListCache.class),
+                mock(DetectionWindowCache.class), mock(ListItemDirectory.class));
         service.buildSingleDayReport(LocalDate.of(2024, 12, 1));
 
         verifyNoInteractions(repo);
         verify(vezhaDbRepository, atLeastOnce()).findLatestDetectionsByListItem(eq(1L), anyList(), anyLong(), anyLong());
     }
+
+    @Test
+    void buildsRangeReportWithOneAggregationPerDay() throws Exception {
+        CafeteriaProps props = new CafeteriaProps();
+        props.setTimezone("UTC");
+        props.setAnalyticsIds(List.of(10L));
+        props.setRangeParallelism(2);
+        File outDir = Files.createTempDirectory("cafe-range-out").toFile();
+        props.setOutputDir(outDir.getAbsolutePath());
+
+        FaceApiRepository repo = mock(FaceApiRepository.class);
+        VezhaDbRepository vezhaDbRepository = mock(VezhaDbRepository.class);
+        VezhaDbProps vezhaDbProps = new VezhaDbProps();
+        vezhaDbProps.setEnabled(true);
+        ReportService reportService = mock(ReportService.class);
+
+        FaceListDto list1 = new FaceListDto();
+        list1.setId(1L);
+        list1.setName("Alpha");
+        when(vezhaDbRepository.findListsWithAttendanceEnabled()).thenReturn(List.of(list1));
+
+        DetectionDto det = new DetectionDto();
+        ListItemDto item = new ListItemDto();
+        item.setId(100L);
+        det.setListItem(item);
+        when(vezhaDbRepository.findLatestDetectionsByListItem(eq(1L), anyList(), anyLong(), anyLong()))
+                .thenReturn(List.of(det));
+
+        File generated = new File(outDir, "range.xlsx");
+        Map<LocalDate, List<CafeteriaPivotRow>> written = new LinkedHashMap<>();
+        when(reportService.exportCafeteriaRange(any(), any(), anyList(), any(), any())).thenAnswer(inv -> {
+            List<LocalDate> days = inv.getArgument(2);
+            Function<LocalDate, CafeteriaPivot> pivots = inv.getArgument(3);
+            days.forEach(day -> written.put(day, pivots.apply(day).rows()));
+            return generated;
+        });
+
+        AttendanceReportService service = new AttendanceReportService(props, repo, vezhaDbRepository, vezhaDbProps, reportService,
+                mock(AttendanceRollupService.class), mock(FaceListCache.class),
+                mock(DetectionWindowCache.class), mock(ListItemDirectory.class));
+        File result = service.buildRangeReport(LocalDate.of(2024, 12, 1), LocalDate.of(2024, 12, 3), null, null);
+
+        assertThat(result).isEqualTo(generated);
+        assertThat(written).containsOnlyKeys(
+                LocalDate.of(2024, 12, 1), LocalDate.of(2024, 12, 2), LocalDate.of(2024, 12, 3));
+        assertThat(written.values()).allSatisfy(rows -> {
+            assertThat(rows).hasSize(1);
+            assertThat(rows.get(0).total()).isEqualTo(3);
+        });
+        // 3 days x 3 meal windows x 1 list
+        verify(vezhaDbRepository, times(9)).findLatestDetectionsByListItem(eq(1L), anyList(), anyLong(), anyLong());
+    }
+
+    @Test
+    void rejectsRangesAboveConfiguredLimit() {
+        CafeteriaProps props = new CafeteriaProps();
+        props.setTimezone("UTC");
+        props.setMaxRangeDays(7);
+        AttendanceReportService service = new AttendanceReportService(props, mock(FaceApiRepository.class),
+                mock(VezhaDbRepository.class), new VezhaDbProps(), mock(ReportService.class), mock(AttendanceRollupService.class),
+                mock(FaceListCache.class),
+                mock(DetectionWindowCache.class), mock(ListItemDirectory.class));
+
+        assertThatThrownBy(() ->
+                        service.buildRangeReport(LocalDate.of(2024, 12, 1), LocalDate.of(2024, 12, 31), null, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("exceeds");
+    }
+
+    @Test
+    void readsClosedDaysFromRollupsAndStoresRecomputedLists() throws Exception {
+        CafeteriaProps props = new CafeteriaProps();
+        props.setTimezone("UTC");
+        props.setAnalyticsIds(List.of(10L));
+        File outDir = Files.createTempDirectory("cafe-rollup-out").toFile();
+        props.setOutputDir(outDir.getAbsolutePath());
+
+        VezhaDbRepository vezhaDbRepository = mock(VezhaDbRepository.class);
+        VezhaDbProps vezhaDbProps = new VezhaDbProps();
+        vezhaDbProps.setEnabled(true);
+        ReportService reportService = mock(ReportService.class);
+        AttendanceRollupService rollupService = mock(AttendanceRollupService.class);
+
+        FaceListDto list1 = new FaceListDto();
+        list1.setId(1L);
+        list1.setName("Alpha");
+        FaceListDto list2 = new FaceListDto();
+        list2.setId(2L);
+        list2.setName("Beta");
+        when(vezhaDbRepository.findListsWithAttendanceEnabled()).thenReturn(List.of(list1, list2));
+        when(vezhaDbRepository.findLatestDetectionsByListItem(eq(2L), anyList(), anyLong(), anyLong()))
+                .thenReturn(List.of());
+
+        LocalDate date = LocalDate.of(2024, 12, 1);
+        when(rollupService.load(eq(date), anyList(), anyList())).thenReturn(Map.of(1L, Map.of(
+                MealWindow.BREAKFAST, new WindowMembers(Set.of(1L, 2L), Set.of(1L, 2L)),
+                MealWindow.LUNCH, new WindowMembers(Set.of(1L), Set.of(1L)),
+                MealWindow.DINNER, WindowMembers.empty())));
+        when(reportService.exportCafeteriaPivot(any(), any(), any(CafeteriaPivot.class), any())).thenReturn(new File(outDir, "r.xlsx"));
+
+        AttendanceReportService service = new AttendanceReportService(props, mock(FaceApiRepository.class),
+                vezhaDbRepository, vezhaDbProps, reportService, rollupService, mock(FaceListCache.class),
+                mock(DetectionWindowCache.class), mock(ListItemDirectory.class));
+        service.buildSingleDayReport(date);
+
+        ArgumentCaptor<CafeteriaPivot> pivotCaptor = ArgumentCaptor.forClass(CafeteriaPivot.class);
+        verify(reportService).exportCafeteriaPivot(eq(date), any(), pivotCaptor.capture(), any());
+        assertThat(pivotCaptor.getValue().rows()).extracting(CafeteriaPivotRow::category, CafeteriaPivotRow::total)
+                .containsExactly(tuple("Alpha", 3), tuple("Beta", 0));
+        verify(vezhaDbRepository, never()).findLatestDetectionsByListItem(eq(1L), anyList(), anyLong(), anyLong());
+        verify(rollupService).store(eq(date), anyList(), argThat(m -> m.keySet().equals(Set.of(2L))));
+    }
+
+    @Test
+    void countsPeopleOnSeveralListsOnceInUniqueRow() throws Exception {
+        CafeteriaProps props = new CafeteriaProps();
+        props.setTimezone("UTC");
+        props.setAnalyticsIds(List.of(10L));
+        File outDir = Files.createTempDirectory("cafe-unique-out").toFile();
+        props.setOutputDir(outDir.getAbsolutePath());
+
+        VezhaDbRepository vezhaDbRepository = mock(VezhaDbRepository.class);
+        VezhaDbProps vezhaDbProps = new VezhaDbProps();
+        vezhaDbProps.setEnabled(true);
+        ReportService reportService = mock(ReportService.class);
+
+        FaceListDto staff = new FaceListDto();
+        staff.setId(1L);
+        staff.setName("Staff");
+        FaceListDto kitchen = new FaceListDto();
+        kitchen.setId(2L);
+        kitchen.setName("Kitchen");
+        when(vezhaDbRepository.findListsWithAttendanceEnabled()).thenReturn(List.of(staff, kitchen));
+        when(vezhaDbRepository.findLatestDetectionsByListItem(eq(1L), anyList(), anyLong(), anyLong()))
+                .thenReturn(List.of(detection(100L, "Ann  Smith"), detection(101L, "Bob")));
+        when(vezhaDbRepository.findLatestDetectionsByListItem(eq(2L), anyList(), anyLong(), anyLong()))
+                .thenReturn(List.of(detection(200L, "ann smith")));
+        when(reportService.exportCafeteriaPivot(any(), any(), any(CafeteriaPivot.class), any()))
+                .thenReturn(new File(outDir, "u.xlsx"));
+
+        AttendanceReportService service = new AttendanceReportService(props, mock(FaceApiRepository.class),
+                vezhaDbRepository, vezhaDbProps, reportService, mock(AttendanceRollupService.class), mock(FaceListCache.class),
+                mock(DetectionWindowCache.class), mock(ListItemDirectory.class));
+        service.buildSingleDayReport(LocalDate.of(2024, 12, 1));
+
+        ArgumentCaptor<CafeteriaPivot> pivotCaptor = ArgumentCaptor.forClass(CafeteriaPivot.class);
+        verify(reportService).exportCafeteriaPivot(any(), any(), pivotCaptor.capture(), any());
+        CafeteriaPivot pivot = pivotCaptor.getValue();
+        assertThat(pivot.rows()).extracting(CafeteriaPivotRow::lunch).containsExactly(1, 2);
+        assertThat(pivot.uniquePeople().lunch()).isEqualTo(2);
+        // 3 windows x 2 lists, nothing extra for the campus row
+        verify(vezhaDbRepository, times(6)).findLatestDetectionsByListItem(anyLong(), anyList(), anyLong(), anyLong());
+    }
+
+    @Test
+    void readsWindowMembersFromDetectionWindowWhenCovered() throws Exception {
+        CafeteriaProps props = new CafeteriaProps();
+        props.setTimezone("UTC");
+        props.setAnalyticsIds(List.of(10L));
+        File outDir = Files.createTempDirectory("cafe-window-out").toFile();
+        props.setOutputDir(outDir.getAbsolutePath());
+
+        VezhaDbRepository vezhaDbRepository = mock(VezhaDbRepository.class);
+        VezhaDbProps vezhaDbProps = new VezhaDbProps();
+        vezhaDbProps.setEnabled(true);
+        ReportService reportService = mock(ReportService.class);
+
+        FaceListDto staff = new FaceListDto();
+        staff.setId(1L);
+        staff.setName("Staff");
+        FaceListDto kitchen = new FaceListDto();
+        kitchen.setId(2L);
+        kitchen.setName("Kitchen");
+        when(vezhaDbRepository.findListsWithAttendanceEnabled()).thenReturn(List.of(staff, kitchen));
+        when(reportService.exportCafeteriaPivot(any(), any(), any(CafeteriaPivot.class), any()))
+                .thenReturn(new File(outDir, "w.xlsx"));
+
+        DetectionWindowCache window = mock(DetectionWindowCache.class);
+        when(window.covers(anyLong())).thenReturn(true);
+        when(window.findListItemIdsSeen(eq(1L), anyCollection(), anyLong(), anyLong())).thenReturn(Set.of(100L, 101L));
+        when(window.findListItemIdsSeen(eq(2L), anyCollection(), anyLong(), anyLong())).thenReturn(Set.of(200L));
+        ListItemDirectory directory = mock(ListItemDirectory.class);
+        when(directory.findById(1L, 100L)).thenReturn(Optional.of(detection(100L, "Ann  Smith").getListItem()));
+        when(directory.findById(1L, 101L)).thenReturn(Optional.of(detection(101L, "Bob").getListItem()));
+        when(directory.findById(2L, 200L)).thenReturn(Optional.of(detection(200L, "ann smith").getListItem()));
+
+        AttendanceReportService service = new AttendanceReportService(props, mock(FaceApiRepository.class),
+                vezhaDbRepository, vezhaDbProps, reportService, mock(AttendanceRollupService.class), mock(FaceListCache.class),
+                window, directory);
+        service.buildSingleDayReport(LocalDate.of(2024, 12, 1));
+
+        ArgumentCaptor<CafeteriaPivot> pivotCaptor = ArgumentCaptor.forClass(CafeteriaPivot.class);
+        verify(reportService).exportCafeteriaPivot(any(), any(), pivotCaptor.capture(), any());
+        CafeteriaPivot pivot = pivotCaptor.getValue();
+        assertThat(pivot.rows()).extracting(CafeteriaPivotRow::lunch).containsExactly(1, 2);
+        assertThat(pivot.uniquePeople().lunch()).isEqualTo(2);
+        verify(vezhaDbRepository, never()).findLatestDetectionsByListItem(anyLong(), anyList(), anyLong(), anyLong());
+    }
+
+    @Test
+    void buildsMealHistoryWithFirstSightingPerWindow() throws Exception {
+        CafeteriaProps props = new CafeteriaProps();
+        props.setTimezone("UTC");
+        props.setAnalyticsIds(List.of(10L));
+        File outDir = Files.createTempDirectory("cafe-history-out").toFile();
+        props.setOutputDir(outDir.getAbsolutePath());
+
+        VezhaDbRepository vezhaDbRepository = mock(VezhaDbRepository.class);
+        VezhaDbProps vezhaDbProps = new VezhaDbProps();
+        vezhaDbProps.setEnabled(true);
+        ReportService reportService = mock(ReportService.class);
+
+        FaceListDto staff = new FaceListDto();
+        staff.setId(1L);
+        staff.setName("Staff");
+        when(vezhaDbRepository.findListsWithAttendanceEnabled()).thenReturn(List.of(staff));
+
+        LocalDate date = LocalDate.of(2024, 12, 1);
+        long lunch = date.atTime(12, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+        doAnswer(inv -> {
+            Consumer<DetectionDto> consumer = inv.getArgument(4);
+            consumer.accept(timedDetection(100L, lunch, 10L));
+            consumer.accept(timedDetection(100L, lunch + 60_000, 11L));
+            consumer.accept(timedDetection(101L, lunch + 120_000, 10L));
+            // between lunch and dinner: ignored
+            consumer.accept(timedDetection(102L, date.atTime(16, 0).toInstant(ZoneOffset.UTC).toEpochMilli(), 10L));
+            return null;
+        }).when(vezhaDbRepository).streamDetections(eq(List.of(1L)), eq(List.of(10L)), anyLong(), anyLong(), any());
+
+        List<MealHistoryRow> written = new ArrayList<>();
+        when(reportService.exportMealHistory(eq(MealHistoryFormat.CSV), any(), any(), any())).thenAnswer(inv -> {
+            Consumer<Consumer<MealHistoryRow>> producer = inv.getArgument(2);
+            producer.accept(written::add);
+            return (long) written.size();
+        });
+
+        AttendanceReportService service = new AttendanceReportService(props, mock(FaceApiRepository.class),
+                vezhaDbRepository, vezhaDbProps, reportService, mock(AttendanceRollupService.class), mock(FaceListCache.class),
+                mock(DetectionWindowCache.class), mock(ListItemDirectory.class));
+        File result = service.buildMealHistory(date, date, null, null, MealHistoryFormat.CSV);
+
+        assertThat(result.getName()).isEqualTo("history_2024-12-01_2024-12-01.csv");
+        assertThat(written).extracting(MealHistoryRow::listItemId, MealHistoryRow::window,
+                        MealHistoryRow::firstSeenAt, MealHistoryRow::analyticsId, MealHistoryRow::listName)
+                .containsExactly(
+                        tuple(100L, MealWindow.LUNCH, lunch, 10L, "Staff"),
+                        tuple(101L, MealWindow.LUNCH, lunch + 120_000, 10L, "Staff"));
+    }
+
+    private static DetectionDto timedDetection(Long itemId, long timestamp, Long analyticsId) {
+        DetectionDto det = detection(itemId, "Person " + itemId);
+        det.getListItem().setListId(1L);
+        det.setTimestamp(timestamp);
+        DetectionDto.AnalyticsRef analytics = new DetectionDto.AnalyticsRef();
+        analytics.setId(analyticsId);
+        det.setAnalytics(analytics);
+        return det;
+    }
+
+    private static DetectionDto detection(Long itemId, String name) {
+        ListItemDto item = new ListItemDto();
+        item.setId(itemId);
+        item.setName(name);
+        DetectionDto det = new DetectionDto();
+        det.setListItem(item);
+        return det;
+    }
 }
@@ -0,0 +1,76 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.service;
+
+import com.incoresoft.dilijanCustomization.config.CafeteriaProps;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.CafeteriaPivotRow;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.LiveAttendanceSnapshot;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealWindow;
+import com.incoresoft.dilijanCustomization.domain.unknown.dto.FaceEventDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class LiveAttendanceServiceTest {
+
+    @Test
+    void countsUniquePeoplePerWindowAndList() {
+        CafeteriaProps props = new CafeteriaProps();
+        props.setTimezone("UTC");
+        props.setAnalyticsIds(List.of(10L));
+        props.setExcludedListNames(Set.of("outsourced"));
+        LiveAttendanceService service = new LiveAttendanceService(props);
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        long lunch = today.atTime(LocalTime.of(12, 0)).toInstant(ZoneOffset.UTC).toEpochMilli();
+        long breakfast = today.atTime(LocalTime.of(7, 0)).toInstant(ZoneOffset.UTC).toEpochMilli();
+        long betweenMeals = today.atTime(LocalTime.of(16, 0)).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+        assertThat(service.record(event(1L, "Staff", 100L, "Person 100", 10L, lunch))).isTrue();
+        assertThat(service.record(event(1L, "Staff", 100L, "Person 100", 10L, lunch + 60_000))).isFalse();
+        assertThat(service.record(event(1L, "Staff", 101L, "Person 101", 10L, breakfast))).isTrue();
+        assertThat(service.record(event(2L, "Guests", 200L, "Person 200", 10L, lunch))).isTrue();
+        assertThat(service.record(event(2L, "Guests", 202L, "Person 100", 10L, lunch))).isTrue();
+        assertThat(service.record(event(2L, "Guests", 201L, "Person 201", 99L, lunch))).isFalse();
+        assertThat(service.record(event(3L, "Outsourced", 300L, "Person 300", 10L, lunch))).isFalse();
+        assertThat(service.record(event(1L, "Staff", 102L, "Person 102", 10L, betweenMeals))).isFalse();
+
+        LiveAttendanceSnapshot snapshot = service.snapshot();
+
+        assertThat(snapshot.date()).isEqualTo(today);
+        assertThat(snapshot.totals())
+                .containsEntry(MealWindow.BREAKFAST, 1)
+                .containsEntry(MealWindow.LUNCH, 3)
+                .containsEntry(MealWindow.DINNER, 0);
+        // "Person 100" is on both lists
+        assertThat(snapshot.uniquePeople()).containsEntry(MealWindow.LUNCH, 2);
+        assertThat(snapshot.lists())
+                .extracting(CafeteriaPivotRow::category, CafeteriaPivotRow::breakfast, CafeteriaPivotRow::lunch)
+                .containsExactly(tuple("Guests", 0, 2), tuple("Staff", 1, 1));
+    }
+
+    private static FaceEventDto event(Long listId, String listName, Long itemId, String personName,
+                                      Long analyticsId, long timestamp) {
+        FaceEventDto.PersonListRef list = new FaceEventDto.PersonListRef();
+        list.setId(listId);
+        list.setName(listName);
+        FaceEventDto.ListItemRef item = new FaceEventDto.ListItemRef();
+        item.setId(itemId);
+        item.setName(personName);
+        item.setList(list);
+        FaceEventDto.AnalyticsRef analytics = new FaceEventDto.AnalyticsRef();
+        analytics.setId(analyticsId);
+        FaceEventDto.FacePayload face = new FaceEventDto.FacePayload();
+        face.setListItem(item);
+        face.setAnalytics(analytics);
+        FaceEventDto event = new FaceEventDto();
+        event.setInList(true);
+        event.setTimestamp(timestamp);
+        event.setFace(face);
+        return event;
+    }
+}
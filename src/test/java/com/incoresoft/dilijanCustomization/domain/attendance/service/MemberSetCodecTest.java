@@ -0,0 +1,27 @@
+package com.incoresoft.dilijanCustomization.domain.attendance.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberSetCodecTest {
+
+    @Test
+    void roundTripsSortedDeltas() {
+        List<Long> ids = List.of(5_000_000_000L, 3L, 130L, 3L, 131L, 0L);
+
+        byte[] encoded = MemberSetCodec.encode(ids);
+
+        assertThat(MemberSetCodec.decode(encoded)).containsExactlyInAnyOrder(0L, 3L, 130L, 131L, 5_000_000_000L);
+        assertThat(encoded.length).isLessThan(ids.size() * Long.BYTES);
+    }
+
+    @Test
+    void encodesEmptySetAsEmptyArray() {
+        assertThat(MemberSetCodec.encode(Set.of())).isEmpty();
+        assertThat(MemberSetCodec.decode(new byte[0])).isEmpty();
+    }
+}
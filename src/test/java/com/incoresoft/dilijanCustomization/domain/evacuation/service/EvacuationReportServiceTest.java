@@ -1,10 +1,16 @@
 package com.incoresoft.dilijanCustomization.domain.evacuation.service;
 
+import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
+import com.incoresoft.dilijanCustomization.config.VezhaDbProps;
 import com.incoresoft.dilijanCustomization.domain.evacuation.dto.EvacuationReportRow;
 import com.incoresoft.dilijanCustomization.domain.evacuation.dto.EvacuationStatus;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.CachedResult;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListDto;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+import com.incoresoft.dilijanCustomization.domain.shared.service.ListItemDirectory;
 import com.incoresoft.dilijanCustomization.domain.shared.service.ReportService;
+import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
+import com.incoresoft.dilijanCustomization.repository.ListItemImages;
 import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -18,6 +24,7 @@ import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 class EvacuationReportServiceTest {
@@ -27,7 +34,7 @@ class EvacuationReportServiceTest {
         VezhaDbRepository repo = mock(VezhaDbRepository.class);
         ReportService reportService = mock(ReportService.class);
         EvacuationStatusService statusService = mock(EvacuationStatusService.class);
-        doNothing().when(statusService).refreshStatuses();
+        when(statusService.tryRefreshStatuses()).thenReturn(true);
 
         FaceListDto list1 = new FaceListDto();
         list1.setId(1L);
@@ -36,38 +43,44 @@ class EvacuationReportServiceTest {
         list2.setId(2L);
         list2.setName("List 2");
 
-        when(repo.findFaceList(1L)).thenReturn(list1);
-        when(repo.findFaceList(2L)).thenReturn(list2);
+        when(repo.findFaceLists(List.of(1L, 2L))).thenReturn(Map.of(1L, list1, 2L, list2));
 
         ListItemDto activeItem = new ListItemDto();
         activeItem.setId(10L);
         activeItem.setName("Active");
 
-        when(repo.findListItems(1L)).thenReturn(List.of(activeItem));
-        when(repo.findListItems(2L)).thenReturn(List.of(activeItem));
+        when(repo.findListItemsByListIds(List.of(1L, 2L), ListItemImages.FIRST))
+                .thenReturn(Map.of(1L, List.of(activeItem), 2L, List.of(activeItem)));
 
         EvacuationStatus status = new EvacuationStatus();
         status.setListId(1L);
         status.setListItemId(10L);
         status.setEntranceTime(123L);
         status.setManuallyUpdated(true);
-        when(statusService.getActiveStatuses(1L)).thenReturn(Map.of(10L, status));
-        when(statusService.getActiveStatuses(2L)).thenReturn(Map.of());
+        when(statusService.getActiveStatuses(List.of(1L, 2L))).thenReturn(Map.of(1L, Map.of(10L, status), 2L, Map.of()));
 
         File exported = File.createTempFile("evac-report-", ".xlsx");
         ArgumentCaptor<Map<FaceListDto, List<EvacuationReportRow>>> dataCaptor = ArgumentCaptor.forClass(Map.class);
         when(reportService.exportEvacuationWorkbook(dataCaptor.capture(), any(File.class))).thenReturn(exported);
 
-        EvacuationReportService service = new EvacuationReportService(repo, reportService, statusService);
-        File result = service.buildEvacuationReport(List.of(2L, 1L));
+        VezhaDbProps dbProps = new VezhaDbProps();
+        dbProps.setEnabled(true);
+        ListItemDirectory directory = new ListItemDirectory(repo, mock(FaceApiRepository.class), dbProps, new VezhaApiProps());
+        EvacuationReportService service = new EvacuationReportService(repo, reportService, statusService, directory);
+        CachedResult<File> result = service.buildEvacuationReportResult(List.of(2L, 1L));
 
-        assertThat(result).isEqualTo(exported);
+        assertThat(result.value()).isEqualTo(exported);
+        assertThat(result.stale()).isFalse();
         Map<FaceListDto, List<EvacuationReportRow>> data = dataCaptor.getValue();
         assertThat(data).hasSize(2);
         assertThat(data.get(list1)).extracting(r -> r.item().getId()).containsExactly(10L);
         assertThat(data.get(list1)).extracting(EvacuationReportRow::entranceTime).containsExactly(123L);
         assertThat(data.get(list1)).extracting(EvacuationReportRow::manuallyUpdated).containsExactly(true);
         assertThat(data.get(list2)).isEmpty();
+        // one batch query per source instead of three per list
+        verify(repo, never()).findFaceList(anyLong());
+        verify(repo, never()).findListItems(anyLong(), any());
+        verify(repo).findListItemsFingerprints(List.of(1L, 2L));
     }
 
     @Test
@@ -75,7 +88,7 @@ class EvacuationReportServiceTest {
         VezhaDbRepository repo = mock(VezhaDbRepository.class);
         ReportService reportService = mock(ReportService.class);
         EvacuationStatusService statusService = mock(EvacuationStatusService.class);
-        EvacuationReportService service = new EvacuationReportService(repo, reportService, statusService);
+        EvacuationReportService service = new EvacuationReportService(repo, reportService, statusService, mock(ListItemDirectory.class));
 
         String csv = "\uFEFFDate;Employee;Present\n01-09-2023;Alice;true\n02-09-2023;Alice;false\n01-09-2023;Bob;true\n";
 
@@ -92,7 +105,7 @@ class EvacuationReportServiceTest {
         VezhaDbRepository repo = mock(VezhaDbRepository.class);
         ReportService reportService = mock(ReportService.class);
         EvacuationStatusService statusService = mock(EvacuationStatusService.class);
-        EvacuationReportService service = new EvacuationReportService(repo, reportService, statusService);
+        EvacuationReportService service = new EvacuationReportService(repo, reportService, statusService, mock(ListItemDirectory.class));
 
         String raw = "01-09-2023 10:15";
         Long parsed = ReflectionTestUtils.invokeMethod(service, "parseHumanDateToMillis", raw);
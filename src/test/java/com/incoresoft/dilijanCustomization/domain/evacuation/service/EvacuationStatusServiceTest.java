@@ -5,17 +5,28 @@ import com.incoresoft.dilijanCustomization.config.PostgresProps;
 import com.incoresoft.dilijanCustomization.domain.evacuation.dto.EvacuationStatus;
 import com.incoresoft.dilijanCustomization.domain.evacuation.dto.EvacuationStatusPK;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionInsertedEvent;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListDto;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.TimeAttendance;
+import com.incoresoft.dilijanCustomization.domain.shared.service.DetectionWindowCache;
+import com.incoresoft.dilijanCustomization.domain.shared.service.ListMembershipSync;
 import com.incoresoft.dilijanCustomization.repository.EvacuationStatusRepository;
+import com.incoresoft.dilijanCustomization.repository.ListItemImages;
 import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
@@ -31,7 +42,8 @@ class EvacuationStatusServiceTest {
         EvacuationStatusRepository statusRepo = mock(EvacuationStatusRepository.class);
         when(statusRepo.findByListIdAndStatusTrue(99L)).thenThrow(new RuntimeException("db down"));
 
-        EvacuationStatusService service = new EvacuationStatusService(repo, props, postgresProps, statusRepo);
+        EvacuationStatusService service = new EvacuationStatusService(repo, props, postgresProps, statusRepo, new ListMembershipSync(repo),
+                mock(DetectionWindowCache.class));
         Set<Long> result = service.getActiveListItemIds(99L);
 
         assertThat(result).isEmpty();
@@ -45,7 +57,8 @@ class EvacuationStatusServiceTest {
         EvacuationStatusRepository statusRepo = mock(EvacuationStatusRepository.class);
         when(statusRepo.existsById(new EvacuationStatusPK(1L, 2L))).thenReturn(false);
 
-        EvacuationStatusService service = new EvacuationStatusService(repo, props, postgresProps, statusRepo);
+        EvacuationStatusService service = new EvacuationStatusService(repo, props, postgresProps, statusRepo, new ListMembershipSync(repo),
+                mock(DetectionWindowCache.class));
         service.updateStatus(1L, 2L, true);
 
         ArgumentCaptor<EvacuationStatus> captor = ArgumentCaptor.forClass(EvacuationStatus.class);
@@ -60,18 +73,125 @@ class EvacuationStatusServiceTest {
     }
 
     @Test
-    void fetchListItemsReadsFromDbRepository() {
+    void refreshStopsAtFirstTimeoutAndReportsStale() {
         VezhaDbRepository repo = mock(VezhaDbRepository.class);
         EvacuationProps props = new EvacuationProps();
         PostgresProps postgresProps = new PostgresProps();
         EvacuationStatusRepository statusRepo = mock(EvacuationStatusRepository.class);
-        EvacuationStatusService service = new EvacuationStatusService(repo, props, postgresProps, statusRepo);
+        EvacuationStatusService service = new EvacuationStatusService(repo, props, postgresProps, statusRepo, new ListMembershipSync(repo),
+                mock(DetectionWindowCache.class));
 
-        ListItemDto first = new ListItemDto();
+        FaceListDto first = new FaceListDto();
         first.setId(1L);
-        ListItemDto second = new ListItemDto();
+        first.setTimeAttendance(new TimeAttendance(true, List.of(1L), List.of(2L)));
+        FaceListDto second = new FaceListDto();
         second.setId(2L);
-        when(repo.findListItems(1L)).thenReturn(List.of(first, second));
+        second.setTimeAttendance(new TimeAttendance(true, List.of(1L), List.of(2L)));
+        when(repo.findListsWithAttendanceEnabled()).thenReturn(List.of(first, second));
+        when(repo.findListItemsFingerprint(1L))
+                .thenThrow(new QueryTimeoutException("canceling statement due to statement timeout"));
+
+        assertThat(service.refreshStatuses()).isFalse();
+        verify(repo, never()).findListItemsFingerprint(2L);
+    }
+
+    @Test
+    void anyRefreshFailureIsReportedStale() {
+        VezhaDbRepository repo = mock(VezhaDbRepository.class);
+        EvacuationStatusService service = new EvacuationStatusService(repo, new EvacuationProps(), new PostgresProps(),
+                mock(EvacuationStatusRepository.class), new ListMembershipSync(repo), mock(DetectionWindowCache.class));
+        FaceListDto first = new FaceListDto();
+        first.setId(1L);
+        first.setTimeAttendance(new TimeAttendance(true, List.of(1L), List.of(2L)));
+        FaceListDto second = new FaceListDto();
+        second.setId(2L);
+        second.setTimeAttendance(new TimeAttendance(true, List.of(1L), List.of(2L)));
+        when(repo.findListsWithAttendanceEnabled())
+                .thenThrow(new IllegalStateException("connection refused"))
+                .thenReturn(List.of(first, second));
+        when(repo.findListItemsFingerprint(1L)).thenThrow(new IllegalStateException("connection reset"));
+
+        assertThat(service.refreshStatuses()).isFalse();
+        assertThat(service.refreshStatuses()).isFalse();
+        verify(repo).findListItemsFingerprint(2L);
+    }
+
+    @Test
+    void tryRefreshReportsStaleInsteadOfWaitingForARunningRefresh() throws Exception {
+        VezhaDbRepository repo = mock(VezhaDbRepository.class);
+        EvacuationStatusService service = new EvacuationStatusService(repo, new EvacuationProps(), new PostgresProps(),
+                mock(EvacuationStatusRepository.class), new ListMembershipSync(repo), mock(DetectionWindowCache.class));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repo.findListsWithAttendanceEnabled()).thenAnswer(inv -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+
+        CompletableFuture<Boolean> background = CompletableFuture.supplyAsync(service::refreshStatuses);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(service.tryRefreshStatuses()).isFalse();
+        verify(repo, times(1)).findListsWithAttendanceEnabled();
+        release.countDown();
+        assertThat(background.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(service.tryRefreshStatuses()).isTrue();
+    }
+
+    @Test
+    void replicatedDetectionUpdatesStatusWhenNewer() {
+        VezhaDbRepository repo = mock(VezhaDbRepository.class);
+        EvacuationProps props = new EvacuationProps();
+        PostgresProps postgresProps = new PostgresProps();
+        EvacuationStatusRepository statusRepo = mock(EvacuationStatusRepository.class);
+        EvacuationStatusService service = new EvacuationStatusService(repo, props, postgresProps, statusRepo, new ListMembershipSync(repo),
+                mock(DetectionWindowCache.class));
+
+        FaceListDto list = new FaceListDto();
+        list.setId(1L);
+        list.setTimeAttendance(new TimeAttendance(true, List.of(1L), List.of(2L)));
+        when(repo.findListsWithAttendanceEnabled()).thenReturn(List.of(list));
+        service.refreshStatuses();
+
+        EvacuationStatus existing = new EvacuationStatus();
+        existing.setListId(1L);
+        existing.setListItemId(5L);
+        existing.setEntranceTime(100L);
+        when(statusRepo.findById(new EvacuationStatusPK(1L, 5L))).thenReturn(Optional.of(existing));
+        when(statusRepo.existsById(new EvacuationStatusPK(1L, 5L))).thenReturn(true);
+
+        service.onDetectionInserted(new DetectionInsertedEvent(replicated(5L, 2L, 90L)));
+        service.onDetectionInserted(new DetectionInsertedEvent(replicated(5L, 9L, 300L)));
+        verify(statusRepo, never()).updateStatus(anyLong(), anyLong(), anyBoolean(), any(), any(), anyBoolean());
+
+        service.onDetectionInserted(new DetectionInsertedEvent(replicated(5L, 2L, 200L)));
+        verify(statusRepo).updateStatus(1L, 5L, false, null, 200L, false);
+    }
+
+    private static DetectionDto replicated(Long itemId, Long analyticsId, Long timestamp) {
+        ListItemDto item = new ListItemDto();
+        item.setId(itemId);
+        item.setListId(1L);
+        DetectionDto.AnalyticsRef analytics = new DetectionDto.AnalyticsRef();
+        analytics.setId(analyticsId);
+        DetectionDto detection = new DetectionDto();
+        detection.setListItem(item);
+        detection.setAnalytics(analytics);
+        detection.setTimestamp(timestamp);
+        return detection;
+    }
+
+    @Test
+    void fetchListItemsReadsFromDbRepository() {
+        VezhaDbRepository repo = mock(VezhaDbRepository.class);
+        EvacuationProps props = new EvacuationProps();
+        PostgresProps postgresProps = new PostgresProps();
+        EvacuationStatusRepository statusRepo = mock(EvacuationStatusRepository.class);
+        EvacuationStatusService service = new EvacuationStatusService(repo, props, postgresProps, statusRepo, new ListMembershipSync(repo),
+                mock(DetectionWindowCache.class));
+
+        stubRoster(repo, item(1L), item(2L));
 
         @SuppressWarnings("unchecked")
         List<ListItemDto> items = ReflectionTestUtils.invokeMethod(service, "fetchListItems", 1L);
@@ -85,15 +205,14 @@ class EvacuationStatusServiceTest {
         EvacuationProps props = new EvacuationProps();
         PostgresProps postgresProps = new PostgresProps();
         EvacuationStatusRepository statusRepo = mock(EvacuationStatusRepository.class);
-        EvacuationStatusService service = new EvacuationStatusService(repo, props, postgresProps, statusRepo);
+        EvacuationStatusService service = new EvacuationStatusService(repo, props, postgresProps, statusRepo, new ListMembershipSync(repo),
+                mock(DetectionWindowCache.class));
 
         FaceListDto list = new FaceListDto();
         list.setId(1L);
         list.setTimeAttendance(new TimeAttendance(true, List.of(1L), List.of(2L)));
 
-        ListItemDto item = new ListItemDto();
-        item.setId(5L);
-        when(repo.findListItems(1L)).thenReturn(List.of(item));
+        stubRoster(repo, item(5L));
 
         DetectionDto detection = new DetectionDto();
         detection.setTimestamp(123L);
@@ -124,4 +243,83 @@ class EvacuationStatusServiceTest {
         assertThat(saved.getManuallyUpdated()).isTrue();
         assertThat(saved.getEntranceTime()).isEqualTo(123L);
     }
+
+    @Test
+    void refreshPrunesRemovedPeopleAndSkipsUnchangedStatuses() {
+        VezhaDbRepository repo = mock(VezhaDbRepository.class);
+        EvacuationProps props = new EvacuationProps();
+        PostgresProps postgresProps = new PostgresProps();
+        EvacuationStatusRepository statusRepo = mock(EvacuationStatusRepository.class);
+        EvacuationStatusService service = new EvacuationStatusService(repo, props, postgresProps, statusRepo, new ListMembershipSync(repo),
+                mock(DetectionWindowCache.class));
+
+        FaceListDto list = new FaceListDto();
+        list.setId(1L);
+        list.setTimeAttendance(new TimeAttendance(true, List.of(1L), List.of(2L)));
+        stubRoster(repo, item(5L));
+
+        EvacuationStatus unchanged = new EvacuationStatus();
+        unchanged.setListId(1L);
+        unchanged.setListItemId(5L);
+        unchanged.setStatus(false);
+        unchanged.setEnterStreamIds(new Long[]{1L});
+        unchanged.setExitStreamIds(new Long[]{2L});
+        unchanged.setManuallyUpdated(false);
+        EvacuationStatus removed = new EvacuationStatus();
+        removed.setListId(1L);
+        removed.setListItemId(6L);
+        removed.setStatus(true);
+        when(statusRepo.findByListId(1L)).thenReturn(List.of(unchanged, removed));
+
+        ReflectionTestUtils.invokeMethod(service, "updateListStatuses", list, 0L, 200L);
+
+        verify(statusRepo).deleteAllByIdInBatch(List.of(new EvacuationStatusPK(1L, 6L)));
+        verify(statusRepo, never()).saveAll(any());
+    }
+
+    @Test
+    void refreshReadsLatestDetectionsFromWindowWhenCovered() {
+        VezhaDbRepository repo = mock(VezhaDbRepository.class);
+        EvacuationProps props = new EvacuationProps();
+        PostgresProps postgresProps = new PostgresProps();
+        EvacuationStatusRepository statusRepo = mock(EvacuationStatusRepository.class);
+        DetectionWindowCache window = mock(DetectionWindowCache.class);
+        EvacuationStatusService service = new EvacuationStatusService(repo, props, postgresProps, statusRepo, new ListMembershipSync(repo),
+                window);
+
+        FaceListDto list = new FaceListDto();
+        list.setId(1L);
+        list.setTimeAttendance(new TimeAttendance(true, List.of(1L), List.of(2L)));
+        stubRoster(repo, item(5L));
+        when(window.covers(100L)).thenReturn(true);
+        when(window.findLatestDetectionsByListItem(eq(1L), anyCollection(), eq(100L), eq(200L)))
+                .thenReturn(List.of(replicated(5L, 1L, 150L)));
+
+        ReflectionTestUtils.invokeMethod(service, "updateListStatuses", list, 100L, 200L);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<EvacuationStatus>> captor = ArgumentCaptor.forClass(List.class);
+        verify(statusRepo).saveAll(captor.capture());
+        assertThat(captor.getValue().getFirst().getStatus()).isTrue();
+        assertThat(captor.getValue().getFirst().getEntranceTime()).isEqualTo(150L);
+        verify(repo, never()).findLatestDetectionsByListItem(anyLong(), anyList(), any(), any());
+    }
+
+    private static ListItemDto item(Long id) {
+        ListItemDto item = new ListItemDto();
+        item.setId(id);
+        item.setListId(1L);
+        return item;
+    }
+
+    /** Stubs the membership reads of list 1 so a first sync returns exactly {@code items}. */
+    private static void stubRoster(VezhaDbRepository repo, ListItemDto... items) {
+        Map<Long, Long> digests = new HashMap<>();
+        for (ListItemDto item : items) {
+            digests.put(item.getId(), item.getId() * 10);
+        }
+        when(repo.findListItemsFingerprint(1L)).thenReturn(42L);
+        when(repo.findListItemDigests(1L)).thenReturn(digests);
+        when(repo.findListItemsByIds(any(), eq(ListItemImages.NONE))).thenReturn(List.of(items));
+    }
 }
@@ -0,0 +1,183 @@
+package com.incoresoft.dilijanCustomization.domain.shared.service;
+
+import com.incoresoft.dilijanCustomization.config.VezhaDbProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionInsertedEvent;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class DetectionWindowCacheTest {
+
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+    private static final long NOW = 1_000 * HOUR;
+
+    @Test
+    void ringAnswersLatestPerItemAndUniquesAndDropsDuplicates() {
+        DetectionRing ring = new DetectionRing(Duration.ofHours(2), Duration.ofMinutes(10));
+        ring.add(1, NOW - 50 * 60_000, 7, 100, 1);
+        ring.add(2, NOW - 20 * 60_000, 7, 100, 2);
+        ring.add(3, NOW - 20 * 60_000, 7, 101, 3);
+        ring.add(4, NOW - 5 * 60_000, 8, 100, 1);
+        assertThat(ring.add(2, NOW - 20 * 60_000, 7, 100, 2)).isFalse();
+
+        assertThat(ring.size()).isEqualTo(4);
+        assertThat(ring.latestByItem(7, new long[]{1, 2}, NOW - HOUR, NOW))
+                .containsOnlyKeys(100L)
+                .containsEntry(100L, new DetectionRing.Hit(2, NOW - 20 * 60_000, 2));
+        assertThat(ring.latestByItem(7, new long[]{1}, NOW - HOUR, NOW).get(100L).detectionId()).isEqualTo(1);
+        assertThat(ring.itemsSeen(7, new long[]{1, 2, 3}, NOW - 30 * 60_000, NOW)).containsExactlyInAnyOrder(100L, 101L);
+        assertThat(ring.itemsSeen(7, new long[]{1, 2, 3}, NOW - 10 * 60_000, NOW)).isEmpty();
+    }
+
+    @Test
+    void ringRecyclesOldestBucketsAndRejectsRowsBehindThem() {
+        DetectionRing ring = new DetectionRing(Duration.ofHours(1), Duration.ofMinutes(30));
+        ring.add(1, NOW - HOUR, 7, 100, 1);
+        ring.add(2, NOW + HOUR, 7, 101, 1);
+
+        assertThat(ring.retainedSince()).isEqualTo(NOW);
+        assertThat(ring.size()).isEqualTo(1);
+        assertThat(ring.itemsSeen(7, new long[]{1}, NOW - 2 * HOUR, NOW + 2 * HOUR)).containsExactly(101L);
+        assertThat(ring.add(3, NOW - HOUR, 7, 102, 1)).isFalse();
+    }
+
+    @Test
+    void ringGrowsBucketsWithoutLosingIds() {
+        DetectionRing ring = new DetectionRing(Duration.ofHours(1), Duration.ofHours(1));
+        for (long id = 1; id <= 1_000; id++) {
+            assertThat(ring.add(id, NOW, 7, id, 1)).isTrue();
+        }
+        for (long id = 1; id <= 1_000; id++) {
+            assertThat(ring.add(id, NOW, 7, id, 1)).isFalse();
+        }
+        assertThat(ring.itemsSeen(7, new long[]{1}, NOW, NOW)).hasSize(1_000);
+    }
+
+    @Test
+    void fillsOncePollsIncrementallyAndCoversOnlyRetainedRanges() {
+        VezhaDbRepository db = mock(VezhaDbRepository.class);
+        DetectionWindowCache cache = new DetectionWindowCache(db, props());
+        stream(db, NOW - 6 * HOUR, detection(1L, NOW - HOUR, 5L));
+
+        assertThat(cache.covers(NOW - HOUR, NOW)).isFalse();
+        cache.poll(NOW);
+        verify(db).streamMatchedDetectionsSince(eq(NOW - 6 * HOUR), any());
+
+        assertThat(cache.covers(NOW - 5 * HOUR, NOW)).isTrue();
+        assertThat(cache.covers(NOW - 7 * HOUR, NOW)).isFalse();
+        assertThat(cache.covers(null, NOW)).isFalse();
+        assertThat(cache.findListItemIdsSeen(7L, List.of(3L), NOW - 2 * HOUR, NOW)).containsExactly(5L);
+
+        stream(db, NOW - 120_000, detection(1L, NOW - HOUR, 5L), detection(2L, NOW + 10_000, 6L));
+        cache.poll(NOW + 30_000);
+        assertThat(cache.size()).isEqualTo(2);
+
+        List<DetectionDto> latest = cache.findLatestDetectionsByListItem(7L, List.of(3L), NOW - 2 * HOUR, NOW + 30_000);
+        assertThat(latest).extracting(d -> d.getListItem().getId()).containsExactlyInAnyOrder(5L, 6L);
+        assertThat(latest).allSatisfy(d -> assertThat(d.getListItem().getListId()).isEqualTo(7L));
+    }
+
+    @Test
+    void stopsCoveringWhenPollsFail() {
+        VezhaDbRepository db = mock(VezhaDbRepository.class);
+        DetectionWindowCache cache = new DetectionWindowCache(db, props());
+        cache.poll(NOW);
+        doThrow(new QueryTimeoutException("timeout")).when(db).streamMatchedDetectionsSince(anyLong(), any());
+
+        cache.poll(NOW + 30_000);
+        assertThat(cache.covers(NOW - HOUR, NOW + 30_000)).isTrue();
+        cache.poll(NOW + 61_000);
+        assertThat(cache.covers(NOW - HOUR, NOW + 61_000)).isFalse();
+    }
+
+    @Test
+    void staysOffWithoutTheReplicationFeed() {
+        VezhaDbRepository db = mock(VezhaDbRepository.class);
+        VezhaDbProps props = props();
+        props.getReplication().setEnabled(false);
+        DetectionWindowCache cache = new DetectionWindowCache(db, props);
+
+        cache.scheduledPoll();
+        cache.onDetectionInserted(new DetectionInsertedEvent(detection(1L, System.currentTimeMillis(), 5L)));
+
+        verifyNoInteractions(db);
+        assertThat(ReflectionTestUtils.getField(cache, "ring")).isNull();
+        assertThat(cache.covers(NOW - HOUR, NOW)).isFalse();
+    }
+
+    @Test
+    void disabledWindowLeavesTheRingUnallocated() {
+        VezhaDbProps props = props();
+        props.getWindow().setEnabled(false);
+        DetectionWindowCache cache = new DetectionWindowCache(mock(VezhaDbRepository.class), props);
+
+        assertThat(ReflectionTestUtils.getField(cache, "ring")).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.findListItemIdsSeen(7L, List.of(3L), NOW - HOUR, NOW)).isEmpty();
+        assertThat(cache.covers(NOW - HOUR, NOW)).isFalse();
+    }
+
+    @Test
+    void takesReplicatedDetectionsAndIgnoresUnmatchedOnes() {
+        DetectionWindowCache cache = new DetectionWindowCache(mock(VezhaDbRepository.class), props());
+        long now = System.currentTimeMillis();
+        cache.onDetectionInserted(new DetectionInsertedEvent(detection(9L, now, 5L)));
+        DetectionDto unmatched = detection(10L, now, 6L);
+        unmatched.setListItem(null);
+        cache.onDetectionInserted(new DetectionInsertedEvent(unmatched));
+        cache.onDetectionInserted(new DetectionInsertedEvent(detection(11L, now + HOUR, 7L)));
+
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    private static VezhaDbProps props() {
+        VezhaDbProps props = new VezhaDbProps();
+        props.setEnabled(true);
+        props.getWindow().setEnabled(true);
+        props.getWindow().setRetention(Duration.ofHours(6));
+        props.getWindow().setBucket(Duration.ofMinutes(10));
+        props.getReplication().setEnabled(true);
+        return props;
+    }
+
+    private static void stream(VezhaDbRepository db, long since, DetectionDto... detections) {
+        doAnswer(inv -> {
+            Consumer<DetectionDto> consumer = inv.getArgument(1);
+            for (DetectionDto detection : detections) {
+                consumer.accept(detection);
+            }
+            return null;
+        }).when(db).streamMatchedDetectionsSince(eq(since), any());
+    }
+
+    private static DetectionDto detection(Long id, long timestamp, Long itemId) {
+        ListItemDto item = new ListItemDto();
+        item.setId(itemId);
+        item.setListId(7L);
+        DetectionDto.AnalyticsRef analytics = new DetectionDto.AnalyticsRef();
+        analytics.setId(3L);
+        DetectionDto detection = new DetectionDto();
+        detection.setId(id);
+        detection.setTimestamp(timestamp);
+        detection.setListItem(item);
+        detection.setAnalytics(analytics);
+        return detection;
+    }
+}
@@ -0,0 +1,92 @@
+package com.incoresoft.dilijanCustomization.domain.shared.service;
+
+import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListsResponse;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.TimeAttendance;
+import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FaceListCacheTest {
+
+    @Test
+    void pagesPastFirstPageAndServesFromMemoryWithinTtl() {
+        FaceApiRepository repo = mock(FaceApiRepository.class);
+        when(repo.getFaceLists(2, 0)).thenReturn(page(list(1L, "Zeta", 1, true), list(2L, "alpha", 1, true)));
+        when(repo.getFaceLists(2, 2)).thenReturn(page(list(3L, "Off", 0, true)));
+        FaceListCache cache = new FaceListCache(repo, props(2, Duration.ofMinutes(5)));
+
+        assertThat(cache.lists()).extracting(FaceListDto::getId).containsExactly(1L, 2L, 3L);
+        assertThat(cache.reportableLists()).extracting(FaceListDto::getName).containsExactly("alpha", "Zeta");
+        assertThat(cache.findById(3L)).get().extracting(l -> l.getTimeAttendance().getEnabled()).isEqualTo(true);
+        assertThat(cache.findByName("ZETA")).get().extracting(FaceListDto::getId).isEqualTo(1L);
+
+        verify(repo, times(1)).getFaceLists(2, 0);
+        verify(repo, times(1)).getFaceLists(2, 2);
+    }
+
+    @Test
+    void versionAdvancesOnlyWhenListsChange() {
+        FaceApiRepository repo = mock(FaceApiRepository.class);
+        when(repo.getFaceLists(anyInt(), anyInt()))
+                .thenReturn(page(list(1L, "A", 1, true)))
+                .thenReturn(page(list(1L, "A", 1, true)))
+                .thenReturn(page(list(1L, "A", 1, false)));
+        FaceListCache cache = new FaceListCache(repo, props(200, Duration.ofMinutes(5)));
+
+        cache.refresh();
+        assertThat(cache.version()).isEqualTo(1);
+        cache.refresh();
+        assertThat(cache.version()).isEqualTo(1);
+        cache.refresh();
+        assertThat(cache.version()).isEqualTo(2);
+        assertThat(cache.reportableLists()).isEmpty();
+    }
+
+    @Test
+    void stopsPagingWhenOffsetIsIgnoredAndReloadsAfterInvalidate() {
+        FaceApiRepository repo = mock(FaceApiRepository.class);
+        when(repo.getFaceLists(anyInt(), anyInt())).thenReturn(page(list(1L, "A", 1, true)));
+        FaceListCache cache = new FaceListCache(repo, props(1, Duration.ofMinutes(5)));
+
+        assertThat(cache.lists()).hasSize(1);
+        verify(repo, times(2)).getFaceLists(anyInt(), anyInt());
+
+        cache.invalidate();
+        cache.lists();
+        verify(repo, times(4)).getFaceLists(anyInt(), anyInt());
+    }
+
+    private static VezhaApiProps props(int pageSize, Duration ttl) {
+        VezhaApiProps props = new VezhaApiProps();
+        props.setListPageSize(pageSize);
+        props.setListCacheTtl(ttl);
+        props.setListCacheMaxStale(ttl.multipliedBy(2));
+        return props;
+    }
+
+    private static FaceListsResponse page(FaceListDto... lists) {
+        FaceListsResponse response = new FaceListsResponse();
+        response.setData(List.of(lists));
+        return response;
+    }
+
+    private static FaceListDto list(Long id, String name, int status, boolean attendance) {
+        FaceListDto dto = new FaceListDto();
+        dto.setId(id);
+        dto.setName(name);
+        dto.setStatus(status);
+        dto.setTimeAttendance(new TimeAttendance(attendance, List.of(), List.of()));
+        return dto;
+    }
+}
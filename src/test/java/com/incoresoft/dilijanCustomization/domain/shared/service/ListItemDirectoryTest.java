@@ -0,0 +1,179 @@
+package com.incoresoft.dilijanCustomization.domain.shared.service;
+
+import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
+import com.incoresoft.dilijanCustomization.config.VezhaDbProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.CachedResult;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListImage;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemsResponse;
+import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
+import com.incoresoft.dilijanCustomization.repository.ListItemImages;
+import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ListItemDirectoryTest {
+
+    @Test
+    void indexesDbItemsAndReloadsOnlyWhenFingerprintChanges() {
+        VezhaDbRepository db = mock(VezhaDbRepository.class);
+        when(db.findListItems(7L, ListItemImages.FIRST)).thenReturn(List.of(item(1L, "  John   Smith ", "a.jpg"), item(2L, "Ann", null)));
+        when(db.findListItemsFingerprint(7L)).thenReturn(100L, 100L, 100L, 200L);
+        ListItemDirectory directory = directory(db, mock(FaceApiRepository.class), true, Duration.ZERO);
+
+        assertThat(directory.exactNameIndex(7L)).containsEntry("John   Smith", 1L).doesNotContainKey("john smith");
+        assertThat(directory.findById(7L, 1L)).get().extracting(ListItemDto::getName).isEqualTo("  John   Smith ");
+        assertThat(directory.findById(7L, 3L)).isEmpty();
+
+        // ttl 0: every read re-checks the fingerprint; unchanged keeps the entry, 100 → 200 reloads
+        verify(db, times(1)).findListItems(7L, ListItemImages.FIRST);
+        directory.items(7L);
+        verify(db, times(2)).findListItems(7L, ListItemImages.FIRST);
+    }
+
+    @Test
+    void searchesNormalizedNamesIncludingNamesakes() {
+        VezhaDbRepository db = mock(VezhaDbRepository.class);
+        when(db.findListItems(7L, ListItemImages.FIRST)).thenReturn(List.of(
+                item(1L, "Unknown1", null), item(2L, "  unknown  2", null), item(3L, "unknown1", null), item(4L, "Ann", null)));
+        ListItemDirectory directory = directory(db, mock(FaceApiRepository.class), true, Duration.ofMinutes(5));
+
+        assertThat(directory.searchByName(7L, " UNKNOWN ")).extracting(ListItemDto::getId)
+                .containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(directory.searchByName(7L, "unknown 2")).extracting(ListItemDto::getId).containsExactly(2L);
+        assertThat(directory.searchByName(7L, " ")).isEmpty();
+        verify(db, times(1)).findListItems(7L, ListItemImages.FIRST);
+    }
+
+    @Test
+    void servesFromMemoryWithinTtlUntilInvalidated() {
+        VezhaDbRepository db = mock(VezhaDbRepository.class);
+        when(db.findListItems(7L, ListItemImages.FIRST)).thenReturn(List.of(item(1L, "John", null)));
+        ListItemDirectory directory = directory(db, mock(FaceApiRepository.class), true, Duration.ofMinutes(5));
+
+        directory.items(7L);
+        assertThat(directory.findById(7L, 1L)).isPresent();
+        verify(db, times(1)).findListItems(7L, ListItemImages.FIRST);
+
+        directory.invalidate(7L);
+        directory.items(7L);
+        verify(db, times(2)).findListItems(7L, ListItemImages.FIRST);
+    }
+
+    @Test
+    void batchCurrentItemsReloadsOnlyChangedListsInOneQuery() {
+        VezhaDbRepository db = mock(VezhaDbRepository.class);
+        when(db.findListItems(7L, ListItemImages.FIRST)).thenReturn(List.of(item(1L, "John", null)));
+        when(db.findListItemsFingerprint(7L)).thenReturn(100L);
+        when(db.findListItemsFingerprints(List.of(7L, 8L))).thenReturn(Map.of(7L, 100L, 8L, 5L));
+        when(db.findListItemsByListIds(List.of(8L), ListItemImages.FIRST))
+                .thenReturn(Map.of(8L, List.of(item(2L, "Ann", "b.jpg"))));
+        ListItemDirectory directory = directory(db, mock(FaceApiRepository.class), true, Duration.ofMinutes(5));
+        directory.items(7L);
+
+        CachedResult<Map<Long, List<ListItemDto>>> result = directory.currentItems(List.of(7L, 8L));
+        Map<Long, List<ListItemDto>> items = result.value();
+
+        assertThat(items.get(7L)).extracting(ListItemDto::getId).containsExactly(1L);
+        assertThat(items.get(8L)).extracting(ListItemDto::getId).containsExactly(2L);
+        assertThat(directory.findById(8L, 2L)).isPresent();
+        verify(db, times(1)).findListItems(7L, ListItemImages.FIRST);
+        verify(db, never()).findListItems(eq(8L), any());
+        assertThat(result.stale()).isFalse();
+    }
+
+    @Test
+    void timedOutReloadServesCachedItemsMarkedStale() {
+        VezhaDbRepository db = mock(VezhaDbRepository.class);
+        when(db.findListItems(7L, ListItemImages.FIRST)).thenReturn(List.of(item(1L, "John", null)))
+                .thenThrow(new QueryTimeoutException("canceling statement due to statement timeout"));
+        when(db.findListItemsFingerprint(7L)).thenReturn(100L, 200L);
+        when(db.findListItemsFingerprints(List.of(7L))).thenReturn(Map.of(7L, 300L));
+        when(db.findListItemsByListIds(List.of(7L), ListItemImages.FIRST))
+                .thenThrow(new QueryTimeoutException("canceling statement due to statement timeout"));
+        ListItemDirectory directory = directory(db, mock(FaceApiRepository.class), true, Duration.ZERO);
+        directory.items(7L);
+
+        assertThat(directory.items(7L)).extracting(ListItemDto::getId).containsExactly(1L);
+        CachedResult<Map<Long, List<ListItemDto>>> result = directory.currentItems(List.of(7L));
+
+        assertThat(result.stale()).isTrue();
+        assertThat(result.value().get(7L)).extracting(ListItemDto::getId).containsExactly(1L);
+    }
+
+    @Test
+    void restLoadStopsWhenPaginationDoesNotAdvance() {
+        FaceApiRepository api = mock(FaceApiRepository.class);
+        doAnswer(inv -> {
+            Consumer<ListItemDto> sink = inv.getArgument(7);
+            for (long id = 1; id <= 3; id++) {
+                sink.accept(item(id, "Person " + id, null));
+            }
+            return 3;
+        }).when(api).streamListItems(eq(99L), eq(""), eq(""), any(), eq(3), eq("asc"), eq("name"), any());
+        ListItemDirectory directory = directory(mock(VezhaDbRepository.class), api, false, Duration.ofMinutes(5));
+
+        assertThat(directory.exactNameIndex(99L)).containsEntry("Person 1", 1L).hasSize(3);
+        verify(api, times(2)).streamListItems(eq(99L), eq(""), eq(""), any(), anyInt(), eq("asc"), eq("name"), any());
+    }
+
+    @Test
+    void restListsAreReloadedAfterTheMaxAgeEvenWithAnUnchangedTotal() {
+        FaceApiRepository api = mock(FaceApiRepository.class);
+        ListItemsResponse head = new ListItemsResponse();
+        head.setTotal(1);
+        when(api.getListItems(99L, "", "", 0, 1, "asc", "name")).thenReturn(head);
+        VezhaApiProps apiProps = apiProps(Duration.ZERO, Duration.ofMinutes(30));
+        ListItemDirectory directory = new ListItemDirectory(mock(VezhaDbRepository.class), api, new VezhaDbProps(), apiProps);
+
+        directory.items(99L);
+        directory.items(99L);
+        verify(api, times(1)).streamListItems(eq(99L), eq(""), eq(""), any(), anyInt(), eq("asc"), eq("name"), any());
+
+        apiProps.setListItemMaxAge(Duration.ZERO);
+        directory.items(99L);
+        verify(api, times(2)).streamListItems(eq(99L), eq(""), eq(""), any(), anyInt(), eq("asc"), eq("name"), any());
+    }
+
+    private static ListItemDirectory directory(VezhaDbRepository db, FaceApiRepository api, boolean dbEnabled, Duration ttl) {
+        VezhaDbProps dbProps = new VezhaDbProps();
+        dbProps.setEnabled(dbEnabled);
+        return new ListItemDirectory(db, api, dbProps, apiProps(ttl, Duration.ofMinutes(30)));
+    }
+
+    private static VezhaApiProps apiProps(Duration ttl, Duration maxAge) {
+        VezhaApiProps apiProps = new VezhaApiProps();
+        apiProps.setListItemCacheTtl(ttl);
+        apiProps.setListItemMaxAge(maxAge);
+        apiProps.setListItemPageSize(3);
+        return apiProps;
+    }
+
+    private static ListItemDto item(Long id, String name, String imagePath) {
+        ListItemDto item = new ListItemDto();
+        item.setId(id);
+        item.setName(name);
+        if (imagePath != null) {
+            ListImage image = new ListImage();
+            image.setPath(imagePath);
+            item.setImages(List.of(image));
+        }
+        return item;
+    }
+}
@@ -0,0 +1,105 @@
+package com.incoresoft.dilijanCustomization.domain.shared.service;
+
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListMembership;
+import com.incoresoft.dilijanCustomization.repository.ListItemImages;
+import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ListMembershipSyncTest {
+
+    @Test
+    void firstSyncReportsEveryItemAsAdded() {
+        VezhaDbRepository db = mock(VezhaDbRepository.class);
+        when(db.findListItemsFingerprint(7L)).thenReturn(100L);
+        when(db.findListItemDigests(7L)).thenReturn(Map.of(1L, 10L, 2L, 20L));
+        when(db.findListItemsByIds(any(), eq(ListItemImages.NONE))).thenReturn(List.of(item(2L, "Ann"), item(1L, "John")));
+
+        ListMembership membership = new ListMembershipSync(db).sync(7L);
+
+        assertThat(membership.items()).extracting(ListItemDto::getId).containsExactly(1L, 2L);
+        assertThat(membership.added()).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(membership.changed()).isEmpty();
+        assertThat(membership.removed()).isEmpty();
+    }
+
+    @Test
+    void unchangedFingerprintReadsNothingElse() {
+        VezhaDbRepository db = mock(VezhaDbRepository.class);
+        when(db.findListItemsFingerprint(7L)).thenReturn(100L);
+        when(db.findListItemDigests(7L)).thenReturn(Map.of(1L, 10L));
+        when(db.findListItemsByIds(any(), eq(ListItemImages.NONE))).thenReturn(List.of(item(1L, "John")));
+        ListMembershipSync sync = new ListMembershipSync(db);
+        sync.sync(7L);
+
+        ListMembership membership = sync.sync(7L);
+
+        assertThat(membership.unchanged()).isTrue();
+        assertThat(membership.items()).extracting(ListItemDto::getName).containsExactly("John");
+        verify(db, times(1)).findListItemDigests(7L);
+        verify(db, times(1)).findListItemsByIds(any(), any());
+    }
+
+    @Test
+    void changedFingerprintFetchesOnlyAddedAndChangedItems() {
+        VezhaDbRepository db = mock(VezhaDbRepository.class);
+        when(db.findListItemsFingerprint(7L)).thenReturn(100L, 200L);
+        when(db.findListItemDigests(7L))
+                .thenReturn(Map.of(1L, 10L, 2L, 20L, 3L, 30L))
+                .thenReturn(Map.of(1L, 10L, 2L, 21L, 4L, 40L));
+        when(db.findListItemsByIds(any(), eq(ListItemImages.NONE)))
+                .thenReturn(List.of(item(1L, "John"), item(2L, "Ann"), item(3L, "Bob")))
+                .thenReturn(List.of(item(2L, "Anna"), item(4L, "Kate")));
+        ListMembershipSync sync = new ListMembershipSync(db);
+        sync.sync(7L);
+
+        ListMembership membership = sync.sync(7L);
+
+        assertThat(membership.added()).containsExactly(4L);
+        assertThat(membership.changed()).containsExactly(2L);
+        assertThat(membership.removed()).containsExactly(3L);
+        assertThat(membership.items()).extracting(ListItemDto::getName).containsExactly("John", "Anna", "Kate");
+        verify(db).findListItemsByIds(argThat(ids -> ids.size() == 2 && ids.containsAll(List.of(2L, 4L))), eq(ListItemImages.NONE));
+    }
+
+    @Test
+    void itemsThatVanishBeforeTheFetchAreLeftOutAndRetried() {
+        VezhaDbRepository db = mock(VezhaDbRepository.class);
+        when(db.findListItemsFingerprint(7L)).thenReturn(100L, 200L);
+        when(db.findListItemDigests(7L))
+                .thenReturn(Map.of(1L, 10L, 2L, 20L))
+                .thenReturn(Map.of(1L, 10L, 2L, 20L));
+        when(db.findListItemsByIds(any(), eq(ListItemImages.NONE)))
+                .thenReturn(List.of(item(1L, "John")))
+                .thenReturn(List.of(item(2L, "Ann")));
+        ListMembershipSync sync = new ListMembershipSync(db);
+
+        assertThat(sync.sync(7L).items()).extracting(ListItemDto::getId).containsExactly(1L);
+
+        ListMembership retried = sync.sync(7L);
+        assertThat(retried.added()).containsExactly(2L);
+        assertThat(retried.items()).extracting(ListItemDto::getId).containsExactly(1L, 2L);
+        verify(db, never()).findListItems(any(), any());
+    }
+
+    private static ListItemDto item(Long id, String name) {
+        ListItemDto item = new ListItemDto();
+        item.setId(id);
+        item.setListId(7L);
+        item.setName(name);
+        return item;
+    }
+}
@@ -0,0 +1,96 @@
+package com.incoresoft.dilijanCustomization.domain.shared.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.incoresoft.dilijanCustomization.config.VezhaDbProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.QueryPlanReport;
+import com.incoresoft.dilijanCustomization.repository.VezhaDbRepository;
+import com.incoresoft.dilijanCustomization.repository.VezhaHotQuery;
+import com.incoresoft.dilijanCustomization.repository.VezhaTrafficClass;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QueryPlanDiagnosticsTest {
+
+    private static final String LATEST_PLAN = """
+            [{"Plan": {"Node Type": "Hash Right Join", "Actual Rows": 40, "Actual Loops": 1,
+                       "Shared Hit Blocks": 120, "Shared Read Blocks": 9800,
+                       "Plans": [
+                         {"Node Type": "Seq Scan", "Relation Name": "face_list_items",
+                          "Actual Rows": 300, "Actual Loops": 1},
+                         {"Node Type": "Unique", "Actual Rows": 40, "Actual Loops": 1,
+                          "Plans": [{"Node Type": "Seq Scan", "Relation Name": "face_detections",
+                                     "Actual Rows": 2000, "Rows Removed by Filter": 48000, "Actual Loops": 3,
+                                     "Filter": "(list_id = 7)"}]}
+                       ]},
+              "Planning Time": 0.42, "Execution Time": 812.5}]
+            """;
+
+    private final VezhaDbRepository repository = mock(VezhaDbRepository.class);
+    private final VezhaDbProps props = new VezhaDbProps();
+
+    @Test
+    void flagsLargeSeqScansAndSuggestsTheQueryIndex() throws Exception {
+        QueryPlanDiagnostics diagnostics = new QueryPlanDiagnostics(repository, props, new ObjectMapper());
+
+        QueryPlanReport report = diagnostics.analyze(new VezhaDbRepository.ExplainedStatement(
+                VezhaHotQuery.LATEST_DETECTIONS, "SELECT 1", LATEST_PLAN), Instant.EPOCH);
+
+        assertThat(report.planningMillis()).isEqualTo(0.42);
+        assertThat(report.executionMillis()).isEqualTo(812.5);
+        assertThat(report.sharedReadBlocks()).isEqualTo(9800);
+        assertThat(report.seqScans())
+                .extracting(QueryPlanReport.SeqScan::relation, QueryPlanReport.SeqScan::rowsScanned)
+                .containsExactly(tuple("face_detections", 150_000L));
+        assertThat(report.suggestedIndexes()).containsExactly(
+                "CREATE INDEX CONCURRENTLY IF NOT EXISTS face_detections_list_id_list_item_id_created_at_idx "
+                        + "ON videoanalytics.face_detections (list_id, list_item_id, created_at DESC)");
+    }
+
+    @Test
+    void rangeScanIndexLeadsWithTheEqualityColumnsInTheDefaultSchema() throws Exception {
+        props.setSchema(" ");
+        QueryPlanDiagnostics diagnostics = new QueryPlanDiagnostics(repository, props, new ObjectMapper());
+
+        QueryPlanReport report = diagnostics.analyze(new VezhaDbRepository.ExplainedStatement(
+                VezhaHotQuery.DETECTION_RANGE, "SELECT 1",
+                "[{\"Plan\": {\"Node Type\": \"Seq Scan\", \"Relation Name\": \"face_detections\", \"Actual Rows\": 20000}}]"),
+                Instant.EPOCH);
+
+        assertThat(report.suggestedIndexes()).containsExactly(
+                "CREATE INDEX CONCURRENTLY IF NOT EXISTS face_detections_list_id_analytics_id_created_at_idx "
+                        + "ON videoanalytics.face_detections (list_id, analytics_id, created_at)");
+    }
+
+    @Test
+    void explainsOnTheBatchPoolAndKeepsNewestPlans() {
+        props.getExplain().setHistorySize(1);
+        AtomicReference<VezhaTrafficClass> trafficClass = new AtomicReference<>();
+        when(repository.explain(VezhaHotQuery.LIST_ITEMS)).thenAnswer(inv -> {
+            trafficClass.set(VezhaTrafficClass.current());
+            return Optional.of(new VezhaDbRepository.ExplainedStatement(VezhaHotQuery.LIST_ITEMS, "SELECT 1",
+                    "[{\"Plan\": {\"Node Type\": \"Index Scan\"}, \"Execution Time\": 1.0}]"));
+        });
+        when(repository.explain(VezhaHotQuery.LATEST_DETECTIONS)).thenReturn(Optional.empty());
+        QueryPlanDiagnostics diagnostics = new QueryPlanDiagnostics(repository, props, new ObjectMapper());
+
+        diagnostics.explain(List.of(VezhaHotQuery.LIST_ITEMS));
+        List<QueryPlanReport> reports = diagnostics.explain(List.of(VezhaHotQuery.LATEST_DETECTIONS, VezhaHotQuery.LIST_ITEMS));
+
+        assertThat(trafficClass.get()).isEqualTo(VezhaTrafficClass.BACKGROUND);
+        assertThat(reports).extracting(QueryPlanReport::query).containsExactly(VezhaHotQuery.LIST_ITEMS);
+        assertThat(reports.get(0).seqScans()).isEmpty();
+        assertThat(diagnostics.history()).hasSize(1).first().isSameAs(reports.get(0));
+        verify(repository, never()).explain(VezhaHotQuery.DETECTION_RANGE);
+    }
+}
@@ -1,11 +1,15 @@
 package com.incoresoft.dilijanCustomization.domain.shared.service;
 
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.CafeteriaPivot;
 import com.incoresoft.dilijanCustomization.domain.attendance.dto.CafeteriaPivotRow;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealHistoryFormat;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealHistoryRow;
+import com.incoresoft.dilijanCustomization.domain.attendance.dto.MealWindow;
 import com.incoresoft.dilijanCustomization.domain.evacuation.dto.EvacuationReportRow;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListDto;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.ListImage;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
-import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
+import com.incoresoft.dilijanCustomization.repository.AsyncFaceApiRepository;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -13,23 +17,30 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class ReportServiceTest {
 
     @Test
     void exportsCafeteriaPivotWithTotals() throws Exception {
-        FaceApiRepository repo = mock(FaceApiRepository.class);
+        AsyncFaceApiRepository repo = mock(AsyncFaceApiRepository.class);
         ReportService service = new ReportService(repo);
         File out = File.createTempFile("cafeteria-", ".xlsx");
 
@@ -53,8 +64,14 @@ class ReportServiceTest {
 
     @Test
     void exportsEvacuationWorkbookWithSanitizedSheetName() throws Exception {
-        FaceApiRepository repo = mock(FaceApiRepository.class);
-        when(repo.downloadStorageObject(anyString())).thenReturn(new byte[0]);
+        AsyncFaceApiRepository repo = mock(AsyncFaceApiRepository.class);
+        List<Path> downloaded = new ArrayList<>();
+        when(repo.downloadStorageObjectToFileAsync(anyString(), any())).thenAnswer(inv -> {
+            Path file = inv.getArgument(1);
+            Files.write(file, new byte[]{1, 2, 3});
+            downloaded.add(file);
+            return CompletableFuture.completedFuture(3L);
+        });
         ReportService service = new ReportService(repo);
 
         FaceListDto list = new FaceListDto();
@@ -88,6 +105,77 @@ class ReportServiceTest {
             assertThat(data.getCell(4).getStringCellValue()).isEqualTo("John Doe");
             assertThat(data.getCell(5).getStringCellValue()).isEqualTo("comment");
             assertThat(data.getCell(6).getStringCellValue()).isEqualTo("Manually updated");
+            // streamed to a temporary file, embedded, and the directory removed afterwards
+            assertThat(wb.getAllPictures()).hasSize(1);
+            assertThat(wb.getAllPictures().get(0).getData()).containsExactly(1, 2, 3);
         }
+        assertThat(downloaded).singleElement().satisfies(file -> assertThat(file.getParent()).doesNotExist());
+        verify(repo, never()).downloadStorageObjectAsync(anyString());
+    }
+
+    @Test
+    void exportsCafeteriaRangeWithSummaryAndDailySheets() throws Exception {
+        AsyncFaceApiRepository repo = mock(AsyncFaceApiRepository.class);
+        ReportService service = new ReportService(repo);
+        File out = File.createTempFile("cafeteria-range-", ".xlsx");
+
+        LocalDate first = LocalDate.of(2024, 12, 1);
+        LocalDate second = LocalDate.of(2024, 12, 2);
+        Map<LocalDate, CafeteriaPivot> byDay = Map.of(
+                first, new CafeteriaPivot(List.of(new CafeteriaPivotRow("Alpha", 1, 2, 3)), null),
+                second, new CafeteriaPivot(List.of(new CafeteriaPivotRow("Alpha", 4, 5, 6)), null));
+
+        File result = service.exportCafeteriaRange(first, second, List.of(first, second), byDay::get, out);
+
+        try (FileInputStream fis = new FileInputStream(result); XSSFWorkbook wb = new XSSFWorkbook(fis)) {
+            assertThat(wb.getSheetName(0)).isEqualTo("Summary");
+            assertThat(wb.getSheetName(1)).isEqualTo("2024-12-01");
+            assertThat(wb.getSheetName(2)).isEqualTo("2024-12-02");
+
+            Row summaryRow = wb.getSheet("Summary").getRow(1);
+            assertThat(summaryRow.getCell(0).getStringCellValue()).isEqualTo("Alpha");
+            assertThat(summaryRow.getCell(1).getNumericCellValue()).isEqualTo(5);
+            assertThat(summaryRow.getCell(4).getNumericCellValue()).isEqualTo(21);
+
+            Row dayRow = wb.getSheet("2024-12-02").getRow(1);
+            assertThat(dayRow.getCell(4).getNumericCellValue()).isEqualTo(15);
+            assertThat(wb.getSheet("2024-12-02").getRow(2).getCell(0).getStringCellValue()).isEqualTo("Grand Total");
+        }
+    }
+
+    @Test
+    void writesUniquePeopleRowBelowGrandTotal() throws Exception {
+        ReportService service = new ReportService(mock(AsyncFaceApiRepository.class));
+        File out = File.createTempFile("cafeteria-unique-", ".xlsx");
+        CafeteriaPivot pivot = new CafeteriaPivot(
+                List.of(new CafeteriaPivotRow("Alpha", 2, 1, 0), new CafeteriaPivotRow("Beta", 1, 1, 0)),
+                new CafeteriaPivotRow("ignored", 2, 1, 0));
+
+        File result = service.exportCafeteriaPivot(LocalDate.of(2024, 12, 1), "Cafe", pivot, out);
+
+        try (FileInputStream fis = new FileInputStream(result); XSSFWorkbook wb = new XSSFWorkbook(fis)) {
+            Sheet sheet = wb.getSheet("Cafe");
+            assertThat(sheet.getRow(3).getCell(0).getStringCellValue()).isEqualTo("Grand Total");
+            Row unique = sheet.getRow(4);
+            assertThat(unique.getCell(0).getStringCellValue()).isEqualTo("Unique people (all lists)");
+            assertThat(unique.getCell(1).getNumericCellValue()).isEqualTo(2);
+            assertThat(unique.getCell(4).getNumericCellValue()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void writesMealHistoryCsvWithEscapedValues() throws Exception {
+        ReportService service = new ReportService(mock(AsyncFaceApiRepository.class));
+        File out = File.createTempFile("meal-history-", ".csv");
+        long seen = Instant.parse("2024-12-01T12:05:00Z").toEpochMilli();
+
+        long rows = service.exportMealHistory(MealHistoryFormat.CSV, ZoneId.of("UTC"), sink -> {
+            sink.accept(new MealHistoryRow(LocalDate.of(2024, 12, 1), MealWindow.LUNCH, "Staff", 7L, "Doe, \"JD\"", seen, 10L));
+        }, out);
+
+        List<String> lines = Files.readAllLines(out.toPath());
+        assertThat(rows).isEqualTo(1);
+        assertThat(lines.get(0)).endsWith("Date,Meal,List,Person,List item ID,First seen,Camera (analytics ID)");
+        assertThat(lines.get(1)).isEqualTo("2024-12-01,Lunch,Staff,\"Doe, \"\"JD\"\"\",7,2024-12-01 12:05:00,10");
     }
 }
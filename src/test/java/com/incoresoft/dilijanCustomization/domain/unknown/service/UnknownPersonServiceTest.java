@@ -5,8 +5,9 @@ import com.incoresoft.dilijanCustomization.config.UnknownProps;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionsResponse;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
-import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemsResponse;
+import com.incoresoft.dilijanCustomization.domain.shared.service.ListItemDirectory;
 import com.incoresoft.dilijanCustomization.domain.unknown.dto.FaceEventDto;
+import com.incoresoft.dilijanCustomization.repository.AsyncFaceApiRepository;
 import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,6 +18,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -39,6 +41,12 @@ class UnknownPersonServiceTest {
     @Mock
     private UnknownProps unknownProps;
 
+    @Mock
+    private AsyncFaceApiRepository asyncRepository;
+
+    @Mock
+    private ListItemDirectory listItemDirectory;
+
     @InjectMocks
     private UnknownPersonService service;
 
@@ -52,9 +60,6 @@ class UnknownPersonServiceTest {
         DetectionsResponse detectionsResponse = new DetectionsResponse();
         detectionsResponse.setData(List.of(detection));
 
-        ListItemsResponse countResponse = new ListItemsResponse();
-        countResponse.setTotal(2);
-
         ListItemDto created = new ListItemDto();
         created.setId(999L);
 
@@ -66,7 +71,7 @@ class UnknownPersonServiceTest {
         when(repository.getRecentDetections(eq(100), eq("asc"), anyLong(), anyLong())).thenReturn(detectionsResponse);
         when(repository.downloadStorageObject("face-image")).thenReturn(new byte[]{1, 2, 3});
         when(repository.isFaceUniqueInLists(new byte[]{1, 2, 3}, null)).thenReturn(true);
-        when(repository.getListItems(10L, "unknown", "", 0, 1, "asc", "name")).thenReturn(countResponse);
+        when(listItemDirectory.searchByName(10L, "unknown")).thenReturn(List.of(new ListItemDto(), new ListItemDto()));
         when(repository.createListItemFromDetection(any())).thenReturn(created);
 
         Optional<ListItemDto> result = service.handleEventAddIfUnknown(event);
@@ -177,6 +182,7 @@ class UnknownPersonServiceTest {
 
         assertThat(removed).isTrue();
         verify(repository).deleteListItem(555L);
+        verify(listItemDirectory).invalidate(15L);
     }
 
     @Test
@@ -221,15 +227,17 @@ class UnknownPersonServiceTest {
         manualEntry.setComment("manual");
         manualEntry.setCreatedAt(now - java.time.Duration.ofDays(10).toMillis());
 
-        ListItemsResponse response = new ListItemsResponse();
-        response.setData(java.util.Arrays.asList(expiredAutogenerated, freshAutogenerated, manualEntry));
-        when(repository.getListItems(11L, "", "", 0, 500, "asc", "name")).thenReturn(response);
+        when(listItemDirectory.currentItems(11L)).thenReturn(List.of(expiredAutogenerated, freshAutogenerated, manualEntry));
+        when(asyncRepository.deleteListItemAsync(1L)).thenReturn(CompletableFuture.completedFuture(null));
 
         service.cleanUnknownList();
 
-        verify(repository).deleteListItem(1L);
-        verify(repository, never()).deleteListItem(2L);
-        verify(repository, never()).deleteListItem(3L);
+        verify(asyncRepository).deleteListItemAsync(1L);
+        verify(asyncRepository, never()).deleteListItemAsync(2L);
+        verify(asyncRepository, never()).deleteListItemAsync(3L);
+        verify(repository, never()).deleteListItem(anyLong());
+        verify(repository, never()).getListItems(any(), any(), any(), any(), any(), any(), any());
+        verify(listItemDirectory).invalidate(11L);
     }
 
     private FaceEventDto buildEvent(boolean inList, Long listId, Long listItemId, String faceImage) {
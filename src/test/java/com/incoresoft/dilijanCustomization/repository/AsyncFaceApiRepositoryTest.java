@@ -0,0 +1,260 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
+import com.incoresoft.dilijanCustomization.config.VezhaTrafficProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemsResponse;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncFaceApiRepositoryTest {
+
+    private HttpServer server;
+    private HttpClient client;
+    private final Map<String, String> authByPath = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void downloadsStorageObjectWithBearerToken() {
+        respond("/storage/img/face.jpg", 200, new byte[]{1, 2, 3});
+        server.start();
+
+        byte[] body = repository(8).downloadStorageObjectAsync("img/face.jpg").join();
+
+        assertThat(body).containsExactly(1, 2, 3);
+        assertThat(authByPath.get("/storage/img/face.jpg")).isEqualTo("Bearer token");
+        assertThat(repository(8).downloadStorageObjectAsync(" ").join()).isEmpty();
+    }
+
+    @Test
+    void decodesListItemsAndFailsFutureOnErrorStatus() {
+        respond("/api/face/list_items", 200,
+                "{\"data\":[{\"id\":5,\"name\":\"John\"}],\"total\":1}".getBytes(StandardCharsets.UTF_8));
+        respond("/api/face/list_items/9", 500, "boom".getBytes(StandardCharsets.UTF_8));
+        server.start();
+        AsyncFaceApiRepository repo = repository(8);
+
+        ListItemsResponse items = repo.getListItemsAsync(3L, "", "", 0, 20, "asc", "name").join();
+
+        assertThat(items.getTotal()).isEqualTo(1);
+        assertThat(items.getData()).singleElement().satisfies(i -> assertThat(i.getName()).isEqualTo("John"));
+        assertThatThrownBy(() -> repo.deleteListItemAsync(9L).join())
+                .hasRootCauseMessage("500 on DELETE request for \"" + baseUrl() + "/face/list_items/9\": \"boom\"");
+    }
+
+    @Test
+    void searchByPhotoTreatsEmptyResultAsUniqueAndErrorsAsNotUnique() {
+        respond("/api/face/list_items/search_by_photo", 200, "[]".getBytes(StandardCharsets.UTF_8));
+        server.start();
+        AsyncFaceApiRepository repo = repository(8);
+
+        assertThat(repo.isFaceUniqueInListsAsync(new byte[]{1}, null).join()).isTrue();
+        assertThat(repo.isFaceUniqueInListsAsync(new byte[0], null).join()).isFalse();
+        server.removeContext("/api/face/list_items/search_by_photo");
+        respond("/api/face/list_items/search_by_photo", 503, new byte[0]);
+        assertThat(repo.isFaceUniqueInListsAsync(new byte[]{1}, 80).join()).isFalse();
+    }
+
+    @Test
+    void keepsInFlightRequestsWithinLimit() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        server.createContext("/storage/", exchange -> {
+            peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            exchange.sendResponseHeaders(200, 1);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(7);
+            }
+        });
+        server.start();
+        AsyncFaceApiRepository repo = repository(2);
+
+        List<CompletableFuture<byte[]>> downloads = List.of(
+                repo.downloadStorageObjectAsync("a.jpg"),
+                repo.downloadStorageObjectAsync("b.jpg"),
+                repo.downloadStorageObjectAsync("c.jpg"),
+                repo.downloadStorageObjectAsync("d.jpg"));
+        Thread.sleep(200);
+        release.countDown();
+        CompletableFuture.allOf(downloads.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertThat(peak.get()).isLessThanOrEqualTo(2);
+        assertThat(downloads).allSatisfy(f -> assertThat(f.join()).containsExactly(7));
+    }
+
+    @Test
+    void rejectsChunkedStorageBodyOnceItPassesTheCap() {
+        server.createContext("/storage/", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(new byte[]{1, 2, 3});
+                os.flush();
+                os.write(new byte[]{4, 5, 6});
+            } catch (IOException ignored) {
+                // the client hung up after the cap
+            }
+        });
+        server.start();
+        VezhaApiProps props = props(8);
+        props.setStorageMaxObjectSize(DataSize.ofBytes(4));
+        AsyncFaceApiRepository repo = repository(props);
+
+        assertThatThrownBy(() -> repo.downloadStorageObjectAsync("chunked.jpg").get(5, TimeUnit.SECONDS))
+                .hasRootCauseInstanceOf(IOException.class)
+                .hasStackTraceContaining("chunked.jpg exceeds the 4 byte limit");
+        props.setStorageMaxObjectSize(DataSize.ofBytes(6));
+        assertThat(repo.downloadStorageObjectAsync("small.jpg").join()).containsExactly(1, 2, 3, 4, 5, 6);
+    }
+
+    @Test
+    void streamsStorageObjectToFileAndLeavesNoPartialFiles(@TempDir Path dir) throws Exception {
+        respond("/storage/ok.jpg", 200, new byte[]{1, 2, 3});
+        respond("/storage/missing.jpg", 404, "not found".getBytes(StandardCharsets.UTF_8));
+        server.createContext("/storage/chunked.jpg", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(new byte[]{1, 2, 3});
+                os.flush();
+                os.write(new byte[]{4, 5, 6});
+            } catch (IOException ignored) {
+                // the client hung up after the cap
+            }
+        });
+        server.start();
+        VezhaApiProps props = props(8);
+        props.setStorageMaxObjectSize(DataSize.ofBytes(4));
+        AsyncFaceApiRepository repo = repository(props);
+        Path photos = dir.resolve("photos");
+
+        assertThat(repo.downloadStorageObjectToFileAsync("ok.jpg", photos.resolve("ok.jpg")).get(5, TimeUnit.SECONDS))
+                .isEqualTo(3);
+        assertThat(Files.readAllBytes(photos.resolve("ok.jpg"))).containsExactly(1, 2, 3);
+        assertThatThrownBy(() -> repo.downloadStorageObjectToFileAsync("chunked.jpg", photos.resolve("chunked.jpg"))
+                .get(5, TimeUnit.SECONDS))
+                .hasStackTraceContaining("chunked.jpg exceeds the 4 byte limit");
+        assertThatThrownBy(() -> repo.downloadStorageObjectToFileAsync("missing.jpg", photos.resolve("missing.jpg"))
+                .get(5, TimeUnit.SECONDS))
+                .hasStackTraceContaining("404 on GET request")
+                .hasStackTraceContaining("not found");
+        assertThat(repo.downloadStorageObjectToFileAsync(" ", photos.resolve("blank.jpg")).join()).isZero();
+        try (var left = Files.list(photos)) {
+            assertThat(left).containsExactly(photos.resolve("ok.jpg"));
+        }
+    }
+
+    @Test
+    void hedgesSlowStorageDownloadOnceLatencyIsKnown() throws Exception {
+        Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+        CountDownLatch releaseSlow = new CountDownLatch(1);
+        server.createContext("/storage/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            int hit = hits.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            if (path.endsWith("slow.jpg") && hit == 1) {
+                try {
+                    releaseSlow.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = {(byte) hit};
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        VezhaApiProps props = props(8);
+        props.setHedgeMinSamples(5);
+        props.setHedgeBudgetPercent(100);
+        props.setHedgeMinDelay(Duration.ofMillis(50));
+        AsyncFaceApiRepository repo = repository(props);
+        try {
+            for (int i = 0; i < 5; i++) {
+                repo.downloadStorageObjectAsync("warm-" + i + ".jpg").get(5, TimeUnit.SECONDS);
+            }
+            assertThat(repo.storageHedging().hedgesIssued()).isZero();
+
+            byte[] body = repo.downloadStorageObjectAsync("slow.jpg").get(2, TimeUnit.SECONDS);
+
+            assertThat(body).containsExactly(2);
+            assertThat(hits.get("/storage/slow.jpg")).hasValue(2);
+            assertThat(repo.storageHedging().hedgesIssued()).isEqualTo(1);
+            assertThat(repo.storageHedging().timeout()).isEqualTo(props.getAdaptiveTimeoutMin());
+        } finally {
+            releaseSlow.countDown();
+        }
+    }
+
+    private AsyncFaceApiRepository repository(int maxInFlight) {
+        return repository(props(maxInFlight));
+    }
+
+    private AsyncFaceApiRepository repository(VezhaApiProps props) {
+        return new AsyncFaceApiRepository(client, props, new ObjectMapper(),
+                new VezhaTrafficGovernor(new VezhaTrafficProps(), props), new LocalStorageReader(props));
+    }
+
+    private VezhaApiProps props(int maxInFlight) {
+        VezhaApiProps props = new VezhaApiProps();
+        props.setBaseUrl(baseUrl());
+        props.setToken("token");
+        props.setAsyncMaxInFlight(maxInFlight);
+        return props;
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+    }
+
+    private void respond(String path, int status, byte[] body) {
+        server.createContext(path, exchange -> {
+            authByPath.put(exchange.getRequestURI().getPath(), exchange.getRequestHeaders().getFirst("Authorization"));
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+    }
+}
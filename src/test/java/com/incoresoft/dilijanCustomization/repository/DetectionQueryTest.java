@@ -0,0 +1,38 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DetectionQueryTest {
+
+    @Test
+    void emitsOnlyPresentFiltersWithArrayAndTimestampParams() {
+        DetectionQuery query = DetectionQuery.matched("va")
+                .list(7L)
+                .analytics(List.of(10L, 11L, 12L))
+                .since(1_700_000_000_000L)
+                .until(null);
+
+        assertThat(query.from()).isEqualTo("va.face_detections fd");
+        assertThat(query.where()).isEqualTo("fd.list_item_id IS NOT NULL AND fd.list_id = ? "
+                + "AND fd.analytics_id = ANY(?::bigint[]) AND fd.created_at >= ?");
+        assertThat(query.params()).containsExactly(7L, new Long[]{10L, 11L, 12L},
+                OffsetDateTime.of(2023, 11, 14, 22, 13, 20, 0, ZoneOffset.UTC));
+    }
+
+    @Test
+    void statementTextDoesNotDependOnIdCount() {
+        DetectionQuery few = DetectionQuery.matched("va").lists(List.of(1L)).analytics(List.of(10L)).since(0L).until(1L);
+        DetectionQuery many = DetectionQuery.matched("va").lists(List.of(1L, 2L, 3L)).analytics(List.of(10L, 11L)).since(0L).until(1L);
+
+        assertThat(few.where()).isEqualTo(many.where())
+                .contains("fd.list_id = ANY(?::bigint[])")
+                .doesNotContain("IS NULL OR");
+        assertThat(many.params()).hasSize(4);
+    }
+}
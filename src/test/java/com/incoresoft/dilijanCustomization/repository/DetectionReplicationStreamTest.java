@@ -0,0 +1,90 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.incoresoft.dilijanCustomization.config.VezhaDbProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionInsertedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against a local PostgreSQL with {@code wal_level=logical}:
+ * {@code VEZHA_REPLICATION_TEST=true PGHOST=localhost PGDATABASE=postgres PGUSER=postgres PGPASSWORD=... mvn test}.
+ */
+@EnabledIfEnvironmentVariable(named = "VEZHA_REPLICATION_TEST", matches = "true")
+class DetectionReplicationStreamTest {
+
+    private static final String SCHEMA = "dilijan_replication_test";
+    private static final String SLOT = "dilijan_replication_test";
+
+    @Test
+    void publishesInsertedDetections() throws Exception {
+        VezhaDbProps props = new VezhaDbProps();
+        props.setHost(env("PGHOST", "localhost"));
+        props.setPort(env("PGPORT", "5432"));
+        props.setDatabase(env("PGDATABASE", "postgres"));
+        props.setUsername(env("PGUSER", "postgres"));
+        props.setPassword(env("PGPASSWORD", "postgres"));
+        props.setSchema(SCHEMA);
+        props.getReplication().setSlot(SLOT);
+        props.getReplication().setRetryDelay(Duration.ofSeconds(1));
+
+        try (Connection sql = DriverManager.getConnection(props.jdbcUrl(), props.getUsername(), props.getPassword());
+             Statement st = sql.createStatement()) {
+            st.execute("CREATE SCHEMA IF NOT EXISTS " + SCHEMA);
+            st.execute("CREATE TABLE IF NOT EXISTS " + SCHEMA + ".face_detections (id bigserial PRIMARY KEY, "
+                    + "list_id bigint, list_item_id bigint, analytics_id bigint, created_at timestamptz)");
+
+            BlockingQueue<DetectionInsertedEvent> received = new LinkedBlockingQueue<>();
+            DetectionReplicationStream stream = new DetectionReplicationStream(props, event -> {
+                if (event instanceof DetectionInsertedEvent inserted) {
+                    received.add(inserted);
+                }
+            });
+            stream.start();
+            try {
+                awaitActiveSlot(st);
+                st.execute("INSERT INTO " + SCHEMA + ".face_detections (list_id, list_item_id, analytics_id, created_at) "
+                        + "VALUES (7, 55, 3, '2025-11-02 08:00:00+00')");
+
+                DetectionInsertedEvent event = received.poll(10, TimeUnit.SECONDS);
+                assertThat(event).isNotNull();
+                assertThat(event.detection().getListItem().getId()).isEqualTo(55L);
+                assertThat(event.detection().getListItem().getListId()).isEqualTo(7L);
+                assertThat(event.detection().getAnalytics().getId()).isEqualTo(3L);
+            } finally {
+                stream.stop();
+                st.execute("SELECT pg_drop_replication_slot(slot_name) FROM pg_replication_slots WHERE slot_name = '" + SLOT + "'");
+                st.execute("DROP SCHEMA " + SCHEMA + " CASCADE");
+            }
+        }
+    }
+
+    private static void awaitActiveSlot(Statement st) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT 1 FROM pg_replication_slots WHERE slot_name = '" + SLOT + "' AND active")) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        throw new AssertionError("replication slot " + SLOT + " did not become active");
+    }
+
+    private static String env(String name, String fallback) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? fallback : value;
+    }
+}
@@ -4,15 +4,20 @@ import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionsResponse;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -21,10 +26,13 @@ import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
 
@@ -38,7 +46,7 @@ class FaceApiRepositoryTest {
         props.setBaseUrl("http://example");
         props.setToken("token");
 
-        FaceApiRepository repo = Mockito.spy(new FaceApiRepository(restTemplate, props, builder));
+        FaceApiRepository repo = Mockito.spy(new FaceApiRepository(restTemplate, props, builder, new LocalStorageReader(props)));
 
         DetectionDto d1 = new DetectionDto();
         d1.setId(1L);
@@ -67,22 +75,96 @@ class FaceApiRepositoryTest {
 
     @Test
     void downloadsStorageObjectThroughRestTemplate() {
-        RestTemplate restTemplate = Mockito.mock(RestTemplate.class);
+        RestTemplate storage = new RestTemplate();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(storage).build();
         RestTemplateBuilder builder = Mockito.mock(RestTemplateBuilder.class);
-        when(builder.build()).thenReturn(restTemplate);
+        when(builder.build()).thenReturn(storage);
         VezhaApiProps props = new VezhaApiProps();
         props.setBaseUrl("http://example/api");
         props.setToken("token");
 
-        FaceApiRepository repo = new FaceApiRepository(restTemplate, props, builder);
+        FaceApiRepository repo = new FaceApiRepository(new RestTemplate(), props, builder, new LocalStorageReader(props));
 
-        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(byte[].class)))
-                .thenReturn(ResponseEntity.ok(new byte[]{1, 2, 3}));
+        server.expect(requestTo("http://example/storage/image.jpg"))
+                .andExpect(method(HttpMethod.GET))
+                .andExpect(header("Authorization", "Bearer token"))
+                .andRespond(withSuccess(new byte[]{1, 2, 3}, MediaType.IMAGE_JPEG));
+        server.expect(requestTo("http://example/storage/other.jpg"))
+                .andRespond(withSuccess(new byte[]{9}, MediaType.IMAGE_JPEG));
 
         byte[] result = repo.downloadStorageObject("image.jpg");
         assertThat(result).containsExactly(1, 2, 3);
+        repo.downloadStorageObject("other.jpg");
 
         assertThat(repo.downloadStorageObject("  ")).isEmpty();
+        server.verify();
+        // storage client is built once and reused (pooled connections)
+        verify(builder, times(1)).build();
+    }
+
+    @Test
+    void readsStorageObjectFromLocalMountAndFallsBackToHttp(@TempDir Path storageRoot) throws Exception {
+        Files.write(storageRoot.resolve("local.jpg"), new byte[]{4, 5});
+        RestTemplate storage = new RestTemplate();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(storage).build();
+        RestTemplateBuilder builder = Mockito.mock(RestTemplateBuilder.class);
+        when(builder.build()).thenReturn(storage);
+        VezhaApiProps props = new VezhaApiProps();
+        props.setBaseUrl("http://example/api");
+        props.setToken("token");
+        props.setStorageRoot(storageRoot.toString());
+        server.expect(requestTo("http://example/storage/remote.jpg"))
+                .andRespond(withSuccess(new byte[]{1}, MediaType.IMAGE_JPEG));
+
+        FaceApiRepository repo = new FaceApiRepository(new RestTemplate(), props, builder, new LocalStorageReader(props));
+
+        assertThat(repo.downloadStorageObject("local.jpg")).containsExactly(4, 5);
+        assertThat(repo.downloadStorageObject("remote.jpg")).containsExactly(1);
+        // only remote.jpg went over HTTP
+        server.verify();
+    }
+
+    @Test
+    void streamsStorageObjectIntoChannelAndFileWithinSizeCap(@TempDir Path dir) throws Exception {
+        RestTemplate storage = new RestTemplate();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(storage).build();
+        RestTemplateBuilder builder = Mockito.mock(RestTemplateBuilder.class);
+        when(builder.build()).thenReturn(storage);
+        VezhaApiProps props = new VezhaApiProps();
+        props.setBaseUrl("http://example/api");
+        props.setToken("token");
+        props.setStorageMaxObjectSize(DataSize.ofBytes(4));
+        byte[] image = {1, 2, 3, 4};
+        server.expect(requestTo("http://example/storage/a.jpg"))
+                .andRespond(withSuccess(image, MediaType.IMAGE_JPEG));
+        server.expect(requestTo("http://example/storage/b.jpg"))
+                .andRespond(withSuccess(image, MediaType.IMAGE_JPEG));
+        HttpHeaders tooLarge = new HttpHeaders();
+        tooLarge.setContentLength(5);
+        server.expect(requestTo("http://example/storage/big.jpg"))
+                .andRespond(withSuccess(new byte[]{1, 2, 3, 4, 5}, MediaType.IMAGE_JPEG).headers(tooLarge));
+        server.expect(requestTo("http://example/storage/big-bytes.jpg"))
+                .andRespond(withSuccess(new byte[]{1, 2, 3, 4, 5}, MediaType.IMAGE_JPEG).headers(tooLarge));
+
+        FaceApiRepository repo = new FaceApiRepository(new RestTemplate(), props, builder, new LocalStorageReader(props));
+
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        assertThat(repo.streamStorageObject("a.jpg", Channels.newChannel(sink))).isEqualTo(4);
+        assertThat(sink.toByteArray()).containsExactly(image);
+
+        Path file = dir.resolve("photos/b.jpg");
+        assertThat(repo.downloadStorageObjectToFile("b.jpg", file)).isEqualTo(4);
+        assertThat(Files.readAllBytes(file)).containsExactly(image);
+
+        Path rejected = dir.resolve("photos/big.jpg");
+        assertThatThrownBy(() -> repo.downloadStorageObjectToFile("big.jpg", rejected))
+                .hasMessageContaining("over the 4 byte limit");
+        try (var left = Files.list(dir.resolve("photos"))) {
+            assertThat(left).containsExactly(file);
+        }
+        assertThatThrownBy(() -> repo.downloadStorageObject("big-bytes.jpg"))
+                .hasMessageContaining("over the 4 byte limit");
+        server.verify();
     }
 
     @Test
@@ -94,7 +176,7 @@ class FaceApiRepositoryTest {
         props.setBaseUrl("http://example/api/");
         props.setToken("token");
 
-        FaceApiRepository repo = new FaceApiRepository(restTemplate, props, builder);
+        FaceApiRepository repo = new FaceApiRepository(restTemplate, props, builder, new LocalStorageReader(props));
 
         server.expect(requestTo("http://example/api/face/detections?min_age=0&max_age=100&min_list_item_similarity=0&max_list_item_similarity=100&offset=0&limit=1&sort_order=asc"))
                 .andExpect(method(HttpMethod.POST))
@@ -120,7 +202,7 @@ class FaceApiRepositoryTest {
         props.setBaseUrl("http://example/api");
         props.setToken("token");
 
-        FaceApiRepository repo = new FaceApiRepository(restTemplate, props, builder);
+        FaceApiRepository repo = new FaceApiRepository(restTemplate, props, builder, new LocalStorageReader(props));
 
         server.expect(requestTo("http://example/api/face/detections?start_date=1&end_date=2&list_id=3&min_age=0&max_age=100&min_list_item_similarity=0&max_list_item_similarity=100&limit=500&sort_order=asc"))
                 .andExpect(method(HttpMethod.POST))
@@ -146,7 +228,7 @@ class FaceApiRepositoryTest {
         props.setBaseUrl("http://example/api");
         props.setToken("token");
 
-        FaceApiRepository repo = new FaceApiRepository(restTemplate, props, builder);
+        FaceApiRepository repo = new FaceApiRepository(restTemplate, props, builder, new LocalStorageReader(props));
 
         server.expect(requestTo("http://example/api/face/list_items/search_by_photo?confidence=70"))
                 .andExpect(method(HttpMethod.POST))
@@ -168,7 +250,7 @@ class FaceApiRepositoryTest {
         props.setBaseUrl("http://example/api");
         props.setToken("token");
 
-        FaceApiRepository repo = new FaceApiRepository(restTemplate, props, builder);
+        FaceApiRepository repo = new FaceApiRepository(restTemplate, props, builder, new LocalStorageReader(props));
 
         server.expect(requestTo("http://example/api/face/list_items/search_by_photo?confidence=70"))
                 .andExpect(method(HttpMethod.POST))
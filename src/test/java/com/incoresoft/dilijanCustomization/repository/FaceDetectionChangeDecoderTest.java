@@ -0,0 +1,59 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FaceDetectionChangeDecoderTest {
+
+    private final FaceDetectionChangeDecoder decoder = new FaceDetectionChangeDecoder("videoanalytics");
+
+    @Test
+    void decodesMatchedDetectionInsert() {
+        DetectionDto detection = decoder.decode("table videoanalytics.face_detections: INSERT: id[bigint]:981 "
+                + "list_id[integer]:7 list_item_id[bigint]:55 analytics_id[integer]:3 "
+                + "created_at[timestamp with time zone]:'2025-11-02 08:00:00.123456+00' "
+                + "face_image[text]:'faces/it''s 1.jpg' box[jsonb]:'[0.1, 0.2]'").orElseThrow();
+
+        assertThat(detection.getId()).isEqualTo(981L);
+        assertThat(detection.getTimestamp()).isEqualTo(Instant.parse("2025-11-02T08:00:00.123Z").toEpochMilli());
+        assertThat(detection.getAnalytics().getId()).isEqualTo(3L);
+        assertThat(detection.getListItem().getId()).isEqualTo(55L);
+        assertThat(detection.getListItem().getListId()).isEqualTo(7L);
+    }
+
+    @Test
+    void unmatchedDetectionHasNoListItem() {
+        DetectionDto detection = decoder.decode("table videoanalytics.face_detections: INSERT: id[bigint]:982 "
+                + "list_id[integer]:null list_item_id[bigint]:null analytics_id[integer]:3 "
+                + "created_at[timestamp without time zone]:'2025-11-02 08:00:01'").orElseThrow();
+
+        assertThat(detection.getListItem()).isNull();
+        assertThat(detection.getTimestamp()).isEqualTo(Instant.parse("2025-11-02T08:00:01Z").toEpochMilli());
+    }
+
+    @Test
+    void ignoresTransactionMarkersOtherTablesAndOperations() {
+        assertThat(decoder.decode("BEGIN")).isEmpty();
+        assertThat(decoder.decode("COMMIT")).isEmpty();
+        assertThat(decoder.decode("table videoanalytics.face_list_items: INSERT: id[bigint]:1")).isEmpty();
+        assertThat(decoder.decode("table videoanalytics.face_detections: DELETE: id[bigint]:981")).isEmpty();
+        assertThat(decoder.decode("table other.face_detections: INSERT: id[bigint]:981")).isEmpty();
+    }
+
+    @Test
+    void matchesQuotedSchemaAndParsesQuotedValues() {
+        FaceDetectionChangeDecoder quoted = new FaceDetectionChangeDecoder("VideoAnalytics");
+        assertThat(quoted.decode("table \"VideoAnalytics\".face_detections: INSERT: id[bigint]:5")).isPresent();
+
+        Map<String, String> columns = FaceDetectionChangeDecoder.columns(
+                "\"Note\"[text]:'a b]: c' tags[text[]]:'{x,y}' flag[boolean]:true");
+        assertThat(columns).containsEntry("Note", "a b]: c")
+                .containsEntry("tags", "{x,y}")
+                .containsEntry("flag", "true");
+    }
+}
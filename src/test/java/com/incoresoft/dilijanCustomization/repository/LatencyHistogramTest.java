@@ -0,0 +1,45 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesSeparateTheTailFromTypicalLatency() {
+        LatencyHistogram histogram = new LatencyHistogram(1_000);
+        for (int i = 0; i < 95; i++) {
+            histogram.record(Duration.ofMillis(20).toNanos());
+        }
+        for (int i = 0; i < 5; i++) {
+            histogram.record(Duration.ofSeconds(3).toNanos());
+        }
+
+        assertThat(histogram.percentile(0.5)).isBetween(Duration.ofMillis(20), Duration.ofMillis(25));
+        assertThat(histogram.percentile(0.95)).isBetween(Duration.ofMillis(20), Duration.ofMillis(25));
+        assertThat(histogram.percentile(0.99)).isBetween(Duration.ofSeconds(3), Duration.ofMillis(3_750));
+        assertThat(new LatencyHistogram(10).percentile(0.95)).isZero();
+    }
+
+    @Test
+    void halvesCountsWhenTheWindowFillsSoRecentLatencyDominates() {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        for (int i = 0; i < 99; i++) {
+            histogram.record(Duration.ofSeconds(2).toNanos());
+        }
+        histogram.record(Duration.ofSeconds(2).toNanos());
+        assertThat(histogram.count()).isEqualTo(50);
+
+        for (int i = 0; i < 49; i++) {
+            histogram.record(Duration.ofMillis(10).toNanos());
+        }
+        for (int i = 0; i < 50; i++) {
+            histogram.record(Duration.ofMillis(10).toNanos());
+        }
+
+        assertThat(histogram.percentile(0.5)).isLessThan(Duration.ofMillis(15));
+    }
+}
@@ -0,0 +1,71 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalStorageReaderTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void readsSmallFilesThroughTheChannelAndLargeOnesMapped() throws Exception {
+        Files.createDirectories(root.resolve("faces/2024"));
+        Files.write(root.resolve("faces/2024/small.jpg"), new byte[]{1, 2, 3});
+        byte[] large = new byte[4096];
+        large[4095] = 9;
+        Files.write(root.resolve("faces/2024/large.jpg"), large);
+        LocalStorageReader reader = reader(root.toString(), DataSize.ofKilobytes(1));
+
+        assertThat(reader.read("faces/2024/small.jpg")).get().isEqualTo(new byte[]{1, 2, 3});
+        assertThat(reader.read("/faces/2024/large.jpg")).get().isEqualTo(large);
+    }
+
+    @Test
+    void fallsBackForMissingFilesUrlsAndPathsOutsideTheRoot() throws Exception {
+        Path storage = Files.createDirectories(root.resolve("storage"));
+        Files.write(root.resolve("secret.txt"), new byte[]{7});
+        LocalStorageReader reader = reader(storage.toString(), DataSize.ofKilobytes(256));
+
+        assertThat(reader.read("missing.jpg")).isEmpty();
+        assertThat(reader.read("../secret.txt")).isEmpty();
+        assertThat(reader.read("http://vezha/storage/a.jpg")).isEmpty();
+        assertThat(reader.read(" ")).isEmpty();
+    }
+
+    @Test
+    void rejectsSymlinksLeadingOutsideTheRoot() throws Exception {
+        Path storage = Files.createDirectories(root.resolve("storage"));
+        Files.write(root.resolve("secret.txt"), new byte[]{7});
+        Files.write(storage.resolve("inside.jpg"), new byte[]{1});
+        Files.createSymbolicLink(storage.resolve("escape.jpg"), root.resolve("secret.txt"));
+        Files.createSymbolicLink(storage.resolve("alias.jpg"), storage.resolve("inside.jpg"));
+        LocalStorageReader reader = reader(storage.toString(), DataSize.ofKilobytes(256));
+
+        assertThat(reader.read("escape.jpg")).isEmpty();
+        assertThat(reader.read("alias.jpg")).get().isEqualTo(new byte[]{1});
+    }
+
+    @Test
+    void disabledWithoutStorageRoot() throws Exception {
+        Files.write(root.resolve("a.jpg"), new byte[]{1});
+        LocalStorageReader reader = reader(null, DataSize.ofKilobytes(256));
+
+        assertThat(reader.isEnabled()).isFalse();
+        assertThat(reader.read(root.resolve("a.jpg").toString())).isEmpty();
+    }
+
+    private static LocalStorageReader reader(String storageRoot, DataSize mmapThreshold) {
+        VezhaApiProps props = new VezhaApiProps();
+        props.setStorageRoot(storageRoot);
+        props.setStorageMmapThreshold(mmapThreshold);
+        return new LocalStorageReader(props);
+    }
+}
@@ -0,0 +1,138 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentIdenticalCallsShareOneExecution() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> flight.run("lists", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "result";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<String> results = new ArrayList<>();
+        List<Thread> followers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread t = new Thread(() -> {
+                String r = flight.run("lists", () -> {
+                    calls.incrementAndGet();
+                    return "own";
+                });
+                synchronized (results) {
+                    results.add(r);
+                }
+            });
+            followers.add(t);
+            t.start();
+        }
+        waitUntilParked(followers);
+        release.countDown();
+        for (Thread t : followers) {
+            t.join(5_000);
+        }
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(results).hasSize(4).containsOnly("result");
+        assertThat(calls).hasValue(1);
+        assertThat(flight.inFlight()).isZero();
+    }
+
+    @Test
+    void failureReachesTheCallerAndReleasesTheKey() {
+        SingleFlight<Long, String> flight = new SingleFlight<>();
+
+        assertThatThrownBy(() -> flight.run(7L, () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("boom");
+
+        assertThat(flight.inFlight()).isZero();
+        assertThat(flight.run(7L, () -> "retry")).isEqualTo("retry");
+    }
+
+    @Test
+    void asyncCallersGetIndependentCopiesOfOneRequest() throws Exception {
+        SingleFlight<String, byte[]> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<byte[]> wire = new CompletableFuture<>();
+
+        CompletableFuture<byte[]> first = flight.runAsync("a.jpg", () -> {
+            calls.incrementAndGet();
+            return wire;
+        });
+        CompletableFuture<byte[]> second = flight.runAsync("a.jpg", () -> {
+            calls.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        second.cancel(true);
+        wire.complete(new byte[]{1, 2});
+
+        assertThat(calls).hasValue(1);
+        assertThat(first.get(5, TimeUnit.SECONDS)).containsExactly(1, 2);
+        assertThat(flight.inFlight()).isZero();
+
+        flight.runAsync("a.jpg", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(new byte[0]);
+        }).get(5, TimeUnit.SECONDS);
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void callersOfDifferentTrafficClassesDoNotShareAFlight() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> background = CompletableFuture.supplyAsync(() -> VezhaTrafficClass.BACKGROUND.supply(
+                () -> flight.run("lists", () -> {
+                    started.countDown();
+                    await(release);
+                    return "batch";
+                })));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        String emergency = VezhaTrafficClass.EMERGENCY.supply(() -> flight.run("lists", () -> "interactive"));
+        release.countDown();
+
+        assertThat(emergency).isEqualTo("interactive");
+        assertThat(background.get(5, TimeUnit.SECONDS)).isEqualTo("batch");
+        assertThat(flight.inFlight()).isZero();
+    }
+
+    private static void waitUntilParked(List<Thread> threads) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (threads.stream().allMatch(t -> t.getState() == Thread.State.WAITING)) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.incoresoft.dilijanCustomization.config.VezhaDbProps;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListImage;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VezhaDbRepositoryTest {
+
+    private final Connection connection = mock(Connection.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private final ResultSet rs = mock(ResultSet.class);
+    private final DataSource batchDataSource = mock(DataSource.class);
+    private VezhaDbRepository repository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(rs);
+
+        VezhaDbProps props = new VezhaDbProps();
+        props.setEnabled(true);
+        props.setStreamFetchSize(250);
+        repository = new VezhaDbRepository(new JdbcTemplate(dataSource), new JdbcTemplate(batchDataSource), props, new ObjectMapper());
+    }
+
+    @Test
+    void streamsListItemsThroughCursorFoldingAdjacentImageRows() throws Exception {
+        when(rs.next()).thenReturn(true, true, true, false);
+        when(rs.getLong("item_id")).thenReturn(1L, 1L, 2L);
+        when(rs.getLong("list_id")).thenReturn(7L);
+        when(rs.getString("name")).thenReturn("Ann", "Bob");
+        when(rs.getString("path")).thenReturn("a1.jpg", "a2.jpg", null);
+
+        List<ListItemDto> items = new ArrayList<>();
+        repository.streamListItems(7L, ListItemImages.ALL, items::add);
+
+        assertThat(items).extracting(ListItemDto::getId, ListItemDto::getName).containsExactly(
+                tuple(1L, "Ann"), tuple(2L, "Bob"));
+        assertThat(items.get(0).getImages()).extracting(ListImage::getPath).containsExactly("a1.jpg", "a2.jpg");
+        assertThat(items.get(1).getImages()).isEmpty();
+
+        InOrder order = inOrder(connection, statement, rs);
+        order.verify(connection).setAutoCommit(false);
+        order.verify(statement).setFetchSize(250);
+        order.verify(statement).setObject(1, 7L);
+        order.verify(rs).close();
+        order.verify(connection).commit();
+        order.verify(connection).setAutoCommit(true);
+    }
+
+    @Test
+    void firstImageProjectionReturnsOneRowPerItem() throws Exception {
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getLong("item_id")).thenReturn(1L, 2L);
+        when(rs.getString("path")).thenReturn("a1.jpg", (String) null);
+
+        List<ListItemDto> items = repository.findListItems(7L, ListItemImages.FIRST);
+
+        assertThat(items).hasSize(2);
+        assertThat(items.get(0).getImages()).extracting(ListImage::getPath).containsExactly("a1.jpg");
+        assertThat(items.get(1).getImages()).isEmpty();
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(connection).prepareStatement(sql.capture(), anyInt(), anyInt());
+        assertThat(sql.getValue()).contains("LEFT JOIN LATERAL", "LIMIT 1").doesNotContain("img.id ASC");
+    }
+
+    @Test
+    void batchItemsBindOneArrayAndGroupByList() throws Exception {
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getLong("item_id")).thenReturn(1L, 2L);
+        when(rs.getLong("list_id")).thenReturn(7L, 8L);
+
+        Map<Long, List<ListItemDto>> byList = repository.findListItemsByListIds(List.of(7L, 8L, 9L), ListItemImages.NONE);
+
+        assertThat(byList).containsOnlyKeys(7L, 8L, 9L);
+        assertThat(byList.get(7L)).extracting(ListItemDto::getId).containsExactly(1L);
+        assertThat(byList.get(8L)).extracting(ListItemDto::getId).containsExactly(2L);
+        assertThat(byList.get(9L)).isEmpty();
+        verify(connection).createArrayOf("bigint", new Long[]{7L, 8L, 9L});
+        verify(statement).setArray(eq(1), any());
+        verify(statement, never()).setObject(anyInt(), any());
+    }
+
+    @Test
+    void backgroundCallersUseTheBatchPool() throws Exception {
+        Connection batchConnection = mock(Connection.class);
+        when(batchDataSource.getConnection()).thenReturn(batchConnection);
+        when(batchConnection.getAutoCommit()).thenReturn(true);
+        when(batchConnection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(statement);
+        when(rs.next()).thenReturn(false);
+
+        VezhaTrafficClass.BACKGROUND.run(() -> repository.findListItems(7L, ListItemImages.NONE));
+        repository.findListItems(8L, ListItemImages.NONE);
+
+        verify(batchConnection).prepareStatement(anyString(), anyInt(), anyInt());
+        verify(connection).prepareStatement(anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void interactiveReadsCarryTheTemplateQueryTimeout() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        JdbcTemplate interactive = new JdbcTemplate(dataSource);
+        interactive.setQueryTimeout(15);
+        VezhaDbProps props = new VezhaDbProps();
+        props.setEnabled(true);
+        repository = new VezhaDbRepository(interactive, new JdbcTemplate(batchDataSource), props, new ObjectMapper());
+        when(rs.next()).thenReturn(false);
+
+        repository.findListItems(7L, ListItemImages.NONE);
+
+        verify(statement).setQueryTimeout(15);
+    }
+
+    @Test
+    void unboundedScansDoNotCarryTheTemplateQueryTimeout() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        JdbcTemplate interactive = new JdbcTemplate(dataSource);
+        interactive.setQueryTimeout(15);
+        VezhaDbProps props = new VezhaDbProps();
+        props.setEnabled(true);
+        repository = new VezhaDbRepository(interactive, new JdbcTemplate(batchDataSource), props, new ObjectMapper());
+        when(rs.next()).thenReturn(false);
+
+        repository.streamDetections(List.of(7L), List.of(3L), 0L, 1_000L, d -> { });
+
+        verify(statement, never()).setQueryTimeout(anyInt());
+    }
+
+    @Test
+    void explainReplaysTheLastStatementWithItsParameters() throws Exception {
+        assertThat(repository.explain(VezhaHotQuery.LIST_ITEMS)).isEmpty();
+        when(rs.next()).thenReturn(false, true);
+        when(rs.getString(1)).thenReturn("[{\"Plan\": {}}]");
+        PreparedStatement explainStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(explainStatement);
+        when(explainStatement.executeQuery()).thenReturn(rs);
+        repository.findListItems(7L, ListItemImages.NONE);
+
+        VezhaDbRepository.ExplainedStatement explained = repository.explain(VezhaHotQuery.LIST_ITEMS).orElseThrow();
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(connection).prepareStatement(sql.capture());
+        assertThat(sql.getValue()).isEqualTo("EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + explained.sql());
+        verify(explainStatement).setObject(1, 7L);
+        assertThat(explained.planJson()).isEqualTo("[{\"Plan\": {}}]");
+    }
+
+    @Test
+    void recognisesStatementTimeoutsInTheCauseChain() {
+        assertThat(VezhaDbRepository.isTimeout(new QueryTimeoutException("timeout"))).isTrue();
+        assertThat(VezhaDbRepository.isTimeout(new RuntimeException(new SQLException("canceled", "57014")))).isTrue();
+        assertThat(VezhaDbRepository.isTimeout(new RuntimeException(new SQLException("syntax", "42601")))).isFalse();
+    }
+
+    @Test
+    void detectionStreamHoldsCursorUntilClosed() throws Exception {
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getLong("id")).thenReturn(5L, 6L);
+        when(rs.getTimestamp("created_at")).thenReturn(new Timestamp(1_000L));
+
+        try (Stream<DetectionDto> detections = repository.openDetectionStream(List.of(7L), List.of(10L), 0, 5_000)) {
+            assertThat(detections.findFirst()).get().extracting(DetectionDto::getId).isEqualTo(5L);
+            verify(connection, never()).close();
+        }
+
+        verify(statement).setFetchSize(250);
+        verify(connection).createArrayOf("bigint", new Long[]{7L});
+        verify(connection).createArrayOf("bigint", new Long[]{10L});
+        InOrder order = inOrder(connection, rs);
+        order.verify(connection).setAutoCommit(false);
+        order.verify(rs).close();
+        order.verify(connection).rollback();
+        order.verify(connection).setAutoCommit(true);
+        order.verify(connection).close();
+    }
+}
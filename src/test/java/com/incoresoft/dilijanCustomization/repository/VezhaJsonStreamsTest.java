@@ -0,0 +1,81 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.incoresoft.dilijanCustomization.domain.shared.dto.DetectionDto;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VezhaJsonStreamsTest {
+
+    @Test
+    void pushesSlimDetectionsAndSkipsUnusedSubtrees() throws Exception {
+        String json = """
+                {"status":"ok","total":2,
+                 "data":[
+                   {"id":1,"timestamp":1700000000000,"box":[0.1,0.2,0.3,0.4],"face_image":"a.jpg",
+                    "analytics":{"id":2,"stream_id":7,"config":{"nested":[1,2,{"x":null}]}},
+                    "list_item":{"id":100,"name":"John","list_id":5,"images":[{"path":"p1"},{"path":"p2"}]}},
+                   {"id":"2","timestamp":1700000001000,"list_item":null,"extra":{"a":[]}}
+                 ],
+                 "pages":1}
+                """;
+        List<DetectionDto> out = new ArrayList<>();
+
+        int count = VezhaJsonStreams.readDetections(stream(json), out::add);
+
+        assertThat(count).isEqualTo(2);
+        DetectionDto first = out.get(0);
+        assertThat(first.getId()).isEqualTo(1L);
+        assertThat(first.getTimestamp()).isEqualTo(1_700_000_000_000L);
+        assertThat(first.getFaceImage()).isEqualTo("a.jpg");
+        assertThat(first.getBox()).isNull();
+        assertThat(first.getAnalytics().getId()).isEqualTo(2L);
+        assertThat(first.getAnalytics().getStreamId()).isEqualTo(7L);
+        assertThat(first.getListItem().getId()).isEqualTo(100L);
+        assertThat(first.getListItem().getName()).isEqualTo("John");
+        assertThat(first.getListItem().getListId()).isEqualTo(5L);
+        assertThat(out.get(1).getId()).isEqualTo(2L);
+        assertThat(out.get(1).getListItem()).isNull();
+    }
+
+    @Test
+    void pushesListItemsWithFirstImageAndRawCreatedAt() throws Exception {
+        String json = """
+                {"data":[
+                   {"id":10,"name":"Ann","comment":"auto-unknown","created_at":1700000000,
+                    "images":[{"path":"first","meta":{"w":1}},{"path":"second"}],"embedding":[0.1,0.2]},
+                   {"id":11,"name":"Bob","created_at":"2024-01-01T00:00:00Z","images":[]}
+                 ],"total":2}
+                """;
+        List<ListItemDto> out = new ArrayList<>();
+
+        int count = VezhaJsonStreams.readListItems(stream(json), out::add);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(out.get(0).getImages()).singleElement().satisfies(i -> assertThat(i.getPath()).isEqualTo("first"));
+        assertThat(out.get(0).getComment()).isEqualTo("auto-unknown");
+        assertThat(out.get(0).resolveCreatedAtMillis()).isEqualTo(1_700_000_000_000L);
+        assertThat(out.get(1).getImages()).isEmpty();
+        assertThat(out.get(1).resolveCreatedAtMillis()).isEqualTo(1_704_067_200_000L);
+    }
+
+    @Test
+    void emptyOrMissingDataYieldsNoElements() throws Exception {
+        List<DetectionDto> out = new ArrayList<>();
+
+        assertThat(VezhaJsonStreams.readDetections(stream("{\"data\":[]}"), out::add)).isZero();
+        assertThat(VezhaJsonStreams.readDetections(stream("{\"status\":\"ok\"}"), out::add)).isZero();
+        assertThat(VezhaJsonStreams.readDetections(null, out::add)).isZero();
+        assertThat(out).isEmpty();
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,86 @@
+package com.incoresoft.dilijanCustomization.repository;
+
+import com.incoresoft.dilijanCustomization.config.VezhaApiProps;
+import com.incoresoft.dilijanCustomization.config.VezhaTrafficProps;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VezhaTrafficGovernorTest {
+
+    @Test
+    void nonEmergencyClassesCannotTakeTheEmergencyReserve() {
+        VezhaTrafficGovernor governor = governor(4, 2, new VezhaTrafficProps.Limits(4, 0, 0));
+
+        VezhaTrafficGovernor.Permit first = governor.tryAcquire(VezhaTrafficClass.BACKGROUND);
+        VezhaTrafficGovernor.Permit second = governor.tryAcquire(VezhaTrafficClass.INTERACTIVE);
+
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(governor.tryAcquire(VezhaTrafficClass.BACKGROUND)).isNull();
+        assertThat(governor.tryAcquire(VezhaTrafficClass.EMERGENCY)).isNotNull();
+
+        first.close();
+        first.close();
+        assertThat(governor.tryAcquire(VezhaTrafficClass.BACKGROUND)).isNotNull();
+        assertThat(governor.tryAcquire(VezhaTrafficClass.BACKGROUND)).isNull();
+    }
+
+    @Test
+    void rateLimitAndBulkheadRejectBlockingCallsAfterMaxWait() {
+        VezhaTrafficGovernor governor = governor(64, 8, new VezhaTrafficProps.Limits(1, 1, 1));
+
+        VezhaTrafficGovernor.Permit held = governor.acquire(VezhaTrafficClass.BACKGROUND);
+        assertThat(governor.availableSlots(VezhaTrafficClass.BACKGROUND)).isZero();
+        held.close();
+
+        // the single token was spent above and the next one is a second away
+        assertThatThrownBy(() -> governor.acquire(VezhaTrafficClass.BACKGROUND))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessageContaining("rate limit");
+        assertThat(governor.acquire(VezhaTrafficClass.EMERGENCY)).isNotNull();
+    }
+
+    @Test
+    void asyncQueueStartsHigherPriorityClassesFirst() {
+        VezhaTrafficGovernor governor = governor(64, 8, new VezhaTrafficProps.Limits(4, 0, 0));
+        AsyncRequestLimiter limiter = new AsyncRequestLimiter(1, governor);
+        List<String> started = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+
+        limiter.submit(() -> blocker);
+        CompletableFuture<String> background = VezhaTrafficClass.BACKGROUND.supply(() -> limiter.submit(() -> {
+            started.add("background");
+            return CompletableFuture.completedFuture("b");
+        }));
+        CompletableFuture<String> emergency = VezhaTrafficClass.EMERGENCY.supply(() -> limiter.submit(() -> {
+            started.add("emergency");
+            return CompletableFuture.completedFuture("e");
+        }));
+        assertThat(started).isEmpty();
+
+        blocker.complete("done");
+
+        assertThat(emergency.join()).isEqualTo("e");
+        assertThat(background.join()).isEqualTo("b");
+        assertThat(started).containsExactly("emergency", "background");
+        assertThat(VezhaTrafficClass.current()).isEqualTo(VezhaTrafficClass.INTERACTIVE);
+    }
+
+    private static VezhaTrafficGovernor governor(int maxConnections, int reserve, VezhaTrafficProps.Limits background) {
+        VezhaApiProps apiProps = new VezhaApiProps();
+        apiProps.setMaxConnections(maxConnections);
+        VezhaTrafficProps props = new VezhaTrafficProps();
+        props.setEmergencyReserve(reserve);
+        props.setBackground(background);
+        props.setMaxWait(Duration.ofMillis(50));
+        return new VezhaTrafficGovernor(props, apiProps);
+    }
+}
@@ -1,21 +1,23 @@
 package com.incoresoft.dilijanCustomization.telegram;
 
 import com.incoresoft.dilijanCustomization.domain.attendance.service.AttendanceReportService;
+import com.incoresoft.dilijanCustomization.domain.attendance.service.LiveAttendanceService;
 import com.incoresoft.dilijanCustomization.domain.evacuation.service.EvacuationReportService;
 import com.incoresoft.dilijanCustomization.domain.evacuation.service.EvacuationStatusService;
-import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
-import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemsResponse;
-import com.incoresoft.dilijanCustomization.repository.FaceApiRepository;
+import com.incoresoft.dilijanCustomization.domain.shared.dto.FaceListDto;
+import com.incoresoft.dilijanCustomization.domain.shared.service.FaceListCache;
+import com.incoresoft.dilijanCustomization.domain.shared.service.ListItemDirectory;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.lang.reflect.Method;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -136,33 +138,50 @@ class TelegramBotTest {
     }
 
     @Test
-    void buildListItemNameMappingsStopsWhenPaginationDoesNotAdvance() throws Exception {
-        FaceApiRepository repository = mock(FaceApiRepository.class);
-        ListItemsResponse firstPage = new ListItemsResponse();
-        List<ListItemDto> pageItems = new java.util.ArrayList<>();
-        for (long id = 1; id <= 1000; id++) {
-            ListItemDto item = new ListItemDto();
-            item.setId(id);
-            item.setName("Person " + id);
-            pageItems.add(item);
-        }
-        firstPage.setData(pageItems);
-
-        when(repository.getListItems(eq(99L), eq(""), eq(""), any(), eq(1000), eq("asc"), eq("name")))
-                .thenReturn(firstPage);
+    void buildListItemNameMappingsUsesDirectoryExactNameIndex() throws Exception {
+        ListItemDirectory directory = mock(ListItemDirectory.class);
+        when(directory.exactNameIndex(99L)).thenReturn(Map.of("Person 1", 1L));
 
-        TelegramBot bot = new TelegramBot(repository, mock(EvacuationReportService.class),
-                mock(AttendanceReportService.class), mock(EvacuationStatusService.class));
+        TelegramBot bot = new TelegramBot(mock(EvacuationReportService.class),
+                mock(AttendanceReportService.class), mock(EvacuationStatusService.class), mock(LiveAttendanceService.class),
+                mock(FaceListCache.class), directory);
 
         Method method = TelegramBot.class.getDeclaredMethod("buildListItemNameMappings", Iterable.class);
         method.setAccessible(true);
 
         @SuppressWarnings("unchecked")
-        Map<Long, Map<String, Long>> mappings = (Map<Long, Map<String, Long>>) method.invoke(bot, List.of(99L));
+        Map<Long, Map<String, Long>> mappings = (Map<Long, Map<String, Long>>) method.invoke(bot, java.util.Arrays.asList(99L, null));
 
-        assertThat(mappings).containsKey(99L);
+        assertThat(mappings).containsOnlyKeys(99L);
         assertThat(mappings.get(99L)).containsEntry("Person 1", 1L);
-        verify(repository, times(2)).getListItems(eq(99L), eq(""), eq(""), any(), eq(1000), eq("asc"), eq("name"));
+        verify(directory, times(1)).exactNameIndex(99L);
+    }
+
+    @Test
+    void selectionDropsListsThatStoppedBeingReportableOnceTheListsChange() throws Exception {
+        FaceListCache cache = mock(FaceListCache.class);
+        when(cache.reportableLists())
+                .thenReturn(List.of(list(1L), list(2L)))
+                .thenReturn(List.of(list(1L)));
+        when(cache.version()).thenReturn(1L, 1L, 2L);
+        TelegramBot bot = new TelegramBot(mock(EvacuationReportService.class),
+                mock(AttendanceReportService.class), mock(EvacuationStatusService.class), mock(LiveAttendanceService.class),
+                cache, mock(ListItemDirectory.class));
+        @SuppressWarnings("unchecked")
+        Map<Long, Set<Long>> selections = (Map<Long, Set<Long>>) ReflectionTestUtils.getField(bot, "chatSelections");
+        selections.put(5L, new HashSet<>(Set.of(1L, 2L)));
+        Method method = TelegramBot.class.getDeclaredMethod("currentSelection", Long.class);
+        method.setAccessible(true);
+
+        assertThat(method.invoke(bot, 5L)).isEqualTo(Set.of(1L, 2L));
+        assertThat(method.invoke(bot, 5L)).isEqualTo(Set.of(1L, 2L));
+        assertThat(method.invoke(bot, 5L)).isEqualTo(Set.of(1L));
+    }
+
+    private static FaceListDto list(Long id) {
+        FaceListDto list = new FaceListDto();
+        list.setId(id);
+        return list;
     }
 
 }
@@ -1,6 +1,7 @@
 package com.incoresoft.dilijanCustomization.web;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.incoresoft.dilijanCustomization.domain.attendance.service.LiveAttendanceService;
 import com.incoresoft.dilijanCustomization.domain.shared.dto.ListItemDto;
 import com.incoresoft.dilijanCustomization.domain.unknown.dto.FaceEventDto;
 import com.incoresoft.dilijanCustomization.domain.unknown.service.UnknownPersonService;
@@ -24,11 +25,14 @@ class VezhaWebhookControllerTest {
     @Mock
     private UnknownPersonService service;
 
+    @Mock
+    private LiveAttendanceService liveAttendanceService;
+
     private VezhaWebhookController controller;
 
     @BeforeEach
     void setUp() {
-        controller = new VezhaWebhookController(service, new ObjectMapper());
+        controller = new VezhaWebhookController(service, liveAttendanceService, new ObjectMapper());
     }
 
     @Test
@@ -84,4 +88,13 @@ class VezhaWebhookControllerTest {
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
     }
+
+    @Test
+    void cafeteriaEventReturnsNoContentWhenCounted() {
+        when(liveAttendanceService.record(any(FaceEventDto.class))).thenReturn(true);
+
+        var response = controller.countCafeteriaVisit("{\"timestamp\":123,\"in_list\":true}", Map.of(), null);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+    }
 }